@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.compression;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.decoder.BrotliInputStream;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A content codec for the Brotli (<code>br</code>) content coding.
+ * <p>
+ * Brotli is implemented by a native library, which must be added to the classpath for the platform the
+ * application runs on (for example, <code>com.aayushatharva.brotli4j:native-linux-x86_64</code>). The codec
+ * can not be created if the native library is not available.
+ */
+public class BrotliCodec implements ContentCodec {
+    /**
+     * Name of the content coding.
+     */
+    public static final String NAME = "br";
+
+    /**
+     * Default compression quality. The highest qualities are too slow for entities compressed on the fly.
+     */
+    public static final int DEFAULT_QUALITY = 4;
+
+    /**
+     * Default base 2 logarithm of the sliding window size.
+     */
+    public static final int DEFAULT_WINDOW = 22;
+
+    /**
+     * Compression quality.
+     */
+    private int quality = DEFAULT_QUALITY;
+
+    /**
+     * Base 2 logarithm of the sliding window size.
+     */
+    private int window = DEFAULT_WINDOW;
+
+    /**
+     * Constructor.
+     *
+     * @throws UnsatisfiedLinkError When the native Brotli library is not available.
+     */
+    public BrotliCodec() {
+        Brotli4jLoader.ensureAvailability();
+    }
+
+    /**
+     * Returns the compression quality.
+     *
+     * @return The compression quality.
+     */
+    public int getQuality() {
+        return quality;
+    }
+
+    /**
+     * Sets the compression quality, from 0 to 11.
+     *
+     * @param quality Compression quality.
+     * @return The instance of this class the method was called with.
+     */
+    public BrotliCodec setQuality(int quality) {
+        if (quality < 0 || quality > 11) {
+            throw new IllegalArgumentException("invalid compression quality " + quality);
+        }
+        this.quality = quality;
+        return this;
+    }
+
+    /**
+     * Returns the base 2 logarithm of the sliding window size.
+     *
+     * @return The base 2 logarithm of the sliding window size.
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Sets the base 2 logarithm of the sliding window size, from 10 to 24.
+     *
+     * @param window Base 2 logarithm of the sliding window size.
+     * @return The instance of this class the method was called with.
+     */
+    public BrotliCodec setWindow(int window) {
+        if (window < 10 || window > 24) {
+            throw new IllegalArgumentException("invalid window size " + window);
+        }
+        this.window = window;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutputStream encode(OutputStream outputStream) throws IOException {
+        return new BrotliOutputStream(outputStream, new Encoder.Parameters().setQuality(quality).setWindow(window));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream decode(InputStream inputStream) throws IOException {
+        return new BrotliInputStream(inputStream);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encodes and decodes entities for a single HTTP content coding, such as <code>zstd</code> or <code>br</code>.
+ */
+public interface ContentCodec {
+    /**
+     * Returns the name of the content coding, as used in the <code>Content-Encoding</code> and
+     * <code>Accept-Encoding</code> headers.
+     *
+     * @return The name of the content coding.
+     */
+    String getName();
+
+    /**
+     * Wraps the given output stream with one that encodes the data written to it. Closing the returned stream
+     * must complete the encoded data, release any resources held by the encoder and close the given stream.
+     *
+     * @param outputStream Output stream to write the encoded data to.
+     * @return An output stream that encodes the data written to it.
+     * @throws IOException When an IO exception occurs.
+     */
+    OutputStream encode(OutputStream outputStream) throws IOException;
+
+    /**
+     * Wraps the given input stream with one that decodes the data read from it. Closing the returned stream
+     * must release any resources held by the decoder and close the given stream.
+     *
+     * @param inputStream Input stream containing the encoded data.
+     * @return An input stream containing the decoded data.
+     * @throws IOException When an IO exception occurs.
+     */
+    InputStream decode(InputStream inputStream) throws IOException;
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.compression;
+
+import com.budjb.httprequests.HttpContext;
+import com.budjb.httprequests.HttpEntity;
+import com.budjb.httprequests.HttpRequest;
+import com.budjb.httprequests.HttpRequestsUtil;
+import com.budjb.httprequests.HttpResponse;
+import com.budjb.httprequests.exception.EmptyEntityException;
+import com.budjb.httprequests.exception.EntityConverterException;
+import com.budjb.httprequests.filter.LifecycleFilter;
+import com.budjb.httprequests.filter.OutputStreamFilter;
+import com.budjb.httprequests.filter.RequestFilter;
+import com.budjb.httprequests.filter.ResponseFilter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A filter that compresses request entities and decompresses response entities with a set of
+ * {@link ContentCodec content codecs}, such as {@link ZstdCodec} and {@link BrotliCodec}.
+ * <p>
+ * Codecs are given in order of preference. Every codec is advertised to servers with the
+ * <code>Accept-Encoding</code> header of each request, unless the request already contains one, and response
+ * entities encoded with any combination of the codecs are decoded as they are read.
+ * <p>
+ * The codec used to compress a request entity is chosen as follows:
+ * <ol>
+ * <li>If the request contains the {@link #ENCODING_HEADER} header, the codec it names is used, or the entity is
+ * not compressed if it names none of the codecs, such as <code>identity</code>. This allows the codec to be
+ * configured per request. The header is removed before the request is sent.</li>
+ * <li>If a server has advertised the content codings it accepts with an <code>Accept-Encoding</code> response
+ * header, as described in RFC 7694, the most preferred codec it accepts is used for subsequent requests to
+ * the same origin. A server that rejects an encoded entity with HTTP status 415 and does not advertise any
+ * codings is assumed to accept none of them.</li>
+ * <li>Otherwise, the default encoding is used, if one is configured.</li>
+ * </ol>
+ * Apart from requests that name a codec themselves, entities smaller than the threshold are not compressed.
+ * Entities whose length is not known up front are compressed. Requests that already contain a
+ * <code>Content-Encoding</code> header are sent unchanged, since their entity is already encoded.
+ */
+public class ContentEncodingFilter implements RequestFilter, OutputStreamFilter, ResponseFilter, LifecycleFilter, Closeable {
+    /**
+     * Default minimum length of an entity, in bytes, for it to be compressed.
+     */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    /**
+     * Name of the request header that selects the codec used for the entity of a single request.
+     */
+    public static final String ENCODING_HEADER = "X-Request-Content-Encoding";
+
+    /**
+     * Codecs, keyed by the name of their content coding, in order of preference.
+     */
+    private final Map<String, ContentCodec> codecs = new LinkedHashMap<>();
+
+    /**
+     * Content codings accepted by each origin, as advertised by the server.
+     */
+    private final Map<String, Set<String>> acceptedEncodings = new ConcurrentHashMap<>();
+
+    /**
+     * Value of the <code>Accept-Encoding</code> header added to requests.
+     */
+    private final String acceptEncoding;
+
+    /**
+     * Thread local that stores the codec used to encode the entity of the request in the current thread.
+     */
+    private final ThreadLocal<ContentCodec> requestCodec = new ThreadLocal<>();
+
+    /**
+     * Name of the content coding used when the codings accepted by an origin are not known.
+     */
+    private String defaultEncoding;
+
+    /**
+     * Minimum length of an entity, in bytes, for it to be compressed.
+     */
+    private int threshold = DEFAULT_THRESHOLD;
+
+    /**
+     * Constructor.
+     *
+     * @param codecs Codecs to use, in order of preference.
+     */
+    public ContentEncodingFilter(ContentCodec... codecs) {
+        this(Arrays.asList(codecs));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param codecs Codecs to use, in order of preference.
+     */
+    public ContentEncodingFilter(List<ContentCodec> codecs) {
+        if (codecs.isEmpty()) {
+            throw new IllegalArgumentException("at least one codec is required");
+        }
+
+        for (ContentCodec codec : codecs) {
+            this.codecs.put(codec.getName().toLowerCase(), codec);
+        }
+
+        this.acceptEncoding = String.join(", ", this.codecs.keySet());
+    }
+
+    /**
+     * Returns the name of the content coding used when the codings accepted by an origin are not known.
+     *
+     * @return The name of the default content coding, or {@code null} if entities are not compressed until
+     * the server advertises the codings it accepts.
+     */
+    public String getDefaultEncoding() {
+        return defaultEncoding;
+    }
+
+    /**
+     * Sets the name of the content coding used when the codings accepted by an origin are not known.
+     *
+     * @param defaultEncoding Name of one of the codecs, or {@code null} to not compress entities until the
+     *                        server advertises the codings it accepts.
+     * @return The instance of this class the method was called with.
+     */
+    public ContentEncodingFilter setDefaultEncoding(String defaultEncoding) {
+        if (defaultEncoding != null && !codecs.containsKey(defaultEncoding.toLowerCase())) {
+            throw new IllegalArgumentException("no codec is registered for content coding " + defaultEncoding);
+        }
+        this.defaultEncoding = defaultEncoding != null ? defaultEncoding.toLowerCase() : null;
+        return this;
+    }
+
+    /**
+     * Returns the minimum length of an entity, in bytes, for it to be compressed.
+     *
+     * @return The minimum length of an entity, in bytes, for it to be compressed.
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Sets the minimum length of an entity, in bytes, for it to be compressed.
+     *
+     * @param threshold Minimum length of an entity, in bytes, for it to be compressed.
+     * @return The instance of this class the method was called with.
+     */
+    public ContentEncodingFilter setThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must not be negative");
+        }
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * Returns the content codings the server of the given origin has advertised, if known.
+     *
+     * @param origin Origin of the server, as returned by {@link HttpRequestsUtil#getOrigin(String)}.
+     * @return The content codings the server accepts, or {@code null} if they are not known.
+     */
+    public Set<String> getAcceptedEncodings(String origin) {
+        return acceptedEncodings.get(origin);
+    }
+
+    /**
+     * Forgets the content codings advertised by every server.
+     */
+    public void clear() {
+        acceptedEncodings.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void filter(HttpRequest request) {
+        if (!request.getHeaders().containsKey("Accept-Encoding")) {
+            request.setHeader("Accept-Encoding", acceptEncoding);
+        }
+    }
+
+    /**
+     * Chooses the codec for the entity of the request and sets the <code>Content-Encoding</code> header.
+     *
+     * @param context HTTP request context.
+     */
+    @Override
+    public void onRequest(HttpContext context) {
+        HttpRequest request = context.getRequest();
+
+        // An entity that already has a content coding is sent as it is.
+        ContentCodec codec = request.getHeaders().containsKey("Content-Encoding") ? null : selectCodec(request, context.getRequestEntity());
+        request.getHeaders().remove(ENCODING_HEADER);
+
+        if (codec != null) {
+            request.setHeader("Content-Encoding", codec.getName());
+            requestCodec.set(codec);
+        }
+        else {
+            requestCodec.remove();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutputStream filter(OutputStream outputStream) {
+        ContentCodec codec = requestCodec.get();
+
+        if (codec == null) {
+            return outputStream;
+        }
+
+        try {
+            return codec.encode(outputStream);
+        }
+        catch (IOException e) {
+            throw new EntityConverterException(e);
+        }
+    }
+
+    /**
+     * Records the content codings advertised by the server and decodes the response entity.
+     *
+     * @param response HTTP response.
+     */
+    @Override
+    public void filter(HttpResponse response) {
+        String origin = HttpRequestsUtil.getOrigin(response.getRequest().getUri());
+        List<String> accepted = response.getHeaders("Accept-Encoding");
+
+        if (accepted != null) {
+            Set<String> encodings = new HashSet<>();
+            for (String value : accepted) {
+                for (String encoding : value.split(",")) {
+                    // Quality values are not used for request entities, although a weight of 0 excludes the coding.
+                    String[] parts = encoding.split(";");
+                    if (!parts[0].trim().isEmpty() && !(parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?"))) {
+                        encodings.add(parts[0].trim().toLowerCase());
+                    }
+                }
+            }
+            acceptedEncodings.put(origin, encodings);
+        }
+        else if (response.getStatus() == 415 && requestCodec.get() != null) {
+            acceptedEncodings.put(origin, Collections.emptySet());
+        }
+
+        decode(response);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        requestCodec.remove();
+    }
+
+    /**
+     * Chooses the codec used to encode the entity of the given request.
+     *
+     * @param request HTTP request.
+     * @param entity  Request entity.
+     * @return The codec to use, or {@code null} if the entity should not be encoded.
+     */
+    protected ContentCodec selectCodec(HttpRequest request, HttpEntity entity) {
+        if (entity == null) {
+            return null;
+        }
+
+        String encoding = request.getHeaders().getFlat(ENCODING_HEADER);
+
+        if (encoding != null) {
+            return codecs.get(encoding.trim().toLowerCase());
+        }
+
+        long length = entity.getContentLength();
+
+        if (length != -1 && length < threshold) {
+            return null;
+        }
+
+        Set<String> accepted = acceptedEncodings.get(HttpRequestsUtil.getOrigin(request.getUri()));
+
+        if (accepted == null) {
+            return defaultEncoding != null ? codecs.get(defaultEncoding) : null;
+        }
+
+        for (ContentCodec codec : codecs.values()) {
+            if (accepted.contains(codec.getName().toLowerCase())) {
+                return codec;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Replaces the entity of the given response with one that decodes it, if every content coding applied to
+     * it has a codec.
+     *
+     * @param response HTTP response.
+     */
+    private void decode(HttpResponse response) {
+        List<String> values = response.getHeaders("Content-Encoding");
+
+        if (!response.hasEntity() || values == null) {
+            return;
+        }
+
+        List<ContentCodec> decoders = new ArrayList<>();
+
+        for (String value : values) {
+            for (String encoding : value.split(",")) {
+                encoding = encoding.trim().toLowerCase();
+
+                if (encoding.isEmpty() || encoding.equals("identity")) {
+                    continue;
+                }
+
+                ContentCodec codec = codecs.get(encoding);
+
+                if (codec == null) {
+                    return;
+                }
+
+                decoders.add(codec);
+            }
+        }
+
+        if (decoders.isEmpty()) {
+            return;
+        }
+
+        // Codings are listed in the order they were applied, so they are removed in reverse.
+        Collections.reverse(decoders);
+
+        HttpEntity entity = response.getEntity();
+        HttpEntity decoded;
+
+        try {
+            InputStream inputStream = entity.getInputStream();
+
+            for (ContentCodec codec : decoders) {
+                inputStream = codec.decode(inputStream);
+            }
+
+            try {
+                decoded = new HttpEntity(inputStream, entity.getContentType(), entity.getCharSet());
+
+                if (entity.isBuffered()) {
+                    decoded.buffer();
+                }
+            }
+            catch (EmptyEntityException e) {
+                decoded = null;
+            }
+        }
+        catch (IOException e) {
+            try {
+                entity.close();
+            }
+            catch (IOException ignored) {
+                // The decoding failure is more relevant.
+            }
+            throw new UncheckedIOException(e);
+        }
+
+        response.getHeaders().remove("Content-Encoding");
+        response.getHeaders().remove("Content-Length");
+
+        if (decoded != null && decoded.isBuffered()) {
+            response.getHeaders().set("Content-Length", Long.toString(decoded.getContentLength()));
+        }
+
+        response.setEntity(decoded);
+    }
+}
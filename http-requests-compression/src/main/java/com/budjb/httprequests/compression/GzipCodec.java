@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A content codec for the <code>gzip</code> content coding, which is useful as a fallback for servers that
+ * do not support any of the other codecs.
+ */
+public class GzipCodec implements ContentCodec {
+    /**
+     * Name of the content coding.
+     */
+    public static final String NAME = "gzip";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutputStream encode(OutputStream outputStream) throws IOException {
+        return new GZIPOutputStream(outputStream, 8192);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream decode(InputStream inputStream) throws IOException {
+        return new GZIPInputStream(inputStream, 8192);
+    }
+}
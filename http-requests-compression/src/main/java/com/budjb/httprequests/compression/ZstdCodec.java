@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.compression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A content codec for the Zstandard (<code>zstd</code>) content coding.
+ * <p>
+ * Zstandard compresses at ratios comparable to GZIP at several times its speed, which makes it well suited
+ * for large entities exchanged between services that support it. The native compression context of each
+ * stream is released as soon as the stream is closed.
+ */
+public class ZstdCodec implements ContentCodec {
+    /**
+     * Name of the content coding.
+     */
+    public static final String NAME = "zstd";
+
+    /**
+     * Default compression level.
+     */
+    public static final int DEFAULT_LEVEL = 3;
+
+    /**
+     * Compression level.
+     */
+    private int level = DEFAULT_LEVEL;
+
+    /**
+     * Returns the compression level.
+     *
+     * @return The compression level.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Sets the compression level, from {@link Zstd#minCompressionLevel()} to {@link Zstd#maxCompressionLevel()}.
+     *
+     * @param level Compression level.
+     * @return The instance of this class the method was called with.
+     */
+    public ZstdCodec setLevel(int level) {
+        if (level < Zstd.minCompressionLevel() || level > Zstd.maxCompressionLevel()) {
+            throw new IllegalArgumentException("invalid compression level " + level);
+        }
+        this.level = level;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutputStream encode(OutputStream outputStream) throws IOException {
+        return new ZstdOutputStream(outputStream, level);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream decode(InputStream inputStream) throws IOException {
+        return new ZstdInputStream(inputStream);
+    }
+}
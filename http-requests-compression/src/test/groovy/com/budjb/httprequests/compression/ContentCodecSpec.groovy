@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.compression
+
+import spock.lang.Specification
+
+class ContentCodecSpec extends Specification {
+    def 'When data is encoded and decoded with the #name codec, the original data is returned'() {
+        setup:
+        byte[] data = ('Hello, world! ' * 1000).bytes
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+
+        when:
+        codec.encode(outputStream).withStream { it.write(data) }
+        byte[] encoded = outputStream.toByteArray()
+
+        then:
+        codec.name == name
+        encoded.length < data.length
+        codec.decode(new ByteArrayInputStream(encoded)).bytes == data
+
+        where:
+        codec                              | name
+        new ZstdCodec()                    | 'zstd'
+        new ZstdCodec().setLevel(19)       | 'zstd'
+        new BrotliCodec()                  | 'br'
+        new BrotliCodec().setQuality(11)   | 'br'
+        new GzipCodec()                    | 'gzip'
+    }
+
+    def 'When an invalid Zstandard level is set, an IllegalArgumentException is thrown'() {
+        when:
+        new ZstdCodec().setLevel(100)
+
+        then:
+        thrown IllegalArgumentException
+    }
+
+    def 'When an invalid Brotli #property is set, an IllegalArgumentException is thrown'() {
+        when:
+        new BrotliCodec()."set${property.capitalize()}"(value)
+
+        then:
+        thrown IllegalArgumentException
+
+        where:
+        property  | value
+        'quality' | 12
+        'quality' | -1
+        'window'  | 9
+        'window'  | 25
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.compression
+
+import com.budjb.httprequests.HttpContext
+import com.budjb.httprequests.HttpEntity
+import com.budjb.httprequests.HttpRequest
+import com.budjb.httprequests.HttpResponse
+import com.budjb.httprequests.MultiValuedMap
+import com.budjb.httprequests.converter.EntityConverterManager
+import com.budjb.httprequests.converter.bundled.StringEntityReader
+import com.budjb.httprequests.converter.bundled.StringEntityWriter
+import com.budjb.httprequests.mock.MockHttpResponse
+import spock.lang.Specification
+
+class ContentEncodingFilterSpec extends Specification {
+    static final String CONTENT = 'Hello, world! ' * 100
+
+    ZstdCodec zstd = new ZstdCodec()
+    BrotliCodec brotli = new BrotliCodec()
+    ContentEncodingFilter filter = new ContentEncodingFilter(zstd, brotli)
+
+    HttpContext createContext(String uri = 'http://foo.bar.com/baz', byte[] entity = CONTENT.bytes) {
+        HttpContext context = new HttpContext()
+        context.setRequest(new HttpRequest(uri))
+
+        if (entity != null) {
+            HttpEntity httpEntity = new HttpEntity(new ByteArrayInputStream(entity))
+            httpEntity.buffer()
+            context.setRequestEntity(httpEntity)
+        }
+
+        return context
+    }
+
+    byte[] send(HttpContext context, byte[] entity = CONTENT.bytes) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+
+        filter.onStart(context)
+        filter.filter(context.request)
+        filter.onRequest(context)
+        filter.filter(outputStream).withStream { it.write(entity) }
+
+        return outputStream.toByteArray()
+    }
+
+    HttpResponse createResponse(HttpContext context, int status, Map<String, String> headers, byte[] entity = null, boolean buffer = true) {
+        MultiValuedMap responseHeaders = new MultiValuedMap()
+        headers.each { k, v -> responseHeaders.set(k, v) }
+
+        context.request.setBufferResponseEntity(buffer)
+
+        return new MockHttpResponse(
+            new EntityConverterManager([new StringEntityReader()]),
+            context.request,
+            status,
+            responseHeaders,
+            entity != null ? new HttpEntity(new ByteArrayInputStream(entity), 'text/plain', 'UTF-8') : null
+        )
+    }
+
+    static byte[] encode(ContentCodec codec, byte[] data) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+        codec.encode(outputStream).withStream { it.write(data) }
+        return outputStream.toByteArray()
+    }
+
+    def 'Every codec is advertised in the Accept-Encoding header in order of preference'() {
+        setup:
+        HttpRequest request = new HttpRequest('http://foo.bar.com')
+
+        when:
+        filter.filter(request)
+
+        then:
+        request.headers.get('Accept-Encoding') == ['zstd, br']
+    }
+
+    def 'When the accepted codings of the origin are not known and there is no default, the entity is not compressed'() {
+        setup:
+        HttpContext context = createContext()
+
+        when:
+        byte[] sent = send(context)
+
+        then:
+        !context.request.headers.containsKey('Content-Encoding')
+        sent == CONTENT.bytes
+    }
+
+    def 'When a default encoding is configured, it is used for origins whose accepted codings are not known'() {
+        setup:
+        filter.setDefaultEncoding('br')
+        HttpContext context = createContext()
+
+        when:
+        byte[] sent = send(context)
+
+        then:
+        context.request.headers.get('Content-Encoding') == ['br']
+        brotli.decode(new ByteArrayInputStream(sent)).bytes == CONTENT.bytes
+    }
+
+    def 'When a request names a codec in the encoding header, that codec is used regardless of the threshold'() {
+        setup:
+        HttpContext context = createContext('http://foo.bar.com', 'hi'.bytes)
+        context.request.setHeader(ContentEncodingFilter.ENCODING_HEADER, 'zstd')
+
+        when:
+        byte[] sent = send(context, 'hi'.bytes)
+
+        then:
+        context.request.headers.get('Content-Encoding') == ['zstd']
+        !context.request.headers.containsKey(ContentEncodingFilter.ENCODING_HEADER)
+        zstd.decode(new ByteArrayInputStream(sent)).bytes == 'hi'.bytes
+    }
+
+    def 'When a request names a coding without a codec in the encoding header, the entity is not modified'() {
+        setup:
+        filter.setDefaultEncoding('zstd')
+        HttpContext context = createContext()
+        context.request.setHeader(ContentEncodingFilter.ENCODING_HEADER, 'identity')
+
+        when:
+        byte[] sent = send(context)
+
+        then:
+        !context.request.headers.containsKey('Content-Encoding')
+        !context.request.headers.containsKey(ContentEncodingFilter.ENCODING_HEADER)
+        sent == CONTENT.bytes
+    }
+
+    def 'When a request already has a Content-Encoding header, the entity is not encoded again'() {
+        setup:
+        filter.setDefaultEncoding('zstd')
+        HttpContext context = createContext()
+        context.request.setHeader('Content-Encoding', 'zstd')
+
+        when:
+        byte[] sent = send(context)
+
+        then:
+        context.request.headers.get('Content-Encoding') == ['zstd']
+        sent == CONTENT.bytes
+    }
+
+    def 'When a server advertises the codings it accepts, the most preferred codec is used for its origin'() {
+        setup:
+        HttpContext first = createContext('http://foo.bar.com/first')
+        send(first)
+        filter.filter(createResponse(first, 200, ['Accept-Encoding': 'gzip, br;q=0.5, zstd;q=0']))
+        filter.close()
+
+        HttpContext second = createContext('http://foo.bar.com/second')
+        HttpContext other = createContext('http://other.bar.com/second')
+
+        when:
+        byte[] sent = send(second)
+        filter.close()
+        send(other)
+        filter.close()
+
+        then:
+        filter.getAcceptedEncodings('http://foo.bar.com') == ['gzip', 'br'] as Set
+        second.request.headers.get('Content-Encoding') == ['br']
+        brotli.decode(new ByteArrayInputStream(sent)).bytes == CONTENT.bytes
+        !other.request.headers.containsKey('Content-Encoding')
+    }
+
+    def 'When a server rejects an encoded entity without advertising codings, later entities are not compressed'() {
+        setup:
+        filter.setDefaultEncoding('zstd')
+        HttpContext first = createContext()
+        send(first)
+        filter.filter(createResponse(first, 415, [:]))
+        filter.close()
+
+        HttpContext second = createContext()
+
+        when:
+        send(second)
+
+        then:
+        first.request.headers.get('Content-Encoding') == ['zstd']
+        filter.getAcceptedEncodings('http://foo.bar.com') == [] as Set
+        !second.request.headers.containsKey('Content-Encoding')
+    }
+
+    def 'When an entity is smaller than the threshold, it is not compressed'() {
+        setup:
+        filter.setDefaultEncoding('zstd').setThreshold(CONTENT.length() + 1)
+        HttpContext context = createContext()
+
+        when:
+        byte[] sent = send(context)
+
+        then:
+        !context.request.headers.containsKey('Content-Encoding')
+        sent == CONTENT.bytes
+    }
+
+    def 'When a converted String entity is smaller than the threshold, it is not compressed without being buffered'() {
+        setup:
+        filter.setDefaultEncoding('zstd')
+        HttpContext context = createContext('http://foo.bar.com', null)
+        context.setRequestEntity(new EntityConverterManager([new StringEntityWriter()]).write('hi', null, 'UTF-8'))
+
+        when:
+        byte[] sent = send(context, 'hi'.bytes)
+
+        then:
+        context.requestEntity.contentLength == 2
+        !context.request.headers.containsKey('Content-Encoding')
+        sent == 'hi'.bytes
+    }
+
+    def 'When a response is encoded with #encoding, it is decoded'() {
+        setup:
+        HttpContext context = createContext('http://foo.bar.com', null)
+        HttpResponse response = createResponse(context, 200, ['Content-Encoding': encoding, 'Content-Length': '1'], encoded, buffer)
+
+        when:
+        filter.filter(response)
+
+        then:
+        response.getEntity(String) == CONTENT
+        !response.headers.containsKey('Content-Encoding')
+        response.getHeader('Content-Length') == (buffer ? CONTENT.length().toString() : null)
+
+        where:
+        encoding   | buffer | encoded
+        'zstd'     | true   | encode(new ZstdCodec(), CONTENT.bytes)
+        'br'       | true   | encode(new BrotliCodec(), CONTENT.bytes)
+        'br'       | false  | encode(new BrotliCodec(), CONTENT.bytes)
+        'zstd, br' | true   | encode(new BrotliCodec(), encode(new ZstdCodec(), CONTENT.bytes))
+    }
+
+    def 'When a response is encoded with a coding without a codec, it is not modified'() {
+        setup:
+        HttpContext context = createContext('http://foo.bar.com', null)
+        HttpResponse response = createResponse(context, 200, ['Content-Encoding': 'zstd, gzip'], CONTENT.bytes)
+        HttpEntity entity = response.entity
+
+        when:
+        filter.filter(response)
+
+        then:
+        response.entity.is(entity)
+        response.getHeader('Content-Encoding') == 'zstd, gzip'
+    }
+
+    def 'When a default encoding without a codec is set, an IllegalArgumentException is thrown'() {
+        when:
+        filter.setDefaultEncoding('gzip')
+
+        then:
+        thrown IllegalArgumentException
+    }
+}
@@ -42,6 +42,16 @@ public abstract class AbstractHttpClient implements HttpClient {
      */
     private final EntityConverterManager converterManager;
 
+    /**
+     * Connection timeout applied to requests that do not set one, in milliseconds. 0 means infinity.
+     */
+    private int defaultConnectionTimeout = 0;
+
+    /**
+     * Read timeout applied to requests that do not set one, in milliseconds. 0 means infinity.
+     */
+    private int defaultReadTimeout = 0;
+
     /**
      * Constructor.
      *
@@ -51,6 +61,54 @@ public abstract class AbstractHttpClient implements HttpClient {
         this.converterManager = entityConverterManager;
     }
 
+    /**
+     * Returns the connection timeout applied to requests that do not set one, in milliseconds.
+     *
+     * @return The default connection timeout, in milliseconds.
+     */
+    public int getDefaultConnectionTimeout() {
+        return defaultConnectionTimeout;
+    }
+
+    /**
+     * Sets the connection timeout applied to requests that do not set one, in milliseconds. 0 means infinity.
+     * A request that sets a connection timeout of 0 keeps an infinite connection timeout.
+     *
+     * @param defaultConnectionTimeout Default connection timeout, in milliseconds.
+     * @return The instance of this class the method was called with.
+     */
+    public AbstractHttpClient setDefaultConnectionTimeout(int defaultConnectionTimeout) {
+        if (defaultConnectionTimeout < 0) {
+            throw new IllegalArgumentException("defaultConnectionTimeout must not be negative");
+        }
+        this.defaultConnectionTimeout = defaultConnectionTimeout;
+        return this;
+    }
+
+    /**
+     * Returns the read timeout applied to requests that do not set one, in milliseconds.
+     *
+     * @return The default read timeout, in milliseconds.
+     */
+    public int getDefaultReadTimeout() {
+        return defaultReadTimeout;
+    }
+
+    /**
+     * Sets the read timeout applied to requests that do not set one, in milliseconds. 0 means infinity.
+     * A request that sets a read timeout of 0 keeps an infinite read timeout.
+     *
+     * @param defaultReadTimeout Default read timeout, in milliseconds.
+     * @return The instance of this class the method was called with.
+     */
+    public AbstractHttpClient setDefaultReadTimeout(int defaultReadTimeout) {
+        if (defaultReadTimeout < 0) {
+            throw new IllegalArgumentException("defaultReadTimeout must not be negative");
+        }
+        this.defaultReadTimeout = defaultReadTimeout;
+        return this;
+    }
+
     /**
      * Implements the logic to make an actual request with an HTTP client library.
      *
@@ -681,25 +739,18 @@ public abstract class AbstractHttpClient implements HttpClient {
             filterProcessor.onStart(context);
 
             context.setMethod(method);
+            context.setRequestEntity(entity);
 
-            HttpEntity originalEntity = null;
-            boolean hasRetryFilters = filterProcessor.hasRetryFilters();
-
-            // Requests whose client contains a retry filter must have their entity buffered.
+            // Requests whose client contains a retry filter must have a repeatable entity.
             // If it is not, the retried request will either throw an error due to the entity
-            // input stream being closed, or the entity will not actually transmit. So, requests
-            // that could potentially be retried are automatically buffered so we can copy their
-            // entities multiple times.
-            if (entity != null && hasRetryFilters) {
-                originalEntity = entity;
-                originalEntity.buffer();
+            // input stream being closed, or the entity will not actually transmit. So, entities
+            // of requests that could potentially be retried are automatically buffered unless
+            // they can already be read multiple times (such as a file entity).
+            if (entity != null && !entity.isRepeatable() && filterProcessor.hasRetryFilters()) {
+                entity.buffer();
             }
 
             while (true) {
-                if (entity != null && originalEntity != null) {
-                    entity = new HttpEntity(originalEntity.getInputStream(), originalEntity.getContentType(), originalEntity.getCharSet());
-                }
-
                 HttpRequest newRequest;
                 try {
                     newRequest = (HttpRequest) request.clone();
@@ -708,6 +759,14 @@ public abstract class AbstractHttpClient implements HttpClient {
                     throw new HttpClientException(e);
                 }
 
+                // Defaults are applied before the filters run, so that filters may still override them.
+                if (!newRequest.isConnectionTimeoutSet()) {
+                    newRequest.setConnectionTimeout(defaultConnectionTimeout);
+                }
+                if (!newRequest.isReadTimeoutSet()) {
+                    newRequest.setReadTimeout(defaultReadTimeout);
+                }
+
                 context.setRequest(newRequest);
                 context.setResponse(null);
 
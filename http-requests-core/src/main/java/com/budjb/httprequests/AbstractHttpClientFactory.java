@@ -23,6 +23,16 @@ public abstract class AbstractHttpClientFactory implements HttpClientFactory {
      */
     private final EntityConverterManager converterManager;
 
+    /**
+     * Connection timeout applied to requests that do not set one, in milliseconds. 0 means infinity.
+     */
+    private int defaultConnectionTimeout = 0;
+
+    /**
+     * Read timeout applied to requests that do not set one, in milliseconds. 0 means infinity.
+     */
+    private int defaultReadTimeout = 0;
+
     /**
      * Constructor.
      *
@@ -41,4 +51,67 @@ public abstract class AbstractHttpClientFactory implements HttpClientFactory {
     public EntityConverterManager getConverterManager() {
         return converterManager;
     }
+
+    /**
+     * Returns the connection timeout applied to requests that do not set one, in milliseconds.
+     *
+     * @return The default connection timeout, in milliseconds.
+     */
+    public int getDefaultConnectionTimeout() {
+        return defaultConnectionTimeout;
+    }
+
+    /**
+     * Sets the connection timeout applied to requests of the clients created by the factory that do not set one,
+     * in milliseconds. 0 means infinity. A request that sets a connection timeout of 0 keeps an infinite
+     * connection timeout.
+     *
+     * @param defaultConnectionTimeout Default connection timeout, in milliseconds.
+     * @return The instance of this class the method was called with.
+     */
+    public AbstractHttpClientFactory setDefaultConnectionTimeout(int defaultConnectionTimeout) {
+        if (defaultConnectionTimeout < 0) {
+            throw new IllegalArgumentException("defaultConnectionTimeout must not be negative");
+        }
+        this.defaultConnectionTimeout = defaultConnectionTimeout;
+        return this;
+    }
+
+    /**
+     * Returns the read timeout applied to requests that do not set one, in milliseconds.
+     *
+     * @return The default read timeout, in milliseconds.
+     */
+    public int getDefaultReadTimeout() {
+        return defaultReadTimeout;
+    }
+
+    /**
+     * Sets the read timeout applied to requests of the clients created by the factory that do not set one,
+     * in milliseconds. 0 means infinity. A request that sets a read timeout of 0 keeps an infinite
+     * read timeout.
+     *
+     * @param defaultReadTimeout Default read timeout, in milliseconds.
+     * @return The instance of this class the method was called with.
+     */
+    public AbstractHttpClientFactory setDefaultReadTimeout(int defaultReadTimeout) {
+        if (defaultReadTimeout < 0) {
+            throw new IllegalArgumentException("defaultReadTimeout must not be negative");
+        }
+        this.defaultReadTimeout = defaultReadTimeout;
+        return this;
+    }
+
+    /**
+     * Applies the defaults of the factory to a newly created client.
+     *
+     * @param client Client created by the factory.
+     * @param <T>    Type of the client.
+     * @return The given client.
+     */
+    protected <T extends AbstractHttpClient> T configure(T client) {
+        client.setDefaultConnectionTimeout(defaultConnectionTimeout);
+        client.setDefaultReadTimeout(defaultReadTimeout);
+        return client;
+    }
 }
@@ -0,0 +1,476 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests;
+
+import com.budjb.httprequests.exception.BatchDeadlineExceededException;
+import com.budjb.httprequests.exception.HttpClientException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Executes a batch of independent requests with a bounded number of requests in flight.
+ * <p>
+ * Each request is made with {@link HttpClient#execute(HttpMethod, HttpRequest)}, so it passes through the
+ * filters of the request like any other request. No more than the configured parallelism are in flight at
+ * once; the next request is only started when a previous one completes.
+ * <p>
+ * Results are either returned in the order of the requests, or delivered to a {@link BatchListener} as the
+ * requests complete. With the {@link ErrorPolicy#FAIL_FAST} policy, the first failed request stops the batch
+ * and its exception is thrown; with {@link ErrorPolicy#COLLECT_ALL}, failures are reported in the results and
+ * every request is attempted. Requests that have not completed when the deadline of the batch passes are
+ * cancelled and fail with a {@link BatchDeadlineExceededException}.
+ * <p>
+ * Unless an executor service is provided, each batch runs on its own pool of daemon threads.
+ */
+public class BatchExecutor {
+    /**
+     * Describes how failed requests affect the batch.
+     */
+    public enum ErrorPolicy {
+        /**
+         * The first failed request stops the batch, and its exception is thrown.
+         */
+        FAIL_FAST,
+
+        /**
+         * Every request is attempted, and failures are reported in the results.
+         */
+        COLLECT_ALL
+    }
+
+    /**
+     * HTTP client used to make requests.
+     */
+    private final HttpClient client;
+
+    /**
+     * Maximum number of requests in flight.
+     */
+    private int parallelism = 8;
+
+    /**
+     * Longest time a batch may take, in milliseconds, or 0 for no deadline.
+     */
+    private long deadline = 0;
+
+    /**
+     * How failed requests affect the batch.
+     */
+    private ErrorPolicy errorPolicy = ErrorPolicy.COLLECT_ALL;
+
+    /**
+     * Executor service that runs requests, or {@code null} to create a pool for each batch.
+     */
+    private ExecutorService executorService;
+
+    /**
+     * Constructor.
+     *
+     * @param client HTTP client used to make requests.
+     */
+    public BatchExecutor(HttpClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Returns the maximum number of requests in flight.
+     *
+     * @return The parallelism.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the maximum number of requests in flight.
+     *
+     * @param parallelism The parallelism, at least 1.
+     * @return The instance of this class the method was called with.
+     */
+    public BatchExecutor setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Returns the longest time a batch may take, in milliseconds.
+     *
+     * @return The deadline, in milliseconds, or 0 for no deadline.
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Sets the longest time a batch may take, in milliseconds.
+     *
+     * @param deadline The deadline, in milliseconds, or 0 for no deadline.
+     * @return The instance of this class the method was called with.
+     */
+    public BatchExecutor setDeadline(long deadline) {
+        this.deadline = deadline;
+        return this;
+    }
+
+    /**
+     * Returns how failed requests affect the batch.
+     *
+     * @return The error policy.
+     */
+    public ErrorPolicy getErrorPolicy() {
+        return errorPolicy;
+    }
+
+    /**
+     * Sets how failed requests affect the batch.
+     *
+     * @param errorPolicy The error policy.
+     * @return The instance of this class the method was called with.
+     */
+    public BatchExecutor setErrorPolicy(ErrorPolicy errorPolicy) {
+        this.errorPolicy = errorPolicy;
+        return this;
+    }
+
+    /**
+     * Returns the executor service that runs requests.
+     *
+     * @return The executor service, or {@code null} if a pool is created for each batch.
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Sets the executor service that runs requests. The executor service is not shut down by this class.
+     *
+     * @param executorService The executor service, or {@code null} to create a pool for each batch.
+     * @return The instance of this class the method was called with.
+     */
+    public BatchExecutor setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+        return this;
+    }
+
+    /**
+     * Executes the given requests and returns their results in the order of the requests. If the batch fails,
+     * the responses of the requests that already completed are closed, since they are never returned.
+     *
+     * @param method   HTTP method of the requests.
+     * @param requests Request properties.
+     * @return The results of the requests, in the order of the requests.
+     * @throws IOException When a request fails with an IO exception and the error policy is fail fast.
+     */
+    public List<BatchResult> execute(HttpMethod method, List<HttpRequest> requests) throws IOException {
+        BatchResult[] results = new BatchResult[requests.size()];
+
+        try {
+            execute(method, requests, result -> results[result.getIndex()] = result);
+        }
+        catch (IOException | RuntimeException e) {
+            for (BatchResult result : results) {
+                if (result != null && result.getResponse() != null) {
+                    try {
+                        result.getResponse().close();
+                    }
+                    catch (IOException closeException) {
+                        e.addSuppressed(closeException);
+                    }
+                }
+            }
+            throw e;
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Executes the given requests and delivers their results to the given listener as they complete.
+     *
+     * @param method   HTTP method of the requests.
+     * @param requests Request properties.
+     * @param listener Listener that receives the results.
+     * @throws IOException When a request fails with an IO exception and the error policy is fail fast.
+     */
+    public void execute(HttpMethod method, List<HttpRequest> requests, BatchListener listener) throws IOException {
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = executorService;
+
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.min(parallelism, requests.size()), runnable -> {
+                Thread thread = new Thread(runnable, "http-requests-batch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        try {
+            new Batch(method, requests, listener, executor).run();
+        }
+        finally {
+            if (executorService == null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * The state of a single batch.
+     */
+    private class Batch {
+        /**
+         * HTTP method of the requests.
+         */
+        private final HttpMethod method;
+
+        /**
+         * Request properties.
+         */
+        private final List<HttpRequest> requests;
+
+        /**
+         * Listener that receives the results.
+         */
+        private final BatchListener listener;
+
+        /**
+         * Completion service that collects the results of the requests.
+         */
+        private final CompletionService<BatchResult> completionService;
+
+        /**
+         * Requests in flight, keyed by their position in the batch.
+         */
+        private final Map<Integer, Future<BatchResult>> inFlight = new HashMap<>();
+
+        /**
+         * Responses of requests that completed but have not been collected. These are closed if the batch is
+         * cancelled, since their results will never be delivered.
+         */
+        private final Set<HttpResponse> uncollected = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        /**
+         * Whether the requests in flight have been cancelled.
+         */
+        private boolean cancelled = false;
+
+        /**
+         * Position of the next request to start.
+         */
+        private int next = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param method   HTTP method of the requests.
+         * @param requests Request properties.
+         * @param listener Listener that receives the results.
+         * @param executor Executor that runs the requests.
+         */
+        Batch(HttpMethod method, List<HttpRequest> requests, BatchListener listener, ExecutorService executor) {
+            this.method = method;
+            this.requests = requests;
+            this.listener = listener;
+            this.completionService = new ExecutorCompletionService<>(executor);
+        }
+
+        /**
+         * Runs the batch to completion.
+         *
+         * @throws IOException When a request fails with an IO exception and the error policy is fail fast.
+         */
+        void run() throws IOException {
+            long end = deadline > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline) : 0;
+
+            try {
+                while (next < requests.size() && inFlight.size() < parallelism) {
+                    submit();
+                }
+
+                while (!inFlight.isEmpty()) {
+                    Future<BatchResult> future;
+
+                    if (end == 0) {
+                        future = completionService.take();
+                    }
+                    else {
+                        future = completionService.poll(end - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+                        if (future == null) {
+                            expire();
+                            return;
+                        }
+                    }
+
+                    BatchResult result = future.get();
+                    inFlight.remove(result.getIndex());
+                    collect(result.getResponse());
+
+                    if (!result.isSuccessful() && errorPolicy == ErrorPolicy.FAIL_FAST) {
+                        cancel();
+                        throwFailure(result.getException());
+                    }
+
+                    listener.onResult(result);
+
+                    if (next < requests.size()) {
+                        submit();
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while executing a batch of requests");
+            }
+            catch (ExecutionException e) {
+                // Requests report their failures in their results, so this should not happen.
+                cancel();
+                throw new HttpClientException(e.getCause());
+            }
+        }
+
+        /**
+         * Starts the next request.
+         */
+        private void submit() {
+            int index = next++;
+            HttpRequest request = requests.get(index);
+
+            inFlight.put(index, completionService.submit(() -> {
+                try {
+                    HttpResponse response = client.execute(method, request);
+
+                    // A request that completes after the batch was cancelled is never collected.
+                    if (!track(response)) {
+                        response.close();
+                        return new BatchResult(index, request, null, new InterruptedIOException("the batch was cancelled"));
+                    }
+
+                    return new BatchResult(index, request, response, null);
+                }
+                catch (Exception e) {
+                    return new BatchResult(index, request, null, e);
+                }
+            }));
+        }
+
+        /**
+         * Cancels the requests in flight and reports them and the requests that were never started as
+         * having exceeded the deadline, unless the error policy is fail fast, in which case the
+         * deadline exception is thrown.
+         */
+        private void expire() {
+            cancel();
+
+            BatchDeadlineExceededException exception = new BatchDeadlineExceededException(deadline);
+
+            if (errorPolicy == ErrorPolicy.FAIL_FAST) {
+                throw exception;
+            }
+
+            List<Integer> indices = new ArrayList<>(inFlight.keySet());
+            Collections.sort(indices);
+
+            while (next < requests.size()) {
+                indices.add(next++);
+            }
+
+            inFlight.clear();
+
+            for (int index : indices) {
+                listener.onResult(new BatchResult(index, requests.get(index), null, exception));
+            }
+        }
+
+        /**
+         * Records the response of a completed request until its result is collected.
+         *
+         * @param response Response of the request.
+         * @return Whether the response was recorded, or {@code false} if the batch has been cancelled.
+         */
+        private synchronized boolean track(HttpResponse response) {
+            if (cancelled) {
+                return false;
+            }
+            uncollected.add(response);
+            return true;
+        }
+
+        /**
+         * Marks the response of a request as collected.
+         *
+         * @param response Response of the request, or {@code null} if the request failed.
+         */
+        private synchronized void collect(HttpResponse response) {
+            if (response != null) {
+                uncollected.remove(response);
+            }
+        }
+
+        /**
+         * Cancels the requests in flight. Responses of requests that complete but are not collected, including
+         * requests that could not be interrupted and complete after the cancellation, are closed.
+         */
+        private void cancel() {
+            List<HttpResponse> responses;
+
+            synchronized (this) {
+                cancelled = true;
+                responses = new ArrayList<>(uncollected);
+                uncollected.clear();
+            }
+
+            for (Future<BatchResult> future : inFlight.values()) {
+                future.cancel(true);
+            }
+
+            for (HttpResponse response : responses) {
+                try {
+                    response.close();
+                }
+                catch (IOException ignored) {
+                    // The response is being discarded.
+                }
+            }
+        }
+
+        /**
+         * Throws the exception of a failed request.
+         *
+         * @param exception Exception that caused the request to fail.
+         * @throws IOException When the exception is an IO exception.
+         */
+        private void throwFailure(Exception exception) throws IOException {
+            if (exception instanceof IOException) {
+                throw (IOException) exception;
+            }
+            if (exception instanceof RuntimeException) {
+                throw (RuntimeException) exception;
+            }
+            throw new HttpClientException(exception);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests;
+
+/**
+ * Receives the results of a batch executed by a {@link BatchExecutor} as the requests complete.
+ * <p>
+ * Results are delivered one at a time on the thread that executes the batch, in the order the requests
+ * complete.
+ */
+public interface BatchListener {
+    /**
+     * Called when a request of the batch completes.
+     *
+     * @param result Outcome of the request.
+     */
+    void onResult(BatchResult result);
+}
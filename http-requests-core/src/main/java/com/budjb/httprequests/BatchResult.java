@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests;
+
+/**
+ * The outcome of a single request of a batch executed by a {@link BatchExecutor}.
+ * <p>
+ * A result contains either the response of the request or the exception that caused it to fail. Responses
+ * of successful results must be closed by the caller, as with any other {@link HttpResponse}.
+ */
+public class BatchResult {
+    /**
+     * Position of the request in the batch.
+     */
+    private final int index;
+
+    /**
+     * Request properties.
+     */
+    private final HttpRequest request;
+
+    /**
+     * Response of the request, if it succeeded.
+     */
+    private final HttpResponse response;
+
+    /**
+     * Exception that caused the request to fail, if it failed.
+     */
+    private final Exception exception;
+
+    /**
+     * Constructor.
+     *
+     * @param index     Position of the request in the batch.
+     * @param request   Request properties.
+     * @param response  Response of the request, if it succeeded.
+     * @param exception Exception that caused the request to fail, if it failed.
+     */
+    BatchResult(int index, HttpRequest request, HttpResponse response, Exception exception) {
+        this.index = index;
+        this.request = request;
+        this.response = response;
+        this.exception = exception;
+    }
+
+    /**
+     * Returns the position of the request in the batch.
+     *
+     * @return The position of the request in the batch.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the request properties.
+     *
+     * @return The request properties.
+     */
+    public HttpRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Returns the response of the request.
+     *
+     * @return The response of the request, or {@code null} if the request failed.
+     */
+    public HttpResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * Returns the exception that caused the request to fail.
+     *
+     * @return The exception that caused the request to fail, or {@code null} if the request succeeded.
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    /**
+     * Returns whether the request succeeded.
+     *
+     * @return Whether the request succeeded.
+     */
+    public boolean isSuccessful() {
+        return exception == null;
+    }
+}
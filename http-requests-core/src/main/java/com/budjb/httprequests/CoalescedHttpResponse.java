@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests;
+
+import com.budjb.httprequests.converter.EntityConverterManager;
+
+import java.io.IOException;
+
+/**
+ * An {@link HttpResponse} handed to a caller whose request was coalesced with other identical requests.
+ */
+class CoalescedHttpResponse extends HttpResponse {
+    /**
+     * Constructor.
+     *
+     * @param converterManager Converter manager.
+     * @param request          Request properties used to make the request.
+     * @param status           HTTP status of the response.
+     * @param headers          Response headers.
+     * @param entity           Entity of the response.
+     * @throws IOException When an IO exception occurs.
+     */
+    CoalescedHttpResponse(EntityConverterManager converterManager, HttpRequest request, int status, MultiValuedMap headers, HttpEntity entity) throws IOException {
+        super(converterManager, request, status, headers, entity);
+    }
+}
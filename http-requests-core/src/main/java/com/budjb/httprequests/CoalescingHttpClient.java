@@ -0,0 +1,260 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests;
+
+import com.budjb.httprequests.converter.EntityConverterManager;
+import com.budjb.httprequests.exception.HttpClientException;
+import com.budjb.httprequests.filter.HttpClientFilterProcessor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * An {@link HttpClient} that shares in-flight requests with identical concurrent requests.
+ *
+ * @see CoalescingHttpClientFactory
+ */
+class CoalescingHttpClient extends AbstractHttpClient {
+    /**
+     * Client that makes the actual requests.
+     */
+    private final AbstractHttpClient delegate;
+
+    /**
+     * Names of the headers whose values are part of the coalescing key.
+     */
+    private final Set<String> headerNames;
+
+    /**
+     * Requests that are currently in flight, shared by all clients of the same factory.
+     */
+    private final ConcurrentMap<String, CompletableFuture<SharedResponse>> inFlight;
+
+    /**
+     * Constructor.
+     *
+     * @param converterManager Entity converter manager.
+     * @param delegate         Client that makes the actual requests.
+     * @param headerNames      Names of the headers whose values are part of the coalescing key.
+     * @param inFlight         Requests that are currently in flight.
+     */
+    CoalescingHttpClient(EntityConverterManager converterManager, AbstractHttpClient delegate, Set<String> headerNames, ConcurrentMap<String, CompletableFuture<SharedResponse>> inFlight) {
+        super(converterManager);
+        this.delegate = delegate;
+        this.headerNames = headerNames;
+        this.inFlight = inFlight;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected HttpResponse execute(HttpContext context, HttpEntity httpEntity, HttpClientFilterProcessor filterProcessor) throws IOException, URISyntaxException, GeneralSecurityException {
+        HttpMethod method = context.getMethod();
+
+        // Unbuffered responses are streamed to the caller, and can not be read into memory to be shared.
+        if (httpEntity != null || (method != HttpMethod.GET && method != HttpMethod.HEAD) || !context.getRequest().isBufferResponseEntity()) {
+            return delegate.execute(context, httpEntity, filterProcessor);
+        }
+
+        String key = createKey(method, context.getRequest());
+
+        CompletableFuture<SharedResponse> future = new CompletableFuture<>();
+        CompletableFuture<SharedResponse> existing = inFlight.putIfAbsent(key, future);
+
+        if (existing != null) {
+            return await(existing).createResponse(getConverterManager(), context.getRequest());
+        }
+
+        try {
+            SharedResponse sharedResponse = SharedResponse.of(delegate.execute(context, null, filterProcessor));
+            future.complete(sharedResponse);
+            return sharedResponse.createResponse(getConverterManager(), context.getRequest());
+        }
+        catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Waits for the response of an in-flight request.
+     *
+     * @param future Future of the in-flight request.
+     * @return The shared response.
+     * @throws IOException When the in-flight request failed with an IO exception.
+     */
+    private SharedResponse await(CompletableFuture<SharedResponse> future) throws IOException, URISyntaxException, GeneralSecurityException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a coalesced request");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof URISyntaxException) {
+                throw (URISyntaxException) cause;
+            }
+            if (cause instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new HttpClientException(cause);
+        }
+    }
+
+    /**
+     * Builds the key that identifies identical requests.
+     *
+     * @param method  HTTP method of the request.
+     * @param request Request properties.
+     * @return The coalescing key of the request.
+     */
+    private String createKey(HttpMethod method, HttpRequest request) {
+        StringBuilder builder = new StringBuilder(method.name()).append(' ').append(UriEncoder.encode(request));
+
+        MultiValuedMap headers = request.getHeaders();
+
+        for (String name : headerNames) {
+            List<String> values = headers.get(name);
+
+            if (values != null) {
+                builder.append('\n').append(name.toLowerCase()).append(':');
+
+                for (String value : values) {
+                    builder.append(value).append('\u0000');
+                }
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * A buffered response that is shared by coalesced requests.
+     */
+    static class SharedResponse {
+        /**
+         * HTTP status of the response.
+         */
+        private final int status;
+
+        /**
+         * Headers of the response.
+         */
+        private final MultiValuedMap headers;
+
+        /**
+         * Entity of the response, or {@code null} if there is none.
+         */
+        private final byte[] entity;
+
+        /**
+         * Content type of the entity.
+         */
+        private final String contentType;
+
+        /**
+         * Character set of the entity.
+         */
+        private final String charSet;
+
+        /**
+         * Constructor.
+         *
+         * @param status      HTTP status of the response.
+         * @param headers     Headers of the response.
+         * @param entity      Entity of the response.
+         * @param contentType Content type of the entity.
+         * @param charSet     Character set of the entity.
+         */
+        private SharedResponse(int status, MultiValuedMap headers, byte[] entity, String contentType, String charSet) {
+            this.status = status;
+            this.headers = headers;
+            this.entity = entity;
+            this.contentType = contentType;
+            this.charSet = charSet;
+        }
+
+        /**
+         * Reads and closes the given response.
+         *
+         * @param response Response to read.
+         * @return A shared copy of the response.
+         * @throws IOException When an IO exception occurs.
+         */
+        static SharedResponse of(HttpResponse response) throws IOException {
+            try {
+                HttpEntity httpEntity = response.getEntity();
+
+                if (httpEntity == null) {
+                    return new SharedResponse(response.getStatus(), response.getHeaders(), null, null, null);
+                }
+
+                byte[] entity;
+                try (InputStream inputStream = httpEntity.getInputStream()) {
+                    entity = StreamUtils.readBytes(inputStream);
+                }
+
+                return new SharedResponse(response.getStatus(), response.getHeaders(), entity, httpEntity.getContentType(), httpEntity.getCharSet());
+            }
+            finally {
+                response.close();
+            }
+        }
+
+        /**
+         * Creates an independent response for a caller.
+         *
+         * @param converterManager Entity converter manager.
+         * @param request          Request properties of the caller.
+         * @return A new response.
+         * @throws IOException When an IO exception occurs.
+         */
+        HttpResponse createResponse(EntityConverterManager converterManager, HttpRequest request) throws IOException {
+            HttpEntity httpEntity = null;
+
+            if (entity != null && entity.length > 0) {
+                httpEntity = new HttpEntity(new ByteArrayInputStream(entity), contentType, charSet);
+            }
+
+            return new CoalescedHttpResponse(converterManager, request, status, (MultiValuedMap) headers.clone(), httpEntity);
+        }
+    }
+}
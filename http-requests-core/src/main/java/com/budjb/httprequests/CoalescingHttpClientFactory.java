@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests;
+
+import com.budjb.httprequests.converter.EntityConverterManager;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An {@link HttpClientFactory} that decorates another factory so that identical concurrent requests
+ * share a single in-flight call.
+ * <p>
+ * GET and HEAD requests without an entity that buffer their response entity are coalesced when their
+ * method, URI, query parameters and selected headers are equal. Of identical coalesced requests, the
+ * first is sent to the server; requests that arrive while it is in flight wait for its response instead
+ * of making their own. Every caller receives its own {@link HttpResponse} with an independent view of
+ * the one buffered response entity, and request, response and lifecycle filters run for every caller as
+ * usual. Requests with an unbuffered response entity are never coalesced and are always sent on their
+ * own, so that their entity is streamed to the caller.
+ * <p>
+ * Headers that are not selected are not considered when comparing requests, so any header that changes
+ * the response of a server must be selected. The factory that is decorated must create clients that
+ * extend {@link AbstractHttpClient}.
+ */
+public class CoalescingHttpClientFactory implements HttpClientFactory {
+    /**
+     * Names of the headers that are selected by default.
+     */
+    public static final List<String> DEFAULT_HEADER_NAMES = Collections.unmodifiableList(Arrays.asList(
+        "Accept", "Accept-Charset", "Accept-Encoding", "Accept-Language", "Authorization", "Cookie", "Range"
+    ));
+
+    /**
+     * Factory that creates the clients making the actual requests.
+     */
+    private final HttpClientFactory delegate;
+
+    /**
+     * Names of the headers whose values are part of the coalescing key.
+     */
+    private final SortedSet<String> headerNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    /**
+     * Requests that are currently in flight, keyed by their coalescing key.
+     */
+    private final ConcurrentMap<String, CompletableFuture<CoalescingHttpClient.SharedResponse>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor that selects the {@link #DEFAULT_HEADER_NAMES default headers}.
+     *
+     * @param delegate Factory that creates the clients making the actual requests.
+     */
+    public CoalescingHttpClientFactory(HttpClientFactory delegate) {
+        this(delegate, DEFAULT_HEADER_NAMES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param delegate    Factory that creates the clients making the actual requests.
+     * @param headerNames Names of the headers whose values must be equal for requests to be coalesced.
+     */
+    public CoalescingHttpClientFactory(HttpClientFactory delegate, Collection<String> headerNames) {
+        this.delegate = delegate;
+        this.headerNames.addAll(headerNames);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HttpClient createHttpClient() {
+        HttpClient client = delegate.createHttpClient();
+
+        if (!(client instanceof AbstractHttpClient)) {
+            throw new IllegalStateException("request coalescing requires an HTTP client that extends " + AbstractHttpClient.class.getName());
+        }
+
+        AbstractHttpClient delegateClient = (AbstractHttpClient) client;
+        CoalescingHttpClient coalescingClient = new CoalescingHttpClient(getConverterManager(), delegateClient, headerNames, inFlight);
+
+        // Requests are run by the coalescing client, so it must apply the defaults of the delegate.
+        coalescingClient.setDefaultConnectionTimeout(delegateClient.getDefaultConnectionTimeout());
+        coalescingClient.setDefaultReadTimeout(delegateClient.getDefaultReadTimeout());
+
+        return coalescingClient;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntityConverterManager getConverterManager() {
+        return delegate.getConverterManager();
+    }
+
+    /**
+     * Returns the names of the headers whose values are part of the coalescing key.
+     *
+     * @return The names of the selected headers.
+     */
+    public Set<String> getHeaderNames() {
+        return Collections.unmodifiableSet(headerNames);
+    }
+
+    /**
+     * Returns the number of distinct requests that are currently in flight.
+     *
+     * @return The number of distinct requests that are currently in flight.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,497 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests;
+
+import com.budjb.httprequests.exception.HttpClientException;
+import com.budjb.httprequests.exception.HttpRequestedRangeNotSatisfiableException;
+import com.budjb.httprequests.exception.HttpStatusException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads the response entity of a GET request directly to a file.
+ * <p>
+ * Response entities are never buffered; they are transferred from the response stream into a
+ * {@link FileChannel}. Partially downloaded files are resumed with a <code>Range</code> request, and
+ * entities of servers that accept byte ranges may be split into several ranges that are requested
+ * concurrently and written to a temporary file at their respective offsets, which replaces the file
+ * once every range has been received.
+ * <p>
+ * The modification time of a downloaded file is set to the <code>Last-Modified</code> date of the entity,
+ * which is sent with the <code>If-Range</code> header when the download is resumed. A server whose entity
+ * has changed since then responds with the complete entity, which replaces the contents of the file.
+ */
+class FileDownloader {
+    /**
+     * Smallest range that will be requested when downloading in parallel.
+     */
+    private static final long MINIMUM_PART_SIZE = 1024 * 1024;
+
+    /**
+     * Maximum number of bytes transferred to the file at once.
+     */
+    private static final long TRANSFER_SIZE = 1024 * 1024;
+
+    /**
+     * Format of the HTTP dates sent in the <code>If-Range</code> header.
+     */
+    private static final DateTimeFormatter HTTP_DATE_FORMAT = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+    /**
+     * HTTP client used to make requests.
+     */
+    private final HttpClient client;
+
+    /**
+     * Request properties of the download.
+     */
+    private final HttpRequest request;
+
+    /**
+     * File to write the response entity to.
+     */
+    private final Path path;
+
+    /**
+     * Maximum number of concurrent requests.
+     */
+    private final int parallelism;
+
+    /**
+     * Validator of the entity returned by the HEAD request of a parallel download, sent with the
+     * <code>If-Range</code> header so that every range belongs to the same entity.
+     */
+    private String validator;
+
+    /**
+     * <code>Last-Modified</code> header returned by the HEAD request of a parallel download.
+     */
+    private String lastModified;
+
+    /**
+     * Constructor.
+     *
+     * @param client      HTTP client used to make requests.
+     * @param request     Request properties of the download.
+     * @param path        File to write the response entity to.
+     * @param parallelism Maximum number of concurrent requests.
+     */
+    FileDownloader(HttpClient client, HttpRequest request, Path path, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+
+        this.client = client;
+        this.request = request;
+        this.path = path;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Downloads the response entity to the file.
+     *
+     * @return The size of the downloaded file, in bytes.
+     * @throws IOException When an IO exception occurs.
+     */
+    long download() throws IOException {
+        long existing = Files.exists(path) ? Files.size(path) : 0;
+
+        // Ranges of a parallel download that were not completed can not be determined from the file,
+        // so partial files are always resumed with a single request.
+        if (parallelism > 1 && existing == 0) {
+            long length = getRangeableLength();
+
+            if (length >= MINIMUM_PART_SIZE * 2) {
+                return downloadParts(length);
+            }
+        }
+
+        return downloadSequentially(existing);
+    }
+
+    /**
+     * Makes a HEAD request and returns the length of the entity if the server accepts byte ranges for it.
+     *
+     * @return The length of the entity, or {@code -1} if byte ranges can not be used.
+     * @throws IOException When an IO exception occurs.
+     */
+    private long getRangeableLength() throws IOException {
+        try (HttpResponse response = client.head(createRequest())) {
+            if (response.getStatus() != 200) {
+                return -1;
+            }
+
+            String acceptRanges = response.getHeader("Accept-Ranges");
+            if (acceptRanges == null || !acceptRanges.toLowerCase().contains("bytes")) {
+                return -1;
+            }
+
+            // Ranges of an encoded entity do not correspond to offsets of the decoded file.
+            String contentEncoding = response.getHeader("Content-Encoding");
+            if (contentEncoding != null && !contentEncoding.equalsIgnoreCase("identity")) {
+                return -1;
+            }
+
+            String contentLength = response.getHeader("Content-Length");
+            if (contentLength == null) {
+                return -1;
+            }
+
+            // Without a validator, ranges could be taken from different versions of the entity.
+            lastModified = response.getHeader("Last-Modified");
+            String etag = response.getHeader("ETag");
+            validator = etag != null && !etag.startsWith("W/") ? etag : lastModified;
+
+            if (validator == null) {
+                return -1;
+            }
+
+            return Long.parseLong(contentLength.trim());
+        }
+        catch (HttpStatusException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Downloads the entity with a single request, resuming from the given offset when it is greater than zero.
+     *
+     * @param offset Number of bytes already contained in the file.
+     * @return The size of the downloaded file, in bytes.
+     * @throws IOException When an IO exception occurs.
+     */
+    private long downloadSequentially(long offset) throws IOException {
+        HttpRequest request = createRequest();
+
+        if (offset > 0) {
+            // The range is only honored if the entity has not been modified since the file was written.
+            request.setHeader("Range", "bytes=" + offset + "-");
+            request.setHeader("If-Range", HTTP_DATE_FORMAT.format(Files.getLastModifiedTime(path).toInstant()));
+        }
+
+        HttpResponse response;
+        try {
+            response = client.get(request);
+        }
+        catch (HttpRequestedRangeNotSatisfiableException e) {
+            response = e.getResponse();
+        }
+
+        try {
+            int status = response.getStatus();
+
+            if (status == 416 && offset > 0) {
+                // The file is already complete if its size matches the length the server reports.
+                if (parseContentRange(response.getHeader("Content-Range"))[2] == offset) {
+                    return offset;
+                }
+
+                response.close();
+                return downloadSequentially(0);
+            }
+
+            if (status < 200 || status >= 300) {
+                throw buildStatusException(response);
+            }
+
+            long position = 0;
+
+            if (status == 206) {
+                position = parseContentRange(response.getHeader("Content-Range"))[0];
+
+                if (position != offset) {
+                    throw new IOException("server returned a range starting at " + position + " instead of " + offset);
+                }
+            }
+
+            try {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    // A complete entity replaces any existing content of the file.
+                    if (position == 0) {
+                        channel.truncate(0);
+                    }
+
+                    return transfer(response, channel, position);
+                }
+            }
+            finally {
+                // This is also done when the transfer fails, so that the partial file can be resumed.
+                setLastModifiedTime(path, response.getHeader("Last-Modified"));
+            }
+        }
+        finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Downloads the entity by requesting ranges of it concurrently.
+     *
+     * @param length Length of the entity.
+     * @return The size of the downloaded file, in bytes.
+     * @throws IOException When an IO exception occurs.
+     */
+    private long downloadParts(long length) throws IOException {
+        int parts = (int) Math.min(parallelism, length / MINIMUM_PART_SIZE);
+        long partSize = length / parts;
+
+        // The ranges are written to a temporary file so that a failed download never leaves a file of the
+        // full length behind, which would be mistaken for a complete file when the download is resumed.
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".part");
+        boolean complete = false;
+
+        ExecutorService executor = Executors.newFixedThreadPool(parts, runnable -> {
+            Thread thread = new Thread(runnable, "http-requests-download");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            // The file is extended to its full size first, since bytes can not be transferred
+            // to a position beyond the end of the file.
+            channel.write(ByteBuffer.wrap(new byte[1]), length - 1);
+
+            List<Future<Void>> futures = new ArrayList<>(parts);
+
+            for (int i = 0; i < parts; i++) {
+                long start = i * partSize;
+                long end = i == parts - 1 ? length - 1 : start + partSize - 1;
+
+                futures.add(executor.submit(() -> {
+                    downloadPart(channel, start, end);
+                    return null;
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while downloading " + path);
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new HttpClientException(cause);
+                }
+            }
+
+            complete = true;
+        }
+        finally {
+            executor.shutdownNow();
+
+            if (!complete) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        setLastModifiedTime(temporary, lastModified);
+
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+
+        return length;
+    }
+
+    /**
+     * Downloads a single range of the entity and writes it to the file at its offset.
+     *
+     * @param channel File channel to write to.
+     * @param start   Offset of the first byte of the range.
+     * @param end     Offset of the last byte of the range.
+     * @throws IOException When an IO exception occurs.
+     */
+    private void downloadPart(FileChannel channel, long start, long end) throws IOException {
+        HttpRequest request = createRequest();
+        request.setHeader("Range", "bytes=" + start + "-" + end);
+        request.setHeader("If-Range", validator);
+
+        try (HttpResponse response = client.get(request)) {
+            int status = response.getStatus();
+
+            if (status < 200 || status >= 300) {
+                throw buildStatusException(response);
+            }
+
+            if (status != 206 || parseContentRange(response.getHeader("Content-Range"))[0] != start) {
+                throw new IOException("server did not honor the request for bytes " + start + "-" + end + " of " + path);
+            }
+
+            long position = transfer(response, channel, start);
+
+            if (position != end + 1) {
+                throw new IOException("received " + (position - start) + " bytes instead of " + (end - start + 1) + " for bytes " + start + "-" + end + " of " + path);
+            }
+        }
+    }
+
+    /**
+     * Transfers the response entity to the file channel, starting at the given position.
+     *
+     * @param response HTTP response.
+     * @param channel  File channel to write to.
+     * @param position Position in the file to start writing at.
+     * @return The position following the last byte written.
+     * @throws IOException When an IO exception occurs.
+     */
+    private long transfer(HttpResponse response, FileChannel channel, long position) throws IOException {
+        if (!response.hasEntity()) {
+            return position;
+        }
+
+        try (ReadableByteChannel source = Channels.newChannel(response.getEntity().getInputStream())) {
+            long transferred;
+
+            while ((transferred = channel.transferFrom(source, position, TRANSFER_SIZE)) > 0) {
+                position += transferred;
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Sets the modification time of a file to the <code>Last-Modified</code> date of the entity it contains.
+     * The modification time is left unchanged when the date is missing or invalid.
+     *
+     * @param path         File to update.
+     * @param lastModified Value of the <code>Last-Modified</code> header.
+     * @throws IOException When an IO exception occurs.
+     */
+    private static void setLastModifiedTime(Path path, String lastModified) throws IOException {
+        if (lastModified == null || !Files.exists(path)) {
+            return;
+        }
+
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(lastModified.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            Files.setLastModifiedTime(path, FileTime.from(date.toInstant()));
+        }
+        catch (DateTimeParseException ignored) {
+            // The modification time will not match when the download is resumed, so it will start over.
+        }
+    }
+
+    /**
+     * Creates a copy of the download request that does not buffer its response entity.
+     *
+     * @return A new request.
+     */
+    private HttpRequest createRequest() {
+        try {
+            return ((HttpRequest) request.clone()).setBufferResponseEntity(false);
+        }
+        catch (CloneNotSupportedException e) {
+            throw new HttpClientException(e);
+        }
+    }
+
+    /**
+     * Buffers the entity of an unsuccessful response so that it remains available once the response is
+     * closed, and builds the appropriate {@link HttpStatusException}.
+     *
+     * @param response HTTP response.
+     * @return An exception representing the status of the response.
+     * @throws IOException When an IO exception occurs.
+     */
+    private HttpStatusException buildStatusException(HttpResponse response) throws IOException {
+        if (response.hasEntity()) {
+            response.getEntity().buffer();
+        }
+        return HttpStatusException.build(response);
+    }
+
+    /**
+     * Parses a <code>Content-Range</code> header of the form <code>bytes start-end/length</code>
+     * or <code>bytes *&#47;length</code>.
+     *
+     * @param contentRange Value of the header.
+     * @return The start, end and length of the range, where any unknown value is {@code -1}.
+     */
+    static long[] parseContentRange(String contentRange) {
+        long[] range = {-1, -1, -1};
+
+        if (contentRange == null) {
+            return range;
+        }
+
+        String value = contentRange.trim();
+
+        if (!value.regionMatches(true, 0, "bytes ", 0, 6)) {
+            return range;
+        }
+
+        value = value.substring(6).trim();
+
+        int slash = value.indexOf('/');
+        String span = slash == -1 ? value : value.substring(0, slash);
+        String length = slash == -1 ? "*" : value.substring(slash + 1);
+
+        try {
+            int dash = span.indexOf('-');
+
+            if (dash != -1) {
+                range[0] = Long.parseLong(span.substring(0, dash).trim());
+                range[1] = Long.parseLong(span.substring(dash + 1).trim());
+            }
+
+            if (!length.trim().equals("*")) {
+                range[2] = Long.parseLong(length.trim());
+            }
+        }
+        catch (NumberFormatException ignored) {
+            // Any value that could not be parsed remains unknown.
+        }
+
+        return range;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests;
+
+import com.budjb.httprequests.exception.EmptyEntityException;
+import com.budjb.httprequests.exception.EntityException;
+import com.budjb.httprequests.exception.NullEntityException;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An HTTP entity backed by a file.
+ * <p>
+ * The length of the entity is known up front, which allows client implementations to send a
+ * <code>Content-Length</code> header instead of using chunked transfer encoding. The entity is
+ * read from the file each time it is sent, so it does not need to be buffered in memory when
+ * a request is retried. When written with {@link #writeTo(OutputStream)}, the contents of the
+ * file are transferred with {@link FileChannel#transferTo}.
+ */
+public class FileHttpEntity extends HttpEntity {
+    /**
+     * Path to the file containing the entity.
+     */
+    private final Path path;
+
+    /**
+     * Length of the file, in bytes.
+     */
+    private final long contentLength;
+
+    /**
+     * Constructor.
+     *
+     * @param path        Path to the file containing the entity.
+     * @param contentType Content type of the entity.
+     * @param charSet     Character set of the entity.
+     * @throws IOException     When an IO exception occurs.
+     * @throws EntityException When the file is null or empty.
+     */
+    public FileHttpEntity(Path path, String contentType, String charSet) throws IOException, EntityException {
+        super(contentType, charSet);
+
+        if (path == null) {
+            throw new NullEntityException();
+        }
+
+        long size = Files.size(path);
+
+        if (size == 0) {
+            throw new EmptyEntityException();
+        }
+
+        this.path = path;
+        this.contentLength = size;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param path        Path to the file containing the entity.
+     * @param contentType Content type of the entity.
+     * @throws IOException     When an IO exception occurs.
+     * @throws EntityException When the file is null or empty.
+     */
+    public FileHttpEntity(Path path, String contentType) throws IOException, EntityException {
+        this(path, contentType, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param path Path to the file containing the entity.
+     * @throws IOException     When an IO exception occurs.
+     * @throws EntityException When the file is null or empty.
+     */
+    public FileHttpEntity(Path path) throws IOException, EntityException {
+        this(path, null, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file        File containing the entity.
+     * @param contentType Content type of the entity.
+     * @param charSet     Character set of the entity.
+     * @throws IOException     When an IO exception occurs.
+     * @throws EntityException When the file is null or empty.
+     */
+    public FileHttpEntity(File file, String contentType, String charSet) throws IOException, EntityException {
+        this(file != null ? file.toPath() : null, contentType, charSet);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file        File containing the entity.
+     * @param contentType Content type of the entity.
+     * @throws IOException     When an IO exception occurs.
+     * @throws EntityException When the file is null or empty.
+     */
+    public FileHttpEntity(File file, String contentType) throws IOException, EntityException {
+        this(file, contentType, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file File containing the entity.
+     * @throws IOException     When an IO exception occurs.
+     * @throws EntityException When the file is null or empty.
+     */
+    public FileHttpEntity(File file) throws IOException, EntityException {
+        this(file, null, null);
+    }
+
+    /**
+     * Returns the path to the file containing the entity.
+     *
+     * @return The path to the file containing the entity.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns a new input stream reading the file. The caller is responsible for closing it.
+     *
+     * @return A new input stream reading the file.
+     * @throws UncheckedIOException When the file can not be opened.
+     */
+    @Override
+    public InputStream getInputStream() {
+        try {
+            return Files.newInputStream(path);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    /**
+     * Transfers the contents of the file to the given output stream. The output stream is not closed.
+     *
+     * @param outputStream Output stream to write the entity to.
+     * @throws IOException When an IO exception occurs.
+     */
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(outputStream);
+            long position = 0;
+
+            // Exactly the length reported by the entity is written, since it may have been sent
+            // to the server as the content length before the transfer started.
+            while (position < contentLength) {
+                long transferred = fileChannel.transferTo(position, contentLength - position, target);
+
+                if (transferred <= 0) {
+                    throw new EOFException("file " + path + " was truncated while it was being transferred");
+                }
+
+                position += transferred;
+            }
+        }
+    }
+
+    /**
+     * Does nothing, since the file is read each time the entity is sent.
+     */
+    @Override
+    public void buffer() {
+
+    }
+
+    /**
+     * Returns {@code false}, since the file is read each time the entity is sent.
+     *
+     * @return {@code false}
+     */
+    @Override
+    public boolean isBuffered() {
+        return false;
+    }
+
+    /**
+     * Does nothing, since each stream opened by the entity is closed by its reader.
+     */
+    @Override
+    public void close() {
+
+    }
+}
@@ -22,6 +22,7 @@ import com.budjb.httprequests.exception.UnsupportedConversionException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
 
 /**
  * An interface that describes the common structure and methods of an HTTP client.
@@ -905,6 +906,61 @@ public interface HttpClient {
      */
     HttpResponse trace(String uri) throws IOException, URISyntaxException;
 
+    /**
+     * Downloads the response entity of an HTTP GET request to the given file.
+     * <p>
+     * The response entity is streamed directly to the file without being buffered. If the file already
+     * contains data, the download is resumed with a <code>Range</code> request. If the server does not
+     * honor the range, or the entity has been modified since the file was written, the file is overwritten
+     * with the complete entity.
+     *
+     * @param request Request properties to use with the HTTP request.
+     * @param path    File to write the response entity to.
+     * @return The size of the downloaded file, in bytes.
+     * @throws IOException When an underlying IO exception occurs.
+     */
+    default long download(HttpRequest request, Path path) throws IOException {
+        return download(request, path, 1);
+    }
+
+    /**
+     * Downloads the response entity of an HTTP GET request to the given file.
+     * <p>
+     * The response entity is streamed directly to the file without being buffered. If the file already
+     * contains data, the download is resumed with a <code>Range</code> request. If the server does not
+     * honor the range, or the entity has been modified since the file was written, the file is overwritten
+     * with the complete entity.
+     *
+     * @param uri  URI of the request.
+     * @param path File to write the response entity to.
+     * @return The size of the downloaded file, in bytes.
+     * @throws IOException        When an underlying IO exception occurs.
+     * @throws URISyntaxException When the syntax of the request is incorrect.
+     */
+    default long download(String uri, Path path) throws IOException, URISyntaxException {
+        return download(new HttpRequest(uri), path);
+    }
+
+    /**
+     * Downloads the response entity of an HTTP GET request to the given file, using up to the given
+     * number of concurrent requests.
+     * <p>
+     * When the server advertises support for byte ranges with the <code>Accept-Ranges</code> header,
+     * the entity is split into ranges that are requested concurrently and written to the file at their
+     * respective offsets. The ranges are written to a temporary file that replaces the file once every
+     * range has been received. Otherwise, or when the file already contains data that should be resumed,
+     * the download behaves like {@link #download(HttpRequest, Path)}.
+     *
+     * @param request     Request properties to use with the HTTP request.
+     * @param path        File to write the response entity to.
+     * @param parallelism Maximum number of concurrent requests.
+     * @return The size of the downloaded file, in bytes.
+     * @throws IOException When an underlying IO exception occurs.
+     */
+    default long download(HttpRequest request, Path path, int parallelism) throws IOException {
+        return new FileDownloader(this, request, path, parallelism).download();
+    }
+
     /**
      * Returns the entity converter manager associated with this client.
      *
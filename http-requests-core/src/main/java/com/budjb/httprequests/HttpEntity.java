@@ -89,6 +89,45 @@ public class HttpEntity implements Closeable {
         this(inputStream, contentType, null);
     }
 
+    /**
+     * Constructor for an entity that is already held in memory. The entity is buffered without being copied,
+     * so its length is known and it can be read more than once.
+     *
+     * @param entity      Contents of the entity.
+     * @param contentType Content type of the entity.
+     * @param charSet     Character set of the entity.
+     * @throws EntityException When an entity is null or empty.
+     */
+    public HttpEntity(byte[] entity, String contentType, String charSet) throws EntityException {
+        if (entity == null) {
+            throw new NullEntityException();
+        }
+
+        if (entity.length == 0) {
+            throw new EmptyEntityException();
+        }
+
+        this.inputStream = new ByteArrayInputStream(entity);
+        this.entityBuffer = entity;
+        this.contentType = contentType;
+        this.charSet = charSet;
+    }
+
+    /**
+     * Constructor for entities that provide their own content and do not wrap a single input stream.
+     * <p>
+     * Implementations using this constructor must override {@link #getInputStream()}, {@link #buffer()}
+     * and {@link #close()}.
+     *
+     * @param contentType Content type of the entity.
+     * @param charSet     Character set of the entity.
+     */
+    protected HttpEntity(String contentType, String charSet) {
+        this.inputStream = null;
+        this.contentType = contentType;
+        this.charSet = charSet;
+    }
+
     /**
      * Inspects the given input stream and ensures it is non-null and that there are contents.
      *
@@ -166,6 +205,45 @@ public class HttpEntity implements Closeable {
         }
     }
 
+    /**
+     * Returns the length of the entity, in bytes.
+     *
+     * @return The length of the entity, or {@code -1} if the length is not known.
+     */
+    public long getContentLength() {
+        if (isBuffered()) {
+            return entityBuffer.length;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether the entity can be read more than once. Entities that are not repeatable
+     * must be buffered before they can be sent more than once.
+     *
+     * @return Whether the entity can be read more than once.
+     */
+    public boolean isRepeatable() {
+        return isBuffered();
+    }
+
+    /**
+     * Writes the entity to the given output stream. The output stream is not closed.
+     *
+     * @param outputStream Output stream to write the entity to.
+     * @throws IOException When an IO exception occurs.
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        if (isBuffered()) {
+            outputStream.write(entityBuffer);
+        }
+        else {
+            try (InputStream inputStream = getInputStream()) {
+                StreamUtils.shovel(inputStream, outputStream);
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -180,6 +258,9 @@ public class HttpEntity implements Closeable {
      * @throws IOException When an IO exception occurs.
      */
     public void buffer() throws IOException {
+        if (isBuffered()) {
+            return;
+        }
         entityBuffer = StreamUtils.readBytes(inputStream);
         inputStream.close();
     }
@@ -20,9 +20,7 @@ import com.budjb.httprequests.filter.HttpClientFilter;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * An object used to configure an HTTP request.
@@ -31,12 +29,12 @@ public class HttpRequest implements Cloneable {
     /**
      * Request headers.
      */
-    private final MultiValuedMap headers = new MultiValuedMap();
+    private MultiValuedMap headers = new MultiValuedMap();
 
     /**
      * Query parameters.
      */
-    private final MultiValuedMap queryParameters = new MultiValuedMap();
+    private MultiValuedMap queryParameters = new MultiValuedMap();
 
     /**
      * URI of the request.
@@ -53,6 +51,16 @@ public class HttpRequest implements Cloneable {
      */
     private int connectionTimeout = 0;
 
+    /**
+     * Whether the read timeout has been set, so that a default read timeout is not applied.
+     */
+    private boolean readTimeoutSet = false;
+
+    /**
+     * Whether the connection timeout has been set, so that a default connection timeout is not applied.
+     */
+    private boolean connectionTimeoutSet = false;
+
     /**
      * Whether SSL certificates will be validated.
      */
@@ -146,16 +154,27 @@ public class HttpRequest implements Cloneable {
     }
 
     /**
-     * Sets the read timeout, in milliseconds. 0 means infinity.
+     * Sets the read timeout, in milliseconds. 0 means infinity, even when the client has a default read timeout.
      *
      * @param timeout Read timeout of the request, in milliseconds.
      * @return The instance of this class the method was called with.
      */
     public HttpRequest setReadTimeout(int timeout) {
         this.readTimeout = timeout;
+        this.readTimeoutSet = true;
         return this;
     }
 
+    /**
+     * Returns whether the read timeout has been set. A client's default read timeout only applies to requests
+     * that have not set one.
+     *
+     * @return Whether the read timeout has been set.
+     */
+    boolean isReadTimeoutSet() {
+        return readTimeoutSet;
+    }
+
     /**
      * Returns the connection timeout, in milliseconds.
      *
@@ -166,16 +185,28 @@ public class HttpRequest implements Cloneable {
     }
 
     /**
-     * Sets the connection timeout, in milliseconds. 0 means infinity.
+     * Sets the connection timeout, in milliseconds. 0 means infinity, even when the client has a default
+     * connection timeout.
      *
      * @param timeout Connection timeout of the request, in milliseconds.
      * @return The instance of this class the method was called with.
      */
     public HttpRequest setConnectionTimeout(int timeout) {
         this.connectionTimeout = timeout;
+        this.connectionTimeoutSet = true;
         return this;
     }
 
+    /**
+     * Returns whether the connection timeout has been set. A client's default connection timeout only applies
+     * to requests that have not set one.
+     *
+     * @return Whether the connection timeout has been set.
+     */
+    boolean isConnectionTimeoutSet() {
+        return connectionTimeoutSet;
+    }
+
     /**
      * Returns whether SSL will be validated.
      *
@@ -417,12 +448,6 @@ public class HttpRequest implements Cloneable {
      * @param uri URI object to parse.
      */
     private void parseUri(URI uri) throws URISyntaxException {
-        String scheme = uri.getScheme();
-        String host = uri.getHost();
-        int port = uri.getPort();
-        String path = uri.getRawPath();
-        String query = uri.getQuery();
-
         if (uri.getScheme() == null) {
             throw new URISyntaxException(uri.toString(), "URI must contain a scheme");
         }
@@ -431,28 +456,12 @@ public class HttpRequest implements Cloneable {
             throw new URISyntaxException(uri.toString(), "URI must contain a host");
         }
 
-        StringBuilder builder = new StringBuilder(scheme).append("://").append(host);
-
-        if (port != -1 && !(scheme.equalsIgnoreCase("https") && port == 443) && !(scheme.equalsIgnoreCase("http") && port == 80)) {
-            builder.append(':').append(port);
-        }
-
-        builder.append(path);
+        this.uri = UriEncoder.appendBaseUri(new StringBuilder(), uri).toString();
 
-        this.uri = builder.toString();
+        String query = uri.getRawQuery();
 
         if (query != null && query.length() > 0) {
-            Arrays.stream(query.split("&")).forEach(it -> {
-                List<String> parts = Arrays.stream(it.split("=")).collect(Collectors.toList());
-
-                if (parts.size() == 1) {
-                    addQueryParameter(parts.get(0), "");
-                }
-                else {
-                    String name = parts.remove(0);
-                    addQueryParameter(name, String.join("=", parts));
-                }
-            });
+            addQueryParameters(UriEncoder.decodeQuery(query));
         }
     }
 
@@ -464,21 +473,11 @@ public class HttpRequest implements Cloneable {
     public Object clone() throws CloneNotSupportedException {
         HttpRequest request = (HttpRequest) super.clone();
 
-        try {
-            request.setUri(getUri());
-        }
-        catch (URISyntaxException e) {
-            throw new RuntimeException(e);
-        }
-
-        request.setBufferResponseEntity(isBufferResponseEntity());
-        request.setConnectionTimeout(getConnectionTimeout());
-        request.setReadTimeout(getReadTimeout());
-        request.setFollowRedirects(isFollowRedirects());
-        request.setSslValidated(isSslValidated());
-
-        request.setHeaders((MultiValuedMap) getHeaders().clone());
-        request.setQueryParameters((MultiValuedMap) getQueryParameters().clone());
+        // The URI and request properties are copied by the shallow clone. The collections are
+        // replaced so that changes to the clone do not affect the original request.
+        request.headers = (MultiValuedMap) getHeaders().clone();
+        request.queryParameters = (MultiValuedMap) getQueryParameters().clone();
+        request.filters = new ArrayList<>(getFilters());
 
         return request;
     }
@@ -31,4 +31,23 @@ public abstract class HttpRequestsUtil {
     public static List<String> tokenize(String input, String regex) {
         return Arrays.asList(input.split(regex));
     }
+
+    /**
+     * Returns the origin of the given URI, consisting of its scheme, host and port (if present).
+     * The URI is expected to be absolute, as is the URI of an {@link HttpRequest}.
+     *
+     * @param uri Absolute URI.
+     * @return The origin of the URI, such as <code>https://example.com:8443</code>.
+     */
+    public static String getOrigin(String uri) {
+        int start = uri.indexOf("://");
+
+        if (start == -1) {
+            return uri;
+        }
+
+        int end = uri.indexOf('/', start + 3);
+
+        return end == -1 ? uri : uri.substring(0, end);
+    }
 }
@@ -0,0 +1,834 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A <code>multipart/form-data</code> request entity, as defined by RFC 7578.
+ * <p>
+ * Parts are streamed to the output in order when the entity is written; file and input stream parts are
+ * copied from their source as they are written, so the entity is never materialized in memory. When the
+ * length of every part is known, the length of the entire entity is known up front, which allows client
+ * implementations to send a <code>Content-Length</code> header instead of using chunked transfer encoding.
+ * <p>
+ * The entity is repeatable unless it contains an input stream part, in which case that part is buffered if the
+ * request needs to be sent more than once.
+ */
+public class MultipartEntity extends HttpEntity {
+    /**
+     * Content type of multipart form data entities.
+     */
+    private static final String MULTIPART_CONTENT_TYPE = "multipart/form-data";
+
+    /**
+     * Characters used to generate boundaries.
+     */
+    private static final char[] BOUNDARY_CHARACTERS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    /**
+     * Line separator used by the multipart format.
+     */
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    /**
+     * Boundary separating the parts of the entity.
+     */
+    private final String boundary;
+
+    /**
+     * Parts of the entity, in order.
+     */
+    private final List<Part> parts = new ArrayList<>();
+
+    /**
+     * Constructor that generates a random boundary.
+     */
+    public MultipartEntity() {
+        this(generateBoundary());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param boundary Boundary separating the parts of the entity.
+     */
+    public MultipartEntity(String boundary) {
+        super(MULTIPART_CONTENT_TYPE + "; boundary=" + validateBoundary(boundary), null);
+        this.boundary = boundary;
+    }
+
+    /**
+     * Returns the boundary separating the parts of the entity.
+     *
+     * @return The boundary separating the parts of the entity.
+     */
+    public String getBoundary() {
+        return boundary;
+    }
+
+    /**
+     * Adds a text field. The value is encoded as UTF-8.
+     *
+     * @param name  Name of the field.
+     * @param value Value of the field.
+     * @return The instance of this class the method was called with.
+     */
+    public MultipartEntity addField(String name, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+        return addPart(name, null, null, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Adds a part containing the contents of a file. The file name sent with the part is the name of the file.
+     *
+     * @param name        Name of the field.
+     * @param path        Path to the file.
+     * @param contentType Content type of the file, or {@code null} if not known.
+     * @return The instance of this class the method was called with.
+     * @throws IOException When the size of the file can not be determined.
+     */
+    public MultipartEntity addFile(String name, Path path, String contentType) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("path must not be null");
+        }
+        parts.add(new FilePart(header(name, path.getFileName().toString(), contentType), path, Files.size(path)));
+        return this;
+    }
+
+    /**
+     * Adds a part containing the contents of a file. The file name sent with the part is the name of the file.
+     *
+     * @param name        Name of the field.
+     * @param file        File to send.
+     * @param contentType Content type of the file, or {@code null} if not known.
+     * @return The instance of this class the method was called with.
+     * @throws IOException When the size of the file can not be determined.
+     */
+    public MultipartEntity addFile(String name, File file, String contentType) throws IOException {
+        return addFile(name, file != null ? file.toPath() : null, contentType);
+    }
+
+    /**
+     * Adds a part containing the given bytes.
+     *
+     * @param name        Name of the field.
+     * @param fileName    File name sent with the part, or {@code null} to send none.
+     * @param contentType Content type of the part, or {@code null} if not known.
+     * @param content     Content of the part.
+     * @return The instance of this class the method was called with.
+     */
+    public MultipartEntity addPart(String name, String fileName, String contentType, byte[] content) {
+        if (content == null) {
+            throw new IllegalArgumentException("content must not be null");
+        }
+        parts.add(new BytesPart(header(name, fileName, contentType), content));
+        return this;
+    }
+
+    /**
+     * Adds a part that is read from the given input stream when the entity is written. The input stream is
+     * closed once it has been read or the entity is closed.
+     *
+     * @param name        Name of the field.
+     * @param fileName    File name sent with the part, or {@code null} to send none.
+     * @param contentType Content type of the part, or {@code null} if not known.
+     * @param inputStream Input stream containing the content of the part.
+     * @param length      Number of bytes in the input stream, or {@code -1} if not known.
+     * @return The instance of this class the method was called with.
+     */
+    public MultipartEntity addPart(String name, String fileName, String contentType, InputStream inputStream, long length) {
+        if (inputStream == null) {
+            throw new IllegalArgumentException("input stream must not be null");
+        }
+        if (length < -1) {
+            throw new IllegalArgumentException("length must be -1 or greater");
+        }
+        parts.add(new StreamPart(header(name, fileName, contentType), inputStream, length));
+        return this;
+    }
+
+    /**
+     * Adds a part of an unknown length that is read from the given input stream when the entity is written.
+     * The input stream is closed once it has been read or the entity is closed.
+     *
+     * @param name        Name of the field.
+     * @param fileName    File name sent with the part, or {@code null} to send none.
+     * @param contentType Content type of the part, or {@code null} if not known.
+     * @param inputStream Input stream containing the content of the part.
+     * @return The instance of this class the method was called with.
+     */
+    public MultipartEntity addPart(String name, String fileName, String contentType, InputStream inputStream) {
+        return addPart(name, fileName, contentType, inputStream, -1);
+    }
+
+    /**
+     * Returns the length of the entity, which is only known when the length of every part is known.
+     *
+     * @return The length of the entity, or {@code -1} if the length is not known.
+     */
+    @Override
+    public long getContentLength() {
+        long length = 0;
+
+        for (Part part : parts) {
+            long partLength = part.getLength();
+
+            if (partLength == -1) {
+                return -1;
+            }
+
+            length += part.header.length + partLength + CRLF.length;
+        }
+
+        return length + closingDelimiter().length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRepeatable() {
+        for (Part part : parts) {
+            if (!part.isRepeatable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns an input stream that reads the parts of the entity in order. Each part is opened only once the
+     * parts before it have been read.
+     *
+     * @return A new input stream reading the entity.
+     */
+    @Override
+    public InputStream getInputStream() {
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasMoreElements() {
+                return index <= parts.size() * 3;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                if (!hasMoreElements()) {
+                    throw new NoSuchElementException();
+                }
+
+                int current = index++;
+
+                if (current == parts.size() * 3) {
+                    return new ByteArrayInputStream(closingDelimiter());
+                }
+
+                Part part = parts.get(current / 3);
+
+                switch (current % 3) {
+                    case 0:
+                        return new ByteArrayInputStream(part.header);
+
+                    case 1:
+                        try {
+                            return part.getInputStream();
+                        }
+                        catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+
+                    default:
+                        return new ByteArrayInputStream(CRLF);
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes each part of the entity to the given output stream in order. The output stream is not closed.
+     *
+     * @param outputStream Output stream to write the entity to.
+     * @throws IOException When an IO exception occurs.
+     */
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        for (Part part : parts) {
+            outputStream.write(part.header);
+            part.writeTo(outputStream);
+            outputStream.write(CRLF);
+        }
+        outputStream.write(closingDelimiter());
+    }
+
+    /**
+     * Buffers the parts that can only be read once, so that the entity can be sent more than once.
+     *
+     * @throws IOException When an IO exception occurs.
+     */
+    @Override
+    public void buffer() throws IOException {
+        for (Part part : parts) {
+            part.buffer();
+        }
+    }
+
+    /**
+     * Returns {@code false}, since parts that can be read more than once are read each time the entity is sent.
+     *
+     * @return {@code false}
+     */
+    @Override
+    public boolean isBuffered() {
+        return false;
+    }
+
+    /**
+     * Closes the input streams of parts that have not been read.
+     *
+     * @throws IOException When an IO exception occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Part part : parts) {
+            part.close();
+        }
+    }
+
+    /**
+     * Builds the delimiter and headers that precede the content of a part.
+     *
+     * @param name        Name of the field.
+     * @param fileName    File name sent with the part, or {@code null} to send none.
+     * @param contentType Content type of the part, or {@code null} if not known.
+     * @return The delimiter and headers of the part.
+     */
+    private byte[] header(String name, String fileName, String contentType) {
+        if (name == null) {
+            throw new IllegalArgumentException("name must not be null");
+        }
+
+        StringBuilder builder = new StringBuilder("--").append(boundary).append("\r\n");
+
+        builder.append("Content-Disposition: form-data; name=\"");
+        appendQuoted(builder, name);
+        builder.append('"');
+
+        if (fileName != null) {
+            builder.append("; filename=\"");
+            appendQuoted(builder, fileName);
+            builder.append('"');
+        }
+
+        builder.append("\r\n");
+
+        if (contentType != null) {
+            builder.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+
+        return builder.append("\r\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the delimiter that follows the last part of the entity.
+     *
+     * @return The closing delimiter.
+     */
+    private byte[] closingDelimiter() {
+        return ("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Appends a value of a quoted <code>Content-Disposition</code> parameter, escaping quotes and line breaks
+     * the same way browsers do.
+     *
+     * @param builder String builder to write to.
+     * @param value   Value to write.
+     */
+    private static void appendQuoted(StringBuilder builder, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '"':
+                    builder.append("%22");
+                    break;
+
+                case '\r':
+                    builder.append("%0D");
+                    break;
+
+                case '\n':
+                    builder.append("%0A");
+                    break;
+
+                default:
+                    builder.append(c);
+            }
+        }
+    }
+
+    /**
+     * Generates a random boundary.
+     *
+     * @return A new boundary.
+     */
+    private static String generateBoundary() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder builder = new StringBuilder("----HttpRequestsBoundary");
+
+        for (int i = 0; i < 24; i++) {
+            builder.append(BOUNDARY_CHARACTERS[random.nextInt(BOUNDARY_CHARACTERS.length)]);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Ensures the given boundary is valid according to RFC 2046.
+     *
+     * @param boundary Boundary to check.
+     * @return The boundary.
+     */
+    private static String validateBoundary(String boundary) {
+        if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+            throw new IllegalArgumentException("boundary must contain between 1 and 70 characters");
+        }
+
+        for (int i = 0; i < boundary.length(); i++) {
+            char c = boundary.charAt(i);
+
+            if (c < 0x20 || c > 0x7E || c == '"') {
+                throw new IllegalArgumentException("boundary contains an invalid character");
+            }
+        }
+
+        return boundary;
+    }
+
+    /**
+     * Copies at most the given number of bytes from an input stream to an output stream. Streams are not closed.
+     *
+     * @param inputStream  Input stream to read from.
+     * @param outputStream Output stream to write to.
+     * @param length       Maximum number of bytes to copy.
+     * @return The number of bytes copied.
+     * @throws IOException When an IO exception occurs.
+     */
+    private static long copy(InputStream inputStream, OutputStream outputStream, long length) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(8192, Math.max(length, 1))];
+        long copied = 0;
+        int read;
+
+        while (copied < length && (read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, length - copied))) != -1) {
+            outputStream.write(buffer, 0, read);
+            copied += read;
+        }
+
+        return copied;
+    }
+
+    /**
+     * A single part of the entity.
+     */
+    private static abstract class Part implements Closeable {
+        /**
+         * Delimiter and headers that precede the content of the part.
+         */
+        final byte[] header;
+
+        /**
+         * Constructor.
+         *
+         * @param header Delimiter and headers that precede the content of the part.
+         */
+        Part(byte[] header) {
+            this.header = header;
+        }
+
+        /**
+         * Returns the length of the content of the part.
+         *
+         * @return The length of the content of the part, or {@code -1} if not known.
+         */
+        abstract long getLength();
+
+        /**
+         * Returns an input stream containing the content of the part.
+         *
+         * @return An input stream containing the content of the part.
+         * @throws IOException When an IO exception occurs.
+         */
+        abstract InputStream getInputStream() throws IOException;
+
+        /**
+         * Writes the content of the part to the given output stream.
+         *
+         * @param outputStream Output stream to write to.
+         * @throws IOException When an IO exception occurs.
+         */
+        abstract void writeTo(OutputStream outputStream) throws IOException;
+
+        /**
+         * Returns whether the content of the part can be read more than once.
+         *
+         * @return Whether the content of the part can be read more than once.
+         */
+        boolean isRepeatable() {
+            return true;
+        }
+
+        /**
+         * Buffers the content of the part if it can only be read once.
+         *
+         * @throws IOException When an IO exception occurs.
+         */
+        void buffer() throws IOException {
+
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException {
+
+        }
+    }
+
+    /**
+     * A part whose content is held in memory.
+     */
+    private static class BytesPart extends Part {
+        /**
+         * Content of the part.
+         */
+        private final byte[] content;
+
+        /**
+         * Constructor.
+         *
+         * @param header  Delimiter and headers that precede the content of the part.
+         * @param content Content of the part.
+         */
+        BytesPart(byte[] header, byte[] content) {
+            super(header);
+            this.content = content;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        long getLength() {
+            return content.length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        InputStream getInputStream() {
+            return new ByteArrayInputStream(content);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        void writeTo(OutputStream outputStream) throws IOException {
+            outputStream.write(content);
+        }
+    }
+
+    /**
+     * A part whose content is read from a file each time it is written.
+     */
+    private static class FilePart extends Part {
+        /**
+         * Path to the file.
+         */
+        private final Path path;
+
+        /**
+         * Length of the file when the part was added.
+         */
+        private final long length;
+
+        /**
+         * Constructor.
+         *
+         * @param header Delimiter and headers that precede the content of the part.
+         * @param path   Path to the file.
+         * @param length Length of the file.
+         */
+        FilePart(byte[] header, Path path, long length) {
+            super(header);
+            this.path = path;
+            this.length = length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        long getLength() {
+            return length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        InputStream getInputStream() throws IOException {
+            return new BoundedInputStream(Files.newInputStream(path), length,
+                "file " + path + " changed size while it was being transferred");
+        }
+
+        /**
+         * Copies the file to the given output stream. Exactly the length of the file when the part was added
+         * is written, since it may have been sent to the server as part of the content length.
+         *
+         * @param outputStream Output stream to write to.
+         * @throws IOException When an IO exception occurs.
+         */
+        @Override
+        void writeTo(OutputStream outputStream) throws IOException {
+            try (InputStream inputStream = getInputStream()) {
+                long copied = copy(inputStream, outputStream, length);
+
+                if (copied != length) {
+                    throw new EOFException("file " + path + " changed size while it was being transferred");
+                }
+            }
+        }
+    }
+
+    /**
+     * A part whose content is read from an input stream, which can only be read once unless it is buffered.
+     */
+    private static class StreamPart extends Part {
+        /**
+         * Input stream containing the content of the part.
+         */
+        private final InputStream inputStream;
+
+        /**
+         * Length of the content, or {@code -1} if not known.
+         */
+        private long length;
+
+        /**
+         * Buffered content of the part, if it has been buffered.
+         */
+        private byte[] buffer;
+
+        /**
+         * Constructor.
+         *
+         * @param header      Delimiter and headers that precede the content of the part.
+         * @param inputStream Input stream containing the content of the part.
+         * @param length      Length of the content, or {@code -1} if not known.
+         */
+        StreamPart(byte[] header, InputStream inputStream, long length) {
+            super(header);
+            this.inputStream = inputStream;
+            this.length = length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        long getLength() {
+            return length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        InputStream getInputStream() {
+            if (buffer != null) {
+                return new ByteArrayInputStream(buffer);
+            }
+            if (length == -1) {
+                return inputStream;
+            }
+            return new BoundedInputStream(inputStream, length,
+                "input stream ended before the expected " + length + " bytes were read");
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        void writeTo(OutputStream outputStream) throws IOException {
+            if (buffer != null) {
+                outputStream.write(buffer);
+                return;
+            }
+
+            try (InputStream inputStream = this.inputStream) {
+                if (length == -1) {
+                    StreamUtils.shovel(inputStream, outputStream);
+                }
+                else if (copy(inputStream, outputStream, length) != length) {
+                    throw new EOFException("input stream ended before the expected " + length + " bytes were read");
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean isRepeatable() {
+            return buffer != null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        void buffer() throws IOException {
+            if (buffer == null) {
+                try (InputStream inputStream = getInputStream()) {
+                    buffer = StreamUtils.readBytes(inputStream);
+                }
+                length = buffer.length;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * An input stream that reads exactly the declared length of a part from another input stream. Any content
+     * past the declared length is not read, and an {@link EOFException} is thrown if the wrapped stream ends
+     * before the declared length has been read.
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+        /**
+         * Number of bytes left to read.
+         */
+        private long remaining;
+
+        /**
+         * Message of the exception thrown when the wrapped stream ends early.
+         */
+        private final String message;
+
+        /**
+         * Constructor.
+         *
+         * @param inputStream Input stream to read from.
+         * @param length      Number of bytes to read.
+         * @param message     Message of the exception thrown when the wrapped stream ends early.
+         */
+        BoundedInputStream(InputStream inputStream, long length, String message) {
+            super(inputStream);
+            this.remaining = length;
+            this.message = message;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+
+            int read = super.read();
+
+            if (read == -1) {
+                throw new EOFException(message);
+            }
+
+            remaining--;
+            return read;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining == 0) {
+                return -1;
+            }
+
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+
+            if (read == -1) {
+                throw new EOFException(message);
+            }
+
+            remaining -= read;
+            return read;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        /**
+         * Marks are not supported, since the remaining length could not be restored on reset.
+         *
+         * @return {@code false}
+         */
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds and encodes request URIs.
+ * <p>
+ * The complete URI of a request, including its query string, is written into a single {@link StringBuilder}
+ * without intermediate strings or re-parsing. Query parameter names and values are percent-encoded as UTF-8,
+ * leaving only the unreserved characters of RFC 3986 as-is. This class is intended to be used by
+ * {@link HttpClient} implementations so that every client library sends the same URI for the same request.
+ */
+public abstract class UriEncoder {
+    /**
+     * Upper case hexadecimal digits used when percent-encoding.
+     */
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Builds the complete URI of the given request, including any query parameters.
+     *
+     * @param request HTTP request.
+     * @return The complete, encoded URI of the request.
+     */
+    public static String encode(HttpRequest request) {
+        String uri = request.getUri();
+        MultiValuedMap queryParameters = request.getQueryParameters();
+
+        StringBuilder builder = new StringBuilder(uri.length() + estimateQueryLength(queryParameters));
+        builder.append(uri);
+        appendQuery(builder, queryParameters);
+
+        return builder.toString();
+    }
+
+    /**
+     * Appends the scheme, host, port and raw path of the given URI to the given builder. The port is omitted
+     * when it is the default port of the scheme. User information, the query and the fragment are not written.
+     *
+     * @param builder String builder to write to.
+     * @param uri     URI to write.
+     * @return The given string builder.
+     */
+    public static StringBuilder appendBaseUri(StringBuilder builder, URI uri) {
+        String scheme = uri.getScheme();
+        int port = uri.getPort();
+
+        builder.append(scheme).append("://").append(uri.getHost());
+
+        if (port != -1 && !(scheme.equalsIgnoreCase("https") && port == 443) && !(scheme.equalsIgnoreCase("http") && port == 80)) {
+            builder.append(':').append(port);
+        }
+
+        String path = uri.getRawPath();
+        if (path != null) {
+            builder.append(path);
+        }
+
+        return builder;
+    }
+
+    /**
+     * Appends the given parameters to the given builder as an encoded query string, including the leading
+     * {@code ?}. Nothing is written if there are no parameters. Parameters without any values are written
+     * with an empty value.
+     *
+     * @param builder    String builder to write to.
+     * @param parameters Query parameters.
+     * @return The given string builder.
+     */
+    public static StringBuilder appendQuery(StringBuilder builder, Map<String, List<String>> parameters) {
+        char separator = '?';
+
+        for (Map.Entry<String, List<String>> entry : parameters.entrySet()) {
+            List<String> values = entry.getValue();
+
+            if (values == null || values.isEmpty()) {
+                builder.append(separator);
+                appendEncoded(builder, entry.getKey()).append('=');
+                separator = '&';
+                continue;
+            }
+
+            for (String value : values) {
+                builder.append(separator);
+                appendEncoded(builder, entry.getKey()).append('=');
+                if (value != null) {
+                    appendEncoded(builder, value);
+                }
+                separator = '&';
+            }
+        }
+
+        return builder;
+    }
+
+    /**
+     * Appends the given value to the given builder, percent-encoding every character that is not an
+     * unreserved character as defined by RFC 3986. Characters are encoded as UTF-8.
+     *
+     * @param builder String builder to write to.
+     * @param value   Value to encode.
+     * @return The given string builder.
+     */
+    public static StringBuilder appendEncoded(StringBuilder builder, String value) {
+        int length = value.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+
+            if (isUnreserved(c)) {
+                builder.append(c);
+            }
+            else if (c < 0x80) {
+                appendEscaped(builder, c);
+            }
+            else if (c < 0x800) {
+                appendEscaped(builder, 0xC0 | (c >> 6));
+                appendEscaped(builder, 0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendEscaped(builder, 0xF0 | (codePoint >> 18));
+                appendEscaped(builder, 0x80 | ((codePoint >> 12) & 0x3F));
+                appendEscaped(builder, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendEscaped(builder, 0x80 | (codePoint & 0x3F));
+            }
+            else if (Character.isSurrogate(c)) {
+                // An unpaired surrogate can not be represented in UTF-8.
+                appendEscaped(builder, '?');
+            }
+            else {
+                appendEscaped(builder, 0xE0 | (c >> 12));
+                appendEscaped(builder, 0x80 | ((c >> 6) & 0x3F));
+                appendEscaped(builder, 0x80 | (c & 0x3F));
+            }
+        }
+
+        return builder;
+    }
+
+    /**
+     * Decodes a percent-encoded UTF-8 string. Unlike {@link java.net.URLDecoder}, the {@code +} character
+     * is not treated as a space.
+     *
+     * @param value Value to decode.
+     * @return The decoded value.
+     * @throws IllegalArgumentException When the value contains an invalid escape sequence.
+     */
+    public static String decode(String value) {
+        int index = value.indexOf('%');
+
+        if (index == -1) {
+            return value;
+        }
+
+        int length = value.length();
+        StringBuilder builder = new StringBuilder(length);
+        builder.append(value, 0, index);
+
+        ByteArrayOutputStream bytes = null;
+
+        while (index < length) {
+            char c = value.charAt(index);
+
+            if (c != '%') {
+                builder.append(c);
+                index++;
+                continue;
+            }
+
+            if (bytes == null) {
+                bytes = new ByteArrayOutputStream(length / 3);
+            }
+            else {
+                bytes.reset();
+            }
+
+            while (index < length && value.charAt(index) == '%') {
+                if (index + 2 >= length) {
+                    throw new IllegalArgumentException("incomplete escape sequence in \"" + value + "\"");
+                }
+
+                int high = Character.digit(value.charAt(index + 1), 16);
+                int low = Character.digit(value.charAt(index + 2), 16);
+
+                if (high == -1 || low == -1) {
+                    throw new IllegalArgumentException("invalid escape sequence in \"" + value + "\"");
+                }
+
+                bytes.write((high << 4) | low);
+                index += 3;
+            }
+
+            builder.append(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Parses the given raw (still encoded) query string into a map of decoded query parameters.
+     * <p>
+     * Names and values are split before they are decoded so that encoded <code>&amp;</code> and <code>=</code>
+     * characters are retained as part of a parameter. Parameters without a value are given an empty value.
+     *
+     * @param query Raw query string, without the leading <code>?</code>.
+     * @return A map of the decoded query parameters.
+     * @throws IllegalArgumentException When the query contains an invalid escape sequence.
+     */
+    public static MultiValuedMap decodeQuery(String query) {
+        MultiValuedMap parameters = new MultiValuedMap();
+
+        if (query == null) {
+            return parameters;
+        }
+
+        int start = 0;
+        int length = query.length();
+
+        while (start < length) {
+            int end = query.indexOf('&', start);
+
+            if (end == -1) {
+                end = length;
+            }
+
+            if (end > start) {
+                int separator = query.indexOf('=', start);
+
+                if (separator == -1 || separator > end) {
+                    parameters.add(decode(query.substring(start, end)), "");
+                }
+                else {
+                    parameters.add(decode(query.substring(start, separator)), decode(query.substring(separator + 1, end)));
+                }
+            }
+
+            start = end + 1;
+        }
+
+        return parameters;
+    }
+
+    /**
+     * Returns whether the given character is an RFC 3986 unreserved character.
+     *
+     * @param c Character to check.
+     * @return Whether the character is unreserved.
+     */
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    /**
+     * Appends a percent-encoded byte to the given builder.
+     *
+     * @param builder String builder to write to.
+     * @param b       Byte to encode.
+     */
+    private static void appendEscaped(StringBuilder builder, int b) {
+        builder.append('%').append(HEX_DIGITS[(b >> 4) & 0x0F]).append(HEX_DIGITS[b & 0x0F]);
+    }
+
+    /**
+     * Estimates the length of the encoded query string so that the builder is sized once.
+     *
+     * @param parameters Query parameters.
+     * @return The estimated length of the query string.
+     */
+    private static int estimateQueryLength(Map<String, List<String>> parameters) {
+        int length = 0;
+
+        for (Map.Entry<String, List<String>> entry : parameters.entrySet()) {
+            int keyLength = entry.getKey().length() + 2;
+            List<String> values = entry.getValue();
+
+            if (values == null || values.isEmpty()) {
+                length += keyLength;
+                continue;
+            }
+
+            for (String value : values) {
+                length += keyLength + (value != null ? value.length() : 0);
+            }
+        }
+
+        return length + (length >> 2);
+    }
+}
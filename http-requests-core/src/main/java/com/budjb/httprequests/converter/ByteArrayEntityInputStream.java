@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.converter;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * An input stream that an {@link EntityWriter} may return when it has encoded the entire entity into a byte array.
+ * <p>
+ * The {@link EntityConverterManager} uses the array directly as the buffer of the resulting
+ * {@link com.budjb.httprequests.HttpEntity}, so the entity is not copied again and its exact length is known
+ * when the request is sent.
+ */
+public class ByteArrayEntityInputStream extends ByteArrayInputStream {
+    /**
+     * Contents of the entity.
+     */
+    private final byte[] bytes;
+
+    /**
+     * Constructor.
+     *
+     * @param bytes Contents of the entity. The array is not copied and must not be modified afterwards.
+     */
+    public ByteArrayEntityInputStream(byte[] bytes) {
+        super(bytes);
+        this.bytes = bytes;
+    }
+
+    /**
+     * Returns the contents of the entity.
+     *
+     * @return The contents of the entity.
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+}
@@ -149,6 +149,10 @@ public class EntityConverterManager {
                         contentType = writer.getContentType();
                     }
 
+                    if (inputStream instanceof ByteArrayEntityInputStream) {
+                        return new HttpEntity(((ByteArrayEntityInputStream) inputStream).getBytes(), contentType, characterSet);
+                    }
+
                     return new HttpEntity(inputStream, contentType, characterSet);
                 }
                 catch (Exception e) {
@@ -15,9 +15,9 @@
  */
 package com.budjb.httprequests.converter.bundled;
 
+import com.budjb.httprequests.converter.ByteArrayEntityInputStream;
 import com.budjb.httprequests.converter.EntityWriter;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 
 public class ByteArrayEntityWriter implements EntityWriter {
@@ -56,6 +56,6 @@ public class ByteArrayEntityWriter implements EntityWriter {
      */
     @Override
     public InputStream write(Object entity, String characterSet) throws Exception {
-        return new ByteArrayInputStream((byte[]) entity);
+        return new ByteArrayEntityInputStream((byte[]) entity);
     }
 }
@@ -16,20 +16,28 @@
 package com.budjb.httprequests.converter.bundled;
 
 import com.budjb.httprequests.FormData;
+import com.budjb.httprequests.converter.ByteArrayEntityInputStream;
 import com.budjb.httprequests.converter.EntityWriter;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
-import java.net.URLEncoder;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
 /**
  * An entity writer that formats form data.
+ * <p>
+ * Field names and values are encoded as <code>application/x-www-form-urlencoded</code> directly into a byte array
+ * of the exact length of the encoded form, without creating intermediate strings. The encoding matches
+ * {@link java.net.URLEncoder}.
  */
 public class FormDataEntityWriter implements EntityWriter {
+    /**
+     * Upper case hexadecimal digits used when percent-encoding.
+     */
+    private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
     /**
      * Returns a Content-Type of the converted object that will be set in the HTTP request.
      * <p>
@@ -65,20 +73,147 @@ public class FormDataEntityWriter implements EntityWriter {
      */
     @Override
     public InputStream write(Object entity, String characterSet) throws Exception {
-        if (characterSet == null) {
-            characterSet = Charset.defaultCharset().name();
-        }
+        Charset charset = characterSet != null ? Charset.forName(characterSet) : Charset.defaultCharset();
+        Map<String, List<String>> fields = ((FormData) entity).getFields();
+
+        // The form is encoded twice; the first pass only counts bytes so that the second pass can
+        // write into an array of the exact length.
+        byte[] target = new byte[encode(fields, charset, null)];
+        encode(fields, charset, target);
 
-        List<String> parts = new ArrayList<>();
+        return new ByteArrayEntityInputStream(target);
+    }
 
-        for (Map.Entry<String, List<String>> entry : ((FormData) entity).getFields().entrySet()) {
-            String k = URLEncoder.encode(entry.getKey(), characterSet);
+    /**
+     * Encodes the given form fields into the given array.
+     *
+     * @param fields  Form fields to encode.
+     * @param charset Character set used to encode characters that are not ASCII.
+     * @param target  Array to write to, or {@code null} to only count the encoded length.
+     * @return The length of the encoded form.
+     */
+    private static int encode(Map<String, List<String>> fields, Charset charset, byte[] target) {
+        boolean utf8 = charset.equals(StandardCharsets.UTF_8);
+        int position = 0;
 
+        for (Map.Entry<String, List<String>> entry : fields.entrySet()) {
             for (String value : entry.getValue()) {
-                parts.add(k + "=" + URLEncoder.encode(value, characterSet));
+                if (position > 0) {
+                    position = put(target, position, '&');
+                }
+
+                position = encode(entry.getKey(), charset, utf8, target, position);
+                position = put(target, position, '=');
+
+                if (value != null) {
+                    position = encode(value, charset, utf8, target, position);
+                }
             }
         }
 
-        return new ByteArrayInputStream(String.join("&", parts).getBytes(characterSet));
+        return position;
+    }
+
+    /**
+     * Encodes a single name or value into the given array.
+     *
+     * @param value    Value to encode.
+     * @param charset  Character set used to encode characters that are not ASCII.
+     * @param utf8     Whether the character set is UTF-8, which is encoded without allocating.
+     * @param target   Array to write to, or {@code null} to only count the encoded length.
+     * @param position Position in the array to start writing at.
+     * @return The position following the encoded value.
+     */
+    private static int encode(String value, Charset charset, boolean utf8, byte[] target, int position) {
+        int length = value.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+
+            if (isSafe(c)) {
+                position = put(target, position, c);
+            }
+            else if (c == ' ') {
+                position = put(target, position, '+');
+            }
+            else if (c < 0x80) {
+                position = escape(target, position, c);
+            }
+            else if (!utf8) {
+                // Characters that are not ASCII are encoded with the character set a run at a time.
+                int end = i + 1;
+                while (end < length && value.charAt(end) >= 0x80) {
+                    end++;
+                }
+                for (byte b : value.substring(i, end).getBytes(charset)) {
+                    position = escape(target, position, b);
+                }
+                i = end - 1;
+            }
+            else if (c < 0x800) {
+                position = escape(target, position, 0xC0 | (c >> 6));
+                position = escape(target, position, 0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                position = escape(target, position, 0xF0 | (codePoint >> 18));
+                position = escape(target, position, 0x80 | ((codePoint >> 12) & 0x3F));
+                position = escape(target, position, 0x80 | ((codePoint >> 6) & 0x3F));
+                position = escape(target, position, 0x80 | (codePoint & 0x3F));
+            }
+            else if (Character.isSurrogate(c)) {
+                // An unpaired surrogate can not be represented in UTF-8.
+                position = escape(target, position, '?');
+            }
+            else {
+                position = escape(target, position, 0xE0 | (c >> 12));
+                position = escape(target, position, 0x80 | ((c >> 6) & 0x3F));
+                position = escape(target, position, 0x80 | (c & 0x3F));
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Returns whether the given character is left as-is by {@link java.net.URLEncoder}.
+     *
+     * @param c Character to check.
+     * @return Whether the character is written without encoding.
+     */
+    private static boolean isSafe(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '*';
+    }
+
+    /**
+     * Writes a single byte to the given array.
+     *
+     * @param target   Array to write to, or {@code null} to only count the encoded length.
+     * @param position Position in the array to write at.
+     * @param b        Byte to write.
+     * @return The position following the written byte.
+     */
+    private static int put(byte[] target, int position, int b) {
+        if (target != null) {
+            target[position] = (byte) b;
+        }
+        return position + 1;
+    }
+
+    /**
+     * Writes a percent-encoded byte to the given array.
+     *
+     * @param target   Array to write to, or {@code null} to only count the encoded length.
+     * @param position Position in the array to write at.
+     * @param b        Byte to encode.
+     * @return The position following the encoded byte.
+     */
+    private static int escape(byte[] target, int position, int b) {
+        if (target != null) {
+            target[position] = '%';
+            target[position + 1] = HEX_DIGITS[(b >> 4) & 0x0F];
+            target[position + 2] = HEX_DIGITS[b & 0x0F];
+        }
+        return position + 3;
     }
 }
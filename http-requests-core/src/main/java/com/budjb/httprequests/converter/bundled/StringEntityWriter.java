@@ -16,9 +16,9 @@
 package com.budjb.httprequests.converter.bundled;
 
 import com.budjb.httprequests.Ordered;
+import com.budjb.httprequests.converter.ByteArrayEntityInputStream;
 import com.budjb.httprequests.converter.EntityWriter;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 
@@ -65,7 +65,7 @@ public class StringEntityWriter implements EntityWriter, Ordered {
             characterSet = Charset.defaultCharset().name();
         }
 
-        return new ByteArrayInputStream(((String) entity).getBytes(characterSet));
+        return new ByteArrayEntityInputStream(((String) entity).getBytes(characterSet));
     }
 
     /**
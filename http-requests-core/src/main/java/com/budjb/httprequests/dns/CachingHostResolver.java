@@ -0,0 +1,261 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.dns;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link HostResolver} that caches the addresses resolved by another resolver.
+ * <p>
+ * Addresses are cached for a fixed time to live. An entry that is used after the refresh time has passed,
+ * but before it expires, is refreshed in the background while the cached addresses continue to be served,
+ * so that hosts in regular use are never resolved on a request thread once they have been cached. If a
+ * background refresh fails, the cached addresses are kept until they expire.
+ * <p>
+ * Each lookup returns the addresses of a host rotated by one position, so that connections are spread
+ * across all of the addresses of a host.
+ * <p>
+ * Background refreshes run on a single daemon thread, which is stopped when the resolver is closed.
+ */
+public class CachingHostResolver implements HostResolver, Closeable {
+    /**
+     * Resolver used to resolve hosts that are not cached.
+     */
+    private final HostResolver delegate;
+
+    /**
+     * Cached entries, keyed by host name.
+     */
+    private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Executor that runs background refreshes.
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "http-requests-dns-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * How long resolved addresses are cached, in milliseconds.
+     */
+    private long timeToLive = 60000;
+
+    /**
+     * How long after an entry was resolved it is refreshed in the background when used, in milliseconds.
+     */
+    private long refreshAfter = 45000;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate Resolver used to resolve hosts that are not cached.
+     */
+    public CachingHostResolver(HostResolver delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Constructor that caches the addresses resolved by the JVM.
+     */
+    public CachingHostResolver() {
+        this(new SystemHostResolver());
+    }
+
+    /**
+     * Returns how long resolved addresses are cached, in milliseconds.
+     *
+     * @return The time to live, in milliseconds.
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Sets how long resolved addresses are cached, in milliseconds.
+     *
+     * @param timeToLive The time to live, in milliseconds.
+     * @return The instance of this class the method was called with.
+     */
+    public CachingHostResolver setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+        return this;
+    }
+
+    /**
+     * Returns how long after an entry was resolved it is refreshed in the background when used, in milliseconds.
+     *
+     * @return The refresh time, in milliseconds.
+     */
+    public long getRefreshAfter() {
+        return refreshAfter;
+    }
+
+    /**
+     * Sets how long after an entry was resolved it is refreshed in the background when used, in milliseconds.
+     * Entries are not refreshed in the background if this is not less than the time to live.
+     *
+     * @param refreshAfter The refresh time, in milliseconds.
+     * @return The instance of this class the method was called with.
+     */
+    public CachingHostResolver setRefreshAfter(long refreshAfter) {
+        this.refreshAfter = refreshAfter;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        String key = host.toLowerCase();
+        long now = System.nanoTime();
+        Entry entry = cache.get(key);
+
+        if (entry == null || entry.isExpired(now)) {
+            entry = new Entry(delegate.resolve(host), now);
+            cache.put(key, entry);
+        }
+        else if (entry.isRefreshDue(now) && entry.refreshing.compareAndSet(false, true)) {
+            refresh(key, host, entry);
+        }
+
+        return entry.next();
+    }
+
+    /**
+     * Removes all cached entries.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Stops the background refresh thread.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Resolves a host in the background and replaces its cached entry with the result.
+     *
+     * @param key   Cache key of the host.
+     * @param host  Host name to resolve.
+     * @param entry Entry that is being refreshed.
+     */
+    private void refresh(String key, String host, Entry entry) {
+        try {
+            executor.execute(() -> {
+                try {
+                    cache.replace(key, entry, new Entry(delegate.resolve(host), System.nanoTime()));
+                }
+                catch (UnknownHostException | RuntimeException e) {
+                    // The cached addresses remain in use until they expire.
+                    entry.refreshing.set(false);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    /**
+     * The cached addresses of a host.
+     */
+    private class Entry {
+        /**
+         * Resolved addresses.
+         */
+        private final InetAddress[] addresses;
+
+        /**
+         * Time the addresses were resolved, in nanoseconds.
+         */
+        private final long resolved;
+
+        /**
+         * Whether a background refresh of the entry is in progress.
+         */
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        /**
+         * Position of the first address of the next lookup.
+         */
+        private final AtomicInteger next = new AtomicInteger();
+
+        /**
+         * Constructor.
+         *
+         * @param addresses Resolved addresses.
+         * @param resolved  Time the addresses were resolved, in nanoseconds.
+         */
+        Entry(InetAddress[] addresses, long resolved) {
+            this.addresses = addresses.clone();
+            this.resolved = resolved;
+        }
+
+        /**
+         * Returns whether the entry has expired at the given time.
+         *
+         * @param now Current time, in nanoseconds.
+         * @return Whether the entry has expired.
+         */
+        boolean isExpired(long now) {
+            return now - resolved >= TimeUnit.MILLISECONDS.toNanos(timeToLive);
+        }
+
+        /**
+         * Returns whether the entry should be refreshed at the given time.
+         *
+         * @param now Current time, in nanoseconds.
+         * @return Whether the entry should be refreshed.
+         */
+        boolean isRefreshDue(long now) {
+            return now - resolved >= TimeUnit.MILLISECONDS.toNanos(refreshAfter);
+        }
+
+        /**
+         * Returns a copy of the addresses, rotated so that each lookup starts with the next address.
+         *
+         * @return The addresses of the host.
+         */
+        InetAddress[] next() {
+            int length = addresses.length;
+            InetAddress[] result = new InetAddress[length];
+
+            if (length == 0) {
+                return result;
+            }
+
+            int offset = Math.floorMod(next.getAndIncrement(), length);
+
+            for (int i = 0; i < length; i++) {
+                result[i] = addresses[(offset + i) % length];
+            }
+
+            return result;
+        }
+    }
+}
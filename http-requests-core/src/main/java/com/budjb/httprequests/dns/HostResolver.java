@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Resolves host names to IP addresses for {@link com.budjb.httprequests.HttpClient} implementations
+ * that allow host name resolution to be customized.
+ */
+public interface HostResolver {
+    /**
+     * Resolves the given host name to its IP addresses.
+     *
+     * @param host Host name to resolve.
+     * @return The IP addresses of the host, in the order they should be tried.
+     * @throws UnknownHostException When the host can not be resolved.
+     */
+    InetAddress[] resolve(String host) throws UnknownHostException;
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.exception;
+
+/**
+ * Thrown for requests of a batch that did not complete before the deadline of the batch.
+ */
+public class BatchDeadlineExceededException extends HttpClientException {
+    public BatchDeadlineExceededException(long deadline) {
+        super("request did not complete within the batch deadline of " + deadline + " milliseconds");
+    }
+}
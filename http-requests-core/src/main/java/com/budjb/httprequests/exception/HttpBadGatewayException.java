@@ -21,4 +21,8 @@ public class HttpBadGatewayException extends HttpStatusException {
     public HttpBadGatewayException(HttpResponse response) {
         super(response);
     }
+
+    public HttpBadGatewayException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
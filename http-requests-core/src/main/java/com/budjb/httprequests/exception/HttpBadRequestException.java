@@ -21,4 +21,8 @@ public class HttpBadRequestException extends HttpStatusException {
     public HttpBadRequestException(HttpResponse response) {
         super(response);
     }
+
+    public HttpBadRequestException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpConflictException extends HttpStatusException {
     public HttpConflictException(HttpResponse response) {
         super(response);
     }
+
+    public HttpConflictException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpExpectationFailedException extends HttpStatusException {
     public HttpExpectationFailedException(HttpResponse response) {
         super(response);
     }
+
+    public HttpExpectationFailedException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpForbiddenException extends HttpStatusException {
     public HttpForbiddenException(HttpResponse response) {
         super(response);
     }
+
+    public HttpForbiddenException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
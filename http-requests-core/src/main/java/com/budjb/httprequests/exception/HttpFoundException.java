@@ -21,4 +21,8 @@ public class HttpFoundException extends HttpStatusException {
     public HttpFoundException(HttpResponse response) {
         super(response);
     }
+
+    public HttpFoundException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
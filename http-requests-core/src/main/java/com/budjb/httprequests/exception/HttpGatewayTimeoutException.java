@@ -21,4 +21,8 @@ public class HttpGatewayTimeoutException extends HttpStatusException {
     public HttpGatewayTimeoutException(HttpResponse response) {
         super(response);
     }
+
+    public HttpGatewayTimeoutException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpGoneException extends HttpStatusException {
     public HttpGoneException(HttpResponse response) {
         super(response);
     }
+
+    public HttpGoneException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
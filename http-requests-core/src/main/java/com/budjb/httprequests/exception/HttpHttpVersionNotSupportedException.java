@@ -21,4 +21,8 @@ public class HttpHttpVersionNotSupportedException extends HttpStatusException {
     public HttpHttpVersionNotSupportedException(HttpResponse response) {
         super(response);
     }
+
+    public HttpHttpVersionNotSupportedException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpInternalServerErrorException extends HttpStatusException {
     public HttpInternalServerErrorException(HttpResponse response) {
         super(response);
     }
+
+    public HttpInternalServerErrorException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpLengthRequiredException extends HttpStatusException {
     public HttpLengthRequiredException(HttpResponse response) {
         super(response);
     }
+
+    public HttpLengthRequiredException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
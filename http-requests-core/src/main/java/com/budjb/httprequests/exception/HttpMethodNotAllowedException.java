@@ -21,4 +21,8 @@ public class HttpMethodNotAllowedException extends HttpStatusException {
     public HttpMethodNotAllowedException(HttpResponse response) {
         super(response);
     }
+
+    public HttpMethodNotAllowedException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpMovedPermanentlyException extends HttpStatusException {
     public HttpMovedPermanentlyException(HttpResponse response) {
         super(response);
     }
+
+    public HttpMovedPermanentlyException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpMultipleChoicesException extends HttpStatusException {
     public HttpMultipleChoicesException(HttpResponse response) {
         super(response);
     }
+
+    public HttpMultipleChoicesException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpNotAcceptableException extends HttpStatusException {
     public HttpNotAcceptableException(HttpResponse response) {
         super(response);
     }
+
+    public HttpNotAcceptableException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
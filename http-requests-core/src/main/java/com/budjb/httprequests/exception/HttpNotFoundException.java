@@ -21,4 +21,8 @@ public class HttpNotFoundException extends HttpStatusException {
     public HttpNotFoundException(HttpResponse response) {
         super(response);
     }
+
+    public HttpNotFoundException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpNotImplementedException extends HttpStatusException {
     public HttpNotImplementedException(HttpResponse response) {
         super(response);
     }
+
+    public HttpNotImplementedException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpNotModifiedException extends HttpStatusException {
     public HttpNotModifiedException(HttpResponse response) {
         super(response);
     }
+
+    public HttpNotModifiedException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpPaymentRequiredException extends HttpStatusException {
     public HttpPaymentRequiredException(HttpResponse response) {
         super(response);
     }
+
+    public HttpPaymentRequiredException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpPreconditionFailedException extends HttpStatusException {
     public HttpPreconditionFailedException(HttpResponse response) {
         super(response);
     }
+
+    public HttpPreconditionFailedException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
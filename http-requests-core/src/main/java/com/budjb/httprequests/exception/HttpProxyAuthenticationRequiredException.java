@@ -21,4 +21,8 @@ public class HttpProxyAuthenticationRequiredException extends HttpStatusExceptio
     public HttpProxyAuthenticationRequiredException(HttpResponse response) {
         super(response);
     }
+
+    public HttpProxyAuthenticationRequiredException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpRequestEntityTooLargeException extends HttpStatusException {
     public HttpRequestEntityTooLargeException(HttpResponse response) {
         super(response);
     }
+
+    public HttpRequestEntityTooLargeException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
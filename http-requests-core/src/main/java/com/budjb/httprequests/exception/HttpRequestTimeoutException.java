@@ -21,4 +21,8 @@ public class HttpRequestTimeoutException extends HttpStatusException {
     public HttpRequestTimeoutException(HttpResponse response) {
         super(response);
     }
+
+    public HttpRequestTimeoutException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpRequestUriTooLongException extends HttpStatusException {
     public HttpRequestUriTooLongException(HttpResponse response) {
         super(response);
     }
+
+    public HttpRequestUriTooLongException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
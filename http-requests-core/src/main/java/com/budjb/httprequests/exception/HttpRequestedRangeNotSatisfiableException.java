@@ -21,4 +21,8 @@ public class HttpRequestedRangeNotSatisfiableException extends HttpStatusExcepti
     public HttpRequestedRangeNotSatisfiableException(HttpResponse response) {
         super(response);
     }
+
+    public HttpRequestedRangeNotSatisfiableException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpSeeOtherException extends HttpStatusException {
     public HttpSeeOtherException(HttpResponse response) {
         super(response);
     }
+
+    public HttpSeeOtherException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpServiceUnavailableException extends HttpStatusException {
     public HttpServiceUnavailableException(HttpResponse response) {
         super(response);
     }
+
+    public HttpServiceUnavailableException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -17,53 +17,49 @@ package com.budjb.httprequests.exception;
 
 import com.budjb.httprequests.HttpResponse;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * An exception representing a non-2XX HTTP response. Contains both the
  * HTTP status of the response and the response object itself.
  */
 public class HttpStatusException extends RuntimeException {
     /**
-     * HTTP statuses mapped to exception types.
+     * Exception factories indexed by the HTTP status they represent.
      */
-    private static final Map<Integer, Class<? extends HttpStatusException>> httpStatusCodes;
+    private static final Factory[] factories = new Factory[600];
 
     static {
-        httpStatusCodes = new HashMap<>();
-        httpStatusCodes.put(300, HttpMultipleChoicesException.class);
-        httpStatusCodes.put(301, HttpMovedPermanentlyException.class);
-        httpStatusCodes.put(302, HttpFoundException.class);
-        httpStatusCodes.put(303, HttpSeeOtherException.class);
-        httpStatusCodes.put(304, HttpNotModifiedException.class);
-        httpStatusCodes.put(305, HttpUseProxyException.class);
-        httpStatusCodes.put(307, HttpTemporaryRedirectException.class);
-        httpStatusCodes.put(400, HttpBadRequestException.class);
-        httpStatusCodes.put(401, HttpUnauthorizedException.class);
-        httpStatusCodes.put(402, HttpPaymentRequiredException.class);
-        httpStatusCodes.put(403, HttpForbiddenException.class);
-        httpStatusCodes.put(404, HttpNotFoundException.class);
-        httpStatusCodes.put(405, HttpMethodNotAllowedException.class);
-        httpStatusCodes.put(406, HttpNotAcceptableException.class);
-        httpStatusCodes.put(407, HttpProxyAuthenticationRequiredException.class);
-        httpStatusCodes.put(408, HttpRequestTimeoutException.class);
-        httpStatusCodes.put(409, HttpConflictException.class);
-        httpStatusCodes.put(410, HttpGoneException.class);
-        httpStatusCodes.put(411, HttpLengthRequiredException.class);
-        httpStatusCodes.put(412, HttpPreconditionFailedException.class);
-        httpStatusCodes.put(413, HttpRequestEntityTooLargeException.class);
-        httpStatusCodes.put(414, HttpRequestUriTooLongException.class);
-        httpStatusCodes.put(415, HttpUnsupportedMediaTypeException.class);
-        httpStatusCodes.put(416, HttpRequestedRangeNotSatisfiableException.class);
-        httpStatusCodes.put(417, HttpExpectationFailedException.class);
-        httpStatusCodes.put(422, HttpUnprocessableEntityException.class);
-        httpStatusCodes.put(500, HttpInternalServerErrorException.class);
-        httpStatusCodes.put(501, HttpNotImplementedException.class);
-        httpStatusCodes.put(502, HttpBadGatewayException.class);
-        httpStatusCodes.put(503, HttpServiceUnavailableException.class);
-        httpStatusCodes.put(504, HttpGatewayTimeoutException.class);
-        httpStatusCodes.put(505, HttpHttpVersionNotSupportedException.class);
+        register(300, HttpMultipleChoicesException::new);
+        register(301, HttpMovedPermanentlyException::new);
+        register(302, HttpFoundException::new);
+        register(303, HttpSeeOtherException::new);
+        register(304, HttpNotModifiedException::new);
+        register(305, HttpUseProxyException::new);
+        register(307, HttpTemporaryRedirectException::new);
+        register(400, HttpBadRequestException::new);
+        register(401, HttpUnauthorizedException::new);
+        register(402, HttpPaymentRequiredException::new);
+        register(403, HttpForbiddenException::new);
+        register(404, HttpNotFoundException::new);
+        register(405, HttpMethodNotAllowedException::new);
+        register(406, HttpNotAcceptableException::new);
+        register(407, HttpProxyAuthenticationRequiredException::new);
+        register(408, HttpRequestTimeoutException::new);
+        register(409, HttpConflictException::new);
+        register(410, HttpGoneException::new);
+        register(411, HttpLengthRequiredException::new);
+        register(412, HttpPreconditionFailedException::new);
+        register(413, HttpRequestEntityTooLargeException::new);
+        register(414, HttpRequestUriTooLongException::new);
+        register(415, HttpUnsupportedMediaTypeException::new);
+        register(416, HttpRequestedRangeNotSatisfiableException::new);
+        register(417, HttpExpectationFailedException::new);
+        register(422, HttpUnprocessableEntityException::new);
+        register(500, HttpInternalServerErrorException::new);
+        register(501, HttpNotImplementedException::new);
+        register(502, HttpBadGatewayException::new);
+        register(503, HttpServiceUnavailableException::new);
+        register(504, HttpGatewayTimeoutException::new);
+        register(505, HttpHttpVersionNotSupportedException::new);
     }
 
     /**
@@ -81,9 +77,21 @@ public class HttpStatusException extends RuntimeException {
      *
      * @param httpResponse Response properties of the HTTP request.
      */
-
     public HttpStatusException(HttpResponse httpResponse) {
-        super("the HTTP request returned HTTP status " + httpResponse.getStatus());
+        this(httpResponse, true);
+    }
+
+    /**
+     * Constructor.
+     * <p>
+     * Filling in the stack trace is the most expensive part of creating an exception. Exceptions that are only used
+     * to handle expected error responses may be created without one.
+     *
+     * @param httpResponse       Response properties of the HTTP request.
+     * @param writableStackTrace Whether the stack trace of the exception is filled in.
+     */
+    public HttpStatusException(HttpResponse httpResponse, boolean writableStackTrace) {
+        super("the HTTP request returned HTTP status " + httpResponse.getStatus(), null, true, writableStackTrace);
 
         response = httpResponse;
         status = httpResponse.getStatus();
@@ -96,15 +104,33 @@ public class HttpStatusException extends RuntimeException {
      * @return An appropriate subclass of the <code>HttpStatusException</code> for the request's status code.
      */
     public static HttpStatusException build(HttpResponse response) {
-        if (!httpStatusCodes.containsKey(response.getStatus())) {
-            return new HttpStatusException(response);
-        }
-        try {
-            return httpStatusCodes.get(response.getStatus()).getConstructor(HttpResponse.class).newInstance(response);
-        }
-        catch (Exception e) {
-            throw new RuntimeException("unexpected error constructing an HttpStatusException", e);
+        return build(response, true);
+    }
+
+    /**
+     * Returns the proper exception type for the given HTTP status code.
+     *
+     * @param response           Response properties of the request.
+     * @param writableStackTrace Whether the stack trace of the exception is filled in.
+     * @return An appropriate subclass of the <code>HttpStatusException</code> for the request's status code.
+     */
+    public static HttpStatusException build(HttpResponse response, boolean writableStackTrace) {
+        int status = response.getStatus();
+
+        if (status >= 0 && status < factories.length && factories[status] != null) {
+            return factories[status].create(response, writableStackTrace);
         }
+        return new HttpStatusException(response, writableStackTrace);
+    }
+
+    /**
+     * Registers the factory of the exception that represents the given HTTP status.
+     *
+     * @param status  HTTP status.
+     * @param factory Factory of the exception.
+     */
+    private static void register(int status, Factory factory) {
+        factories[status] = factory;
     }
 
     /**
@@ -124,4 +150,19 @@ public class HttpStatusException extends RuntimeException {
     public HttpResponse getResponse() {
         return response;
     }
+
+    /**
+     * Creates an exception representing an HTTP status.
+     */
+    @FunctionalInterface
+    private interface Factory {
+        /**
+         * Creates the exception.
+         *
+         * @param response           Response properties of the request.
+         * @param writableStackTrace Whether the stack trace of the exception is filled in.
+         * @return The exception.
+         */
+        HttpStatusException create(HttpResponse response, boolean writableStackTrace);
+    }
 }
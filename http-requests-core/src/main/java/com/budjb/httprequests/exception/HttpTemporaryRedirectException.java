@@ -21,4 +21,8 @@ public class HttpTemporaryRedirectException extends HttpStatusException {
     public HttpTemporaryRedirectException(HttpResponse request) {
         super(request);
     }
+
+    public HttpTemporaryRedirectException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
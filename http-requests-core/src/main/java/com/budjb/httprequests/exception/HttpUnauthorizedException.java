@@ -21,4 +21,8 @@ public class HttpUnauthorizedException extends HttpStatusException {
     public HttpUnauthorizedException(HttpResponse response) {
         super(response);
     }
+
+    public HttpUnauthorizedException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpUnprocessableEntityException extends HttpStatusException {
     public HttpUnprocessableEntityException(HttpResponse response) {
         super(response);
     }
+
+    public HttpUnprocessableEntityException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpUnsupportedMediaTypeException extends HttpStatusException {
     public HttpUnsupportedMediaTypeException(HttpResponse response) {
         super(response);
     }
+
+    public HttpUnsupportedMediaTypeException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
@@ -21,4 +21,8 @@ public class HttpUseProxyException extends HttpStatusException {
     public HttpUseProxyException(HttpResponse response) {
         super(response);
     }
+
+    public HttpUseProxyException(HttpResponse response, boolean writableStackTrace) {
+        super(response, writableStackTrace);
+    }
 }
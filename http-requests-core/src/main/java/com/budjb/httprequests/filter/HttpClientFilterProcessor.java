@@ -171,6 +171,25 @@ public class HttpClientFilterProcessor {
         return outputStream;
     }
 
+    /**
+     * Returns whether there is any one registered {@link OutputStreamFilter}.
+     *
+     * @return Whether there is any one registered {@link OutputStreamFilter}.
+     */
+    public boolean hasOutputStreamFilters() {
+        return filters.stream().anyMatch(f -> f instanceof OutputStreamFilter);
+    }
+
+    /**
+     * Returns whether the length of the request entity is preserved by every registered {@link OutputStreamFilter},
+     * so that it can be sent to the server before the entity is written.
+     *
+     * @return Whether the length of the request entity is preserved by the output stream filters.
+     */
+    public boolean isContentLengthPreserved() {
+        return getRequestEntityFilters().stream().allMatch(OutputStreamFilter::isLengthPreserving);
+    }
+
     /**
      * Returns whether there is any one registered {@link RetryFilter}.
      *
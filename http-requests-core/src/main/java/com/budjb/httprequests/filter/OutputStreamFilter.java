@@ -29,4 +29,15 @@ public interface OutputStreamFilter extends HttpClientFilter {
      * @return Filtered request {@link OutputStream}.
      */
     OutputStream filter(OutputStream outputStream);
+
+    /**
+     * Returns whether the filter writes exactly the bytes written to the filtered {@link OutputStream}.
+     * Clients only send the length of a request entity up front when every output stream filter preserves it,
+     * so filters that only observe the entity should return {@code true}.
+     *
+     * @return Whether the filter preserves the length of the request entity.
+     */
+    default boolean isLengthPreserving() {
+        return false;
+    }
 }
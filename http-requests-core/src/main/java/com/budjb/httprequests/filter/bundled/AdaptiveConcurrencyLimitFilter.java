@@ -0,0 +1,612 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled;
+
+import com.budjb.httprequests.HttpContext;
+import com.budjb.httprequests.HttpRequestsUtil;
+import com.budjb.httprequests.HttpResponse;
+import com.budjb.httprequests.exception.ConcurrencyLimitExceededException;
+import com.budjb.httprequests.filter.LifecycleFilter;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A filter that limits the number of outstanding requests to each origin (scheme, host and port).
+ * <p>
+ * The limit of each origin adapts to the observed round-trip latency and error rate using an
+ * additive-increase/multiplicative-decrease algorithm. While requests succeed with a latency close
+ * to the smallest latency observed, and the origin is busy enough to use its limit, the limit grows by
+ * roughly one request per round trip. When a request fails, is answered with a status indicating that
+ * the server is overloaded, or takes longer than the smallest latency multiplied by the latency
+ * tolerance, the limit is multiplied by the backoff ratio.
+ * <p>
+ * Requests that exceed the limit either wait for a permit up to the queue timeout, or are rejected
+ * immediately, depending on the {@link OverflowPolicy}. Either way, a request that does not receive a
+ * permit fails with a {@link ConcurrencyLimitExceededException}.
+ * <p>
+ * The state of each origin is maintained with atomic variables only, so the filter does not introduce
+ * lock contention of its own. The same filter instance should be shared by all requests to an origin,
+ * and should be configured before it is used.
+ */
+public class AdaptiveConcurrencyLimitFilter implements LifecycleFilter, Closeable {
+    /**
+     * Describes what happens to a request that exceeds the concurrency limit.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The request waits for a permit up to the queue timeout.
+         */
+        QUEUE,
+
+        /**
+         * The request is rejected immediately.
+         */
+        REJECT
+    }
+
+    /**
+     * Name of the permit held by a request in the {@link HttpContext}.
+     */
+    private static final String PERMIT_NAME = "com.budjb.httprequests.filter.concurrency.Permit";
+
+    /**
+     * Longest time a waiting request parks before checking for a permit again.
+     */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * Number of samples after which the smallest observed latency is reset, so that it can follow
+     * lasting changes in the latency of an origin.
+     */
+    private static final long MIN_LATENCY_WINDOW = 1000;
+
+    /**
+     * Thread local that stores the HTTP context of the request in the current thread.
+     */
+    private final ThreadLocal<HttpContext> context = new ThreadLocal<>();
+
+    /**
+     * Concurrency limits, keyed by origin.
+     */
+    private final ConcurrentMap<String, ConcurrencyLimit> limits = new ConcurrentHashMap<>();
+
+    /**
+     * Limit of an origin that has not been seen before.
+     */
+    private int initialLimit = 20;
+
+    /**
+     * Smallest limit of an origin.
+     */
+    private int minLimit = 1;
+
+    /**
+     * Largest limit of an origin.
+     */
+    private int maxLimit = 200;
+
+    /**
+     * Ratio the limit is multiplied by when a request fails or is too slow.
+     */
+    private double backoffRatio = 0.9;
+
+    /**
+     * Multiple of the smallest observed latency above which a request is considered too slow.
+     */
+    private double latencyTolerance = 2.0;
+
+    /**
+     * What happens to a request that exceeds the limit.
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.QUEUE;
+
+    /**
+     * How long a request waits for a permit when queueing, in milliseconds.
+     */
+    private long queueTimeout = 1000;
+
+    /**
+     * Returns the limit of an origin that has not been seen before.
+     *
+     * @return The initial limit.
+     */
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    /**
+     * Sets the limit of an origin that has not been seen before.
+     *
+     * @param initialLimit The initial limit.
+     * @return The instance of this class the method was called with.
+     */
+    public AdaptiveConcurrencyLimitFilter setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+        return this;
+    }
+
+    /**
+     * Returns the smallest limit of an origin.
+     *
+     * @return The smallest limit.
+     */
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    /**
+     * Sets the smallest limit of an origin. Must be at least 1.
+     *
+     * @param minLimit The smallest limit.
+     * @return The instance of this class the method was called with.
+     */
+    public AdaptiveConcurrencyLimitFilter setMinLimit(int minLimit) {
+        if (minLimit < 1) {
+            throw new IllegalArgumentException("minimum limit must be at least 1");
+        }
+        this.minLimit = minLimit;
+        return this;
+    }
+
+    /**
+     * Returns the largest limit of an origin.
+     *
+     * @return The largest limit.
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * Sets the largest limit of an origin.
+     *
+     * @param maxLimit The largest limit.
+     * @return The instance of this class the method was called with.
+     */
+    public AdaptiveConcurrencyLimitFilter setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+        return this;
+    }
+
+    /**
+     * Returns the ratio the limit is multiplied by when a request fails or is too slow.
+     *
+     * @return The backoff ratio.
+     */
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    /**
+     * Sets the ratio the limit is multiplied by when a request fails or is too slow.
+     *
+     * @param backoffRatio The backoff ratio, between 0 and 1.
+     * @return The instance of this class the method was called with.
+     */
+    public AdaptiveConcurrencyLimitFilter setBackoffRatio(double backoffRatio) {
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoff ratio must be between 0 and 1");
+        }
+        this.backoffRatio = backoffRatio;
+        return this;
+    }
+
+    /**
+     * Returns the multiple of the smallest observed latency above which a request is considered too slow.
+     *
+     * @return The latency tolerance.
+     */
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    /**
+     * Sets the multiple of the smallest observed latency above which a request is considered too slow.
+     *
+     * @param latencyTolerance The latency tolerance, greater than 1.
+     * @return The instance of this class the method was called with.
+     */
+    public AdaptiveConcurrencyLimitFilter setLatencyTolerance(double latencyTolerance) {
+        if (latencyTolerance <= 1) {
+            throw new IllegalArgumentException("latency tolerance must be greater than 1");
+        }
+        this.latencyTolerance = latencyTolerance;
+        return this;
+    }
+
+    /**
+     * Returns what happens to a request that exceeds the limit.
+     *
+     * @return The overflow policy.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Sets what happens to a request that exceeds the limit.
+     *
+     * @param overflowPolicy The overflow policy.
+     * @return The instance of this class the method was called with.
+     */
+    public AdaptiveConcurrencyLimitFilter setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    /**
+     * Returns how long a request waits for a permit when queueing, in milliseconds.
+     *
+     * @return The queue timeout, in milliseconds.
+     */
+    public long getQueueTimeout() {
+        return queueTimeout;
+    }
+
+    /**
+     * Sets how long a request waits for a permit when queueing, in milliseconds.
+     *
+     * @param queueTimeout The queue timeout, in milliseconds.
+     * @return The instance of this class the method was called with.
+     */
+    public AdaptiveConcurrencyLimitFilter setQueueTimeout(long queueTimeout) {
+        this.queueTimeout = queueTimeout;
+        return this;
+    }
+
+    /**
+     * Returns the current limit of the given origin.
+     *
+     * @param origin Origin, such as <code>https://example.com</code>.
+     * @return The current limit, or the initial limit if no request has been made to the origin.
+     */
+    public int getLimit(String origin) {
+        ConcurrencyLimit limit = limits.get(origin);
+        return limit != null ? limit.getLimit() : initialLimit;
+    }
+
+    /**
+     * Returns the number of outstanding requests to the given origin.
+     *
+     * @param origin Origin, such as <code>https://example.com</code>.
+     * @return The number of outstanding requests.
+     */
+    public int getInFlight(String origin) {
+        ConcurrencyLimit limit = limits.get(origin);
+        return limit != null ? limit.inFlight.get() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStart(HttpContext context) {
+        this.context.set(context);
+    }
+
+    /**
+     * Acquires a permit for the request, waiting for one or rejecting the request according to the
+     * overflow policy when the limit of its origin has been reached.
+     *
+     * @param context HTTP request context.
+     * @throws ConcurrencyLimitExceededException When no permit could be acquired.
+     */
+    @Override
+    public void onRequest(HttpContext context) {
+        String origin = HttpRequestsUtil.getOrigin(context.getRequest().getUri());
+        ConcurrencyLimit limit = limits.computeIfAbsent(origin, k -> new ConcurrencyLimit());
+
+        long timeout = overflowPolicy == OverflowPolicy.QUEUE ? TimeUnit.MILLISECONDS.toNanos(queueTimeout) : 0;
+
+        if (!limit.acquire(timeout)) {
+            throw new ConcurrencyLimitExceededException(origin, limit.getLimit());
+        }
+
+        context.set(PERMIT_NAME, new Permit(limit, context.getResponse(), System.nanoTime()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onResponse(HttpContext context) {
+        release(context);
+    }
+
+    /**
+     * Releases the permit of a request that did not receive a response, such as when an IO exception
+     * occurred, and clears the HTTP context of the current thread.
+     */
+    @Override
+    public void close() {
+        HttpContext context = this.context.get();
+
+        if (context != null) {
+            release(context);
+        }
+
+        this.context.remove();
+    }
+
+    /**
+     * Returns whether the given response indicates that the server is overloaded, in which case the
+     * limit of its origin is decreased. By default, this is the case for status 429 and all 5XX statuses.
+     *
+     * @param response HTTP response.
+     * @return Whether the response indicates that the server is overloaded.
+     */
+    protected boolean isOverloaded(HttpResponse response) {
+        return response.getStatus() == 429 || response.getStatus() >= 500;
+    }
+
+    /**
+     * Releases the permit held by the request of the given context, if any.
+     *
+     * @param context HTTP request context.
+     */
+    private void release(HttpContext context) {
+        Permit permit = context.get(PERMIT_NAME, Permit.class);
+
+        if (permit == null) {
+            return;
+        }
+
+        context.set(PERMIT_NAME, null);
+
+        // A response left in the context by a previous attempt does not belong to this request.
+        HttpResponse response = context.getResponse();
+        boolean success = response != null && response != permit.previousResponse && !isOverloaded(response);
+
+        permit.limit.release(System.nanoTime() - permit.start, success);
+    }
+
+    /**
+     * A permit held by an outstanding request.
+     */
+    private static class Permit {
+        /**
+         * Limit the permit was acquired from.
+         */
+        private final ConcurrencyLimit limit;
+
+        /**
+         * Response of a previous attempt of the request, if any.
+         */
+        private final HttpResponse previousResponse;
+
+        /**
+         * Time the permit was acquired, in nanoseconds.
+         */
+        private final long start;
+
+        /**
+         * Constructor.
+         *
+         * @param limit            Limit the permit was acquired from.
+         * @param previousResponse Response of a previous attempt of the request, if any.
+         * @param start            Time the permit was acquired, in nanoseconds.
+         */
+        Permit(ConcurrencyLimit limit, HttpResponse previousResponse, long start) {
+            this.limit = limit;
+            this.previousResponse = previousResponse;
+            this.start = start;
+        }
+    }
+
+    /**
+     * The adaptive limit and outstanding requests of a single origin.
+     */
+    private class ConcurrencyLimit {
+        /**
+         * Number of outstanding requests.
+         */
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        /**
+         * Current limit, stored as the bits of a <code>double</code> so that it can grow in fractions.
+         */
+        private final AtomicLong limit = new AtomicLong(Double.doubleToLongBits(Math.max(minLimit, Math.min(maxLimit, initialLimit))));
+
+        /**
+         * Smallest latency observed in the current window, in nanoseconds.
+         */
+        private final AtomicLong minLatency = new AtomicLong(Long.MAX_VALUE);
+
+        /**
+         * Number of latency samples.
+         */
+        private final AtomicLong samples = new AtomicLong();
+
+        /**
+         * Threads waiting for a permit.
+         */
+        private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Returns the current limit.
+         *
+         * @return The current limit.
+         */
+        int getLimit() {
+            return (int) Double.longBitsToDouble(limit.get());
+        }
+
+        /**
+         * Acquires a permit, waiting up to the given timeout for one to become available.
+         *
+         * @param timeout Longest time to wait, in nanoseconds.
+         * @return Whether a permit was acquired.
+         */
+        boolean acquire(long timeout) {
+            if (tryAcquire()) {
+                return true;
+            }
+
+            if (timeout <= 0) {
+                return false;
+            }
+
+            Thread thread = Thread.currentThread();
+            long deadline = System.nanoTime() + timeout;
+
+            // The thread is queued before checking again so that a permit released in between
+            // unparks it, rather than being missed.
+            waiters.add(thread);
+
+            try {
+                while (true) {
+                    if (tryAcquire()) {
+                        return true;
+                    }
+
+                    long remaining = deadline - System.nanoTime();
+
+                    if (remaining <= 0 || thread.isInterrupted()) {
+                        return false;
+                    }
+
+                    LockSupport.parkNanos(this, Math.min(remaining, MAX_PARK_NANOS));
+                }
+            }
+            finally {
+                waiters.remove(thread);
+
+                // Pass on a wake up this thread may have consumed without using.
+                signal();
+            }
+        }
+
+        /**
+         * Acquires a permit if one is available.
+         *
+         * @return Whether a permit was acquired.
+         */
+        private boolean tryAcquire() {
+            while (true) {
+                int current = inFlight.get();
+
+                if (current >= getLimit()) {
+                    return false;
+                }
+
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Releases a permit and adjusts the limit based on the outcome of the request.
+         *
+         * @param latency Latency of the request, in nanoseconds.
+         * @param success Whether the request succeeded.
+         */
+        void release(long latency, boolean success) {
+            int outstanding = inFlight.getAndDecrement();
+
+            if (!success) {
+                decrease();
+            }
+            else {
+                long min = updateMinLatency(latency);
+
+                if (latency > min * latencyTolerance) {
+                    decrease();
+                }
+                else if (outstanding * 2 >= getLimit()) {
+                    // The limit only grows while it is actually being used, so that a lightly loaded
+                    // origin does not accumulate a limit it has never been tested against.
+                    increase();
+                }
+            }
+
+            signal();
+        }
+
+        /**
+         * Records a latency sample and returns the smallest latency of the current window.
+         *
+         * @param latency Latency of the request, in nanoseconds.
+         * @return The smallest latency of the current window.
+         */
+        private long updateMinLatency(long latency) {
+            if (samples.incrementAndGet() % MIN_LATENCY_WINDOW == 0) {
+                minLatency.set(latency);
+                return latency;
+            }
+
+            while (true) {
+                long current = minLatency.get();
+
+                if (latency >= current) {
+                    return current;
+                }
+
+                if (minLatency.compareAndSet(current, latency)) {
+                    return latency;
+                }
+            }
+        }
+
+        /**
+         * Increases the limit by the reciprocal of the limit, which amounts to one request per round trip.
+         */
+        private void increase() {
+            while (true) {
+                long bits = limit.get();
+                double current = Double.longBitsToDouble(bits);
+                double next = Math.min(maxLimit, current + 1.0 / current);
+
+                if (next == current || limit.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Decreases the limit by the backoff ratio.
+         */
+        private void decrease() {
+            while (true) {
+                long bits = limit.get();
+                double current = Double.longBitsToDouble(bits);
+                double next = Math.max(minLimit, current * backoffRatio);
+
+                if (next == current || limit.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Wakes up the first waiting thread, if any.
+         */
+        private void signal() {
+            Thread waiter = waiters.peek();
+
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+}
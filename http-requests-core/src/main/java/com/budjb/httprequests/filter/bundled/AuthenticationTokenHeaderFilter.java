@@ -17,10 +17,16 @@ package com.budjb.httprequests.filter.bundled;
 
 import com.budjb.httprequests.HttpContext;
 import com.budjb.httprequests.HttpRequest;
+import com.budjb.httprequests.exception.HttpClientException;
 import com.budjb.httprequests.filter.RequestFilter;
 import com.budjb.httprequests.filter.RetryFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * An opinionated authentication filter that implements an authentication style where the client needs
@@ -30,16 +36,77 @@ import java.util.Date;
  * The authentication token and optionally its timeout are stored in the filter instance. The filter
  * will automatically re-authenticate when the existing token has either timed out (if a timeout is known)
  * or first attempt at the request has failed authentication.
+ * <p>
+ * The filter is safe to share between concurrent requests. Only one authentication runs at a time; requests
+ * that need a new token while an authentication is in progress wait for its result instead of authenticating
+ * themselves. When the timeout of the token is known, the token is refreshed in the background once a
+ * configurable fraction of its lifetime has elapsed, so that requests continue to use the current token
+ * rather than waiting for it to expire. When a background refresh fails, the failure is logged and no further
+ * background refresh is attempted until a back-off period has elapsed; an expired token is still refreshed
+ * by the requests that need it.
  */
 public abstract class AuthenticationTokenHeaderFilter implements RequestFilter, RetryFilter {
+    /**
+     * Default fraction of the lifetime of a token after which it is refreshed in the background.
+     */
+    public static final double DEFAULT_REFRESH_RATIO = 0.8;
+
+    /**
+     * Default time to wait after a failed authentication before refreshing the token in the background again,
+     * in milliseconds.
+     */
+    public static final long DEFAULT_REFRESH_BACKOFF = 30000;
+
+    /**
+     * Logger.
+     */
+    private final Logger log = LoggerFactory.getLogger(AuthenticationTokenHeaderFilter.class);
+
     /**
      * Authentication token.
      */
-    private String authenticationToken;
+    private volatile String authenticationToken;
+
     /**
      * When the authentication token will expire.
      */
-    private Date timeout;
+    private volatile Date timeout;
+
+    /**
+     * When the authentication token was set, in milliseconds since the epoch.
+     */
+    private volatile long issued;
+
+    /**
+     * Fraction of the lifetime of a token after which it is refreshed in the background.
+     */
+    private volatile double refreshRatio = DEFAULT_REFRESH_RATIO;
+
+    /**
+     * Executor that runs background refreshes, or {@code null} to start a thread for each refresh.
+     */
+    private volatile Executor refreshExecutor;
+
+    /**
+     * Time to wait after a failed authentication before refreshing the token in the background again, in
+     * milliseconds.
+     */
+    private volatile long refreshBackoff = DEFAULT_REFRESH_BACKOFF;
+
+    /**
+     * When the last authentication failed, in milliseconds since the epoch, or {@code 0} if it succeeded.
+     */
+    private volatile long refreshFailed;
+
+    /**
+     * The authentication that is in progress, or {@code null} if none is.
+     */
+    private CompletableFuture<Void> refresh;
+
+    /**
+     * Lock guarding the authentication in progress.
+     */
+    private final Object lock = new Object();
 
     /**
      * Returns the authentication token.
@@ -56,6 +123,7 @@ public abstract class AuthenticationTokenHeaderFilter implements RequestFilter,
      * @param authenticationToken The authentication token.
      */
     protected void setAuthenticationToken(String authenticationToken) {
+        this.issued = System.currentTimeMillis();
         this.authenticationToken = authenticationToken;
     }
 
@@ -77,11 +145,84 @@ public abstract class AuthenticationTokenHeaderFilter implements RequestFilter,
         this.timeout = timeout;
     }
 
+    /**
+     * Returns the fraction of the lifetime of a token after which it is refreshed in the background.
+     *
+     * @return The fraction of the lifetime of a token after which it is refreshed in the background.
+     */
+    public double getRefreshRatio() {
+        return refreshRatio;
+    }
+
+    /**
+     * Sets the fraction of the lifetime of a token after which it is refreshed in the background. The lifetime
+     * of a token is the time between setting the token and its timeout, so tokens without a timeout are never
+     * refreshed in the background. A ratio of {@code 0} disables background refreshes.
+     *
+     * @param refreshRatio Fraction of the lifetime of a token, from {@code 0} (inclusive) to {@code 1} (exclusive).
+     * @return The instance of this class the method was called with.
+     */
+    public AuthenticationTokenHeaderFilter setRefreshRatio(double refreshRatio) {
+        if (refreshRatio < 0 || refreshRatio >= 1) {
+            throw new IllegalArgumentException("refresh ratio must be at least 0 and less than 1");
+        }
+        this.refreshRatio = refreshRatio;
+        return this;
+    }
+
+    /**
+     * Returns the executor that runs background refreshes.
+     *
+     * @return The executor that runs background refreshes, or {@code null} if a thread is started for each refresh.
+     */
+    public Executor getRefreshExecutor() {
+        return refreshExecutor;
+    }
+
+    /**
+     * Sets the executor that runs background refreshes. If none is set, a daemon thread is started for
+     * each refresh.
+     *
+     * @param refreshExecutor Executor that runs background refreshes.
+     * @return The instance of this class the method was called with.
+     */
+    public AuthenticationTokenHeaderFilter setRefreshExecutor(Executor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+        return this;
+    }
+
+    /**
+     * Returns the time to wait after a failed authentication before refreshing the token in the background
+     * again, in milliseconds.
+     *
+     * @return The refresh back-off, in milliseconds.
+     */
+    public long getRefreshBackoff() {
+        return refreshBackoff;
+    }
+
+    /**
+     * Sets the time to wait after a failed authentication before refreshing the token in the background again,
+     * in milliseconds. Expired tokens are refreshed regardless of the back-off.
+     *
+     * @param refreshBackoff The refresh back-off, in milliseconds.
+     * @return The instance of this class the method was called with.
+     */
+    public AuthenticationTokenHeaderFilter setRefreshBackoff(long refreshBackoff) {
+        if (refreshBackoff < 0) {
+            throw new IllegalArgumentException("refresh back-off must not be negative");
+        }
+        this.refreshBackoff = refreshBackoff;
+        return this;
+    }
+
     /**
      * Perform the logic of authenticating.
      * <p>
      * This method, upon successful authentication, should update the {@link #authenticationToken}
      * property, and optionally the {@link #timeout} property if applicable.
+     * <p>
+     * The filter never calls this method concurrently, but it may be called from a background thread.
      */
     protected abstract void authenticate();
 
@@ -98,7 +239,13 @@ public abstract class AuthenticationTokenHeaderFilter implements RequestFilter,
     @Override
     public boolean isRetryRequired(HttpContext context) {
         if (context.getRetries() == 0 && hasAuthenticationFailed(context)) {
-            reset();
+            // Another request may have already replaced the token that was rejected, in which case the
+            // retry uses the new token rather than discarding it.
+            String rejected = context.getRequest().getHeaders().getFlat(getAuthenticationTokenHeader());
+
+            if (rejected == null || rejected.equals(getAuthenticationToken())) {
+                reset();
+            }
             return true;
         }
         return false;
@@ -109,9 +256,15 @@ public abstract class AuthenticationTokenHeaderFilter implements RequestFilter,
      */
     @Override
     public void filter(HttpRequest request) {
-        if (getAuthenticationToken() == null || (getTimeout() != null && getTimeout().compareTo(new Date()) < 0)) {
-            authenticate();
+        long now = System.currentTimeMillis();
+
+        if (isExpired(now)) {
+            await(refresh(false));
         }
+        else if (isRefreshDue(now)) {
+            refresh(true);
+        }
+
         request.setHeader(getAuthenticationTokenHeader(), getAuthenticationToken());
     }
 
@@ -132,4 +285,137 @@ public abstract class AuthenticationTokenHeaderFilter implements RequestFilter,
         setAuthenticationToken(null);
         setTimeout(null);
     }
+
+    /**
+     * Returns whether there is no usable authentication token.
+     *
+     * @param now Current time, in milliseconds since the epoch.
+     * @return Whether there is no usable authentication token.
+     */
+    private boolean isExpired(long now) {
+        Date timeout = getTimeout();
+        return getAuthenticationToken() == null || (timeout != null && timeout.getTime() < now);
+    }
+
+    /**
+     * Returns whether the refresh ratio of the lifetime of the authentication token has elapsed.
+     *
+     * @param now Current time, in milliseconds since the epoch.
+     * @return Whether the authentication token should be refreshed in the background.
+     */
+    private boolean isRefreshDue(long now) {
+        Date timeout = getTimeout();
+
+        if (timeout == null || refreshRatio == 0) {
+            return false;
+        }
+
+        long refreshFailed = this.refreshFailed;
+        if (refreshFailed != 0 && now < refreshFailed + refreshBackoff) {
+            return false;
+        }
+
+        long issued = this.issued;
+        return now >= issued + (long) ((timeout.getTime() - issued) * refreshRatio);
+    }
+
+    /**
+     * Starts an authentication unless one is already in progress.
+     *
+     * @param background Whether to authenticate on a background thread rather than the calling thread.
+     * @return A future that completes when the authentication in progress completes.
+     */
+    private CompletableFuture<Void> refresh(boolean background) {
+        CompletableFuture<Void> future;
+
+        synchronized (lock) {
+            if (refresh != null) {
+                return refresh;
+            }
+            future = refresh = new CompletableFuture<>();
+        }
+
+        Runnable task = () -> {
+            Throwable failure = null;
+
+            try {
+                authenticate();
+                refreshFailed = 0;
+            }
+            catch (Throwable e) {
+                failure = e;
+                refreshFailed = System.currentTimeMillis();
+
+                // Nothing waits for a background refresh, so its failure would otherwise be lost.
+                if (background) {
+                    log.warn("Background refresh of the authentication token failed; retrying in " + refreshBackoff + " ms", e);
+                }
+            }
+
+            // The authentication is no longer in progress before any waiting requests are released,
+            // so that a failure is retried by later requests.
+            synchronized (lock) {
+                refresh = null;
+            }
+
+            if (failure == null) {
+                future.complete(null);
+            }
+            else {
+                future.completeExceptionally(failure);
+            }
+        };
+
+        if (!background) {
+            task.run();
+            return future;
+        }
+
+        try {
+            if (refreshExecutor != null) {
+                refreshExecutor.execute(task);
+            }
+            else {
+                Thread thread = new Thread(task, "http-requests-token-refresh");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+        catch (Throwable e) {
+            // The task will never run, so the refresh must not be left in progress or later requests
+            // that find the token expired would wait for it forever.
+            refreshFailed = System.currentTimeMillis();
+            log.warn("Background refresh of the authentication token could not be started; retrying in " + refreshBackoff + " ms", e);
+
+            synchronized (lock) {
+                refresh = null;
+            }
+
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * Waits for the given authentication to complete, and rethrows its failure if it failed.
+     *
+     * @param future Authentication in progress.
+     */
+    private void await(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        }
+        catch (CompletionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new HttpClientException(cause);
+        }
+    }
 }
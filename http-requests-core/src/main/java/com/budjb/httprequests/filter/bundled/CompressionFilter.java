@@ -0,0 +1,498 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled;
+
+import com.budjb.httprequests.HttpContext;
+import com.budjb.httprequests.HttpEntity;
+import com.budjb.httprequests.HttpRequest;
+import com.budjb.httprequests.filter.LifecycleFilter;
+import com.budjb.httprequests.filter.OutputStreamFilter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * A filter that compresses request entities with either the GZIP or the deflate algorithm and sets the
+ * appropriate <code>Content-Encoding</code> header.
+ * <p>
+ * Unlike {@link GZIPFilter} and {@link DeflateFilter}, entities smaller than a configurable threshold are
+ * sent as-is, since compressing them costs more than it saves. Entities whose length is not known up front
+ * are always compressed. Requests that already contain a <code>Content-Encoding</code> header are not
+ * modified.
+ * <p>
+ * {@link Deflater} instances hold native memory that is otherwise only released when they are finalized.
+ * This filter keeps a bounded pool of them that is shared by every request the filter is applied to, so
+ * an instance of the filter should be shared by a client rather than created per request. Deflaters are
+ * returned to the pool once the entity has been written, and those that do not fit in the pool are ended
+ * immediately. {@link #clear()} ends every pooled deflater.
+ */
+public class CompressionFilter implements OutputStreamFilter, LifecycleFilter, Closeable {
+    /**
+     * Default minimum length of an entity, in bytes, for it to be compressed.
+     */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    /**
+     * GZIP header containing the magic number and the deflate compression method, without a
+     * modification time or any flags.
+     */
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    /**
+     * Compression algorithms supported by the filter.
+     */
+    public enum Encoding {
+        /**
+         * GZIP compression.
+         */
+        GZIP("gzip"),
+
+        /**
+         * Deflate compression using the zlib format.
+         */
+        DEFLATE("deflate");
+
+        /**
+         * Value of the <code>Content-Encoding</code> header.
+         */
+        private final String contentEncoding;
+
+        /**
+         * Constructor.
+         *
+         * @param contentEncoding Value of the <code>Content-Encoding</code> header.
+         */
+        Encoding(String contentEncoding) {
+            this.contentEncoding = contentEncoding;
+        }
+
+        /**
+         * Returns the value of the <code>Content-Encoding</code> header.
+         *
+         * @return The value of the <code>Content-Encoding</code> header.
+         */
+        public String getContentEncoding() {
+            return contentEncoding;
+        }
+    }
+
+    /**
+     * Compression algorithm.
+     */
+    private final Encoding encoding;
+
+    /**
+     * Pool of idle deflaters.
+     */
+    private final BlockingQueue<Deflater> pool;
+
+    /**
+     * Thread local that stores the state of the request in the current thread.
+     */
+    private final ThreadLocal<State> state = new ThreadLocal<>();
+
+    /**
+     * Minimum length of an entity, in bytes, for it to be compressed.
+     */
+    private int threshold = DEFAULT_THRESHOLD;
+
+    /**
+     * Compression level.
+     */
+    private int level = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Constructor.
+     *
+     * @param encoding Compression algorithm.
+     * @param poolSize Maximum number of idle deflaters to retain.
+     */
+    public CompressionFilter(Encoding encoding, int poolSize) {
+        if (encoding == null) {
+            throw new IllegalArgumentException("encoding must not be null");
+        }
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be at least 1");
+        }
+
+        this.encoding = encoding;
+        this.pool = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    /**
+     * Constructor that retains as many idle deflaters as there are available processors.
+     *
+     * @param encoding Compression algorithm.
+     */
+    public CompressionFilter(Encoding encoding) {
+        this(encoding, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor that compresses entities with the GZIP algorithm.
+     */
+    public CompressionFilter() {
+        this(Encoding.GZIP);
+    }
+
+    /**
+     * Returns the compression algorithm.
+     *
+     * @return The compression algorithm.
+     */
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Returns the minimum length of an entity, in bytes, for it to be compressed.
+     *
+     * @return The minimum length of an entity, in bytes, for it to be compressed.
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Sets the minimum length of an entity, in bytes, for it to be compressed.
+     *
+     * @param threshold Minimum length of an entity, in bytes, for it to be compressed.
+     * @return The instance of this class the method was called with.
+     */
+    public CompressionFilter setThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must not be negative");
+        }
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * Returns the compression level.
+     *
+     * @return The compression level.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Sets the compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}, or
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     *
+     * @param level Compression level.
+     * @return The instance of this class the method was called with.
+     */
+    public CompressionFilter setLevel(int level) {
+        if ((level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("invalid compression level " + level);
+        }
+        this.level = level;
+        return this;
+    }
+
+    /**
+     * Returns the number of idle deflaters in the pool.
+     *
+     * @return The number of idle deflaters in the pool.
+     */
+    public int getPooled() {
+        return pool.size();
+    }
+
+    /**
+     * Ends every idle deflater in the pool, releasing their native memory. Deflaters that are in use
+     * are returned to the pool as usual.
+     */
+    public void clear() {
+        Deflater deflater;
+        while ((deflater = pool.poll()) != null) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStart(HttpContext context) {
+        state.set(new State());
+    }
+
+    /**
+     * Determines whether the entity of the request will be compressed and sets the
+     * <code>Content-Encoding</code> header if so.
+     *
+     * @param context HTTP request context.
+     */
+    @Override
+    public void onRequest(HttpContext context) {
+        State state = this.state.get();
+
+        if (state == null) {
+            return;
+        }
+
+        state.release();
+        state.compressed = isCompressed(context.getRequest(), context.getRequestEntity());
+
+        if (state.compressed) {
+            context.getRequest().setHeader("Content-Encoding", encoding.getContentEncoding());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutputStream filter(OutputStream outputStream) {
+        State state = this.state.get();
+
+        if (state == null || !state.compressed) {
+            return outputStream;
+        }
+
+        state.release();
+        state.outputStream = new PooledDeflaterOutputStream(outputStream, acquire());
+
+        return state.outputStream;
+    }
+
+    /**
+     * Returns the deflater of a request that did not close its entity stream to the pool.
+     */
+    @Override
+    public void close() {
+        State state = this.state.get();
+
+        if (state != null) {
+            state.release();
+            this.state.remove();
+        }
+    }
+
+    /**
+     * Returns whether the entity of the given request should be compressed.
+     *
+     * @param request HTTP request.
+     * @param entity  Request entity.
+     * @return Whether the entity should be compressed.
+     */
+    protected boolean isCompressed(HttpRequest request, HttpEntity entity) {
+        if (entity == null || request.getHeaders().containsKey("Content-Encoding")) {
+            return false;
+        }
+
+        long length = entity.getContentLength();
+
+        return length == -1 || length >= threshold;
+    }
+
+    /**
+     * Takes a deflater from the pool, or creates a new one if the pool is empty.
+     *
+     * @return A reset deflater using the configured compression level.
+     */
+    private Deflater acquire() {
+        Deflater deflater = pool.poll();
+
+        if (deflater == null) {
+            // GZIP streams contain raw deflate data, and the header and trailer are written separately.
+            deflater = new Deflater(level, encoding == Encoding.GZIP);
+        }
+        else {
+            deflater.setLevel(level);
+        }
+
+        return deflater;
+    }
+
+    /**
+     * Resets the given deflater and returns it to the pool, or ends it if the pool is full.
+     *
+     * @param deflater Deflater to release.
+     */
+    private void release(Deflater deflater) {
+        deflater.reset();
+
+        if (!pool.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * State of the request in the current thread.
+     */
+    private class State {
+        /**
+         * Whether the entity of the current attempt is compressed.
+         */
+        private boolean compressed;
+
+        /**
+         * Compressing output stream of the current attempt.
+         */
+        private PooledDeflaterOutputStream outputStream;
+
+        /**
+         * Returns the deflater of the current attempt to the pool if it has not been already.
+         */
+        private void release() {
+            if (outputStream != null) {
+                outputStream.releaseDeflater();
+                outputStream = null;
+            }
+        }
+    }
+
+    /**
+     * An output stream that compresses with a pooled deflater and returns the deflater to the pool once the
+     * stream is closed. When the filter uses GZIP encoding, the GZIP header and trailer are written around
+     * the raw deflate data.
+     */
+    private class PooledDeflaterOutputStream extends DeflaterOutputStream {
+        /**
+         * Checksum of the uncompressed data, used when writing GZIP.
+         */
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * Whether the GZIP header has been written.
+         */
+        private boolean started;
+
+        /**
+         * Whether the compressed data has been completed.
+         */
+        private boolean finished;
+
+        /**
+         * Whether the deflater has been returned to the pool.
+         */
+        private boolean released;
+
+        /**
+         * Constructor.
+         *
+         * @param outputStream Output stream to write compressed data to.
+         * @param deflater     Deflater to compress with.
+         */
+        PooledDeflaterOutputStream(OutputStream outputStream, Deflater deflater) {
+            super(outputStream, deflater);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (released) {
+                throw new IOException("stream is closed");
+            }
+
+            if (encoding == Encoding.GZIP) {
+                writeHeader();
+                crc.update(b, off, len);
+            }
+
+            super.write(b, off, len);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void finish() throws IOException {
+            if (finished || released) {
+                return;
+            }
+
+            if (encoding == Encoding.GZIP) {
+                writeHeader();
+            }
+
+            super.finish();
+
+            if (encoding == Encoding.GZIP) {
+                writeInt((int) crc.getValue());
+                writeInt((int) def.getBytesRead());
+            }
+
+            finished = true;
+        }
+
+        /**
+         * Completes the compressed data, closes the underlying stream and returns the deflater to the pool.
+         *
+         * @throws IOException When an IO exception occurs.
+         */
+        @Override
+        public void close() throws IOException {
+            if (released) {
+                return;
+            }
+
+            try {
+                finish();
+                out.close();
+            }
+            finally {
+                releaseDeflater();
+            }
+        }
+
+        /**
+         * Returns the deflater to the pool. The stream can not be written to afterwards.
+         */
+        void releaseDeflater() {
+            if (!released) {
+                released = true;
+                release(def);
+            }
+        }
+
+        /**
+         * Writes the GZIP header if it has not been written already.
+         *
+         * @throws IOException When an IO exception occurs.
+         */
+        private void writeHeader() throws IOException {
+            if (!started) {
+                started = true;
+                out.write(GZIP_HEADER);
+            }
+        }
+
+        /**
+         * Writes an integer in little-endian byte order, as required by the GZIP trailer.
+         *
+         * @param value Value to write.
+         * @throws IOException When an IO exception occurs.
+         */
+        private void writeInt(int value) throws IOException {
+            out.write(value & 0xff);
+            out.write((value >> 8) & 0xff);
+            out.write((value >> 16) & 0xff);
+            out.write((value >> 24) & 0xff);
+        }
+    }
+}
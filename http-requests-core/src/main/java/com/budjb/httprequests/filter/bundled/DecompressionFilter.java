@@ -0,0 +1,280 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled;
+
+import com.budjb.httprequests.HttpEntity;
+import com.budjb.httprequests.HttpRequest;
+import com.budjb.httprequests.HttpResponse;
+import com.budjb.httprequests.exception.EmptyEntityException;
+import com.budjb.httprequests.filter.RequestFilter;
+import com.budjb.httprequests.filter.ResponseFilter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Inflater;
+
+/**
+ * A filter that advertises support for compressed responses and transparently decompresses response entities
+ * that were encoded with GZIP or deflate, regardless of the {@link com.budjb.httprequests.HttpClient}
+ * implementation.
+ * <p>
+ * An <code>Accept-Encoding: gzip, deflate</code> header is added to requests that do not already contain one.
+ * When a response contains a <code>Content-Encoding</code> that consists only of supported encodings, its entity
+ * is replaced with one that inflates the original entity as it is read, and the <code>Content-Encoding</code>
+ * header is removed. The <code>Content-Length</code> header is removed as well, since it describes the encoded
+ * entity; if the response entity is buffered, it is decoded up front and the header is set to its decoded length.
+ * Responses that were already decoded by the client library no longer contain a <code>Content-Encoding</code>
+ * header and are left as-is.
+ * <p>
+ * {@link Inflater} instances are taken from bounded pools that are shared by every request the filter is
+ * applied to, so an instance of the filter should be shared by a client. An inflater is returned to its pool
+ * when the response entity is closed.
+ */
+public class DecompressionFilter implements RequestFilter, ResponseFilter {
+    /**
+     * Value of the <code>Accept-Encoding</code> header added to requests.
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    /**
+     * Pool of idle inflaters that expect zlib data.
+     */
+    private final BlockingQueue<Inflater> zlibPool;
+
+    /**
+     * Pool of idle inflaters that expect raw deflate data, which are used for GZIP.
+     */
+    private final BlockingQueue<Inflater> rawPool;
+
+    /**
+     * Constructor.
+     *
+     * @param poolSize Maximum number of idle inflaters to retain for each type of deflate data.
+     */
+    public DecompressionFilter(int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be at least 1");
+        }
+
+        this.zlibPool = new ArrayBlockingQueue<>(poolSize);
+        this.rawPool = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    /**
+     * Constructor that retains as many idle inflaters as there are available processors.
+     */
+    public DecompressionFilter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns the number of idle inflaters in the pools.
+     *
+     * @return The number of idle inflaters in the pools.
+     */
+    public int getPooled() {
+        return zlibPool.size() + rawPool.size();
+    }
+
+    /**
+     * Ends every idle inflater in the pools, releasing their native memory.
+     */
+    public void clear() {
+        Inflater inflater;
+
+        while ((inflater = zlibPool.poll()) != null) {
+            inflater.end();
+        }
+
+        while ((inflater = rawPool.poll()) != null) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void filter(HttpRequest request) {
+        if (!request.getHeaders().containsKey("Accept-Encoding")) {
+            request.setHeader("Accept-Encoding", ACCEPT_ENCODING);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void filter(HttpResponse response) {
+        if (!response.hasEntity()) {
+            return;
+        }
+
+        List<String> encodings = parseEncodings(response.getHeaders("Content-Encoding"));
+
+        if (encodings == null || encodings.isEmpty()) {
+            return;
+        }
+
+        HttpEntity entity = response.getEntity();
+        boolean buffered = entity.isBuffered();
+        HttpEntity decoded;
+
+        try {
+            InputStream inputStream = entity.getInputStream();
+
+            // Encodings are listed in the order they were applied, so they are removed in reverse.
+            for (String encoding : encodings) {
+                inputStream = decode(inputStream, encoding);
+            }
+
+            try {
+                decoded = new HttpEntity(inputStream, entity.getContentType(), entity.getCharSet());
+
+                if (buffered) {
+                    decoded.buffer();
+                }
+            }
+            catch (EmptyEntityException e) {
+                decoded = null;
+            }
+        }
+        catch (IOException e) {
+            try {
+                entity.close();
+            }
+            catch (IOException ignored) {
+                // The decoding failure is more relevant.
+            }
+            throw new UncheckedIOException(e);
+        }
+
+        response.getHeaders().remove("Content-Encoding");
+        response.getHeaders().remove("Content-Length");
+
+        if (decoded != null && decoded.isBuffered()) {
+            response.getHeaders().set("Content-Length", Long.toString(decoded.getContentLength()));
+        }
+
+        response.setEntity(decoded);
+    }
+
+    /**
+     * Parses the values of the <code>Content-Encoding</code> header into the list of encodings that must be
+     * removed, in the order they must be removed.
+     *
+     * @param values Values of the <code>Content-Encoding</code> header.
+     * @return The encodings to remove, or {@code null} if any encoding is not supported.
+     */
+    private List<String> parseEncodings(List<String> values) {
+        List<String> encodings = new ArrayList<>();
+
+        if (values == null) {
+            return encodings;
+        }
+
+        for (String value : values) {
+            for (String encoding : value.split(",")) {
+                encoding = encoding.trim().toLowerCase();
+
+                if (encoding.isEmpty() || encoding.equals("identity")) {
+                    continue;
+                }
+
+                if (encoding.equals("x-gzip")) {
+                    encoding = "gzip";
+                }
+
+                if (!encoding.equals("gzip") && !encoding.equals("deflate")) {
+                    return null;
+                }
+
+                encodings.add(encoding);
+            }
+        }
+
+        Collections.reverse(encodings);
+
+        return encodings;
+    }
+
+    /**
+     * Wraps the given input stream with one that decodes the given encoding.
+     *
+     * @param inputStream Input stream containing the encoded data.
+     * @param encoding    Either <code>gzip</code> or <code>deflate</code>.
+     * @return An input stream containing the decoded data.
+     * @throws IOException When an IO exception occurs.
+     */
+    private InputStream decode(InputStream inputStream, String encoding) throws IOException {
+        if (encoding.equals("gzip")) {
+            return new InflatingInputStream(inputStream, acquire(rawPool, true), true, inflater -> release(rawPool, inflater));
+        }
+
+        // Some servers send raw deflate data rather than the zlib format the encoding calls for,
+        // so the first two bytes are checked for a zlib header.
+        PushbackInputStream pushbackInputStream = new PushbackInputStream(inputStream, 2);
+        byte[] header = new byte[2];
+        int read = 0;
+        int count;
+
+        while (read < 2 && (count = pushbackInputStream.read(header, read, 2 - read)) != -1) {
+            read += count;
+        }
+
+        if (read > 0) {
+            pushbackInputStream.unread(header, 0, read);
+        }
+
+        boolean zlib = read == 2 && (header[0] & 0x0f) == 8 && (((header[0] & 0xff) << 8) | (header[1] & 0xff)) % 31 == 0;
+        BlockingQueue<Inflater> pool = zlib ? zlibPool : rawPool;
+
+        return new InflatingInputStream(pushbackInputStream, acquire(pool, !zlib), false, inflater -> release(pool, inflater));
+    }
+
+    /**
+     * Takes an inflater from the given pool, or creates a new one if the pool is empty.
+     *
+     * @param pool   Pool to take the inflater from.
+     * @param nowrap Whether a new inflater should expect raw deflate data.
+     * @return An inflater.
+     */
+    private Inflater acquire(BlockingQueue<Inflater> pool, boolean nowrap) {
+        Inflater inflater = pool.poll();
+        return inflater != null ? inflater : new Inflater(nowrap);
+    }
+
+    /**
+     * Resets the given inflater and returns it to the given pool, or ends it if the pool is full.
+     *
+     * @param pool     Pool to return the inflater to.
+     * @param inflater Inflater to release.
+     */
+    private void release(BlockingQueue<Inflater> pool, Inflater inflater) {
+        inflater.reset();
+
+        if (!pool.offer(inflater)) {
+            inflater.end();
+        }
+    }
+}
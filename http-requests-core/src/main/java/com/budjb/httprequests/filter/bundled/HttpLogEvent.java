@@ -0,0 +1,204 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled;
+
+import com.budjb.httprequests.HttpMethod;
+
+/**
+ * A compact, immutable summary of a single HTTP exchange, as captured by a {@link StructuredLoggingFilter}.
+ */
+public class HttpLogEvent {
+    /**
+     * Time the exchange started, in milliseconds since the epoch.
+     */
+    private final long timestamp;
+
+    /**
+     * HTTP method of the request.
+     */
+    private final HttpMethod method;
+
+    /**
+     * Complete URI of the request, including the query string.
+     */
+    private final String uri;
+
+    /**
+     * HTTP status of the final response, or {@code -1} if no response was received.
+     */
+    private final int status;
+
+    /**
+     * Duration of the exchange, including any retries, in milliseconds.
+     */
+    private final long duration;
+
+    /**
+     * Number of times the request was retried.
+     */
+    private final int retries;
+
+    /**
+     * Length of the request entity, or {@code -1} if it is not known.
+     */
+    private final long requestLength;
+
+    /**
+     * Length of the response entity, or {@code -1} if it is not known.
+     */
+    private final long responseLength;
+
+    /**
+     * Whether the exchange ended with an exception rather than a response.
+     */
+    private final boolean failed;
+
+    /**
+     * Constructor.
+     *
+     * @param timestamp      Time the exchange started, in milliseconds since the epoch.
+     * @param method         HTTP method of the request.
+     * @param uri            Complete URI of the request, including the query string.
+     * @param status         HTTP status of the final response, or {@code -1} if no response was received.
+     * @param duration       Duration of the exchange, including any retries, in milliseconds.
+     * @param retries        Number of times the request was retried.
+     * @param requestLength  Length of the request entity, or {@code -1} if it is not known.
+     * @param responseLength Length of the response entity, or {@code -1} if it is not known.
+     * @param failed         Whether the exchange ended with an exception rather than a response.
+     */
+    public HttpLogEvent(long timestamp, HttpMethod method, String uri, int status, long duration, int retries, long requestLength, long responseLength, boolean failed) {
+        this.timestamp = timestamp;
+        this.method = method;
+        this.uri = uri;
+        this.status = status;
+        this.duration = duration;
+        this.retries = retries;
+        this.requestLength = requestLength;
+        this.responseLength = responseLength;
+        this.failed = failed;
+    }
+
+    /**
+     * Returns the time the exchange started, in milliseconds since the epoch.
+     *
+     * @return The time the exchange started, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the HTTP method of the request.
+     *
+     * @return The HTTP method of the request.
+     */
+    public HttpMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the complete URI of the request, including the query string.
+     *
+     * @return The complete URI of the request.
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * Returns the HTTP status of the final response.
+     *
+     * @return The HTTP status of the final response, or {@code -1} if no response was received.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the duration of the exchange, including any retries, in milliseconds.
+     *
+     * @return The duration of the exchange, in milliseconds.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the number of times the request was retried.
+     *
+     * @return The number of times the request was retried.
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Returns the length of the request entity.
+     *
+     * @return The length of the request entity, or {@code -1} if it is not known.
+     */
+    public long getRequestLength() {
+        return requestLength;
+    }
+
+    /**
+     * Returns the length of the response entity.
+     *
+     * @return The length of the response entity, or {@code -1} if it is not known.
+     */
+    public long getResponseLength() {
+        return responseLength;
+    }
+
+    /**
+     * Returns whether the exchange ended with an exception rather than a response.
+     *
+     * @return Whether the exchange ended with an exception rather than a response.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Renders the event as a single line of <code>key=value</code> pairs. Unknown values are omitted.
+     *
+     * @return The event as a single line of <code>key=value</code> pairs.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(uri.length() + 128);
+
+        builder.append("method=").append(method).append(" uri=").append(uri);
+
+        if (status != -1) {
+            builder.append(" status=").append(status);
+        }
+        if (failed) {
+            builder.append(" failed=true");
+        }
+
+        builder.append(" duration=").append(duration).append("ms retries=").append(retries);
+
+        if (requestLength != -1) {
+            builder.append(" requestLength=").append(requestLength);
+        }
+        if (responseLength != -1) {
+            builder.append(" responseLength=").append(responseLength);
+        }
+
+        return builder.toString();
+    }
+}
@@ -21,15 +21,43 @@ import com.budjb.httprequests.filter.LifecycleFilter;
 
 /**
  * A filter that throws an exception specific to an HTTP status if that status is not in the 200-299 range.
+ * <p>
+ * When the exceptions are used to handle expected error responses rather than to diagnose failures, they
+ * may be created without stack traces, which makes them considerably cheaper to create.
  */
 public class HttpStatusExceptionFilter implements LifecycleFilter {
+    /**
+     * Whether the stack traces of the exceptions are filled in.
+     */
+    private boolean stackTraceEnabled = true;
+
+    /**
+     * Returns whether the stack traces of the exceptions are filled in.
+     *
+     * @return Whether the stack traces of the exceptions are filled in.
+     */
+    public boolean isStackTraceEnabled() {
+        return stackTraceEnabled;
+    }
+
+    /**
+     * Sets whether the stack traces of the exceptions are filled in. Defaults to {@code true}.
+     *
+     * @param stackTraceEnabled Whether the stack traces of the exceptions are filled in.
+     * @return The instance of this class the method was called with.
+     */
+    public HttpStatusExceptionFilter setStackTraceEnabled(boolean stackTraceEnabled) {
+        this.stackTraceEnabled = stackTraceEnabled;
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void onComplete(HttpContext context) {
         if (context.getResponse().getStatus() >= 300) {
-            throw HttpStatusException.build(context.getResponse());
+            throw HttpStatusException.build(context.getResponse(), stackTraceEnabled);
         }
     }
 }
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled;
+
+import java.io.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * An input stream that inflates deflate or GZIP data with an {@link Inflater} that is owned by a pool, and hands
+ * the inflater back once the stream is closed.
+ * <p>
+ * {@link java.util.zip.GZIPInputStream} can not be given an inflater, so the GZIP header and trailer are handled
+ * here, including the checksum and length verification and support for concatenated members. Inflaters used for
+ * GZIP must have been created to expect raw deflate data.
+ */
+class InflatingInputStream extends InflaterInputStream {
+    /**
+     * GZIP header flag indicating that extra fields are present.
+     */
+    private static final int FEXTRA = 4;
+
+    /**
+     * GZIP header flag indicating that a file name is present.
+     */
+    private static final int FNAME = 8;
+
+    /**
+     * GZIP header flag indicating that a comment is present.
+     */
+    private static final int FCOMMENT = 16;
+
+    /**
+     * GZIP header flag indicating that a header checksum is present.
+     */
+    private static final int FHCRC = 2;
+
+    /**
+     * Whether the stream contains GZIP data.
+     */
+    private final boolean gzip;
+
+    /**
+     * Called with the inflater once the stream is closed.
+     */
+    private final Consumer<Inflater> release;
+
+    /**
+     * Checksum of the uncompressed data of the current GZIP member.
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Whether the end of the compressed data has been reached.
+     */
+    private boolean eos;
+
+    /**
+     * Whether the stream has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * Constructor. The GZIP header is read immediately when the stream contains GZIP data.
+     *
+     * @param inputStream Input stream containing the compressed data.
+     * @param inflater    Inflater to decompress with.
+     * @param gzip        Whether the stream contains GZIP data.
+     * @param release     Called with the inflater once the stream is closed.
+     * @throws IOException When an IO exception occurs or the GZIP header is invalid.
+     */
+    InflatingInputStream(InputStream inputStream, Inflater inflater, boolean gzip, Consumer<Inflater> release) throws IOException {
+        super(inputStream, inflater, 8192);
+
+        this.gzip = gzip;
+        this.release = release;
+
+        if (gzip) {
+            try {
+                readHeader(inputStream);
+            }
+            catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+
+        if (eos) {
+            return -1;
+        }
+
+        int read = super.read(b, off, len);
+
+        if (read == -1) {
+            if (gzip && !readTrailer()) {
+                return read(b, off, len);
+            }
+
+            eos = true;
+        }
+        else if (gzip) {
+            crc.update(b, off, read);
+        }
+
+        return read;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int available() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        return eos ? 0 : 1;
+    }
+
+    /**
+     * Closes the underlying stream and hands the inflater back to its pool.
+     *
+     * @throws IOException When an IO exception occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            in.close();
+        }
+        finally {
+            release.accept(inf);
+        }
+    }
+
+    /**
+     * Reads a GZIP member header.
+     *
+     * @param inputStream Input stream to read from.
+     * @return The length of the header, in bytes.
+     * @throws IOException When an IO exception occurs or the header is invalid.
+     */
+    private int readHeader(InputStream inputStream) throws IOException {
+        if (readUnsignedShort(inputStream) != 0x8b1f) {
+            throw new ZipException("not in GZIP format");
+        }
+
+        if (readUnsignedByte(inputStream) != 8) {
+            throw new ZipException("unsupported GZIP compression method");
+        }
+
+        int flags = readUnsignedByte(inputStream);
+        skipBytes(inputStream, 6);
+
+        int length = 10;
+
+        if ((flags & FEXTRA) == FEXTRA) {
+            int extra = readUnsignedShort(inputStream);
+            skipBytes(inputStream, extra);
+            length += extra + 2;
+        }
+
+        if ((flags & FNAME) == FNAME) {
+            do {
+                length++;
+            }
+            while (readUnsignedByte(inputStream) != 0);
+        }
+
+        if ((flags & FCOMMENT) == FCOMMENT) {
+            do {
+                length++;
+            }
+            while (readUnsignedByte(inputStream) != 0);
+        }
+
+        if ((flags & FHCRC) == FHCRC) {
+            skipBytes(inputStream, 2);
+            length += 2;
+        }
+
+        crc.reset();
+
+        return length;
+    }
+
+    /**
+     * Reads and verifies a GZIP member trailer, and starts the next member if one follows.
+     *
+     * @return Whether the end of the GZIP data has been reached.
+     * @throws IOException When an IO exception occurs or the trailer does not match the data.
+     */
+    private boolean readTrailer() throws IOException {
+        InputStream inputStream = in;
+        int remaining = inf.getRemaining();
+
+        // Part of the trailer, and possibly of the next member, may already have been read into the buffer.
+        if (remaining > 0) {
+            inputStream = new SequenceInputStream(
+                new ByteArrayInputStream(buf, len - remaining, remaining),
+                new FilterInputStream(in) {
+                    @Override
+                    public void close() {
+
+                    }
+                }
+            );
+        }
+
+        if (readUnsignedInt(inputStream) != crc.getValue() || readUnsignedInt(inputStream) != (inf.getBytesWritten() & 0xffffffffL)) {
+            throw new ZipException("corrupt GZIP trailer");
+        }
+
+        if (in.available() > 0 || remaining > 26) {
+            int consumed = 8;
+
+            try {
+                consumed += readHeader(inputStream);
+            }
+            catch (IOException e) {
+                // Trailing data that is not another member is ignored.
+                return true;
+            }
+
+            inf.reset();
+
+            if (remaining > consumed) {
+                inf.setInput(buf, len - remaining + consumed, remaining - consumed);
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads an unsigned integer in little-endian byte order.
+     *
+     * @param inputStream Input stream to read from.
+     * @return The value read.
+     * @throws IOException When an IO exception occurs.
+     */
+    private static long readUnsignedInt(InputStream inputStream) throws IOException {
+        return ((long) readUnsignedShort(inputStream)) | ((long) readUnsignedShort(inputStream) << 16);
+    }
+
+    /**
+     * Reads an unsigned short in little-endian byte order.
+     *
+     * @param inputStream Input stream to read from.
+     * @return The value read.
+     * @throws IOException When an IO exception occurs.
+     */
+    private static int readUnsignedShort(InputStream inputStream) throws IOException {
+        return readUnsignedByte(inputStream) | (readUnsignedByte(inputStream) << 8);
+    }
+
+    /**
+     * Reads an unsigned byte.
+     *
+     * @param inputStream Input stream to read from.
+     * @return The value read.
+     * @throws IOException When an IO exception occurs.
+     */
+    private static int readUnsignedByte(InputStream inputStream) throws IOException {
+        int b = inputStream.read();
+
+        if (b == -1) {
+            throw new EOFException("unexpected end of GZIP data");
+        }
+
+        return b;
+    }
+
+    /**
+     * Skips the given number of bytes.
+     *
+     * @param inputStream Input stream to read from.
+     * @param count       Number of bytes to skip.
+     * @throws IOException When an IO exception occurs.
+     */
+    private static void skipBytes(InputStream inputStream, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            readUnsignedByte(inputStream);
+        }
+    }
+}
@@ -0,0 +1,619 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled;
+
+import com.budjb.httprequests.HttpContext;
+import com.budjb.httprequests.HttpRequest;
+import com.budjb.httprequests.HttpResponse;
+import com.budjb.httprequests.exception.HttpClientException;
+import com.budjb.httprequests.filter.LifecycleFilter;
+import com.budjb.httprequests.filter.RequestFilter;
+import com.budjb.httprequests.filter.RetryFilter;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A filter that spreads requests to a logical service across a set of endpoints.
+ * <p>
+ * Services are registered with a name and the base URIs of their endpoints. A request whose URI
+ * has the name of a service as its host, such as <code>http://orders/api/orders</code>, is sent to
+ * one of the endpoints of the service, keeping the path of the request. The endpoint is chosen for each
+ * attempt by the {@link Strategy} of the filter, and a retried request is sent to an endpoint that
+ * has not been tried yet whenever one is available.
+ * <p>
+ * An endpoint that fails a number of consecutive requests, either with an IO exception or a 5XX status,
+ * is ejected and not chosen again until the ejection time has passed. When all endpoints of a service
+ * are ejected, they are used regardless.
+ * <p>
+ * The filter can retry requests that fail with a 502, 503 or 504 status on another endpoint. Requests that
+ * fail with an IO exception are not retried, since the exception is propagated by the client.
+ * <p>
+ * Services should be registered before the filter is used.
+ */
+public class LoadBalancingFilter implements RequestFilter, LifecycleFilter, RetryFilter, Closeable {
+    /**
+     * Strategies used to choose the endpoint of a request.
+     */
+    public enum Strategy {
+        /**
+         * Endpoints are chosen in turn.
+         */
+        ROUND_ROBIN,
+
+        /**
+         * The endpoint with the fewest outstanding requests is chosen.
+         */
+        LEAST_OUTSTANDING,
+
+        /**
+         * Two endpoints are chosen at random, and the one with the lowest latency weighted by its outstanding
+         * requests is used.
+         */
+        POWER_OF_TWO_CHOICES
+    }
+
+    /**
+     * Name of the current {@link Selection} in the {@link HttpContext}.
+     */
+    private static final String SELECTION_NAME = "com.budjb.httprequests.filter.loadbalancing.Selection";
+
+    /**
+     * Name of the set of endpoints already tried by a request in the {@link HttpContext}.
+     */
+    private static final String TRIED_NAME = "com.budjb.httprequests.filter.loadbalancing.Tried";
+
+    /**
+     * Weight of a new latency sample in the moving average of an endpoint.
+     */
+    private static final double LATENCY_DECAY = 0.3;
+
+    /**
+     * Thread local that stores the HTTP context of the request in the current thread.
+     */
+    private final ThreadLocal<HttpContext> context = new ThreadLocal<>();
+
+    /**
+     * Registered services, keyed by name.
+     */
+    private final ConcurrentMap<String, Service> services = new ConcurrentHashMap<>();
+
+    /**
+     * Strategy used to choose the endpoint of a request.
+     */
+    private Strategy strategy = Strategy.ROUND_ROBIN;
+
+    /**
+     * Number of consecutive failures after which an endpoint is ejected.
+     */
+    private int failureThreshold = 5;
+
+    /**
+     * How long an endpoint is ejected for, in milliseconds.
+     */
+    private long ejectionTime = 30000;
+
+    /**
+     * Number of times a request that failed with a 502, 503 or 504 status is retried on another endpoint.
+     */
+    private int maxRetries = 0;
+
+    /**
+     * Registers a service with the given endpoints.
+     *
+     * @param name      Name of the service, which requests use as their host.
+     * @param endpoints Base URIs of the endpoints, such as <code>http://10.0.0.1:8080</code>.
+     * @return The instance of this class the method was called with.
+     */
+    public LoadBalancingFilter addService(String name, List<String> endpoints) {
+        if (endpoints == null || endpoints.isEmpty()) {
+            throw new IllegalArgumentException("a service requires at least one endpoint");
+        }
+
+        services.put(name.toLowerCase(), new Service(endpoints));
+        return this;
+    }
+
+    /**
+     * Registers a service with the given endpoints.
+     *
+     * @param name      Name of the service, which requests use as their host.
+     * @param endpoints Base URIs of the endpoints, such as <code>http://10.0.0.1:8080</code>.
+     * @return The instance of this class the method was called with.
+     */
+    public LoadBalancingFilter addService(String name, String... endpoints) {
+        return addService(name, Arrays.asList(endpoints));
+    }
+
+    /**
+     * Returns the strategy used to choose the endpoint of a request.
+     *
+     * @return The strategy.
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Sets the strategy used to choose the endpoint of a request.
+     *
+     * @param strategy The strategy.
+     * @return The instance of this class the method was called with.
+     */
+    public LoadBalancingFilter setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+        return this;
+    }
+
+    /**
+     * Returns the number of consecutive failures after which an endpoint is ejected.
+     *
+     * @return The failure threshold.
+     */
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failures after which an endpoint is ejected.
+     *
+     * @param failureThreshold The failure threshold.
+     * @return The instance of this class the method was called with.
+     */
+    public LoadBalancingFilter setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+        return this;
+    }
+
+    /**
+     * Returns how long an endpoint is ejected for, in milliseconds.
+     *
+     * @return The ejection time, in milliseconds.
+     */
+    public long getEjectionTime() {
+        return ejectionTime;
+    }
+
+    /**
+     * Sets how long an endpoint is ejected for, in milliseconds.
+     *
+     * @param ejectionTime The ejection time, in milliseconds.
+     * @return The instance of this class the method was called with.
+     */
+    public LoadBalancingFilter setEjectionTime(long ejectionTime) {
+        this.ejectionTime = ejectionTime;
+        return this;
+    }
+
+    /**
+     * Returns the number of times a request that failed with a 502, 503 or 504 status is retried on
+     * another endpoint.
+     *
+     * @return The maximum number of retries.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Sets the number of times a request that failed with a 502, 503 or 504 status is retried on
+     * another endpoint.
+     *
+     * @param maxRetries The maximum number of retries.
+     * @return The instance of this class the method was called with.
+     */
+    public LoadBalancingFilter setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Returns the endpoints of the given service that are not currently ejected.
+     *
+     * @param name Name of the service.
+     * @return The available endpoints, or an empty list if the service is not registered.
+     */
+    public List<String> getAvailableEndpoints(String name) {
+        Service service = services.get(name.toLowerCase());
+
+        if (service == null) {
+            return Collections.emptyList();
+        }
+
+        long now = System.nanoTime();
+        List<String> available = new ArrayList<>();
+
+        for (Endpoint endpoint : service.endpoints) {
+            if (!endpoint.isEjected(now)) {
+                available.add(endpoint.baseUri);
+            }
+        }
+
+        return available;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStart(HttpContext context) {
+        this.context.set(context);
+    }
+
+    /**
+     * Replaces the host of a request to a registered service with the base URI of one of its endpoints.
+     *
+     * @param request HTTP request.
+     */
+    @Override
+    public void filter(HttpRequest request) {
+        HttpContext context = this.context.get();
+
+        URI uri = URI.create(request.getUri());
+        Service service = uri.getHost() != null ? services.get(uri.getHost().toLowerCase()) : null;
+
+        if (service == null || context == null) {
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Set<Endpoint> tried = (Set<Endpoint>) context.get(TRIED_NAME);
+
+        if (tried == null) {
+            tried = new HashSet<>();
+            context.set(TRIED_NAME, tried);
+        }
+
+        Endpoint endpoint = service.choose(tried);
+        tried.add(endpoint);
+
+        try {
+            request.setUri(endpoint.resolve(uri.getRawPath()));
+        }
+        catch (URISyntaxException e) {
+            throw new HttpClientException(e);
+        }
+
+        endpoint.outstanding.incrementAndGet();
+        context.set(SELECTION_NAME, new Selection(endpoint, System.nanoTime()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onResponse(HttpContext context) {
+        complete(context);
+    }
+
+    /**
+     * Retries a request that failed with a 502, 503 or 504 status when another attempt is allowed.
+     *
+     * @param context HTTP request context.
+     * @return Whether the request should be retried.
+     */
+    @Override
+    public boolean isRetryRequired(HttpContext context) {
+        if (context.get(TRIED_NAME) == null || context.getRetries() >= maxRetries) {
+            return false;
+        }
+
+        int status = context.getResponse().getStatus();
+
+        return status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * Records a failure for an endpoint whose request did not receive a response, such as when an IO
+     * exception occurred, and clears the HTTP context of the current thread.
+     */
+    @Override
+    public void close() {
+        HttpContext context = this.context.get();
+
+        if (context != null) {
+            complete(context);
+        }
+
+        this.context.remove();
+    }
+
+    /**
+     * Returns whether the given response counts as a failure of its endpoint. By default, this is the
+     * case for all 5XX statuses.
+     *
+     * @param response HTTP response.
+     * @return Whether the response counts as a failure.
+     */
+    protected boolean isFailure(HttpResponse response) {
+        return response.getStatus() >= 500;
+    }
+
+    /**
+     * Records the outcome of the current attempt of the request of the given context, if any.
+     *
+     * @param context HTTP request context.
+     */
+    private void complete(HttpContext context) {
+        Selection selection = context.get(SELECTION_NAME, Selection.class);
+
+        if (selection == null) {
+            return;
+        }
+
+        context.set(SELECTION_NAME, null);
+
+        HttpResponse response = context.getResponse();
+        boolean success = response != null && !isFailure(response);
+
+        selection.endpoint.complete(System.nanoTime() - selection.start, success);
+    }
+
+    /**
+     * The endpoint chosen for an attempt of a request.
+     */
+    private static class Selection {
+        /**
+         * Chosen endpoint.
+         */
+        private final Endpoint endpoint;
+
+        /**
+         * Time the request was sent, in nanoseconds.
+         */
+        private final long start;
+
+        /**
+         * Constructor.
+         *
+         * @param endpoint Chosen endpoint.
+         * @param start    Time the request was sent, in nanoseconds.
+         */
+        Selection(Endpoint endpoint, long start) {
+            this.endpoint = endpoint;
+            this.start = start;
+        }
+    }
+
+    /**
+     * A logical service and its endpoints.
+     */
+    private class Service {
+        /**
+         * Endpoints of the service.
+         */
+        private final Endpoint[] endpoints;
+
+        /**
+         * Counter used by the round robin strategy.
+         */
+        private final AtomicInteger next = new AtomicInteger();
+
+        /**
+         * Constructor.
+         *
+         * @param baseUris Base URIs of the endpoints.
+         */
+        Service(List<String> baseUris) {
+            endpoints = new Endpoint[baseUris.size()];
+
+            for (int i = 0; i < endpoints.length; i++) {
+                endpoints[i] = new Endpoint(baseUris.get(i));
+            }
+        }
+
+        /**
+         * Chooses an endpoint, preferring endpoints that are not ejected and have not been tried.
+         *
+         * @param tried Endpoints already tried by the request.
+         * @return The chosen endpoint.
+         */
+        Endpoint choose(Set<Endpoint> tried) {
+            long now = System.nanoTime();
+            List<Endpoint> candidates = new ArrayList<>(endpoints.length);
+
+            for (Endpoint endpoint : endpoints) {
+                if (!endpoint.isEjected(now) && !tried.contains(endpoint)) {
+                    candidates.add(endpoint);
+                }
+            }
+
+            if (candidates.isEmpty()) {
+                for (Endpoint endpoint : endpoints) {
+                    if (!endpoint.isEjected(now)) {
+                        candidates.add(endpoint);
+                    }
+                }
+            }
+
+            if (candidates.isEmpty()) {
+                candidates.addAll(Arrays.asList(endpoints));
+            }
+
+            switch (strategy) {
+                case LEAST_OUTSTANDING:
+                    return chooseLeastOutstanding(candidates);
+
+                case POWER_OF_TWO_CHOICES:
+                    return choosePowerOfTwo(candidates);
+
+                default:
+                    return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+            }
+        }
+
+        /**
+         * Chooses the candidate with the fewest outstanding requests, starting the search at a rotating
+         * position so that ties are spread across endpoints.
+         *
+         * @param candidates Candidate endpoints.
+         * @return The chosen endpoint.
+         */
+        private Endpoint chooseLeastOutstanding(List<Endpoint> candidates) {
+            int size = candidates.size();
+            int offset = Math.floorMod(next.getAndIncrement(), size);
+            Endpoint best = null;
+
+            for (int i = 0; i < size; i++) {
+                Endpoint endpoint = candidates.get((offset + i) % size);
+
+                if (best == null || endpoint.outstanding.get() < best.outstanding.get()) {
+                    best = endpoint;
+                }
+            }
+
+            return best;
+        }
+
+        /**
+         * Chooses the better of two random candidates, based on their latency and outstanding requests.
+         *
+         * @param candidates Candidate endpoints.
+         * @return The chosen endpoint.
+         */
+        private Endpoint choosePowerOfTwo(List<Endpoint> candidates) {
+            int size = candidates.size();
+
+            if (size == 1) {
+                return candidates.get(0);
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(size);
+            int second = random.nextInt(size - 1);
+
+            if (second >= first) {
+                second++;
+            }
+
+            Endpoint a = candidates.get(first);
+            Endpoint b = candidates.get(second);
+
+            return a.getLoad() <= b.getLoad() ? a : b;
+        }
+    }
+
+    /**
+     * An endpoint of a service and its statistics.
+     */
+    private class Endpoint {
+        /**
+         * Base URI of the endpoint, without a trailing slash.
+         */
+        private final String baseUri;
+
+        /**
+         * Number of outstanding requests.
+         */
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        /**
+         * Moving average of the latency, in nanoseconds, stored as the bits of a <code>double</code>.
+         */
+        private final AtomicLong latency = new AtomicLong(Double.doubleToLongBits(0));
+
+        /**
+         * Number of consecutive failures.
+         */
+        private final AtomicInteger failures = new AtomicInteger();
+
+        /**
+         * Time until which the endpoint is ejected, in nanoseconds.
+         */
+        private volatile long ejectedUntil;
+
+        /**
+         * Whether the endpoint has been ejected at least once.
+         */
+        private volatile boolean ejected;
+
+        /**
+         * Constructor.
+         *
+         * @param baseUri Base URI of the endpoint.
+         */
+        Endpoint(String baseUri) {
+            this.baseUri = baseUri.endsWith("/") ? baseUri.substring(0, baseUri.length() - 1) : baseUri;
+        }
+
+        /**
+         * Returns the URI of the given path on the endpoint.
+         *
+         * @param rawPath Raw path of the request.
+         * @return The URI of the path on the endpoint.
+         */
+        String resolve(String rawPath) {
+            return rawPath == null || rawPath.isEmpty() ? baseUri : baseUri + rawPath;
+        }
+
+        /**
+         * Returns whether the endpoint is ejected at the given time.
+         *
+         * @param now Current time, in nanoseconds.
+         * @return Whether the endpoint is ejected.
+         */
+        boolean isEjected(long now) {
+            return ejected && ejectedUntil - now > 0;
+        }
+
+        /**
+         * Returns the load of the endpoint, used by the power of two choices strategy. Endpoints without
+         * any latency samples have the lowest possible latency so that they are tried.
+         *
+         * @return The latency of the endpoint weighted by its outstanding requests.
+         */
+        double getLoad() {
+            return Math.max(1, Double.longBitsToDouble(latency.get())) * (outstanding.get() + 1);
+        }
+
+        /**
+         * Records the outcome of a request to the endpoint.
+         *
+         * @param elapsed Latency of the request, in nanoseconds.
+         * @param success Whether the request succeeded.
+         */
+        void complete(long elapsed, boolean success) {
+            outstanding.decrementAndGet();
+
+            while (true) {
+                long bits = latency.get();
+                double current = Double.longBitsToDouble(bits);
+                double next = current == 0 ? elapsed : current + LATENCY_DECAY * (elapsed - current);
+
+                if (latency.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                    break;
+                }
+            }
+
+            if (success) {
+                failures.set(0);
+            }
+            else if (failures.incrementAndGet() >= failureThreshold) {
+                failures.set(0);
+                ejectedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ejectionTime);
+                ejected = true;
+            }
+        }
+    }
+}
@@ -72,6 +72,16 @@ public abstract class LoggingFilter implements OutputStreamFilter, LifecycleFilt
         return loggingOutputStream;
     }
 
+    /**
+     * Returns {@code true}, since the request entity is only captured as it is written.
+     *
+     * @return {@code true}.
+     */
+    @Override
+    public boolean isLengthPreserving() {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -171,8 +181,8 @@ public abstract class LoggingFilter implements OutputStreamFilter, LifecycleFilt
         }
 
         stringBuilder.append("\n");
-        stringBuilder.append(new String(output, 0, Math.min(output.length, MAX_ENTITY_LENGTH)));
-        if (output.length > MAX_ENTITY_LENGTH) {
+        stringBuilder.append(new String(output));
+        if (loggingOutputStream.isTruncated()) {
             stringBuilder.append(" ...more...");
         }
         stringBuilder.append("\n");
@@ -257,6 +267,11 @@ public abstract class LoggingFilter implements OutputStreamFilter, LifecycleFilt
          */
         private final OutputStream outputStream;
 
+        /**
+         * Whether more bytes were written than were captured.
+         */
+        private boolean truncated;
+
         /**
          * Constructor.
          *
@@ -276,6 +291,15 @@ public abstract class LoggingFilter implements OutputStreamFilter, LifecycleFilt
             return loggingStream;
         }
 
+        /**
+         * Returns whether more bytes were written than were captured.
+         *
+         * @return Whether more bytes were written than were captured.
+         */
+        boolean isTruncated() {
+            return truncated;
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -283,9 +307,63 @@ public abstract class LoggingFilter implements OutputStreamFilter, LifecycleFilt
         public void write(int b) throws IOException {
             outputStream.write(b);
 
-            if (loggingStream.size() <= MAX_ENTITY_LENGTH) {
+            if (truncated) {
+                return;
+            }
+
+            if (loggingStream.size() < MAX_ENTITY_LENGTH) {
                 loggingStream.write(b);
             }
+            else {
+                truncated = true;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            outputStream.write(b, off, len);
+            capture(b, off, len);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void flush() throws IOException {
+            outputStream.flush();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException {
+            outputStream.close();
+        }
+
+        /**
+         * Captures written bytes until the maximum number of logged bytes has been reached.
+         *
+         * @param b   Bytes that were written.
+         * @param off Offset of the first byte that was written.
+         * @param len Number of bytes that were written.
+         */
+        private void capture(byte[] b, int off, int len) {
+            if (truncated) {
+                return;
+            }
+
+            int remaining = MAX_ENTITY_LENGTH - loggingStream.size();
+
+            if (len > remaining) {
+                truncated = true;
+                len = remaining;
+            }
+
+            loggingStream.write(b, off, len);
         }
     }
 
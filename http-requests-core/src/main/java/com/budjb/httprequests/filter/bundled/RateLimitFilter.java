@@ -0,0 +1,416 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled;
+
+import com.budjb.httprequests.HttpContext;
+import com.budjb.httprequests.HttpRequest;
+import com.budjb.httprequests.HttpRequestsUtil;
+import com.budjb.httprequests.HttpResponse;
+import com.budjb.httprequests.exception.RateLimitExceededException;
+import com.budjb.httprequests.filter.LifecycleFilter;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A filter that limits the rate of requests with token buckets.
+ * <p>
+ * Each request is assigned to a bucket by a key function, which by default returns the origin (scheme,
+ * host and port) of the request. A bucket allows a burst of requests, after which requests are allowed
+ * at a steady rate. Buckets are implemented with the generic cell rate algorithm, so the state of a
+ * bucket is a single atomic timestamp and taking a token never locks.
+ * <p>
+ * When no token is available, the request either waits until one becomes available, waits up to a
+ * timeout, or is rejected, depending on the {@link Policy}. A request that does not receive a token
+ * fails with a {@link RateLimitExceededException}.
+ * <p>
+ * Optionally, the filter reads the <code>Retry-After</code> header of 429 and 503 responses and the
+ * <code>X-RateLimit-Remaining</code> and <code>X-RateLimit-Reset</code> headers of any response, and
+ * holds back further requests of the bucket until the time the server indicates.
+ */
+public class RateLimitFilter implements LifecycleFilter {
+    /**
+     * Describes what happens to a request when no token is available.
+     */
+    public enum Policy {
+        /**
+         * The request waits until a token becomes available.
+         */
+        BLOCK,
+
+        /**
+         * The request waits up to the timeout for a token to become available.
+         */
+        TIMEOUT,
+
+        /**
+         * The request is rejected immediately.
+         */
+        REJECT
+    }
+
+    /**
+     * Values of <code>X-RateLimit-Reset</code> larger than this are interpreted as epoch seconds rather
+     * than as a number of seconds to wait.
+     */
+    private static final long EPOCH_SECONDS_THRESHOLD = 1_000_000_000L;
+
+    /**
+     * Token buckets, keyed by the result of the key function.
+     */
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Time between tokens, in nanoseconds.
+     */
+    private final long interval;
+
+    /**
+     * Number of requests that may be made at once before the steady rate applies.
+     */
+    private final int burst;
+
+    /**
+     * Function that returns the bucket key of a request.
+     */
+    private Function<HttpRequest, String> keyFunction = request -> HttpRequestsUtil.getOrigin(request.getUri());
+
+    /**
+     * What happens to a request when no token is available.
+     */
+    private Policy policy = Policy.BLOCK;
+
+    /**
+     * How long a request waits for a token with the {@link Policy#TIMEOUT} policy, in milliseconds.
+     */
+    private long timeout = 1000;
+
+    /**
+     * Whether rate limit headers of responses adjust the buckets.
+     */
+    private boolean adaptive = false;
+
+    /**
+     * Constructor.
+     *
+     * @param requestsPerSecond Steady rate of requests of each bucket.
+     * @param burst             Number of requests that may be made at once before the steady rate applies.
+     */
+    public RateLimitFilter(double requestsPerSecond, int burst) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("requests per second must be greater than 0");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be at least 1");
+        }
+
+        this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        this.burst = burst;
+    }
+
+    /**
+     * Constructor that allows a burst of a single request.
+     *
+     * @param requestsPerSecond Steady rate of requests of each bucket.
+     */
+    public RateLimitFilter(double requestsPerSecond) {
+        this(requestsPerSecond, 1);
+    }
+
+    /**
+     * Returns the function that returns the bucket key of a request.
+     *
+     * @return The key function.
+     */
+    public Function<HttpRequest, String> getKeyFunction() {
+        return keyFunction;
+    }
+
+    /**
+     * Sets the function that returns the bucket key of a request.
+     *
+     * @param keyFunction The key function.
+     * @return The instance of this class the method was called with.
+     */
+    public RateLimitFilter setKeyFunction(Function<HttpRequest, String> keyFunction) {
+        this.keyFunction = keyFunction;
+        return this;
+    }
+
+    /**
+     * Returns what happens to a request when no token is available.
+     *
+     * @return The policy.
+     */
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Sets what happens to a request when no token is available.
+     *
+     * @param policy The policy.
+     * @return The instance of this class the method was called with.
+     */
+    public RateLimitFilter setPolicy(Policy policy) {
+        this.policy = policy;
+        return this;
+    }
+
+    /**
+     * Returns how long a request waits for a token with the {@link Policy#TIMEOUT} policy, in milliseconds.
+     *
+     * @return The timeout, in milliseconds.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets how long a request waits for a token with the {@link Policy#TIMEOUT} policy, in milliseconds.
+     *
+     * @param timeout The timeout, in milliseconds.
+     * @return The instance of this class the method was called with.
+     */
+    public RateLimitFilter setTimeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Returns whether rate limit headers of responses adjust the buckets.
+     *
+     * @return Whether rate limit headers of responses adjust the buckets.
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Sets whether rate limit headers of responses adjust the buckets.
+     *
+     * @param adaptive Whether rate limit headers of responses adjust the buckets.
+     * @return The instance of this class the method was called with.
+     */
+    public RateLimitFilter setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        return this;
+    }
+
+    /**
+     * Takes a token from the bucket of the request, waiting for one according to the policy.
+     *
+     * @param context HTTP request context.
+     * @throws RateLimitExceededException When no token could be taken.
+     */
+    @Override
+    public void onRequest(HttpContext context) {
+        String key = keyFunction.apply(context.getRequest());
+        Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket());
+
+        long maxWait;
+        switch (policy) {
+            case REJECT:
+                maxWait = 0;
+                break;
+
+            case TIMEOUT:
+                maxWait = TimeUnit.MILLISECONDS.toNanos(timeout);
+                break;
+
+            default:
+                maxWait = Long.MAX_VALUE;
+        }
+
+        long wait = bucket.reserve(System.nanoTime(), maxWait);
+
+        if (wait < 0) {
+            throw new RateLimitExceededException(key);
+        }
+
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RateLimitExceededException(key);
+            }
+        }
+    }
+
+    /**
+     * Holds back further requests of the bucket of the request when the response indicates that the
+     * server's rate limit has been reached, if the filter is adaptive.
+     *
+     * @param context HTTP request context.
+     */
+    @Override
+    public void onResponse(HttpContext context) {
+        if (!adaptive) {
+            return;
+        }
+
+        HttpResponse response = context.getResponse();
+        long delay = getDelay(response);
+
+        if (delay > 0) {
+            String key = keyFunction.apply(context.getRequest());
+            buckets.computeIfAbsent(key, k -> new Bucket()).pause(System.nanoTime() + delay);
+        }
+    }
+
+    /**
+     * Returns how long the server asks the client to wait before the next request, based on the
+     * <code>Retry-After</code> and <code>X-RateLimit-*</code> headers of the given response.
+     *
+     * @param response HTTP response.
+     * @return The delay in nanoseconds, or 0 if the server did not ask the client to wait.
+     */
+    protected long getDelay(HttpResponse response) {
+        int status = response.getStatus();
+
+        if (status == 429 || status == 503) {
+            long retryAfter = parseRetryAfter(response.getHeader("Retry-After"));
+
+            if (retryAfter > 0) {
+                return retryAfter;
+            }
+        }
+
+        String remaining = response.getHeader("X-RateLimit-Remaining");
+
+        if (remaining == null) {
+            return 0;
+        }
+
+        try {
+            if (Long.parseLong(remaining.trim()) > 0) {
+                return 0;
+            }
+
+            String reset = response.getHeader("X-RateLimit-Reset");
+
+            if (reset == null) {
+                return 0;
+            }
+
+            long value = Long.parseLong(reset.trim());
+
+            if (value > EPOCH_SECONDS_THRESHOLD) {
+                value -= System.currentTimeMillis() / 1000;
+            }
+
+            return value > 0 ? TimeUnit.SECONDS.toNanos(value) : 0;
+        }
+        catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Parses a <code>Retry-After</code> header, which contains either a number of seconds or an HTTP date.
+     *
+     * @param retryAfter Value of the header.
+     * @return The delay in nanoseconds, or 0 if the header is missing, invalid or in the past.
+     */
+    static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null) {
+            return 0;
+        }
+
+        String value = retryAfter.trim();
+
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toNanos(Long.parseLong(value)));
+        }
+        catch (NumberFormatException ignored) {
+            // The value may be an HTTP date instead.
+        }
+
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toNanos());
+        }
+        catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * A token bucket implemented with the generic cell rate algorithm.
+     */
+    private class Bucket {
+        /**
+         * Theoretical arrival time of the next request at the steady rate, in nanoseconds.
+         */
+        private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+        /**
+         * Reserves a token at the given time.
+         *
+         * @param now     Current time, in nanoseconds.
+         * @param maxWait Longest time the caller is willing to wait for the token, in nanoseconds.
+         * @return The time the caller must wait before using the token in nanoseconds,
+         *         or {@code -1} if no token could be reserved within the given time.
+         */
+        long reserve(long now, long maxWait) {
+            long tolerance = interval * (burst - 1);
+
+            while (true) {
+                long current = theoreticalArrival.get();
+                long arrival = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+                long wait = arrival - now - tolerance;
+
+                if (wait > maxWait) {
+                    return -1;
+                }
+
+                if (theoreticalArrival.compareAndSet(current, arrival + interval)) {
+                    return Math.max(0, wait);
+                }
+            }
+        }
+
+        /**
+         * Prevents tokens from being taken before the given time, and empties the bucket.
+         *
+         * @param until Time the next token becomes available, in nanoseconds.
+         */
+        void pause(long until) {
+            long arrival = until + interval * (burst - 1);
+
+            while (true) {
+                long current = theoreticalArrival.get();
+
+                if (current != Long.MIN_VALUE && current - arrival >= 0) {
+                    return;
+                }
+
+                if (theoreticalArrival.compareAndSet(current, arrival)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled;
+
+import com.budjb.httprequests.HttpMethod;
+import com.budjb.httprequests.MultiValuedMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single HTTP exchange, including its entities, as recorded by a {@link TrafficRecordingFilter}.
+ * <p>
+ * A recording file starts with {@link #MAGIC} and {@link #VERSION} as two 4-byte integers, followed by the
+ * exchanges. Each exchange is written as its length as a 4-byte integer followed by its {@link #encode() encoded}
+ * form, so that a reader can skip exchanges it is not interested in and detect an exchange that was only
+ * partially written.
+ */
+public class RecordedExchange {
+    /**
+     * Value of the first 4 bytes of a recording file ("HREC").
+     */
+    public static final int MAGIC = 0x48524543;
+
+    /**
+     * Version of the recording format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Time the exchange started, in milliseconds since the epoch.
+     */
+    private final long timestamp;
+
+    /**
+     * HTTP method of the request.
+     */
+    private final HttpMethod method;
+
+    /**
+     * Complete URI of the request, including the query string.
+     */
+    private final String uri;
+
+    /**
+     * Request headers.
+     */
+    private final MultiValuedMap requestHeaders;
+
+    /**
+     * Request entity, or {@code null} if there was none.
+     */
+    private final byte[] requestEntity;
+
+    /**
+     * HTTP status of the response.
+     */
+    private final int status;
+
+    /**
+     * Response headers.
+     */
+    private final MultiValuedMap responseHeaders;
+
+    /**
+     * Response entity, or {@code null} if there was none.
+     */
+    private final byte[] responseEntity;
+
+    /**
+     * Constructor. The entities are not copied.
+     *
+     * @param timestamp       Time the exchange started, in milliseconds since the epoch.
+     * @param method          HTTP method of the request.
+     * @param uri             Complete URI of the request, including the query string.
+     * @param requestHeaders  Request headers.
+     * @param requestEntity   Request entity, or {@code null} if there was none.
+     * @param status          HTTP status of the response.
+     * @param responseHeaders Response headers.
+     * @param responseEntity  Response entity, or {@code null} if there was none.
+     */
+    public RecordedExchange(long timestamp, HttpMethod method, String uri, MultiValuedMap requestHeaders, byte[] requestEntity, int status, MultiValuedMap responseHeaders, byte[] responseEntity) {
+        this.timestamp = timestamp;
+        this.method = method;
+        this.uri = uri;
+        this.requestHeaders = requestHeaders;
+        this.requestEntity = requestEntity;
+        this.status = status;
+        this.responseHeaders = responseHeaders;
+        this.responseEntity = responseEntity;
+    }
+
+    /**
+     * Returns the time the exchange started, in milliseconds since the epoch.
+     *
+     * @return The time the exchange started, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the HTTP method of the request.
+     *
+     * @return The HTTP method of the request.
+     */
+    public HttpMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the complete URI of the request, including the query string.
+     *
+     * @return The complete URI of the request.
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * Returns the request headers.
+     *
+     * @return The request headers.
+     */
+    public MultiValuedMap getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    /**
+     * Returns the request entity. The array is not copied and must not be modified.
+     *
+     * @return The request entity, or {@code null} if there was none or it was not decoded.
+     */
+    public byte[] getRequestEntity() {
+        return requestEntity;
+    }
+
+    /**
+     * Returns the HTTP status of the response.
+     *
+     * @return The HTTP status of the response.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the response headers.
+     *
+     * @return The response headers.
+     */
+    public MultiValuedMap getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    /**
+     * Returns the response entity. The array is not copied and must not be modified.
+     *
+     * @return The response entity, or {@code null} if there was none or it was not decoded.
+     */
+    public byte[] getResponseEntity() {
+        return responseEntity;
+    }
+
+    /**
+     * Encodes the exchange, without its length.
+     *
+     * @return The encoded exchange.
+     */
+    public byte[] encode() {
+        int size = 64 + uri.length() + length(requestEntity) + length(responseEntity);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(size);
+
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeLong(timestamp);
+            writeString(out, method.name());
+            writeString(out, uri);
+            writeHeaders(out, requestHeaders);
+            writeBytes(out, requestEntity);
+            out.writeInt(status);
+            writeHeaders(out, responseHeaders);
+            writeBytes(out, responseEntity);
+        }
+        catch (IOException e) {
+            // Writing to a byte array does not fail.
+            throw new UncheckedIOException(e);
+        }
+
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Decodes an exchange from the remaining bytes of the given buffer, which must contain exactly one
+     * encoded exchange.
+     *
+     * @param buffer   Buffer containing the encoded exchange.
+     * @param entities Whether to decode the entities. When {@code false}, the entities of the returned
+     *                 exchange are {@code null}, and nothing but the headers is copied from the buffer.
+     * @return The decoded exchange.
+     * @throws IllegalArgumentException When the buffer does not contain a valid exchange.
+     */
+    public static RecordedExchange decode(ByteBuffer buffer, boolean entities) {
+        try {
+            long timestamp = buffer.getLong();
+            HttpMethod method = HttpMethod.valueOf(readString(buffer));
+            String uri = readString(buffer);
+            MultiValuedMap requestHeaders = readHeaders(buffer);
+            byte[] requestEntity = readBytes(buffer, entities);
+            int status = buffer.getInt();
+            MultiValuedMap responseHeaders = readHeaders(buffer);
+            byte[] responseEntity = readBytes(buffer, entities);
+
+            return new RecordedExchange(timestamp, method, uri, requestHeaders, requestEntity, status, responseHeaders, responseEntity);
+        }
+        catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("buffer does not contain a valid recorded exchange", e);
+        }
+    }
+
+    /**
+     * Returns the length of an entity.
+     *
+     * @param entity Entity, or {@code null}.
+     * @return The length of the entity, or {@code 0} if there is none.
+     */
+    private static int length(byte[] entity) {
+        return entity != null ? entity.length : 0;
+    }
+
+    /**
+     * Writes a string as its UTF-8 length followed by its UTF-8 bytes.
+     *
+     * @param out   Output to write to.
+     * @param value String to write.
+     * @throws IOException When an IO exception occurs.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes an array as its length followed by its contents, or a length of {@code -1} if it is {@code null}.
+     *
+     * @param out   Output to write to.
+     * @param bytes Array to write.
+     * @throws IOException When an IO exception occurs.
+     */
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        }
+        else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Writes headers as the number of names, followed by each name, its number of values and its values.
+     *
+     * @param out     Output to write to.
+     * @param headers Headers to write.
+     * @throws IOException When an IO exception occurs.
+     */
+    private static void writeHeaders(DataOutputStream out, MultiValuedMap headers) throws IOException {
+        out.writeInt(headers.size());
+
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            writeString(out, header.getKey());
+            out.writeInt(header.getValue().size());
+
+            for (String value : header.getValue()) {
+                writeString(out, value);
+            }
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}.
+     *
+     * @param buffer Buffer to read from.
+     * @return The string.
+     */
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+
+        if (length < 0) {
+            throw new IllegalArgumentException("invalid string length " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads an array written by {@link #writeBytes}.
+     *
+     * @param buffer Buffer to read from.
+     * @param copy   Whether to copy the array, or to skip over it and return {@code null}.
+     * @return The array, or {@code null} if it was not written or not copied.
+     */
+    private static byte[] readBytes(ByteBuffer buffer, boolean copy) {
+        int length = buffer.getInt();
+
+        if (length == -1) {
+            return null;
+        }
+
+        if (length < 0) {
+            throw new IllegalArgumentException("invalid entity length " + length);
+        }
+
+        if (!copy) {
+            buffer.position(buffer.position() + length);
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads headers written by {@link #writeHeaders}.
+     *
+     * @param buffer Buffer to read from.
+     * @return The headers.
+     */
+    private static MultiValuedMap readHeaders(ByteBuffer buffer) {
+        MultiValuedMap headers = new MultiValuedMap();
+        int names = buffer.getInt();
+
+        for (int i = 0; i < names; i++) {
+            String name = readString(buffer);
+            int values = buffer.getInt();
+
+            for (int j = 0; j < values; j++) {
+                headers.add(name, readString(buffer));
+            }
+        }
+
+        return headers;
+    }
+}
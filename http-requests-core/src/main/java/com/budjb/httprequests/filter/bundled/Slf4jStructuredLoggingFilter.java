@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled;
+
+import com.budjb.httprequests.filter.bundled.Slf4jLoggingFilter.LoggerLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link StructuredLoggingFilter} implementation that logs events to an SLF4J logger.
+ */
+public class Slf4jStructuredLoggingFilter extends StructuredLoggingFilter {
+    /**
+     * Logger.
+     */
+    private final Logger logger;
+
+    /**
+     * Log level to log with.
+     */
+    private final LoggerLevel level;
+
+    /**
+     * Constructor.
+     */
+    public Slf4jStructuredLoggingFilter() {
+        this(Slf4jStructuredLoggingFilter.class);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name Name of the logger.
+     */
+    public Slf4jStructuredLoggingFilter(String name) {
+        this(LoggerFactory.getLogger(name), LoggerLevel.INFO);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name  Name of the logger.
+     * @param level Logger level to output logs to.
+     */
+    public Slf4jStructuredLoggingFilter(String name, LoggerLevel level) {
+        this(LoggerFactory.getLogger(name), level);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param clazz Class to base the logger on.
+     */
+    public Slf4jStructuredLoggingFilter(Class<?> clazz) {
+        this(LoggerFactory.getLogger(clazz), LoggerLevel.INFO);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param clazz Class to base the logger on.
+     * @param level Logger level to output logs to.
+     */
+    public Slf4jStructuredLoggingFilter(Class<?> clazz, LoggerLevel level) {
+        this(LoggerFactory.getLogger(clazz), level);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param logger Logger to log to.
+     * @param level  Logger level to output logs to.
+     */
+    public Slf4jStructuredLoggingFilter(Logger logger, LoggerLevel level) {
+        this(logger, level, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param logger    Logger to log to.
+     * @param level     Logger level to output logs to.
+     * @param queueSize Capacity of the event queue.
+     */
+    public Slf4jStructuredLoggingFilter(Logger logger, LoggerLevel level, int queueSize) {
+        super(queueSize);
+        this.logger = logger;
+        this.level = level;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isEnabled() {
+        switch (level) {
+            case TRACE:
+                return logger.isTraceEnabled();
+
+            case DEBUG:
+                return logger.isDebugEnabled();
+
+            case INFO:
+                return logger.isInfoEnabled();
+
+            case WARN:
+                return logger.isWarnEnabled();
+
+            default:
+                return logger.isErrorEnabled();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void write(HttpLogEvent event) {
+        switch (level) {
+            case TRACE:
+                logger.trace("{}", event);
+                break;
+
+            case DEBUG:
+                logger.debug("{}", event);
+                break;
+
+            case INFO:
+                logger.info("{}", event);
+                break;
+
+            case WARN:
+                logger.warn("{}", event);
+                break;
+
+            case ERROR:
+                logger.error("{}", event);
+        }
+    }
+}
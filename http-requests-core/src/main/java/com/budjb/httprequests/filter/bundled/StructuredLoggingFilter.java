@@ -0,0 +1,456 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled;
+
+import com.budjb.httprequests.HttpContext;
+import com.budjb.httprequests.HttpEntity;
+import com.budjb.httprequests.HttpResponse;
+import com.budjb.httprequests.UriEncoder;
+import com.budjb.httprequests.filter.LifecycleFilter;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A filter that logs a compact {@link HttpLogEvent} for each HTTP exchange without adding latency to it.
+ * <p>
+ * Unlike {@link LoggingFilter}, entities are not captured. Whether logging is enabled is checked before
+ * anything is captured, exchanges that completed successfully may be sampled at a configurable rate, and
+ * exchanges that failed or received an error status are always logged. Events are handed to a bounded queue
+ * and written by a single background thread, so slow log appenders never block the requesting thread. When
+ * the queue is full, events are dropped according to the {@link OverflowPolicy}.
+ * <p>
+ * The background thread is started when the first event is queued, and is stopped with {@link #shutdown()}.
+ * An instance of the filter should be shared by every request it logs.
+ */
+public abstract class StructuredLoggingFilter implements LifecycleFilter, Closeable {
+    /**
+     * Default capacity of the event queue.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    /**
+     * Name of the start time of the exchange, in nanoseconds, in the {@link HttpContext}.
+     */
+    private static final String START_TIME_NAME = "com.budjb.httprequests.filter.structuredLogging.StartTime";
+
+    /**
+     * Name of the start time of the exchange, in milliseconds since the epoch, in the {@link HttpContext}.
+     */
+    private static final String TIMESTAMP_NAME = "com.budjb.httprequests.filter.structuredLogging.Timestamp";
+
+    /**
+     * Policies applied when an event is logged while the queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The new event is dropped.
+         */
+        DROP_NEWEST,
+
+        /**
+         * The oldest queued event is dropped to make room for the new event.
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * Queue of events waiting to be written.
+     */
+    private final BlockingQueue<HttpLogEvent> queue;
+
+    /**
+     * Number of events that were dropped.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Thread local that stores the HTTP context of the request in the current thread.
+     */
+    private final ThreadLocal<HttpContext> context = new ThreadLocal<>();
+
+    /**
+     * Background thread that writes events.
+     */
+    private volatile Thread writer;
+
+    /**
+     * Whether the filter has been shut down.
+     */
+    private volatile boolean shutdown;
+
+    /**
+     * Policy applied when an event is logged while the queue is full.
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+
+    /**
+     * Fraction of successful exchanges that are logged, from 0 to 1.
+     */
+    private double sampleRate = 1;
+
+    /**
+     * Lowest HTTP status that is considered an error and always logged.
+     */
+    private int errorStatus = 500;
+
+    /**
+     * Constructor.
+     *
+     * @param queueSize Capacity of the event queue.
+     */
+    protected StructuredLoggingFilter(int queueSize) {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("queueSize must be at least 1");
+        }
+        queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    /**
+     * Constructor.
+     */
+    protected StructuredLoggingFilter() {
+        this(DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Returns the policy applied when an event is logged while the queue is full.
+     *
+     * @return The policy applied when an event is logged while the queue is full.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Sets the policy applied when an event is logged while the queue is full.
+     *
+     * @param overflowPolicy Policy applied when an event is logged while the queue is full.
+     * @return The instance of this class the method was called with.
+     */
+    public StructuredLoggingFilter setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    /**
+     * Returns the fraction of successful exchanges that are logged.
+     *
+     * @return The fraction of successful exchanges that are logged.
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Sets the fraction of successful exchanges that are logged, from 0 to 1. Exchanges that fail or receive
+     * an error status are always logged.
+     *
+     * @param sampleRate Fraction of successful exchanges that are logged.
+     * @return The instance of this class the method was called with.
+     */
+    public StructuredLoggingFilter setSampleRate(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1");
+        }
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    /**
+     * Returns the lowest HTTP status that is considered an error and always logged.
+     *
+     * @return The lowest HTTP status that is considered an error.
+     */
+    public int getErrorStatus() {
+        return errorStatus;
+    }
+
+    /**
+     * Sets the lowest HTTP status that is considered an error and always logged.
+     *
+     * @param errorStatus Lowest HTTP status that is considered an error.
+     * @return The instance of this class the method was called with.
+     */
+    public StructuredLoggingFilter setErrorStatus(int errorStatus) {
+        this.errorStatus = errorStatus;
+        return this;
+    }
+
+    /**
+     * Returns the number of events that were dropped because the queue was full or the filter was shut down.
+     *
+     * @return The number of events that were dropped.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the number of events waiting to be written.
+     *
+     * @return The number of events waiting to be written.
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Records the start of the exchange if logging is enabled.
+     *
+     * @param context HTTP request context.
+     */
+    @Override
+    public void onStart(HttpContext context) {
+        if (shutdown || !isEnabled()) {
+            return;
+        }
+
+        context.set(TIMESTAMP_NAME, System.currentTimeMillis());
+        context.set(START_TIME_NAME, System.nanoTime());
+        this.context.set(context);
+    }
+
+    /**
+     * Logs the completed exchange.
+     *
+     * @param context HTTP request context.
+     */
+    @Override
+    public void onComplete(HttpContext context) {
+        if (this.context.get() == context) {
+            this.context.remove();
+            log(context, false);
+        }
+    }
+
+    /**
+     * Logs the exchange as failed if it did not complete.
+     */
+    @Override
+    public void close() {
+        HttpContext context = this.context.get();
+
+        if (context != null) {
+            this.context.remove();
+            log(context, true);
+        }
+    }
+
+    /**
+     * Stops the background thread once the queued events have been written. Events logged afterwards are
+     * dropped.
+     *
+     * @param timeout Maximum time to wait for queued events to be written, in milliseconds.
+     * @throws InterruptedException When the calling thread is interrupted while waiting.
+     */
+    public void shutdown(long timeout) throws InterruptedException {
+        Thread writer;
+
+        synchronized (this) {
+            shutdown = true;
+            writer = this.writer;
+        }
+
+        if (writer != null) {
+            writer.interrupt();
+            writer.join(timeout);
+        }
+    }
+
+    /**
+     * Stops the background thread once the queued events have been written, waiting up to 5 seconds.
+     *
+     * @throws InterruptedException When the calling thread is interrupted while waiting.
+     */
+    public void shutdown() throws InterruptedException {
+        shutdown(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Returns whether an exchange that ended with the given status should be logged.
+     *
+     * @param status HTTP status of the final response, or {@code -1} if no response was received.
+     * @param failed Whether the exchange ended with an exception rather than a response.
+     * @return Whether the exchange should be logged.
+     */
+    protected boolean isSampled(int status, boolean failed) {
+        if (failed || status >= errorStatus) {
+            return true;
+        }
+
+        return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Returns whether logging is enabled. Nothing is captured for an exchange if it is not.
+     *
+     * @return Whether logging is enabled.
+     */
+    protected abstract boolean isEnabled();
+
+    /**
+     * Writes an event. This is called from the background thread.
+     *
+     * @param event Event to write.
+     */
+    protected abstract void write(HttpLogEvent event);
+
+    /**
+     * Builds the event of an exchange and queues it if it is sampled.
+     *
+     * @param context HTTP request context.
+     * @param failed  Whether the exchange ended with an exception rather than a response.
+     */
+    private void log(HttpContext context, boolean failed) {
+        HttpResponse response = context.getResponse();
+        int status = response != null ? response.getStatus() : -1;
+
+        if (!isSampled(status, failed)) {
+            return;
+        }
+
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - context.get(START_TIME_NAME, Long.class));
+        HttpEntity requestEntity = context.getRequestEntity();
+
+        HttpLogEvent event = new HttpLogEvent(
+            context.get(TIMESTAMP_NAME, Long.class),
+            context.getMethod(),
+            UriEncoder.encode(context.getRequest()),
+            status,
+            duration,
+            context.getRetries(),
+            requestEntity != null ? requestEntity.getContentLength() : -1,
+            getResponseLength(response),
+            failed
+        );
+
+        enqueue(event);
+    }
+
+    /**
+     * Returns the length of the response entity.
+     *
+     * @param response HTTP response.
+     * @return The length of the response entity, or {@code -1} if it is not known.
+     */
+    private long getResponseLength(HttpResponse response) {
+        if (response == null || !response.hasEntity()) {
+            return response != null ? 0 : -1;
+        }
+
+        long length = response.getEntity().getContentLength();
+
+        if (length != -1) {
+            return length;
+        }
+
+        String contentLength = response.getHeader("Content-Length");
+
+        try {
+            return contentLength != null ? Long.parseLong(contentLength.trim()) : -1;
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Queues an event, applying the overflow policy if the queue is full.
+     *
+     * @param event Event to queue.
+     */
+    private void enqueue(HttpLogEvent event) {
+        if (!startWriter()) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        while (!queue.offer(event)) {
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                dropped.incrementAndGet();
+                return;
+            }
+
+            if (queue.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Starts the background thread if it is not running.
+     *
+     * @return Whether the background thread is running.
+     */
+    private boolean startWriter() {
+        if (writer != null) {
+            return !shutdown;
+        }
+
+        synchronized (this) {
+            if (shutdown) {
+                return false;
+            }
+
+            if (writer == null) {
+                Thread thread = new Thread(this::drain, "http-requests-logging");
+                thread.setDaemon(true);
+                thread.start();
+                writer = thread;
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Writes queued events until the filter is shut down, and then writes any events that remain.
+     */
+    private void drain() {
+        try {
+            while (!shutdown) {
+                dispatch(queue.take());
+            }
+        }
+        catch (InterruptedException ignored) {
+            // The filter has been shut down.
+        }
+
+        HttpLogEvent event;
+        while ((event = queue.poll()) != null) {
+            dispatch(event);
+        }
+    }
+
+    /**
+     * Writes a single event, ensuring that a failure to write it does not stop the background thread.
+     *
+     * @param event Event to write.
+     */
+    private void dispatch(HttpLogEvent event) {
+        try {
+            write(event);
+        }
+        catch (RuntimeException ignored) {
+            // Logging must never interfere with the exchanges being logged.
+        }
+    }
+}
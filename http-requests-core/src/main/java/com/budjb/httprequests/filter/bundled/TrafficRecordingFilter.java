@@ -0,0 +1,796 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled;
+
+import com.budjb.httprequests.HttpContext;
+import com.budjb.httprequests.HttpEntity;
+import com.budjb.httprequests.HttpRequest;
+import com.budjb.httprequests.HttpResponse;
+import com.budjb.httprequests.MultiValuedMap;
+import com.budjb.httprequests.StreamUtils;
+import com.budjb.httprequests.UriEncoder;
+import com.budjb.httprequests.filter.LifecycleFilter;
+import com.budjb.httprequests.filter.OutputStreamFilter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A filter that records a sample of HTTP exchanges, including their entities, to an append-only file that can be
+ * replayed later.
+ * <p>
+ * Whether an exchange is recorded is decided when it starts, so exchanges that are not sampled are not captured at
+ * all. The request entity is captured as it is written, and the response entity as it is read. Exchanges whose
+ * entities are larger than the maximum entity size, and exchanges that do not receive a response, are not recorded.
+ * Recorded exchanges are handed to a bounded queue and appended to the file by a single background thread, so the
+ * requesting thread never waits on the disk; exchanges are dropped when the queue is full.
+ * <p>
+ * The file format is described by {@link RecordedExchange}. When an existing recording is opened, an exchange that
+ * was only partially written is removed before new exchanges are appended.
+ * <p>
+ * The background thread is started when the first exchange is queued, and is stopped with {@link #shutdown()}.
+ * An instance of the filter should be shared by every request it records.
+ */
+public class TrafficRecordingFilter implements LifecycleFilter, OutputStreamFilter, Closeable {
+    /**
+     * Default capacity of the exchange queue.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    /**
+     * Default maximum size of an entity that is recorded, in bytes.
+     */
+    public static final int DEFAULT_MAX_ENTITY_SIZE = 1024 * 1024;
+
+    /**
+     * Name of the start time of the exchange, in milliseconds since the epoch, in the {@link HttpContext}.
+     */
+    private static final String TIMESTAMP_NAME = "com.budjb.httprequests.filter.trafficRecording.Timestamp";
+
+    /**
+     * Name of the captured request entity in the {@link HttpContext}.
+     */
+    private static final String REQUEST_ENTITY_NAME = "com.budjb.httprequests.filter.trafficRecording.RequestEntity";
+
+    /**
+     * File channel the exchanges are appended to.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Queue of exchanges waiting to be written.
+     */
+    private final BlockingQueue<RecordedExchange> queue;
+
+    /**
+     * Number of sampled exchanges that were not recorded.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Thread local that stores the HTTP context of the request in the current thread.
+     */
+    private final ThreadLocal<HttpContext> context = new ThreadLocal<>();
+
+    /**
+     * Background thread that writes exchanges.
+     */
+    private volatile Thread writer;
+
+    /**
+     * Whether the filter has been shut down.
+     */
+    private volatile boolean shutdown;
+
+    /**
+     * Fraction of exchanges that are recorded, from 0 to 1.
+     */
+    private double sampleRate = 1;
+
+    /**
+     * Maximum size of an entity that is recorded, in bytes.
+     */
+    private int maxEntitySize = DEFAULT_MAX_ENTITY_SIZE;
+
+    /**
+     * Constructor.
+     *
+     * @param path      File to append the exchanges to. The file is created if it does not exist.
+     * @param queueSize Capacity of the exchange queue.
+     * @throws IOException When the file can not be opened, or is not a recording file.
+     */
+    public TrafficRecordingFilter(Path path, int queueSize) throws IOException {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("queueSize must be at least 1");
+        }
+        queue = new ArrayBlockingQueue<>(queueSize);
+        channel = open(path);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param path File to append the exchanges to. The file is created if it does not exist.
+     * @throws IOException When the file can not be opened, or is not a recording file.
+     */
+    public TrafficRecordingFilter(Path path) throws IOException {
+        this(path, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Returns the fraction of exchanges that are recorded.
+     *
+     * @return The fraction of exchanges that are recorded.
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Sets the fraction of exchanges that are recorded, from 0 to 1.
+     *
+     * @param sampleRate Fraction of exchanges that are recorded.
+     * @return The instance of this class the method was called with.
+     */
+    public TrafficRecordingFilter setSampleRate(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1");
+        }
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    /**
+     * Returns the maximum size of an entity that is recorded, in bytes.
+     *
+     * @return The maximum size of an entity that is recorded, in bytes.
+     */
+    public int getMaxEntitySize() {
+        return maxEntitySize;
+    }
+
+    /**
+     * Sets the maximum size of an entity that is recorded, in bytes. Exchanges with a larger request or
+     * response entity are not recorded.
+     *
+     * @param maxEntitySize Maximum size of an entity that is recorded, in bytes.
+     * @return The instance of this class the method was called with.
+     */
+    public TrafficRecordingFilter setMaxEntitySize(int maxEntitySize) {
+        if (maxEntitySize < 0) {
+            throw new IllegalArgumentException("maxEntitySize must not be negative");
+        }
+        this.maxEntitySize = maxEntitySize;
+        return this;
+    }
+
+    /**
+     * Returns the number of sampled exchanges that were not recorded, because an entity was too large or
+     * not read completely, the queue was full, or the filter was shut down.
+     *
+     * @return The number of sampled exchanges that were not recorded.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the number of exchanges waiting to be written.
+     *
+     * @return The number of exchanges waiting to be written.
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Decides whether the exchange is recorded.
+     *
+     * @param context HTTP request context.
+     */
+    @Override
+    public void onStart(HttpContext context) {
+        if (shutdown || !isSampled()) {
+            return;
+        }
+
+        context.set(TIMESTAMP_NAME, System.currentTimeMillis());
+        this.context.set(context);
+    }
+
+    /**
+     * Captures the request entity as it is written, if the exchange is recorded.
+     *
+     * @param outputStream The {@link OutputStream} of the request.
+     * @return The output stream capturing the request entity.
+     */
+    @Override
+    public OutputStream filter(OutputStream outputStream) {
+        HttpContext context = this.context.get();
+
+        if (context == null) {
+            return outputStream;
+        }
+
+        CapturingOutputStream capturingOutputStream = new CapturingOutputStream(outputStream, maxEntitySize);
+        context.set(REQUEST_ENTITY_NAME, capturingOutputStream);
+        return capturingOutputStream;
+    }
+
+    /**
+     * Returns {@code true}, since the request entity is only captured as it is written.
+     *
+     * @return {@code true}.
+     */
+    @Override
+    public boolean isLengthPreserving() {
+        return true;
+    }
+
+    /**
+     * Records the completed exchange. An unbuffered response entity is recorded once it has been read.
+     *
+     * @param context HTTP request context.
+     */
+    @Override
+    public void onComplete(HttpContext context) {
+        if (this.context.get() == context) {
+            this.context.remove();
+            record(context);
+        }
+    }
+
+    /**
+     * Forgets an exchange that did not complete.
+     */
+    @Override
+    public void close() {
+        context.remove();
+    }
+
+    /**
+     * Stops the background thread once the queued exchanges have been written, and closes the file. Exchanges
+     * completed afterwards are dropped.
+     *
+     * @param timeout Maximum time to wait for queued exchanges to be written, in milliseconds.
+     * @throws InterruptedException When the calling thread is interrupted while waiting.
+     */
+    public void shutdown(long timeout) throws InterruptedException {
+        Thread writer;
+
+        synchronized (this) {
+            shutdown = true;
+            writer = this.writer;
+        }
+
+        // The writer is not interrupted, since interrupting a thread that is writing to a file channel
+        // closes the channel.
+        if (writer != null) {
+            writer.join(timeout);
+        }
+        else {
+            closeChannel();
+        }
+    }
+
+    /**
+     * Stops the background thread once the queued exchanges have been written and closes the file, waiting up
+     * to 5 seconds.
+     *
+     * @throws InterruptedException When the calling thread is interrupted while waiting.
+     */
+    public void shutdown() throws InterruptedException {
+        shutdown(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Returns whether an exchange should be recorded.
+     *
+     * @return Whether an exchange should be recorded.
+     */
+    protected boolean isSampled() {
+        return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Builds the recorded exchange and queues it, or arranges for it to be queued once the response entity
+     * has been read.
+     *
+     * @param context HTTP request context.
+     */
+    private void record(HttpContext context) {
+        HttpResponse response = context.getResponse();
+
+        if (response == null) {
+            return;
+        }
+
+        CapturingOutputStream requestEntity = context.get(REQUEST_ENTITY_NAME, CapturingOutputStream.class);
+
+        if (requestEntity != null && requestEntity.isOverflowed()) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        HttpRequest request = context.getRequest();
+        long timestamp = context.get(TIMESTAMP_NAME, Long.class);
+        String uri = UriEncoder.encode(request);
+        MultiValuedMap requestHeaders = new MultiValuedMap(request.getHeaders());
+        byte[] requestBytes = requestEntity != null ? requestEntity.toByteArray() : null;
+        MultiValuedMap responseHeaders = new MultiValuedMap(response.getHeaders());
+
+        Consumer<byte[]> recorder = responseBytes -> enqueue(new RecordedExchange(
+            timestamp,
+            context.getMethod(),
+            uri,
+            requestHeaders,
+            requestBytes,
+            response.getStatus(),
+            responseHeaders,
+            responseBytes
+        ));
+
+        if (!response.hasEntity()) {
+            recorder.accept(null);
+            return;
+        }
+
+        HttpEntity entity = response.getEntity();
+
+        if (!entity.isBuffered()) {
+            try {
+                InputStream inputStream = new CapturingInputStream(entity.getInputStream(), maxEntitySize, recorder);
+                response.setEntity(new HttpEntity(inputStream, entity.getContentType(), entity.getCharSet()));
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+
+        if (entity.getContentLength() > maxEntitySize) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        try {
+            recorder.accept(StreamUtils.readBytes(entity.getInputStream()));
+        }
+        catch (IOException e) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Queues an exchange, dropping it if the queue is full.
+     *
+     * @param exchange Exchange to queue.
+     */
+    private void enqueue(RecordedExchange exchange) {
+        if (!startWriter() || !queue.offer(exchange)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Starts the background thread if it is not running.
+     *
+     * @return Whether the background thread is running.
+     */
+    private boolean startWriter() {
+        if (writer != null) {
+            return !shutdown;
+        }
+
+        synchronized (this) {
+            if (shutdown) {
+                return false;
+            }
+
+            if (writer == null) {
+                Thread thread = new Thread(this::drain, "http-requests-recording");
+                thread.setDaemon(true);
+                thread.start();
+                writer = thread;
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Writes queued exchanges until the filter is shut down, then writes any exchanges that remain and closes
+     * the file.
+     */
+    private void drain() {
+        try {
+            while (!shutdown) {
+                RecordedExchange exchange = queue.poll(100, TimeUnit.MILLISECONDS);
+
+                if (exchange != null) {
+                    write(exchange);
+                }
+            }
+        }
+        catch (InterruptedException ignored) {
+            // Stop waiting for exchanges, but write the ones that were already queued.
+        }
+
+        RecordedExchange exchange;
+        while ((exchange = queue.poll()) != null) {
+            write(exchange);
+        }
+
+        closeChannel();
+    }
+
+    /**
+     * Appends a single exchange to the file, ensuring that a failure to write it does not stop the background
+     * thread.
+     *
+     * @param exchange Exchange to write.
+     */
+    private void write(RecordedExchange exchange) {
+        try {
+            byte[] encoded = exchange.encode();
+            ByteBuffer buffer = ByteBuffer.allocate(4 + encoded.length);
+            buffer.putInt(encoded.length).put(encoded).flip();
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            // Recording must never interfere with the exchanges being recorded.
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Closes the file.
+     */
+    private void closeChannel() {
+        try {
+            channel.close();
+        }
+        catch (IOException ignored) {
+            // Nothing more can be written either way.
+        }
+    }
+
+    /**
+     * Opens a recording file for appending, writing the file header if the file is empty and removing an
+     * exchange that was only partially written if it is not.
+     *
+     * @param path Recording file.
+     * @return A file channel positioned at the end of the last complete exchange.
+     * @throws IOException When the file can not be opened, or is not a recording file.
+     */
+    private static FileChannel open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            long size = channel.size();
+
+            if (size == 0) {
+                ByteBuffer header = ByteBuffer.allocate(8);
+                header.putInt(RecordedExchange.MAGIC).putInt(RecordedExchange.VERSION).flip();
+
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+
+                return channel;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(8);
+
+            if (!readFully(channel, header, 0) || header.getInt(0) != RecordedExchange.MAGIC || header.getInt(4) != RecordedExchange.VERSION) {
+                throw new IOException(path + " is not a recording file");
+            }
+
+            long position = 8;
+            ByteBuffer length = ByteBuffer.allocate(4);
+
+            while (readFully(channel, length, position)) {
+                long end = position + 4 + length.getInt(0);
+
+                if (end < position + 4 || end > size) {
+                    break;
+                }
+
+                position = end;
+                length.clear();
+            }
+
+            channel.truncate(position);
+            channel.position(position);
+
+            return channel;
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Fills the given buffer from the given position of a file channel.
+     *
+     * @param channel  File channel to read from.
+     * @param buffer   Buffer to fill.
+     * @param position Position in the file to read from.
+     * @return Whether the buffer was filled before the end of the file was reached.
+     * @throws IOException When an IO exception occurs.
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+
+            if (read == -1) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * An output stream that captures the bytes written through it, up to a maximum size.
+     */
+    private static class CapturingOutputStream extends FilterOutputStream {
+        /**
+         * Maximum number of bytes captured.
+         */
+        private final int maxSize;
+
+        /**
+         * Captured bytes, or {@code null} once more than the maximum size was written.
+         */
+        private ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+        /**
+         * Constructor.
+         *
+         * @param outputStream Output stream to write to.
+         * @param maxSize      Maximum number of bytes captured.
+         */
+        CapturingOutputStream(OutputStream outputStream, int maxSize) {
+            super(outputStream);
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            capture(new byte[]{(byte) b}, 0, 1);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            capture(b, off, len);
+        }
+
+        /**
+         * Returns whether more than the maximum size was written.
+         *
+         * @return Whether more than the maximum size was written.
+         */
+        boolean isOverflowed() {
+            return captured == null;
+        }
+
+        /**
+         * Returns the captured bytes.
+         *
+         * @return The captured bytes.
+         */
+        byte[] toByteArray() {
+            return captured.toByteArray();
+        }
+
+        /**
+         * Captures written bytes, discarding the capture once it exceeds the maximum size.
+         *
+         * @param b   Bytes written.
+         * @param off Offset of the bytes.
+         * @param len Number of bytes.
+         */
+        private void capture(byte[] b, int off, int len) {
+            if (captured == null) {
+                return;
+            }
+
+            if (captured.size() + len > maxSize) {
+                captured = null;
+                return;
+            }
+
+            captured.write(b, off, len);
+        }
+    }
+
+    /**
+     * An input stream that captures the bytes read through it, and passes them on once the end of the stream
+     * is reached.
+     */
+    private class CapturingInputStream extends FilterInputStream {
+        /**
+         * Maximum number of bytes captured.
+         */
+        private final int maxSize;
+
+        /**
+         * Receives the captured bytes once the end of the stream is reached.
+         */
+        private final Consumer<byte[]> recorder;
+
+        /**
+         * Captured bytes, or {@code null} once the capture is incomplete.
+         */
+        private ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+        /**
+         * Whether the captured bytes have been passed on, or the capture has been abandoned.
+         */
+        private boolean done;
+
+        /**
+         * Constructor.
+         *
+         * @param inputStream Input stream to read from.
+         * @param maxSize     Maximum number of bytes captured.
+         * @param recorder    Receives the captured bytes once the end of the stream is reached.
+         */
+        CapturingInputStream(InputStream inputStream, int maxSize, Consumer<byte[]> recorder) {
+            super(inputStream);
+            this.maxSize = maxSize;
+            this.recorder = recorder;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read() throws IOException {
+            int read = in.read();
+
+            if (read == -1) {
+                complete();
+            }
+            else {
+                capture(new byte[]{(byte) read}, 0, 1);
+            }
+
+            return read;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+
+            if (read == -1) {
+                complete();
+            }
+            else {
+                capture(b, off, read);
+            }
+
+            return read;
+        }
+
+        /**
+         * Skips bytes, which means the entity can not be recorded.
+         *
+         * @param n Number of bytes to skip.
+         * @return The number of bytes skipped.
+         * @throws IOException When an IO exception occurs.
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            captured = null;
+            return in.skip(n);
+        }
+
+        /**
+         * Returns {@code false}, since bytes that are read again would be captured twice.
+         *
+         * @return {@code false}
+         */
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * Closes the stream. The exchange is not recorded if the entity was not read completely.
+         *
+         * @throws IOException When an IO exception occurs.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!done) {
+                done = true;
+                dropped.incrementAndGet();
+            }
+            super.close();
+        }
+
+        /**
+         * Captures read bytes, abandoning the capture once it exceeds the maximum size.
+         *
+         * @param b   Bytes read.
+         * @param off Offset of the bytes.
+         * @param len Number of bytes.
+         */
+        private void capture(byte[] b, int off, int len) {
+            if (captured == null) {
+                return;
+            }
+
+            if (captured.size() + len > maxSize) {
+                captured = null;
+                return;
+            }
+
+            captured.write(b, off, len);
+        }
+
+        /**
+         * Passes on the captured bytes once the end of the stream has been reached.
+         */
+        private void complete() {
+            if (done) {
+                return;
+            }
+
+            done = true;
+
+            if (captured == null) {
+                dropped.incrementAndGet();
+            }
+            else {
+                recorder.accept(captured.toByteArray());
+            }
+        }
+    }
+}
@@ -38,6 +38,6 @@ public class MockHttpClientFactory extends AbstractHttpClientFactory {
      */
     @Override
     public HttpClient createHttpClient() {
-        return new MockHttpClient(getConverterManager());
+        return configure(new MockHttpClient(getConverterManager()));
     }
 }
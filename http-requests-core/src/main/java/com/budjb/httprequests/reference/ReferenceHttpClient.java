@@ -25,18 +25,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
-import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URL;
 import java.security.GeneralSecurityException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-import static com.budjb.httprequests.HttpRequestsUtil.isNullOrEmpty;
-import static com.budjb.httprequests.HttpRequestsUtil.tokenize;
-
 /**
  * A built-in, basic implementation of an {@link HttpClient}. This implementation is useful
  * when minimal external dependencies are desired. While it provides basic HTTP functionality,
@@ -64,9 +58,7 @@ class ReferenceHttpClient extends AbstractHttpClient {
 
         HttpRequest request = context.getRequest();
 
-        URI uri = createURI(request);
-
-        HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+        HttpURLConnection connection = (HttpURLConnection) new URL(UriEncoder.encode(request)).openConnection();
 
         if (connection instanceof HttpsURLConnection && !request.isSslValidated()) {
             ((HttpsURLConnection) connection).setHostnameVerifier(createTrustingHostnameVerifier());
@@ -88,9 +80,16 @@ class ReferenceHttpClient extends AbstractHttpClient {
             connection.setDoOutput(true);
             connection.setRequestProperty("Content-Type", request.getHeaders().containsKey("Content-Type") ? request.getHeaders().getFlat("Content-Type") : httpEntity.getFullContentType());
 
+            // Entities with a known length that are not already held in memory are streamed with a
+            // fixed length, as long as no filter will change the number of bytes written. Otherwise the
+            // connection buffers the entity itself so that it can compute the content length.
+            long contentLength = httpEntity.getContentLength();
+            if (contentLength >= 0 && !httpEntity.isBuffered() && filterProcessor.isContentLengthPreserved()) {
+                connection.setFixedLengthStreamingMode(contentLength);
+            }
+
             OutputStream outputStream = filterProcessor.filterOutputStream(connection.getOutputStream());
-            StreamUtils.shovel(httpEntity.getInputStream(), outputStream);
-            httpEntity.getInputStream().close();
+            httpEntity.writeTo(outputStream);
             outputStream.close();
         }
 
@@ -103,68 +102,6 @@ class ReferenceHttpClient extends AbstractHttpClient {
         return new ReferenceHttpResponse(request, getConverterManager(), status, headers, inputStream, contentType);
     }
 
-    /**
-     * Creates the URI of the request.
-     *
-     * @param request Request properties.
-     * @return A new URI with all query parameters applied.
-     * @throws URISyntaxException When a problem occurs while parsing a URI.
-     */
-    private URI createURI(HttpRequest request) throws URISyntaxException {
-        URI uri = new URI(request.getUri());
-
-        Map<String, List<String>> queryParameters = new HashMap<>();
-
-        String existingQuery = uri.getQuery();
-        if (!isNullOrEmpty(existingQuery)) {
-            tokenize(existingQuery, "&").forEach(pair -> {
-                List<String> parts = tokenize(pair, "=");
-
-                if (parts.size() > 2) {
-                    throw new IllegalArgumentException("malformed query string");
-                }
-
-                if (!queryParameters.containsKey(parts.get(0))) {
-                    queryParameters.put(parts.get(0), new ArrayList<>());
-                }
-
-                if (parts.size() > 1) {
-                    queryParameters.get(parts.get(0)).add(parts.get(1));
-                }
-            });
-        }
-
-        request.getQueryParameters().forEach((k, v) -> {
-            if (!queryParameters.containsKey(k)) {
-                queryParameters.put(k, new ArrayList<>());
-            }
-            queryParameters.get(k).addAll(v);
-        });
-
-        List<String> parts = new ArrayList<>();
-        queryParameters.forEach((k, v) -> {
-            if (v.size() == 0) {
-                parts.add(k + "=");
-            }
-            else {
-                v.forEach(it -> parts.add(k + "=" + it));
-            }
-        });
-        String newQuery = String.join("&", parts);
-
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append(uri.getScheme()).append("://").append(uri.getHost());
-        if (uri.getPort() != -1 && !(uri.getScheme().equalsIgnoreCase("https") && uri.getPort() == 443) && !(uri.getScheme().equalsIgnoreCase("http") && uri.getPort() == 80)) {
-            stringBuilder.append(':').append(uri.getPort());
-        }
-        stringBuilder.append(uri.getPath());
-        if (newQuery.length() > 0) {
-            stringBuilder.append('?').append(newQuery);
-        }
-
-        return new URI(stringBuilder.toString());
-    }
-
     /**
      * Returns the appropriate entity {@link InputStream} based on the HTTP status of the response.
      *
@@ -38,6 +38,6 @@ public class ReferenceHttpClientFactory extends AbstractHttpClientFactory {
      */
     @Override
     public HttpClient createHttpClient() {
-        return new ReferenceHttpClient(getConverterManager());
+        return configure(new ReferenceHttpClient(getConverterManager()));
     }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.sse;
+
+/**
+ * An event received from a <code>text/event-stream</code> response.
+ */
+public class ServerSentEvent {
+    /**
+     * Last event ID of the stream when the event was dispatched.
+     */
+    private final String id;
+
+    /**
+     * Type of the event.
+     */
+    private final String type;
+
+    /**
+     * Data of the event.
+     */
+    private final String data;
+
+    /**
+     * Constructor.
+     *
+     * @param id   Last event ID of the stream when the event was dispatched.
+     * @param type Type of the event.
+     * @param data Data of the event.
+     */
+    public ServerSentEvent(String id, String type, String data) {
+        this.id = id;
+        this.type = type;
+        this.data = data;
+    }
+
+    /**
+     * Returns the last event ID of the stream when the event was dispatched.
+     *
+     * @return The ID of the event, or {@code null} if no ID has been sent.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the type of the event, which is <code>message</code> unless the server sent another type.
+     *
+     * @return The type of the event.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the data of the event. Multiple data lines are joined with line feeds.
+     *
+     * @return The data of the event.
+     */
+    public String getData() {
+        return data;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "ServerSentEvent{id=" + id + ", type=" + type + ", data=" + data + "}";
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.sse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses events incrementally from a <code>text/event-stream</code> as defined by the HTML specification.
+ * <p>
+ * Only the event being parsed is held in memory; the stream is read as events are requested and never
+ * buffered as a whole. The parser keeps the last event ID and the reconnection time sent by the server
+ * so that a new connection can resume the stream.
+ */
+public class ServerSentEventParser {
+    /**
+     * Default type of events.
+     */
+    public static final String DEFAULT_EVENT_TYPE = "message";
+
+    /**
+     * Size of the character buffer.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Reader of the stream.
+     */
+    private final Reader reader;
+
+    /**
+     * Character buffer.
+     */
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /**
+     * Current line.
+     */
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * Data of the event being parsed.
+     */
+    private final StringBuilder data = new StringBuilder();
+
+    /**
+     * Position of the next character in the buffer.
+     */
+    private int position = 0;
+
+    /**
+     * Number of characters in the buffer.
+     */
+    private int limit = 0;
+
+    /**
+     * Whether the previous line ended with a carriage return, in which case a following line feed is ignored.
+     */
+    private boolean skipLineFeed = false;
+
+    /**
+     * Whether the first line has been read, which may start with a byte order mark.
+     */
+    private boolean started = false;
+
+    /**
+     * Type of the event being parsed, or {@code null} for the default type.
+     */
+    private String eventType;
+
+    /**
+     * Last event ID.
+     */
+    private String lastEventId;
+
+    /**
+     * Reconnection time sent by the server, in milliseconds, or {@code -1} if none has been sent.
+     */
+    private long retry = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param inputStream Input stream of the event stream, which is always UTF-8 encoded.
+     * @param lastEventId Last event ID of a previous connection to the stream, if any.
+     */
+    public ServerSentEventParser(InputStream inputStream, String lastEventId) {
+        this.reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+        this.lastEventId = lastEventId;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inputStream Input stream of the event stream, which is always UTF-8 encoded.
+     */
+    public ServerSentEventParser(InputStream inputStream) {
+        this(inputStream, null);
+    }
+
+    /**
+     * Returns the last event ID received.
+     *
+     * @return The last event ID, or {@code null} if none has been received.
+     */
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    /**
+     * Returns the reconnection time sent by the server.
+     *
+     * @return The reconnection time in milliseconds, or {@code -1} if none has been sent.
+     */
+    public long getRetry() {
+        return retry;
+    }
+
+    /**
+     * Reads the stream until the next event is dispatched.
+     *
+     * @return The next event, or {@code null} if the stream ended. An incomplete event at the end
+     *         of the stream is discarded.
+     * @throws IOException When an IO exception occurs.
+     */
+    public ServerSentEvent next() throws IOException {
+        while (readLine()) {
+            if (line.length() == 0) {
+                ServerSentEvent event = dispatch();
+
+                if (event != null) {
+                    return event;
+                }
+            }
+            else {
+                processLine();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads the next line into the line buffer.
+     *
+     * @return Whether a complete line was read.
+     * @throws IOException When an IO exception occurs.
+     */
+    private boolean readLine() throws IOException {
+        line.setLength(0);
+
+        while (true) {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, BUFFER_SIZE);
+                position = 0;
+
+                if (limit == -1) {
+                    limit = 0;
+                    return false;
+                }
+            }
+
+            char c = buffer[position++];
+
+            if (skipLineFeed) {
+                skipLineFeed = false;
+
+                if (c == '\n') {
+                    continue;
+                }
+            }
+
+            if (c == '\r') {
+                skipLineFeed = true;
+                break;
+            }
+
+            if (c == '\n') {
+                break;
+            }
+
+            if (!started) {
+                started = true;
+
+                if (c == '\uFEFF') {
+                    continue;
+                }
+            }
+
+            line.append(c);
+        }
+
+        started = true;
+        return true;
+    }
+
+    /**
+     * Applies the field contained in the current line to the event being parsed.
+     */
+    private void processLine() {
+        int colon = line.indexOf(":");
+
+        // Lines starting with a colon are comments.
+        if (colon == 0) {
+            return;
+        }
+
+        String field;
+        String value;
+
+        if (colon == -1) {
+            field = line.toString();
+            value = "";
+        }
+        else {
+            field = line.substring(0, colon);
+            int start = colon + 1;
+
+            if (start < line.length() && line.charAt(start) == ' ') {
+                start++;
+            }
+
+            value = line.substring(start);
+        }
+
+        switch (field) {
+            case "event":
+                eventType = value;
+                break;
+
+            case "data":
+                data.append(value).append('\n');
+                break;
+
+            case "id":
+                if (value.indexOf('\0') == -1) {
+                    lastEventId = value;
+                }
+                break;
+
+            case "retry":
+                if (!value.isEmpty() && value.chars().allMatch(ch -> ch >= '0' && ch <= '9')) {
+                    try {
+                        retry = Long.parseLong(value);
+                    }
+                    catch (NumberFormatException ignored) {
+                        // The value is too large to be a reasonable reconnection time.
+                    }
+                }
+                break;
+
+            default:
+                // Unknown fields are ignored.
+        }
+    }
+
+    /**
+     * Dispatches the event being parsed and resets the event state.
+     *
+     * @return The event, or {@code null} if it has no data.
+     */
+    private ServerSentEvent dispatch() {
+        String type = eventType;
+        eventType = null;
+
+        if (data.length() == 0) {
+            return null;
+        }
+
+        data.setLength(data.length() - 1);
+        ServerSentEvent event = new ServerSentEvent(lastEventId, type == null || type.isEmpty() ? DEFAULT_EVENT_TYPE : type, data.toString());
+        data.setLength(0);
+
+        return event;
+    }
+}
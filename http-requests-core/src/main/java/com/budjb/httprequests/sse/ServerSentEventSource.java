@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.sse;
+
+import com.budjb.httprequests.HttpClient;
+import com.budjb.httprequests.HttpRequest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Consumes a <code>text/event-stream</code> resource.
+ * <p>
+ * The stream is requested with a GET request built from the given request properties, so any filters of the
+ * request, including retry filters, apply to each connection. The response entity is never buffered; events
+ * are parsed from the connection as they arrive.
+ * <p>
+ * When the connection is closed or fails, the source reconnects after a delay and sends the ID of the last
+ * event it received in the <code>Last-Event-ID</code> header, so that the server can resume the stream. The
+ * delay starts at the reconnection time sent by the server, or the configured retry delay, and doubles with each
+ * consecutive failed attempt up to the maximum retry delay. The stream ends when the server responds with
+ * <code>204 No Content</code>, and fails when the server responds with any status other than <code>200</code>.
+ */
+public class ServerSentEventSource {
+    /**
+     * HTTP client used to connect to the stream.
+     */
+    private final HttpClient client;
+
+    /**
+     * Request properties of the stream.
+     */
+    private final HttpRequest request;
+
+    /**
+     * Delay before reconnecting when the server has not sent a reconnection time, in milliseconds.
+     */
+    private long retryDelay = 3000;
+
+    /**
+     * Longest delay before reconnecting, in milliseconds.
+     */
+    private long maxRetryDelay = 60000;
+
+    /**
+     * Number of consecutive reconnection attempts after which the stream ends, or {@code -1} for no limit.
+     */
+    private int maxReconnects = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param client  HTTP client used to connect to the stream.
+     * @param request Request properties of the stream.
+     */
+    public ServerSentEventSource(HttpClient client, HttpRequest request) {
+        this.client = client;
+        this.request = request;
+    }
+
+    /**
+     * Returns the delay before reconnecting when the server has not sent a reconnection time, in milliseconds.
+     *
+     * @return The retry delay, in milliseconds.
+     */
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * Sets the delay before reconnecting when the server has not sent a reconnection time, in milliseconds.
+     *
+     * @param retryDelay The retry delay, in milliseconds.
+     * @return The instance of this class the method was called with.
+     */
+    public ServerSentEventSource setRetryDelay(long retryDelay) {
+        this.retryDelay = retryDelay;
+        return this;
+    }
+
+    /**
+     * Returns the longest delay before reconnecting, in milliseconds.
+     *
+     * @return The maximum retry delay, in milliseconds.
+     */
+    public long getMaxRetryDelay() {
+        return maxRetryDelay;
+    }
+
+    /**
+     * Sets the longest delay before reconnecting, in milliseconds.
+     *
+     * @param maxRetryDelay The maximum retry delay, in milliseconds.
+     * @return The instance of this class the method was called with.
+     */
+    public ServerSentEventSource setMaxRetryDelay(long maxRetryDelay) {
+        this.maxRetryDelay = maxRetryDelay;
+        return this;
+    }
+
+    /**
+     * Returns the number of consecutive reconnection attempts after which the stream ends.
+     *
+     * @return The maximum number of reconnection attempts, or {@code -1} for no limit.
+     */
+    public int getMaxReconnects() {
+        return maxReconnects;
+    }
+
+    /**
+     * Sets the number of consecutive reconnection attempts after which the stream ends.
+     *
+     * @param maxReconnects The maximum number of reconnection attempts, or {@code -1} for no limit.
+     * @return The instance of this class the method was called with.
+     */
+    public ServerSentEventSource setMaxReconnects(int maxReconnects) {
+        this.maxReconnects = maxReconnects;
+        return this;
+    }
+
+    /**
+     * Connects to the stream and returns an iterator over its events. The iterator blocks until the next
+     * event arrives, and must be closed when it is no longer needed.
+     *
+     * @return An iterator over the events of the stream.
+     * @throws IOException When an IO exception occurs while connecting.
+     */
+    public ServerSentEventStream open() throws IOException {
+        ServerSentEventStream stream = new ServerSentEventStream(client, request, retryDelay, maxRetryDelay, maxReconnects);
+        stream.connect();
+        return stream;
+    }
+
+    /**
+     * Connects to the stream and delivers its events to the given listener until the stream ends.
+     *
+     * @param listener Listener that receives the events.
+     * @throws IOException When an IO exception occurs and the stream can not be resumed.
+     */
+    public void listen(ServerSentEventListener listener) throws IOException {
+        try (ServerSentEventStream stream = open()) {
+            while (stream.hasNext()) {
+                listener.onEvent(stream.next());
+            }
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.sse;
+
+import com.budjb.httprequests.HttpClient;
+import com.budjb.httprequests.HttpRequest;
+import com.budjb.httprequests.HttpResponse;
+import com.budjb.httprequests.exception.HttpClientException;
+import com.budjb.httprequests.exception.HttpStatusException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A blocking iterator over the events of a <code>text/event-stream</code> resource, created by a
+ * {@link ServerSentEventSource}.
+ * <p>
+ * {@link #hasNext()} blocks until the next event arrives, reconnecting as necessary, and returns {@code false}
+ * once the stream has ended or the iterator has been closed. An IO exception that ends the stream is thrown as
+ * an {@link UncheckedIOException}. The iterator may be closed from another thread to stop a blocked consumer.
+ */
+public class ServerSentEventStream implements Iterator<ServerSentEvent>, Closeable {
+    /**
+     * HTTP client used to connect to the stream.
+     */
+    private final HttpClient client;
+
+    /**
+     * Request properties of the stream.
+     */
+    private final HttpRequest request;
+
+    /**
+     * Delay before reconnecting when the server has not sent a reconnection time, in milliseconds.
+     */
+    private final long retryDelay;
+
+    /**
+     * Longest delay before reconnecting, in milliseconds.
+     */
+    private final long maxRetryDelay;
+
+    /**
+     * Number of consecutive reconnection attempts after which the stream ends, or {@code -1} for no limit.
+     */
+    private final int maxReconnects;
+
+    /**
+     * Response of the current connection.
+     */
+    private volatile HttpResponse response;
+
+    /**
+     * Parser of the current connection.
+     */
+    private volatile ServerSentEventParser parser;
+
+    /**
+     * Next event, if it has been read but not returned.
+     */
+    private ServerSentEvent next;
+
+    /**
+     * Last event ID received.
+     */
+    private String lastEventId;
+
+    /**
+     * Reconnection time sent by the server, in milliseconds, or {@code -1} if none has been sent.
+     */
+    private long serverRetry = -1;
+
+    /**
+     * Number of consecutive reconnection attempts.
+     */
+    private int reconnects = 0;
+
+    /**
+     * Whether the stream has ended.
+     */
+    private boolean finished = false;
+
+    /**
+     * Whether the iterator has been closed.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param client        HTTP client used to connect to the stream.
+     * @param request       Request properties of the stream.
+     * @param retryDelay    Delay before reconnecting when the server has not sent a reconnection time, in milliseconds.
+     * @param maxRetryDelay Longest delay before reconnecting, in milliseconds.
+     * @param maxReconnects Number of consecutive reconnection attempts after which the stream ends, or {@code -1}.
+     */
+    ServerSentEventStream(HttpClient client, HttpRequest request, long retryDelay, long maxRetryDelay, int maxReconnects) {
+        this.client = client;
+        this.request = request;
+        this.retryDelay = retryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+        this.maxReconnects = maxReconnects;
+    }
+
+    /**
+     * Returns the last event ID received.
+     *
+     * @return The last event ID, or {@code null} if none has been received.
+     */
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    /**
+     * Blocks until the next event arrives or the stream ends.
+     *
+     * @return Whether another event is available.
+     * @throws UncheckedIOException When an IO exception ends the stream.
+     */
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+
+        IOException failure = null;
+
+        while (!finished && !closed) {
+            // The parser is read through a local variable since the iterator may be closed concurrently.
+            ServerSentEventParser parser = this.parser;
+
+            if (parser != null) {
+                try {
+                    next = parser.next();
+
+                    if (next != null) {
+                        lastEventId = parser.getLastEventId();
+                        serverRetry = parser.getRetry();
+                        reconnects = 0;
+                        return true;
+                    }
+                }
+                catch (IOException e) {
+                    failure = e;
+                }
+
+                lastEventId = parser.getLastEventId();
+                serverRetry = parser.getRetry();
+                disconnect();
+            }
+
+            if (closed) {
+                break;
+            }
+
+            if (maxReconnects >= 0 && reconnects >= maxReconnects) {
+                finished = true;
+
+                if (failure != null) {
+                    throw new UncheckedIOException(failure);
+                }
+
+                break;
+            }
+
+            try {
+                Thread.sleep(getReconnectDelay());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                finished = true;
+                break;
+            }
+
+            reconnects++;
+
+            try {
+                connect();
+            }
+            catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the next event.
+     *
+     * @return The next event.
+     * @throws NoSuchElementException When the stream has ended.
+     */
+    @Override
+    public ServerSentEvent next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        ServerSentEvent event = next;
+        next = null;
+        return event;
+    }
+
+    /**
+     * Closes the current connection and ends the stream.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        disconnect();
+    }
+
+    /**
+     * Connects to the stream, resuming from the last event ID if one has been received.
+     *
+     * @throws IOException When an IO exception occurs.
+     * @throws HttpStatusException When the server responds with a status other than 200 or 204.
+     */
+    void connect() throws IOException {
+        HttpRequest request;
+        try {
+            request = (HttpRequest) this.request.clone();
+        }
+        catch (CloneNotSupportedException e) {
+            throw new HttpClientException(e);
+        }
+
+        request.setBufferResponseEntity(false);
+        request.setHeader("Accept", "text/event-stream");
+        request.setHeader("Cache-Control", "no-cache");
+
+        if (lastEventId != null && !lastEventId.isEmpty()) {
+            request.setHeader("Last-Event-ID", lastEventId);
+        }
+
+        HttpResponse response = client.get(request);
+        int status = response.getStatus();
+
+        if (status == 204) {
+            response.close();
+            finished = true;
+            return;
+        }
+
+        if (status != 200) {
+            finished = true;
+
+            if (response.hasEntity()) {
+                response.getEntity().buffer();
+            }
+            response.close();
+
+            throw HttpStatusException.build(response);
+        }
+
+        if (!response.hasEntity()) {
+            response.close();
+            parser = null;
+            return;
+        }
+
+        this.response = response;
+        this.parser = new ServerSentEventParser(response.getEntity().getInputStream(), lastEventId);
+
+        if (closed) {
+            disconnect();
+        }
+    }
+
+    /**
+     * Returns the delay before the next reconnection attempt.
+     *
+     * @return The delay, in milliseconds.
+     */
+    private long getReconnectDelay() {
+        long delay = serverRetry >= 0 ? serverRetry : retryDelay;
+
+        for (int i = 0; i < reconnects && delay < maxRetryDelay; i++) {
+            delay *= 2;
+        }
+
+        return Math.min(delay, maxRetryDelay);
+    }
+
+    /**
+     * Closes the response of the current connection, if any.
+     */
+    private void disconnect() {
+        HttpResponse response = this.response;
+        this.response = null;
+        parser = null;
+
+        if (response != null) {
+            try {
+                response.close();
+            }
+            catch (IOException ignored) {
+                // The connection is being discarded.
+            }
+        }
+    }
+}
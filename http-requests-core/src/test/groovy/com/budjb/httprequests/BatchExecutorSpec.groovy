@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests
+
+import com.budjb.httprequests.converter.EntityConverterManager
+import com.budjb.httprequests.exception.BatchDeadlineExceededException
+import com.budjb.httprequests.filter.HttpClientFilterProcessor
+import com.budjb.httprequests.mock.MockHttpResponse
+import spock.lang.Specification
+
+import java.security.GeneralSecurityException
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+
+class BatchExecutorSpec extends Specification {
+    HttpClient client = new StubHttpClient(new EntityConverterManager([]), this)
+
+    AtomicInteger inFlight = new AtomicInteger()
+
+    AtomicInteger maxInFlight = new AtomicInteger()
+
+    AtomicInteger closed = new AtomicInteger()
+
+    List<HttpRequest> createRequests(List<String> paths) {
+        return paths.collect { new HttpRequest("http://localhost/${it}") }
+    }
+
+    def 'Results are returned in the order of the requests'() {
+        setup:
+        BatchExecutor executor = new BatchExecutor(client).setParallelism(3)
+        List<HttpRequest> requests = createRequests(['100', '10', '50', '0'])
+
+        when:
+        List<BatchResult> results = executor.execute(HttpMethod.GET, requests)
+
+        then:
+        results*.request == requests
+        results*.index == [0, 1, 2, 3]
+        results.every { it.successful && it.response.status == 200 }
+    }
+
+    def 'No more than the configured number of requests are in flight'() {
+        setup:
+        BatchExecutor executor = new BatchExecutor(client).setParallelism(2)
+
+        when:
+        List<BatchResult> results = executor.execute(HttpMethod.GET, createRequests(['20'] * 10))
+
+        then:
+        results.every { it.successful }
+        maxInFlight.get() == 2
+    }
+
+    def 'A listener receives results in the order the requests complete'() {
+        setup:
+        BatchExecutor executor = new BatchExecutor(client).setParallelism(3)
+        List<Integer> indices = new CopyOnWriteArrayList<>()
+
+        when:
+        executor.execute(HttpMethod.GET, createRequests(['300', '0', '150']), { indices << it.index } as BatchListener)
+
+        then:
+        indices == [1, 2, 0]
+    }
+
+    def 'When collecting all errors, failed requests are reported in the results'() {
+        setup:
+        BatchExecutor executor = new BatchExecutor(client).setParallelism(2)
+
+        when:
+        List<BatchResult> results = executor.execute(HttpMethod.GET, createRequests(['0', 'fail', '0']))
+
+        then:
+        results*.successful == [true, false, true]
+        results[1].exception instanceof IOException
+        results[1].response == null
+    }
+
+    def 'When failing fast, the first failure is thrown and remaining requests are not started'() {
+        setup:
+        BatchExecutor executor = new BatchExecutor(client)
+            .setParallelism(1)
+            .setErrorPolicy(BatchExecutor.ErrorPolicy.FAIL_FAST)
+
+        when:
+        executor.execute(HttpMethod.GET, createRequests(['0', 'fail', '0', '0']))
+
+        then:
+        thrown IOException
+    }
+
+    def 'When the deadline passes, outstanding requests fail with a deadline exception'() {
+        setup:
+        BatchExecutor executor = new BatchExecutor(client).setParallelism(1).setDeadline(200)
+
+        when:
+        List<BatchResult> results = executor.execute(HttpMethod.GET, createRequests(['0', '5000', '0']))
+
+        then:
+        results*.successful == [true, false, false]
+        results[1].exception instanceof BatchDeadlineExceededException
+        results[2].exception instanceof BatchDeadlineExceededException
+    }
+
+    def 'When failing fast, a passed deadline is thrown'() {
+        setup:
+        BatchExecutor executor = new BatchExecutor(client)
+            .setDeadline(100)
+            .setErrorPolicy(BatchExecutor.ErrorPolicy.FAIL_FAST)
+
+        when:
+        executor.execute(HttpMethod.GET, createRequests(['5000']))
+
+        then:
+        thrown BatchDeadlineExceededException
+    }
+
+    def 'When a request completes after the batch failed, its response is closed'() {
+        setup:
+        BatchExecutor executor = new BatchExecutor(client)
+            .setParallelism(2)
+            .setErrorPolicy(BatchExecutor.ErrorPolicy.FAIL_FAST)
+        List<HttpRequest> requests = createRequests(['uninterruptible', 'fail'])
+        requests[0].setBufferResponseEntity(false)
+
+        when:
+        executor.execute(HttpMethod.GET, requests)
+
+        then:
+        thrown IOException
+
+        when:
+        Thread.sleep(1000)
+
+        then:
+        closed.get() == 1
+    }
+
+    def 'When a batch fails fast, the responses of requests that already completed are closed'() {
+        setup:
+        BatchExecutor executor = new BatchExecutor(client)
+            .setParallelism(1)
+            .setErrorPolicy(BatchExecutor.ErrorPolicy.FAIL_FAST)
+        List<HttpRequest> requests = createRequests(['closeable', 'closeable', 'fail'])
+        requests*.setBufferResponseEntity(false)
+
+        when:
+        executor.execute(HttpMethod.GET, requests)
+
+        then:
+        thrown IOException
+        closed.get() == 2
+    }
+
+    def 'When a batch passes its deadline while failing fast, the responses of requests that already completed are closed'() {
+        setup:
+        BatchExecutor executor = new BatchExecutor(client)
+            .setParallelism(1)
+            .setDeadline(200)
+            .setErrorPolicy(BatchExecutor.ErrorPolicy.FAIL_FAST)
+        List<HttpRequest> requests = createRequests(['closeable', '5000'])
+        requests*.setBufferResponseEntity(false)
+
+        when:
+        executor.execute(HttpMethod.GET, requests)
+
+        then:
+        thrown BatchDeadlineExceededException
+        closed.get() == 1
+    }
+
+    def 'An empty batch returns no results'() {
+        expect:
+        new BatchExecutor(client).execute(HttpMethod.GET, []).isEmpty()
+    }
+
+    /**
+     * A client whose requests to /{delay} take that many milliseconds, whose requests to /fail
+     * throw an exception, whose requests to /closeable return an entity that counts when it is closed,
+     * and whose requests to /uninterruptible take 300 milliseconds regardless of interrupts and return
+     * such an entity.
+     */
+    static class StubHttpClient extends AbstractHttpClient {
+        final BatchExecutorSpec spec
+
+        StubHttpClient(EntityConverterManager converterManager, BatchExecutorSpec spec) {
+            super(converterManager)
+            this.spec = spec
+        }
+
+        @Override
+        protected HttpResponse execute(HttpContext context, HttpEntity httpEntity, HttpClientFilterProcessor filterProcessor) throws IOException, URISyntaxException, GeneralSecurityException {
+            int current = spec.inFlight.incrementAndGet()
+            spec.maxInFlight.accumulateAndGet(current, Math.&max)
+
+            try {
+                String path = new URI(context.request.uri).path.substring(1)
+
+                if (path == 'fail') {
+                    throw new IOException('connection reset')
+                }
+
+                if (path == 'closeable') {
+                    return closeableResponse(context)
+                }
+
+                if (path == 'uninterruptible') {
+                    long end = System.currentTimeMillis() + 300
+                    while (System.currentTimeMillis() < end) {
+                        try {
+                            Thread.sleep(end - System.currentTimeMillis())
+                        }
+                        catch (InterruptedException ignored) {
+                            // The request can not be interrupted.
+                        }
+                    }
+
+                    return closeableResponse(context)
+                }
+
+                Thread.sleep(path.toLong())
+
+                return new MockHttpResponse(converterManager, context.request, 200, new MultiValuedMap(), null)
+            }
+            finally {
+                spec.inFlight.decrementAndGet()
+            }
+        }
+
+        HttpResponse closeableResponse(HttpContext context) {
+            InputStream entity = new ByteArrayInputStream('entity'.bytes) {
+                @Override
+                void close() throws IOException {
+                    spec.closed.incrementAndGet()
+                }
+            }
+
+            return new MockHttpResponse(converterManager, context.request, 200, new MultiValuedMap(), new HttpEntity(entity))
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests
+
+import com.budjb.httprequests.converter.EntityConverterManager
+import com.budjb.httprequests.converter.bundled.StringEntityReader
+import com.budjb.httprequests.filter.HttpClientFilterProcessor
+import com.budjb.httprequests.mock.MockHttpResponse
+import spock.lang.Specification
+
+import java.security.GeneralSecurityException
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class CoalescingHttpClientFactorySpec extends Specification {
+    EntityConverterManager converterManager = new EntityConverterManager([new StringEntityReader()])
+    AtomicInteger executions = new AtomicInteger()
+    CountDownLatch latch = new CountDownLatch(1)
+    ExecutorService executor = Executors.newFixedThreadPool(8)
+    IOException failure
+
+    CoalescingHttpClientFactory factory = new CoalescingHttpClientFactory(new AbstractHttpClientFactory(converterManager) {
+        @Override
+        HttpClient createHttpClient() {
+            return new StubHttpClient(converterManager, CoalescingHttpClientFactorySpec.this)
+        }
+    })
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    List<Future<HttpResponse>> submit(int count, Closure<HttpResponse> request) {
+        List<Future<HttpResponse>> futures = (1..count).collect { i -> executor.submit({ request.call(i) } as Callable<HttpResponse>) }
+
+        // Give every request the chance to either start or join the in-flight request.
+        Thread.sleep(500)
+        latch.countDown()
+
+        return futures
+    }
+
+    def 'When identical GET requests are made concurrently, only one request is executed'() {
+        when:
+        List<HttpResponse> responses = submit(8) {
+            factory.createHttpClient().get(new HttpRequest('http://localhost/foo?bar=baz'))
+        }*.get()
+
+        then:
+        executions.get() == 1
+        responses.size() == 8
+        responses.every { it.status == 200 && it.getHeader('foo') == 'bar' }
+        responses.every { it.getEntity(String) == 'hello' }
+        responses*.request.unique { System.identityHashCode(it) }.size() == 8
+        factory.inFlightCount == 0
+    }
+
+    def 'When concurrent requests differ in a selected header, they are not coalesced'() {
+        when:
+        List<HttpResponse> responses = submit(2) { int i ->
+            factory.createHttpClient().get(new HttpRequest('http://localhost/foo').setHeader('Accept', "type/${i}"))
+        }*.get()
+
+        then:
+        executions.get() == 2
+        responses.every { it.getEntity(String) == 'hello' }
+    }
+
+    def 'When concurrent requests differ in a header that is not selected, they are coalesced'() {
+        when:
+        submit(2) { int i ->
+            factory.createHttpClient().get(new HttpRequest('http://localhost/foo').setHeader('X-Request-Id', "${i}"))
+        }*.get()
+
+        then:
+        executions.get() == 1
+    }
+
+    def 'When concurrent requests contain an entity, they are not coalesced'() {
+        when:
+        submit(2) {
+            factory.createHttpClient().post(new HttpRequest('http://localhost/foo'), new ByteArrayInputStream('payload'.bytes))
+        }*.get()
+
+        then:
+        executions.get() == 2
+    }
+
+    def 'When concurrent GET requests do not buffer their response entity, they are not coalesced'() {
+        when:
+        List<HttpResponse> responses = submit(2) {
+            factory.createHttpClient().get(new HttpRequest('http://localhost/foo').setBufferResponseEntity(false))
+        }*.get()
+
+        then:
+        executions.get() == 2
+        responses.every { !it.entity.isBuffered() && it.entity.inputStream.text == 'hello' }
+        factory.inFlightCount == 0
+    }
+
+    def 'When a coalesced request fails, the failure is received by every caller'() {
+        setup:
+        failure = new IOException('failed')
+
+        when:
+        List<Future<HttpResponse>> futures = submit(4) {
+            factory.createHttpClient().get('http://localhost/foo')
+        }
+
+        then:
+        futures.every {
+            try {
+                it.get()
+                return false
+            }
+            catch (ExecutionException e) {
+                return e.cause.is(failure)
+            }
+        }
+        executions.get() == 1
+        factory.inFlightCount == 0
+    }
+
+    def 'When requests are made sequentially, each request is executed'() {
+        setup:
+        latch.countDown()
+        HttpClient client = factory.createHttpClient()
+
+        when:
+        client.get('http://localhost/foo')
+        client.get('http://localhost/foo')
+
+        then:
+        executions.get() == 2
+    }
+
+    def 'When the decorated factory has default timeouts, they are applied to requests'() {
+        setup:
+        latch.countDown()
+        AbstractHttpClientFactory delegate = new AbstractHttpClientFactory(converterManager) {
+            @Override
+            HttpClient createHttpClient() {
+                return configure(new StubHttpClient(converterManager, CoalescingHttpClientFactorySpec.this))
+            }
+        }
+        delegate.setDefaultConnectionTimeout(1000).setDefaultReadTimeout(2000)
+
+        when:
+        HttpResponse response = new CoalescingHttpClientFactory(delegate).createHttpClient().get('http://localhost/foo')
+
+        then:
+        response.request.connectionTimeout == 1000
+        response.request.readTimeout == 2000
+    }
+
+    def 'When a request sets timeouts of 0, the default timeouts are not applied'() {
+        setup:
+        latch.countDown()
+        AbstractHttpClientFactory delegate = new AbstractHttpClientFactory(converterManager) {
+            @Override
+            HttpClient createHttpClient() {
+                return configure(new StubHttpClient(converterManager, CoalescingHttpClientFactorySpec.this))
+            }
+        }
+        delegate.setDefaultConnectionTimeout(1000).setDefaultReadTimeout(2000)
+        HttpRequest request = new HttpRequest('http://localhost/foo').setConnectionTimeout(0).setReadTimeout(0)
+
+        when:
+        HttpResponse response = new CoalescingHttpClientFactory(delegate).createHttpClient().get(request)
+
+        then:
+        response.request.connectionTimeout == 0
+        response.request.readTimeout == 0
+    }
+
+    /**
+     * A client that counts its executions and waits for the latch of the spec before responding.
+     */
+    static class StubHttpClient extends AbstractHttpClient {
+        final CoalescingHttpClientFactorySpec spec
+
+        StubHttpClient(EntityConverterManager converterManager, CoalescingHttpClientFactorySpec spec) {
+            super(converterManager)
+            this.spec = spec
+        }
+
+        @Override
+        protected HttpResponse execute(HttpContext context, HttpEntity httpEntity, HttpClientFilterProcessor filterProcessor) throws IOException, URISyntaxException, GeneralSecurityException {
+            spec.executions.incrementAndGet()
+            spec.latch.await(5, TimeUnit.SECONDS)
+
+            if (spec.failure) {
+                throw spec.failure
+            }
+
+            return new MockHttpResponse(
+                converterManager,
+                context.request,
+                200,
+                new MultiValuedMap([foo: ['bar']]),
+                new HttpEntity(new ByteArrayInputStream('hello'.bytes), 'text/plain', 'UTF-8')
+            )
+        }
+    }
+}
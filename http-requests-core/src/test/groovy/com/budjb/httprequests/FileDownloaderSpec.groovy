@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Paths
+
+class FileDownloaderSpec extends Specification {
+    @Unroll
+    def 'When the Content-Range header #header is parsed, the result is #range'() {
+        expect:
+        FileDownloader.parseContentRange(header) == range as long[]
+
+        where:
+        header                | range
+        null                  | [-1, -1, -1]
+        'bytes 0-99/1000'     | [0, 99, 1000]
+        'bytes 100-199/*'     | [100, 199, -1]
+        'bytes */1000'        | [-1, -1, 1000]
+        'BYTES  5-9/10'       | [5, 9, 10]
+        'items 0-1/2'         | [-1, -1, -1]
+        'bytes foo-bar/baz'   | [-1, -1, -1]
+    }
+
+    def 'When a download is created with a parallelism less than 1, an IllegalArgumentException is thrown'() {
+        when:
+        new FileDownloader(Mock(HttpClient), new HttpRequest(), Paths.get('download.bin'), 0)
+
+        then:
+        thrown IllegalArgumentException
+    }
+}
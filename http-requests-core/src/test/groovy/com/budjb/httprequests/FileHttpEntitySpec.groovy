@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests
+
+import com.budjb.httprequests.exception.EmptyEntityException
+import com.budjb.httprequests.exception.NullEntityException
+import spock.lang.Specification
+
+class FileHttpEntitySpec extends Specification {
+    File file
+
+    def setup() {
+        file = File.createTempFile('http-requests', '.txt')
+        file.deleteOnExit()
+    }
+
+    def cleanup() {
+        file.delete()
+    }
+
+    def 'When a file entity is created, its length is the size of the file and it is repeatable'() {
+        setup:
+        file.text = 'Hello, world!'
+
+        when:
+        FileHttpEntity entity = new FileHttpEntity(file, 'text/plain', 'UTF-8')
+
+        then:
+        entity.contentLength == 13
+        entity.repeatable
+        !entity.buffered
+        entity.fullContentType == 'text/plain; charset=UTF-8'
+    }
+
+    def 'When the input stream of a file entity is read multiple times, the contents of the file are returned each time'() {
+        setup:
+        file.text = 'Hello, world!'
+        FileHttpEntity entity = new FileHttpEntity(file)
+
+        expect:
+        StreamUtils.readString(entity.inputStream, 'UTF-8') == 'Hello, world!'
+        StreamUtils.readString(entity.inputStream, 'UTF-8') == 'Hello, world!'
+    }
+
+    def 'When a file entity is written to an output stream, the contents of the file are written'() {
+        setup:
+        byte[] content = new byte[100000]
+        new Random(1).nextBytes(content)
+        file.bytes = content
+
+        FileHttpEntity entity = new FileHttpEntity(file.toPath())
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+
+        when:
+        entity.writeTo(outputStream)
+
+        then:
+        outputStream.toByteArray() == content
+    }
+
+    def 'When a file entity is buffered, it is still read from the file'() {
+        setup:
+        file.text = 'foo'
+        FileHttpEntity entity = new FileHttpEntity(file)
+
+        when:
+        entity.buffer()
+        file.text = 'bar'
+
+        then:
+        !entity.buffered
+        StreamUtils.readString(entity.inputStream, 'UTF-8') == 'bar'
+    }
+
+    def 'When a file entity is created from an empty file, an EmptyEntityException is thrown'() {
+        when:
+        new FileHttpEntity(file)
+
+        then:
+        thrown EmptyEntityException
+    }
+
+    def 'When a file entity is created from a null file, a NullEntityException is thrown'() {
+        when:
+        new FileHttpEntity((File) null)
+
+        then:
+        thrown NullEntityException
+    }
+
+    def 'When a file entity is created from a file that does not exist, an IOException is thrown'() {
+        setup:
+        file.delete()
+
+        when:
+        new FileHttpEntity(file)
+
+        then:
+        thrown IOException
+    }
+
+    def 'When a stream entity is buffered, its length is known and it is repeatable'() {
+        setup:
+        HttpEntity entity = new HttpEntity(new ByteArrayInputStream('Hello'.bytes))
+
+        expect:
+        entity.contentLength == -1
+        !entity.repeatable
+
+        when:
+        entity.buffer()
+
+        then:
+        entity.contentLength == 5
+        entity.repeatable
+    }
+}
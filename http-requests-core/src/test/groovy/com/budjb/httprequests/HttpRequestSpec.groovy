@@ -15,6 +15,7 @@
  */
 package com.budjb.httprequests
 
+import com.budjb.httprequests.filter.HttpClientFilter
 import spock.lang.Specification
 import spock.lang.Unroll
 
@@ -40,6 +41,8 @@ class HttpRequestSpec extends Specification {
         'http://foo.bar.com:8080'                   | 'http://foo.bar.com:8080'           | [:]
         'https://foo.bar.com:993'                   | 'https://foo.bar.com:993'           | [:]
         'https://host?f=b=a=r'                      | 'https://host'                      | [f: ['b=a=r']]
+        'https://host?f=b%26a%3Dr'                  | 'https://host'                      | [f: ['b&a=r']]
+        'https://host?f%20o=b+r&&x='                | 'https://host'                      | [('f o'): ['b+r'], x: ['']]
     }
 
     def 'When the builder syntax is used, all properties are set correctly'() {
@@ -146,4 +149,24 @@ class HttpRequestSpec extends Specification {
         request.getUri() == 'http://localhost/the%20bads'
         request.queryParameters == ['foo': ['bar baz']]
     }
+
+    def 'When a cloned request is modified, the original request is not changed'() {
+        setup:
+        HttpRequest request = new HttpRequest('http://localhost?foo=bar').addHeader('foo', 'bar')
+
+        when:
+        HttpRequest clone = (HttpRequest) request.clone()
+        clone.setHeader('foo', 'baz')
+            .addHeader('Range', 'bytes=0-99')
+            .addQueryParameter('foo', 'baz')
+            .addFilter(Mock(HttpClientFilter))
+
+        then:
+        request.headers == [foo: ['bar']]
+        request.queryParameters == [foo: ['bar']]
+        request.filters.isEmpty()
+        clone.headers == [foo: ['baz'], Range: ['bytes=0-99']]
+        clone.queryParameters == [foo: ['bar', 'baz']]
+        clone.filters.size() == 1
+    }
 }
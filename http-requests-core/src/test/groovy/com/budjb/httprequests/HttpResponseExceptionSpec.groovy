@@ -70,6 +70,48 @@ class HttpResponseExceptionSpec extends Specification {
         503    | HttpServiceUnavailableException
         504    | HttpGatewayTimeoutException
         505    | HttpHttpVersionNotSupportedException
+        418    | HttpStatusException
+        999    | HttpStatusException
+    }
+
+    @Unroll
+    def 'When an HttpResponseException is built with status #status without a stack trace, exception type #type is returned without a stack trace'() {
+        setup:
+        HttpResponse response = new MockHttpResponse(
+            new EntityConverterManager([]),
+            new HttpRequest(),
+            status,
+            new MultiValuedMap(),
+            null
+        )
+
+        when:
+        HttpStatusException exception = HttpStatusException.build(response, false)
+
+        then:
+        exception.getClass() == type
+        exception.status == status
+        exception.response.is(response)
+        exception.stackTrace.length == 0
+
+        where:
+        status | type
+        404    | HttpNotFoundException
+        503    | HttpServiceUnavailableException
+        599    | HttpStatusException
+    }
+
+    def 'When an HttpResponseException is built with a stack trace, the stack trace is filled in'() {
+        setup:
+        HttpResponse response = new MockHttpResponse(
+            new EntityConverterManager([]),
+            new HttpRequest(),
+            500,
+            new MultiValuedMap(),
+            null
+        )
 
+        expect:
+        HttpStatusException.build(response).stackTrace.length > 0
     }
 }
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests
+
+import spock.lang.Specification
+
+class MultipartEntitySpec extends Specification {
+    File file
+
+    def setup() {
+        file = File.createTempFile('http-requests', '.txt')
+        file.deleteOnExit()
+    }
+
+    def cleanup() {
+        file.delete()
+    }
+
+    String expected(String... parts) {
+        return parts.collect { "--boundary\r\n${it}\r\n" }.join('') + '--boundary--\r\n'
+    }
+
+    def 'When a multipart entity is written, each part is written with its headers between boundaries'() {
+        setup:
+        file.text = 'file contents'
+
+        MultipartEntity entity = new MultipartEntity('boundary')
+            .addField('foo', 'bar')
+            .addFile('upload', file, 'text/plain')
+            .addPart('data', 'data.bin', 'application/octet-stream', [1, 2, 3] as byte[])
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+
+        when:
+        entity.writeTo(outputStream)
+
+        then:
+        new String(outputStream.toByteArray(), 'ISO-8859-1') == expected(
+            'Content-Disposition: form-data; name="foo"\r\n\r\nbar',
+            "Content-Disposition: form-data; name=\"upload\"; filename=\"${file.name}\"\r\nContent-Type: text/plain\r\n\r\nfile contents",
+            'Content-Disposition: form-data; name="data"; filename="data.bin"\r\nContent-Type: application/octet-stream\r\n\r\n\u0001\u0002\u0003'
+        )
+        entity.contentLength == outputStream.size()
+        entity.fullContentType == 'multipart/form-data; boundary=boundary'
+        entity.repeatable
+        !entity.buffered
+    }
+
+    def 'When a multipart entity is read from its input stream, the same content is returned each time'() {
+        setup:
+        file.text = 'file contents'
+
+        MultipartEntity entity = new MultipartEntity('boundary')
+            .addField('foo', 'bär')
+            .addFile('upload', file.toPath(), null)
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+        entity.writeTo(outputStream)
+
+        expect:
+        StreamUtils.readBytes(entity.inputStream) == outputStream.toByteArray()
+        StreamUtils.readBytes(entity.inputStream) == outputStream.toByteArray()
+        entity.contentLength == outputStream.size()
+    }
+
+    def 'When an input stream part has a known length, the length of the entity is known'() {
+        setup:
+        MultipartEntity entity = new MultipartEntity('boundary')
+            .addPart('stream', null, null, new ByteArrayInputStream('foobar'.bytes), 6)
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+
+        when:
+        long length = entity.contentLength
+        entity.writeTo(outputStream)
+
+        then:
+        length == outputStream.size()
+        new String(outputStream.toByteArray()) == expected('Content-Disposition: form-data; name="stream"\r\n\r\nfoobar')
+        !entity.repeatable
+    }
+
+    def 'When an input stream part has an unknown length, the length of the entity is unknown until it is buffered'() {
+        setup:
+        MultipartEntity entity = new MultipartEntity('boundary')
+            .addField('foo', 'bar')
+            .addPart('stream', 'stream.txt', 'text/plain', new ByteArrayInputStream('foobar'.bytes))
+
+        expect:
+        entity.contentLength == -1
+        !entity.repeatable
+
+        when:
+        entity.buffer()
+        ByteArrayOutputStream first = new ByteArrayOutputStream()
+        ByteArrayOutputStream second = new ByteArrayOutputStream()
+        entity.writeTo(first)
+        entity.writeTo(second)
+
+        then:
+        entity.repeatable
+        entity.contentLength == first.size()
+        first.toByteArray() == second.toByteArray()
+        new String(first.toByteArray()).contains('\r\n\r\nfoobar\r\n--boundary--\r\n')
+    }
+
+    def 'When an input stream part is shorter than its length, an EOFException is thrown'() {
+        setup:
+        MultipartEntity entity = new MultipartEntity('boundary')
+            .addPart('stream', null, null, new ByteArrayInputStream('foo'.bytes), 6)
+
+        when:
+        entity.writeTo(new ByteArrayOutputStream())
+
+        then:
+        thrown EOFException
+    }
+
+    def 'When an input stream part is longer than its length, only its length is written'() {
+        setup:
+        MultipartEntity entity = new MultipartEntity('boundary')
+            .addPart('stream', null, null, new ByteArrayInputStream('foobar'.bytes), 3)
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+
+        when:
+        entity.writeTo(outputStream)
+
+        then:
+        outputStream.size() == entity.contentLength
+        new String(outputStream.toByteArray()).contains('\r\n\r\nfoo\r\n')
+    }
+
+    def 'When an input stream part is longer than its length, its input stream returns only its length'() {
+        setup:
+        MultipartEntity entity = new MultipartEntity('boundary')
+            .addPart('stream', null, null, new ByteArrayInputStream('foobar'.bytes), 3)
+
+        when:
+        byte[] content = StreamUtils.readBytes(entity.inputStream)
+
+        then:
+        content.length == entity.contentLength
+        new String(content) == expected('Content-Disposition: form-data; name="stream"\r\n\r\nfoo')
+    }
+
+    def 'When an input stream part is shorter than its length, reading its input stream throws an EOFException'() {
+        setup:
+        MultipartEntity entity = new MultipartEntity('boundary')
+            .addPart('stream', null, null, new ByteArrayInputStream('foo'.bytes), 6)
+
+        when:
+        StreamUtils.readBytes(entity.inputStream)
+
+        then:
+        thrown EOFException
+    }
+
+    def 'When an input stream part with a known length is buffered, exactly its length is buffered'() {
+        setup:
+        MultipartEntity entity = new MultipartEntity('boundary')
+            .addPart('stream', null, null, new ByteArrayInputStream('foobar'.bytes), 3)
+
+        when:
+        long length = entity.contentLength
+        entity.buffer()
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+        entity.writeTo(outputStream)
+
+        then:
+        entity.contentLength == length
+        outputStream.size() == length
+        StreamUtils.readBytes(entity.inputStream) == outputStream.toByteArray()
+    }
+
+    def 'When an input stream part is shorter than its length, buffering it throws an EOFException'() {
+        setup:
+        MultipartEntity entity = new MultipartEntity('boundary')
+            .addPart('stream', null, null, new ByteArrayInputStream('foo'.bytes), 6)
+
+        when:
+        entity.buffer()
+
+        then:
+        thrown EOFException
+    }
+
+    def 'When a file grows after it was added, its input stream returns only the length it had when added'() {
+        setup:
+        file.text = 'file'
+        MultipartEntity entity = new MultipartEntity('boundary').addFile('upload', file, null)
+        file.text = 'file contents'
+
+        when:
+        byte[] content = StreamUtils.readBytes(entity.inputStream)
+
+        then:
+        content.length == entity.contentLength
+        new String(content).contains('\r\n\r\nfile\r\n--boundary--\r\n')
+    }
+
+    def 'When a file shrinks after it was added, reading its input stream throws an EOFException'() {
+        setup:
+        file.text = 'file contents'
+        MultipartEntity entity = new MultipartEntity('boundary').addFile('upload', file, null)
+        file.text = 'file'
+
+        when:
+        StreamUtils.readBytes(entity.inputStream)
+
+        then:
+        thrown EOFException
+    }
+
+    def 'When a multipart entity is closed, unread input stream parts are closed'() {
+        setup:
+        InputStream inputStream = Mock(InputStream)
+        MultipartEntity entity = new MultipartEntity().addPart('stream', null, null, inputStream)
+
+        when:
+        entity.close()
+
+        then:
+        1 * inputStream.close()
+    }
+
+    def 'Quotes and line breaks in names are escaped'() {
+        setup:
+        MultipartEntity entity = new MultipartEntity('boundary').addPart('a"b', 'c\r\nd', null, 'x'.bytes)
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+
+        when:
+        entity.writeTo(outputStream)
+
+        then:
+        new String(outputStream.toByteArray()).contains('Content-Disposition: form-data; name="a%22b"; filename="c%0D%0Ad"\r\n')
+    }
+
+    def 'When no boundary is given, a random boundary is generated'() {
+        when:
+        MultipartEntity first = new MultipartEntity()
+        MultipartEntity second = new MultipartEntity()
+
+        then:
+        first.boundary != second.boundary
+        first.contentType == "multipart/form-data; boundary=${first.boundary}"
+    }
+
+    def 'When an invalid boundary is given, an IllegalArgumentException is thrown'() {
+        when:
+        new MultipartEntity(boundary)
+
+        then:
+        thrown IllegalArgumentException
+
+        where:
+        boundary << [null, '', 'a' * 71, 'foo"bar', 'foo\r\nbar']
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class UriEncoderSpec extends Specification {
+    @Unroll
+    def 'When the value #value is encoded, the result is #encoded'() {
+        expect:
+        UriEncoder.appendEncoded(new StringBuilder(), value).toString() == encoded
+
+        where:
+        value               | encoded
+        ''                  | ''
+        'azAZ09-._~'        | 'azAZ09-._~'
+        'foo bar'           | 'foo%20bar'
+        'a&b=c+d'           | 'a%26b%3Dc%2Bd'
+        '/?#[]@'            | '%2F%3F%23%5B%5D%40'
+        'caf\u00e9'    | 'caf%C3%A9'
+        '\u20ac'       | '%E2%82%AC'
+        '\ud83d\ude00' | '%F0%9F%98%80'
+    }
+
+    @Unroll
+    def 'When the value #value is encoded and decoded, the original value is returned'() {
+        expect:
+        UriEncoder.decode(UriEncoder.appendEncoded(new StringBuilder(), value).toString()) == value
+
+        where:
+        value << ['', 'plain', 'foo bar', 'a&b=c+d', 'caf\u00e9 \u20ac \ud83d\ude00']
+    }
+
+    def 'When a value containing a plus sign is decoded, the plus sign is not converted to a space'() {
+        expect:
+        UriEncoder.decode('a+b%20c') == 'a+b c'
+    }
+
+    @Unroll
+    def 'When the malformed value #value is decoded, an IllegalArgumentException is thrown'() {
+        when:
+        UriEncoder.decode(value)
+
+        then:
+        thrown IllegalArgumentException
+
+        where:
+        value << ['%', 'foo%2', '%zz']
+    }
+
+    @Unroll
+    def 'When the query #query is decoded, the parameters are #parameters'() {
+        expect:
+        UriEncoder.decodeQuery(query) == parameters
+
+        where:
+        query                  | parameters
+        null                   | [:]
+        ''                     | [:]
+        'foo=bar&foo=baz'      | [foo: ['bar', 'baz']]
+        'foo&bar='             | [foo: [''], bar: ['']]
+        'foo=a%26b%3Dc&&x=y=z' | [foo: ['a&b=c'], x: ['y=z']]
+    }
+
+    def 'When a request is encoded, the URI and all query parameters are included'() {
+        setup:
+        HttpRequest request = new HttpRequest('https://example.com:443/a%20b?x=1')
+            .addQueryParameter('foo', ['bar', 'a&b'])
+            .setQueryParameter('empty', [])
+
+        expect:
+        UriEncoder.encode(request) == 'https://example.com/a%20b?empty=&foo=bar&foo=a%26b&x=1'
+    }
+
+    def 'When a request without query parameters is encoded, no query string is included'() {
+        expect:
+        UriEncoder.encode(new HttpRequest('http://localhost:8080/foo')) == 'http://localhost:8080/foo'
+    }
+}
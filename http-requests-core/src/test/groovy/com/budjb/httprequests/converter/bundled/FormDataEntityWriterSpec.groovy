@@ -17,8 +17,12 @@
 package com.budjb.httprequests.converter.bundled
 
 import com.budjb.httprequests.FormData
+import com.budjb.httprequests.HttpEntity
 import com.budjb.httprequests.StreamUtils
+import com.budjb.httprequests.converter.EntityConverterManager
+import com.budjb.httprequests.exception.UnsupportedConversionException
 import spock.lang.Specification
+import spock.lang.Unroll
 
 class FormDataEntityWriterSpec extends Specification {
     def 'FormDataEntityWriter only supports FormData'() {
@@ -48,4 +52,54 @@ class FormDataEntityWriterSpec extends Specification {
         expect:
         new FormDataEntityWriter().contentType == 'application/x-www-form-urlencoded'
     }
+
+    @Unroll
+    def 'FormDataEntityWriter encodes #value with character set #charset the same way URLEncoder does'() {
+        setup:
+        FormDataEntityWriter writer = new FormDataEntityWriter()
+        FormData formData = new FormData().addField(value, value).addField(value, 'a b')
+
+        when:
+        InputStream inputStream = writer.write(formData, charset)
+
+        then:
+        new String(StreamUtils.readBytes(inputStream), 'US-ASCII') ==
+            "${URLEncoder.encode(value, charset)}=${URLEncoder.encode(value, charset)}&${URLEncoder.encode(value, charset)}=a+b"
+
+        where:
+        value                           | charset
+        'abcXYZ019-._*'                 | 'UTF-8'
+        'a&b=c+d%e/f?g#h~i!j'           | 'UTF-8'
+        'caf\u00e9 \u20ac \ud83d\ude00' | 'UTF-8'
+        'unpaired \ud83d surrogate'     | 'UTF-8'
+        'caf\u00e9 & cr\u00e8me'         | 'ISO-8859-1'
+        '\u65e5\u672c\u8a9e & text'       | 'Shift_JIS'
+    }
+
+    def 'When form data is converted, the entity is buffered with its exact length'() {
+        setup:
+        EntityConverterManager converterManager = new EntityConverterManager([new FormDataEntityWriter()])
+        FormData formData = new FormData().addField('foo', 'b\u00e4r').addField('key', 'value')
+
+        when:
+        HttpEntity entity = converterManager.write(formData, null, 'UTF-8')
+
+        then:
+        entity.buffered
+        entity.repeatable
+        entity.contentLength == 'foo=b%C3%A4r&key=value'.length()
+        entity.contentType == 'application/x-www-form-urlencoded'
+        StreamUtils.readString(entity.inputStream, 'UTF-8') == 'foo=b%C3%A4r&key=value'
+    }
+
+    def 'When form data without fields is converted, the conversion is not supported'() {
+        setup:
+        EntityConverterManager converterManager = new EntityConverterManager([new FormDataEntityWriter()])
+
+        when:
+        converterManager.write(new FormData())
+
+        then:
+        thrown UnsupportedConversionException
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.dns
+
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicInteger
+
+class CachingHostResolverSpec extends Specification {
+    static final InetAddress FIRST = InetAddress.getByAddress('example.com', [10, 0, 0, 1] as byte[])
+    static final InetAddress SECOND = InetAddress.getByAddress('example.com', [10, 0, 0, 2] as byte[])
+
+    def 'Resolved addresses are cached until they expire'() {
+        setup:
+        AtomicInteger lookups = new AtomicInteger()
+        HostResolver delegate = { String host ->
+            lookups.incrementAndGet()
+            return [FIRST] as InetAddress[]
+        } as HostResolver
+
+        CachingHostResolver resolver = new CachingHostResolver(delegate).setTimeToLive(100).setRefreshAfter(100)
+
+        when:
+        3.times { resolver.resolve('example.com') }
+
+        then:
+        lookups.get() == 1
+
+        when:
+        Thread.sleep(150)
+        resolver.resolve('EXAMPLE.com')
+
+        then:
+        lookups.get() == 2
+
+        cleanup:
+        resolver.close()
+    }
+
+    def 'Lookups rotate through the addresses of a host'() {
+        setup:
+        HostResolver delegate = { String host -> [FIRST, SECOND] as InetAddress[] } as HostResolver
+        CachingHostResolver resolver = new CachingHostResolver(delegate)
+
+        expect:
+        resolver.resolve('example.com') as List == [FIRST, SECOND]
+        resolver.resolve('example.com') as List == [SECOND, FIRST]
+        resolver.resolve('example.com') as List == [FIRST, SECOND]
+
+        cleanup:
+        resolver.close()
+    }
+
+    def 'An entry used after its refresh time is refreshed in the background'() {
+        setup:
+        AtomicInteger lookups = new AtomicInteger()
+        HostResolver delegate = { String host ->
+            return (lookups.incrementAndGet() == 1 ? [FIRST] : [SECOND]) as InetAddress[]
+        } as HostResolver
+
+        CachingHostResolver resolver = new CachingHostResolver(delegate).setTimeToLive(60000).setRefreshAfter(50)
+
+        when:
+        resolver.resolve('example.com')
+        Thread.sleep(100)
+        InetAddress[] stale = resolver.resolve('example.com')
+
+        then:
+        stale as List == [FIRST]
+
+        when:
+        long deadline = System.currentTimeMillis() + 5000
+        while (lookups.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+        Thread.sleep(50)
+
+        then:
+        resolver.resolve('example.com') as List == [SECOND]
+
+        cleanup:
+        resolver.close()
+    }
+
+    def 'Cached addresses are kept when a background refresh fails'() {
+        setup:
+        AtomicInteger lookups = new AtomicInteger()
+        HostResolver delegate = { String host ->
+            if (lookups.incrementAndGet() > 1) {
+                throw new UnknownHostException(host)
+            }
+            return [FIRST] as InetAddress[]
+        } as HostResolver
+
+        CachingHostResolver resolver = new CachingHostResolver(delegate).setTimeToLive(60000).setRefreshAfter(50)
+
+        when:
+        resolver.resolve('example.com')
+        Thread.sleep(100)
+        resolver.resolve('example.com')
+
+        long deadline = System.currentTimeMillis() + 5000
+        while (lookups.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+
+        then:
+        resolver.resolve('example.com') as List == [FIRST]
+
+        cleanup:
+        resolver.close()
+    }
+
+    def 'Hosts that can not be resolved are not cached'() {
+        setup:
+        AtomicInteger lookups = new AtomicInteger()
+        HostResolver delegate = { String host ->
+            lookups.incrementAndGet()
+            throw new UnknownHostException(host)
+        } as HostResolver
+
+        CachingHostResolver resolver = new CachingHostResolver(delegate)
+
+        when:
+        resolver.resolve('example.com')
+
+        then:
+        thrown UnknownHostException
+
+        when:
+        resolver.resolve('example.com')
+
+        then:
+        thrown UnknownHostException
+        lookups.get() == 2
+
+        cleanup:
+        resolver.close()
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled
+
+import com.budjb.httprequests.HttpContext
+import com.budjb.httprequests.HttpRequest
+import com.budjb.httprequests.HttpResponse
+import com.budjb.httprequests.exception.ConcurrencyLimitExceededException
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class AdaptiveConcurrencyLimitFilterSpec extends Specification {
+    static final String ORIGIN = 'http://localhost:8080'
+
+    HttpContext createContext() {
+        HttpContext context = new HttpContext()
+        context.request = new HttpRequest("${ORIGIN}/foo?bar=baz")
+        return context
+    }
+
+    HttpResponse createResponse(int status) {
+        HttpResponse response = Mock(HttpResponse)
+        response.getStatus() >> status
+        return response
+    }
+
+    def 'Requests over the limit are rejected when the overflow policy is REJECT'() {
+        setup:
+        AdaptiveConcurrencyLimitFilter filter = new AdaptiveConcurrencyLimitFilter()
+            .setInitialLimit(2)
+            .setOverflowPolicy(AdaptiveConcurrencyLimitFilter.OverflowPolicy.REJECT)
+
+        when:
+        filter.onRequest(createContext())
+        filter.onRequest(createContext())
+
+        then:
+        filter.getInFlight(ORIGIN) == 2
+
+        when:
+        filter.onRequest(createContext())
+
+        then:
+        thrown ConcurrencyLimitExceededException
+        filter.getInFlight(ORIGIN) == 2
+    }
+
+    def 'A permit is released when a response is received'() {
+        setup:
+        AdaptiveConcurrencyLimitFilter filter = new AdaptiveConcurrencyLimitFilter()
+            .setInitialLimit(1)
+            .setOverflowPolicy(AdaptiveConcurrencyLimitFilter.OverflowPolicy.REJECT)
+        HttpContext context = createContext()
+
+        when:
+        filter.onStart(context)
+        filter.onRequest(context)
+        context.response = createResponse(200)
+        filter.onResponse(context)
+        filter.close()
+
+        then:
+        filter.getInFlight(ORIGIN) == 0
+
+        when:
+        filter.onRequest(createContext())
+
+        then:
+        notThrown ConcurrencyLimitExceededException
+    }
+
+    def 'A permit is released and the limit decreased when closed without a response'() {
+        setup:
+        AdaptiveConcurrencyLimitFilter filter = new AdaptiveConcurrencyLimitFilter().setInitialLimit(10)
+        HttpContext context = createContext()
+
+        when:
+        filter.onStart(context)
+        filter.onRequest(context)
+        filter.close()
+
+        then:
+        filter.getInFlight(ORIGIN) == 0
+        filter.getLimit(ORIGIN) == 9
+    }
+
+    def 'The limit decreases when the server responds with status #status'() {
+        setup:
+        AdaptiveConcurrencyLimitFilter filter = new AdaptiveConcurrencyLimitFilter().setInitialLimit(10).setBackoffRatio(0.5)
+        HttpContext context = createContext()
+
+        when:
+        filter.onRequest(context)
+        context.response = createResponse(status)
+        filter.onResponse(context)
+
+        then:
+        filter.getLimit(ORIGIN) == 5
+
+        where:
+        status << [429, 500, 503]
+    }
+
+    def 'The limit does not decrease below the minimum limit'() {
+        setup:
+        AdaptiveConcurrencyLimitFilter filter = new AdaptiveConcurrencyLimitFilter().setInitialLimit(4).setMinLimit(3).setBackoffRatio(0.5)
+
+        when:
+        3.times {
+            HttpContext context = createContext()
+            filter.onRequest(context)
+            context.response = createResponse(503)
+            filter.onResponse(context)
+        }
+
+        then:
+        filter.getLimit(ORIGIN) == 3
+    }
+
+    def 'The limit increases while it is being used and requests succeed'() {
+        setup:
+        AdaptiveConcurrencyLimitFilter filter = new AdaptiveConcurrencyLimitFilter()
+            .setInitialLimit(2)
+            .setMaxLimit(4)
+            .setLatencyTolerance(1e12)
+
+        when:
+        50.times {
+            List<HttpContext> contexts = (1..filter.getLimit(ORIGIN)).collect { createContext() }
+            contexts.each { filter.onRequest(it) }
+            contexts.each {
+                it.response = createResponse(200)
+                filter.onResponse(it)
+            }
+        }
+
+        then:
+        filter.getLimit(ORIGIN) == 4
+        filter.getInFlight(ORIGIN) == 0
+    }
+
+    def 'The limit does not increase while it is not being used'() {
+        setup:
+        AdaptiveConcurrencyLimitFilter filter = new AdaptiveConcurrencyLimitFilter().setInitialLimit(10).setLatencyTolerance(1e12)
+
+        when:
+        50.times {
+            HttpContext context = createContext()
+            filter.onRequest(context)
+            context.response = createResponse(200)
+            filter.onResponse(context)
+        }
+
+        then:
+        filter.getLimit(ORIGIN) == 10
+    }
+
+    def 'A queued request acquires a permit once one is released'() {
+        setup:
+        AdaptiveConcurrencyLimitFilter filter = new AdaptiveConcurrencyLimitFilter().setInitialLimit(1).setQueueTimeout(5000)
+        HttpContext first = createContext()
+        CountDownLatch acquired = new CountDownLatch(1)
+
+        when:
+        filter.onRequest(first)
+        Thread thread = Thread.start {
+            filter.onRequest(createContext())
+            acquired.countDown()
+        }
+
+        then:
+        !acquired.await(100, TimeUnit.MILLISECONDS)
+
+        when:
+        first.response = createResponse(200)
+        filter.onResponse(first)
+
+        then:
+        acquired.await(5, TimeUnit.SECONDS)
+
+        cleanup:
+        thread?.join()
+    }
+
+    def 'A queued request is rejected when the queue timeout elapses'() {
+        setup:
+        AdaptiveConcurrencyLimitFilter filter = new AdaptiveConcurrencyLimitFilter().setInitialLimit(1).setQueueTimeout(100)
+        filter.onRequest(createContext())
+
+        when:
+        long start = System.nanoTime()
+        filter.onRequest(createContext())
+
+        then:
+        thrown ConcurrencyLimitExceededException
+        System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100)
+    }
+
+    def 'Limits are tracked separately for each origin'() {
+        setup:
+        AdaptiveConcurrencyLimitFilter filter = new AdaptiveConcurrencyLimitFilter()
+            .setInitialLimit(1)
+            .setOverflowPolicy(AdaptiveConcurrencyLimitFilter.OverflowPolicy.REJECT)
+        HttpContext other = new HttpContext()
+        other.request = new HttpRequest('https://example.com/foo')
+
+        when:
+        filter.onRequest(createContext())
+        filter.onRequest(other)
+
+        then:
+        notThrown ConcurrencyLimitExceededException
+        filter.getInFlight(ORIGIN) == 1
+        filter.getInFlight('https://example.com') == 1
+    }
+}
@@ -24,8 +24,14 @@ import com.budjb.httprequests.converter.bundled.StringEntityWriter
 import com.budjb.httprequests.mock.MockHttpClient
 import com.budjb.httprequests.mock.MockHttpClientFactory
 import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
 
 import java.time.LocalDate
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 class AuthenticationTokenHeaderFilterSpec extends Specification {
     MockHttpClient client
@@ -131,4 +137,291 @@ class AuthenticationTokenHeaderFilterSpec extends Specification {
         client.httpContext.retries == 0
         client.httpContext.request.getHeaders().get('X-Auth-Token') == ['bar']
     }
+
+    def 'When many requests need a token at once, only one authenticates and the others reuse its token'() {
+        setup:
+        AtomicInteger authentications = new AtomicInteger()
+        CountDownLatch started = new CountDownLatch(1)
+        CountDownLatch release = new CountDownLatch(1)
+
+        AuthenticationTokenHeaderFilter filter = new AuthenticationTokenHeaderFilter() {
+            @Override
+            protected void authenticate() {
+                started.countDown()
+                release.await()
+                setAuthenticationToken('token-' + authentications.incrementAndGet())
+            }
+
+            @Override
+            protected String getAuthenticationTokenHeader() {
+                return 'X-Auth-Token'
+            }
+        }
+
+        List<HttpRequest> requests = (1..10).collect { new HttpRequest('http://foo.bar.com') }
+
+        when:
+        def executor = Executors.newFixedThreadPool(10)
+        def futures = requests.collect { request -> executor.submit { filter.filter(request) } }
+        started.await(5, TimeUnit.SECONDS)
+        sleep(100)
+        release.countDown()
+        futures*.get(5, TimeUnit.SECONDS)
+        executor.shutdown()
+
+        then:
+        authentications.get() == 1
+        requests.every { it.headers.getFlat('X-Auth-Token') == 'token-1' }
+    }
+
+    def 'When a shared authentication fails, every waiting request fails and a later request authenticates again'() {
+        setup:
+        AtomicInteger authentications = new AtomicInteger()
+
+        AuthenticationTokenHeaderFilter filter = new AuthenticationTokenHeaderFilter() {
+            @Override
+            protected void authenticate() {
+                if (authentications.incrementAndGet() == 1) {
+                    throw new IllegalStateException('unavailable')
+                }
+                setAuthenticationToken('bar')
+            }
+
+            @Override
+            protected String getAuthenticationTokenHeader() {
+                return 'X-Auth-Token'
+            }
+        }
+
+        when:
+        filter.filter(new HttpRequest('http://foo.bar.com'))
+
+        then:
+        thrown IllegalStateException
+
+        when:
+        HttpRequest request = new HttpRequest('http://foo.bar.com')
+        filter.filter(request)
+
+        then:
+        authentications.get() == 2
+        request.headers.getFlat('X-Auth-Token') == 'bar'
+    }
+
+    def 'When the refresh ratio of the token lifetime has elapsed, the token is refreshed in the background'() {
+        setup:
+        CountDownLatch release = new CountDownLatch(1)
+        List<String> threads = [].asSynchronized()
+
+        AuthenticationTokenHeaderFilter filter = new AuthenticationTokenHeaderFilter() {
+            {
+                setAuthenticationToken('foo')
+                setTimeout(new Date(System.currentTimeMillis() + 60000))
+            }
+
+            @Override
+            protected void authenticate() {
+                threads << Thread.currentThread().name
+                release.await()
+                setAuthenticationToken('bar')
+                setTimeout(new Date(System.currentTimeMillis() + 60000))
+            }
+
+            @Override
+            protected String getAuthenticationTokenHeader() {
+                return 'X-Auth-Token'
+            }
+        }
+        filter.setRefreshRatio(0.0001)
+        sleep(20)
+
+        when:
+        HttpRequest first = new HttpRequest('http://foo.bar.com')
+        HttpRequest second = new HttpRequest('http://foo.bar.com')
+        filter.filter(first)
+        filter.filter(second)
+        release.countDown()
+
+        then:
+        first.headers.getFlat('X-Auth-Token') == 'foo'
+        second.headers.getFlat('X-Auth-Token') == 'foo'
+        new PollingConditions(timeout: 5).eventually {
+            assert filter.authenticationToken == 'bar'
+        }
+        threads == ['http-requests-token-refresh']
+    }
+
+    def 'When a background refresh fails, no further background refresh is attempted until the back-off elapses'() {
+        setup:
+        AtomicInteger authentications = new AtomicInteger()
+
+        AuthenticationTokenHeaderFilter filter = new AuthenticationTokenHeaderFilter() {
+            {
+                setAuthenticationToken('foo')
+                setTimeout(new Date(System.currentTimeMillis() + 60000))
+            }
+
+            @Override
+            protected void authenticate() {
+                authentications.incrementAndGet()
+                throw new IllegalStateException('authentication server unavailable')
+            }
+
+            @Override
+            protected String getAuthenticationTokenHeader() {
+                return 'X-Auth-Token'
+            }
+        }
+        filter.setRefreshRatio(0.0001).setRefreshBackoff(500).setRefreshExecutor({ it.run() })
+        sleep(20)
+
+        when:
+        10.times { filter.filter(new HttpRequest('http://foo.bar.com')) }
+
+        then:
+        authentications.get() == 1
+
+        when:
+        sleep(600)
+        HttpRequest request = new HttpRequest('http://foo.bar.com')
+        filter.filter(request)
+
+        then:
+        authentications.get() == 2
+        request.headers.getFlat('X-Auth-Token') == 'foo'
+    }
+
+    def 'When the token has expired after a failed background refresh, requests authenticate regardless of the back-off'() {
+        setup:
+        AtomicInteger authentications = new AtomicInteger()
+
+        AuthenticationTokenHeaderFilter filter = new AuthenticationTokenHeaderFilter() {
+            {
+                setAuthenticationToken('foo')
+                setTimeout(new Date(System.currentTimeMillis() + 200))
+            }
+
+            @Override
+            protected void authenticate() {
+                if (authentications.incrementAndGet() == 1) {
+                    throw new IllegalStateException('authentication server unavailable')
+                }
+                setAuthenticationToken('bar')
+            }
+
+            @Override
+            protected String getAuthenticationTokenHeader() {
+                return 'X-Auth-Token'
+            }
+        }
+        filter.setRefreshRatio(0.0001).setRefreshBackoff(60000).setRefreshExecutor({ it.run() })
+        sleep(20)
+        filter.filter(new HttpRequest('http://foo.bar.com'))
+
+        when:
+        sleep(300)
+        HttpRequest request = new HttpRequest('http://foo.bar.com')
+        filter.filter(request)
+
+        then:
+        authentications.get() == 2
+        request.headers.getFlat('X-Auth-Token') == 'bar'
+    }
+
+    def 'When the refresh executor rejects a background refresh, later requests are not blocked'() {
+        setup:
+        AtomicInteger authentications = new AtomicInteger()
+
+        AuthenticationTokenHeaderFilter filter = new AuthenticationTokenHeaderFilter() {
+            {
+                setAuthenticationToken('foo')
+                setTimeout(new Date(System.currentTimeMillis() + 200))
+            }
+
+            @Override
+            protected void authenticate() {
+                authentications.incrementAndGet()
+                setAuthenticationToken('bar')
+                setTimeout(new Date(System.currentTimeMillis() + 60000))
+            }
+
+            @Override
+            protected String getAuthenticationTokenHeader() {
+                return 'X-Auth-Token'
+            }
+        }
+        filter.setRefreshRatio(0.0001).setRefreshExecutor({ throw new RejectedExecutionException('shut down') })
+        sleep(20)
+
+        when:
+        HttpRequest first = new HttpRequest('http://foo.bar.com')
+        filter.filter(first)
+
+        then:
+        first.headers.getFlat('X-Auth-Token') == 'foo'
+        authentications.get() == 0
+
+        when:
+        sleep(300)
+        HttpRequest second = new HttpRequest('http://foo.bar.com')
+        def executor = Executors.newSingleThreadExecutor()
+        executor.submit { filter.filter(second) }.get(5, TimeUnit.SECONDS)
+        executor.shutdown()
+
+        then:
+        authentications.get() == 1
+        second.headers.getFlat('X-Auth-Token') == 'bar'
+    }
+
+    def 'When the rejected token has already been replaced, the retry uses the new token'() {
+        setup:
+        AuthenticationTokenHeaderFilter filter = new AuthenticationTokenHeaderFilter() {
+            {
+                setAuthenticationToken('bar')
+            }
+
+            @Override
+            protected void authenticate() {
+                throw new IllegalStateException('should not authenticate')
+            }
+
+            @Override
+            protected String getAuthenticationTokenHeader() {
+                return 'X-Auth-Token'
+            }
+        }
+        client.status = 401
+
+        HttpContext context = Mock(HttpContext)
+        context.getRetries() >> 0
+        context.getResponse() >> client.get(new HttpRequest('http://foo.bar.com'))
+        context.getRequest() >> new HttpRequest('http://foo.bar.com').setHeader('X-Auth-Token', 'foo')
+
+        when:
+        boolean retry = filter.isRetryRequired(context)
+
+        then:
+        retry
+        filter.authenticationToken == 'bar'
+    }
+
+    def 'When the refresh ratio is not valid, an IllegalArgumentException is thrown'() {
+        when:
+        new AuthenticationTokenHeaderFilter() {
+            @Override
+            protected void authenticate() {
+            }
+
+            @Override
+            protected String getAuthenticationTokenHeader() {
+                return 'X-Auth-Token'
+            }
+        }.setRefreshRatio(ratio)
+
+        then:
+        thrown IllegalArgumentException
+
+        where:
+        ratio << [-0.1, 1, 1.5]
+    }
 }
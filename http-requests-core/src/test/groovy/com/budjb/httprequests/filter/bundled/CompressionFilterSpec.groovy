@@ -0,0 +1,241 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled
+
+import com.budjb.httprequests.HttpContext
+import com.budjb.httprequests.HttpEntity
+import com.budjb.httprequests.HttpRequest
+import com.budjb.httprequests.converter.EntityConverterManager
+import com.budjb.httprequests.converter.bundled.StringEntityWriter
+import spock.lang.Specification
+
+import java.util.zip.Deflater
+import java.util.zip.GZIPInputStream
+import java.util.zip.InflaterInputStream
+
+class CompressionFilterSpec extends Specification {
+    HttpContext createContext(byte[] entity, boolean buffered = true) {
+        HttpContext context = new HttpContext()
+        context.setRequest(new HttpRequest('http://foo.bar.com'))
+
+        if (entity != null) {
+            HttpEntity httpEntity = new HttpEntity(new ByteArrayInputStream(entity))
+            if (buffered) {
+                httpEntity.buffer()
+            }
+            context.setRequestEntity(httpEntity)
+        }
+
+        return context
+    }
+
+    byte[] send(CompressionFilter filter, HttpContext context, byte[] entity, boolean close = true) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+
+        filter.onStart(context)
+        filter.onRequest(context)
+
+        OutputStream filtered = filter.filter(outputStream)
+        filtered.write(entity)
+        if (close) {
+            filtered.close()
+        }
+        filter.close()
+
+        return outputStream.toByteArray()
+    }
+
+    def 'When an entity is at least as large as the threshold, it is compressed with GZIP'() {
+        setup:
+        CompressionFilter filter = new CompressionFilter().setThreshold(10)
+        byte[] entity = ('Hello, world! ' * 10).bytes
+        HttpContext context = createContext(entity)
+
+        when:
+        byte[] sent = send(filter, context, entity)
+
+        then:
+        context.request.headers.get('Content-Encoding') == ['gzip']
+        new GZIPInputStream(new ByteArrayInputStream(sent)).bytes == entity
+    }
+
+    def 'When the deflate encoding is used, the entity is compressed in the zlib format'() {
+        setup:
+        CompressionFilter filter = new CompressionFilter(CompressionFilter.Encoding.DEFLATE).setThreshold(0)
+        byte[] entity = 'Hello, world!'.bytes
+        HttpContext context = createContext(entity)
+
+        when:
+        byte[] sent = send(filter, context, entity)
+
+        then:
+        context.request.headers.get('Content-Encoding') == ['deflate']
+        new InflaterInputStream(new ByteArrayInputStream(sent)).bytes == entity
+    }
+
+    def 'When an entity is smaller than the threshold, it is sent as-is'() {
+        setup:
+        CompressionFilter filter = new CompressionFilter()
+        byte[] entity = 'Hello, world!'.bytes
+        HttpContext context = createContext(entity)
+
+        when:
+        byte[] sent = send(filter, context, entity)
+
+        then:
+        !context.request.headers.containsKey('Content-Encoding')
+        sent == entity
+        filter.pooled == 0
+    }
+
+    def 'When the length of an entity is not known, it is compressed'() {
+        setup:
+        CompressionFilter filter = new CompressionFilter()
+        byte[] entity = 'Hello, world!'.bytes
+        HttpContext context = createContext(entity, false)
+
+        when:
+        byte[] sent = send(filter, context, entity)
+
+        then:
+        context.request.headers.get('Content-Encoding') == ['gzip']
+        new GZIPInputStream(new ByteArrayInputStream(sent)).bytes == entity
+    }
+
+    def 'When a converted String entity is smaller than the threshold, it is sent as-is without being buffered'() {
+        setup:
+        CompressionFilter filter = new CompressionFilter()
+        HttpEntity httpEntity = new EntityConverterManager([new StringEntityWriter()]).write('Hello, world!', null, 'UTF-8')
+        HttpContext context = new HttpContext()
+        context.setRequest(new HttpRequest('http://foo.bar.com'))
+        context.setRequestEntity(httpEntity)
+
+        when:
+        byte[] sent = send(filter, context, 'Hello, world!'.bytes)
+
+        then:
+        httpEntity.contentLength == 13
+        !context.request.headers.containsKey('Content-Encoding')
+        sent == 'Hello, world!'.bytes
+    }
+
+    def 'When a request already contains a Content-Encoding header, the entity is not compressed'() {
+        setup:
+        CompressionFilter filter = new CompressionFilter().setThreshold(0)
+        byte[] entity = 'Hello, world!'.bytes
+        HttpContext context = createContext(entity)
+        context.request.setHeader('Content-Encoding', 'br')
+
+        when:
+        byte[] sent = send(filter, context, entity)
+
+        then:
+        context.request.headers.get('Content-Encoding') == ['br']
+        sent == entity
+    }
+
+    def 'When a request has no entity, no Content-Encoding header is set'() {
+        setup:
+        CompressionFilter filter = new CompressionFilter().setThreshold(0)
+        HttpContext context = createContext(null)
+
+        when:
+        filter.onStart(context)
+        filter.onRequest(context)
+        filter.close()
+
+        then:
+        !context.request.headers.containsKey('Content-Encoding')
+    }
+
+    def 'Deflaters are returned to the pool and reused by subsequent requests'() {
+        setup:
+        CompressionFilter filter = new CompressionFilter().setThreshold(0)
+        byte[] first = 'first entity'.bytes
+        byte[] second = 'second entity'.bytes
+
+        when:
+        byte[] sentFirst = send(filter, createContext(first), first)
+
+        then:
+        filter.pooled == 1
+
+        when:
+        byte[] sentSecond = send(filter, createContext(second), second)
+
+        then:
+        filter.pooled == 1
+        new GZIPInputStream(new ByteArrayInputStream(sentFirst)).bytes == first
+        new GZIPInputStream(new ByteArrayInputStream(sentSecond)).bytes == second
+    }
+
+    def 'When the entity stream is not closed, the deflater is returned to the pool when the request completes'() {
+        setup:
+        CompressionFilter filter = new CompressionFilter().setThreshold(0)
+        byte[] entity = 'Hello, world!'.bytes
+
+        when:
+        send(filter, createContext(entity), entity, false)
+
+        then:
+        filter.pooled == 1
+    }
+
+    def 'The number of idle deflaters is bounded by the pool size'() {
+        setup:
+        CompressionFilter filter = new CompressionFilter(CompressionFilter.Encoding.GZIP, 1).setThreshold(0)
+        List<OutputStream> streams = []
+
+        when:
+        2.times {
+            Thread.start {
+                HttpContext context = createContext('Hello, world!'.bytes)
+                filter.onStart(context)
+                filter.onRequest(context)
+                streams << filter.filter(new ByteArrayOutputStream())
+            }.join()
+        }
+        streams*.close()
+
+        then:
+        filter.pooled == 1
+
+        when:
+        filter.clear()
+
+        then:
+        filter.pooled == 0
+    }
+
+    def 'When a valid compression level is set, it is accepted'() {
+        expect:
+        new CompressionFilter().setLevel(level).level == level
+
+        where:
+        level << [Deflater.DEFAULT_COMPRESSION, Deflater.BEST_SPEED, Deflater.BEST_COMPRESSION]
+    }
+
+    def 'When an invalid compression level is set, an IllegalArgumentException is thrown'() {
+        when:
+        new CompressionFilter().setLevel(level)
+
+        then:
+        thrown IllegalArgumentException
+
+        where:
+        level << [Deflater.NO_COMPRESSION, 10]
+    }
+}
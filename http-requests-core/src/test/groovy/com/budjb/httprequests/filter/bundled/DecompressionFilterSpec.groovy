@@ -0,0 +1,223 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled
+
+import com.budjb.httprequests.HttpEntity
+import com.budjb.httprequests.HttpRequest
+import com.budjb.httprequests.HttpResponse
+import com.budjb.httprequests.MultiValuedMap
+import com.budjb.httprequests.StreamUtils
+import com.budjb.httprequests.converter.EntityConverterManager
+import com.budjb.httprequests.converter.bundled.StringEntityReader
+import com.budjb.httprequests.mock.MockHttpResponse
+import spock.lang.Specification
+
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.GZIPOutputStream
+
+class DecompressionFilterSpec extends Specification {
+    static final String CONTENT = 'Hello, world! ' * 100
+
+    EntityConverterManager converterManager = new EntityConverterManager([new StringEntityReader()])
+
+    HttpResponse createResponse(byte[] entity, String contentEncoding, boolean buffer = true) {
+        MultiValuedMap headers = new MultiValuedMap()
+        headers.set('Content-Length', entity.length.toString())
+        if (contentEncoding) {
+            headers.set('Content-Encoding', contentEncoding)
+        }
+
+        HttpRequest request = new HttpRequest('http://foo.bar.com').setBufferResponseEntity(buffer)
+
+        return new MockHttpResponse(converterManager, request, 200, headers, new HttpEntity(new ByteArrayInputStream(entity), 'text/plain', 'UTF-8'))
+    }
+
+    static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+        new GZIPOutputStream(outputStream).withStream { it.write(data) }
+        return outputStream.toByteArray()
+    }
+
+    static byte[] deflate(byte[] data, boolean nowrap = false) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap)
+        new DeflaterOutputStream(outputStream, deflater).withStream { it.write(data) }
+        deflater.end()
+        return outputStream.toByteArray()
+    }
+
+    def 'When a request does not contain an Accept-Encoding header, one is added'() {
+        setup:
+        HttpRequest request = new HttpRequest('http://foo.bar.com')
+
+        when:
+        new DecompressionFilter().filter(request)
+
+        then:
+        request.headers.get('Accept-Encoding') == ['gzip, deflate']
+    }
+
+    def 'When a request already contains an Accept-Encoding header, it is not modified'() {
+        setup:
+        HttpRequest request = new HttpRequest('http://foo.bar.com').setHeader('Accept-Encoding', 'identity')
+
+        when:
+        new DecompressionFilter().filter(request)
+
+        then:
+        request.headers.get('Accept-Encoding') == ['identity']
+    }
+
+    def 'When a buffered response is encoded with #encoding, it is decoded and its Content-Length is updated'() {
+        setup:
+        DecompressionFilter filter = new DecompressionFilter()
+        HttpResponse response = createResponse(encoded, encoding)
+
+        when:
+        filter.filter(response)
+
+        then:
+        response.getEntity(String) == CONTENT
+        response.getEntity(String) == CONTENT
+        response.getHeader('Content-Length') == CONTENT.length().toString()
+        !response.headers.containsKey('Content-Encoding')
+        filter.pooled == 1
+
+        where:
+        encoding  | encoded
+        'gzip'    | gzip(CONTENT.bytes)
+        'x-gzip'  | gzip(CONTENT.bytes)
+        'deflate' | deflate(CONTENT.bytes)
+        'deflate' | deflate(CONTENT.bytes, true)
+    }
+
+    def 'When a streamed response is encoded, it is decoded as it is read and the Content-Length is removed'() {
+        setup:
+        DecompressionFilter filter = new DecompressionFilter()
+        HttpResponse response = createResponse(gzip(CONTENT.bytes), 'gzip', false)
+
+        when:
+        filter.filter(response)
+
+        then:
+        !response.entity.buffered
+        !response.headers.containsKey('Content-Length')
+        !response.headers.containsKey('Content-Encoding')
+        filter.pooled == 0
+
+        when:
+        String content = response.getEntity(String)
+
+        then:
+        content == CONTENT
+        filter.pooled == 1
+    }
+
+    def 'When several encodings were applied, they are removed in reverse order'() {
+        setup:
+        HttpResponse response = createResponse(gzip(deflate(CONTENT.bytes)), 'deflate, gzip')
+
+        when:
+        new DecompressionFilter().filter(response)
+
+        then:
+        response.getEntity(String) == CONTENT
+    }
+
+    def 'When a GZIP entity contains concatenated members, all of them are decoded'() {
+        setup:
+        HttpResponse response = createResponse((gzip('Hello, '.bytes).toList() + gzip('world!'.bytes).toList()) as byte[], 'gzip')
+
+        when:
+        new DecompressionFilter().filter(response)
+
+        then:
+        response.getEntity(String) == 'Hello, world!'
+    }
+
+    def 'When a streamed GZIP entity has a corrupt trailer, an IOException is thrown while it is read'() {
+        setup:
+        byte[] encoded = gzip(CONTENT.bytes)
+        encoded[encoded.length - 5] ^= 0xff
+        HttpResponse response = createResponse(encoded, 'gzip', false)
+
+        when:
+        new DecompressionFilter().filter(response)
+        StreamUtils.readBytes(response.entity.inputStream)
+
+        then:
+        thrown IOException
+    }
+
+    def 'When a buffered entity can not be decoded, an UncheckedIOException is thrown'() {
+        setup:
+        HttpResponse response = createResponse('not compressed'.bytes, 'gzip')
+
+        when:
+        new DecompressionFilter().filter(response)
+
+        then:
+        thrown UncheckedIOException
+    }
+
+    def 'When a response is encoded with #encoding, it is not modified'() {
+        setup:
+        HttpResponse response = createResponse(CONTENT.bytes, encoding)
+        HttpEntity entity = response.entity
+
+        when:
+        new DecompressionFilter().filter(response)
+
+        then:
+        response.entity.is(entity)
+        response.getHeader('Content-Encoding') == encoding
+        response.getHeader('Content-Length') == CONTENT.length().toString()
+
+        where:
+        encoding << ['br', 'gzip, br', null]
+    }
+
+    def 'When a decoded entity is empty, the response no longer has an entity'() {
+        setup:
+        HttpResponse response = createResponse(gzip(new byte[0]), 'gzip')
+
+        when:
+        new DecompressionFilter().filter(response)
+
+        then:
+        !response.hasEntity()
+    }
+
+    def 'Idle inflaters are bounded by the pool size and can be cleared'() {
+        setup:
+        DecompressionFilter filter = new DecompressionFilter(1)
+        List<HttpResponse> responses = (1..3).collect { createResponse(gzip(CONTENT.bytes), 'gzip', false) }
+
+        when:
+        responses.each { filter.filter(it) }
+        responses*.close()
+
+        then:
+        filter.pooled == 1
+
+        when:
+        filter.clear()
+
+        then:
+        filter.pooled == 0
+    }
+}
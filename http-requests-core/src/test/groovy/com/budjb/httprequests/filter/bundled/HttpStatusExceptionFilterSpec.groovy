@@ -18,6 +18,7 @@ package com.budjb.httprequests.filter.bundled
 
 import com.budjb.httprequests.HttpContext
 import com.budjb.httprequests.HttpResponse
+import com.budjb.httprequests.exception.HttpServiceUnavailableException
 import com.budjb.httprequests.exception.HttpStatusException
 import spock.lang.Specification
 
@@ -55,4 +56,22 @@ class HttpStatusExceptionFilterSpec extends Specification {
         then:
         notThrown HttpStatusException
     }
+
+    def 'When stack traces are disabled, the HttpStatusException is thrown without a stack trace'() {
+        setup:
+        HttpStatusExceptionFilter filter = new HttpStatusExceptionFilter().setStackTraceEnabled(false)
+
+        HttpResponse response = Mock(HttpResponse)
+        response.getStatus() >> 503
+
+        HttpContext context = new HttpContext()
+        context.response = response
+
+        when:
+        filter.onComplete(context)
+
+        then:
+        HttpServiceUnavailableException exception = thrown()
+        exception.stackTrace.length == 0
+    }
 }
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled
+
+import com.budjb.httprequests.HttpContext
+import com.budjb.httprequests.HttpRequest
+import com.budjb.httprequests.HttpResponse
+import spock.lang.Specification
+
+class LoadBalancingFilterSpec extends Specification {
+    HttpResponse createResponse(int status) {
+        HttpResponse response = Mock(HttpResponse)
+        response.getStatus() >> status
+        return response
+    }
+
+    /**
+     * Runs a single attempt of a request through the filter and returns the URI it was sent to.
+     */
+    String send(LoadBalancingFilter filter, HttpContext context, Integer status) {
+        HttpRequest request = new HttpRequest('http://orders/api/orders?id=1')
+        context.request = request
+        context.response = null
+
+        filter.filter(request)
+
+        if (status != null) {
+            context.response = createResponse(status)
+            filter.onResponse(context)
+        }
+
+        return request.uri
+    }
+
+    String send(LoadBalancingFilter filter, Integer status = 200) {
+        HttpContext context = new HttpContext()
+        filter.onStart(context)
+
+        try {
+            return send(filter, context, status)
+        }
+        finally {
+            filter.close()
+        }
+    }
+
+    def 'Requests to a registered service are sent to its endpoints in turn'() {
+        setup:
+        LoadBalancingFilter filter = new LoadBalancingFilter().addService('orders', 'http://10.0.0.1:8080/', 'http://10.0.0.2:8080')
+
+        expect:
+        (1..4).collect { send(filter) } == [
+            'http://10.0.0.1:8080/api/orders',
+            'http://10.0.0.2:8080/api/orders',
+            'http://10.0.0.1:8080/api/orders',
+            'http://10.0.0.2:8080/api/orders'
+        ]
+    }
+
+    def 'Query parameters are kept when the URI is replaced'() {
+        setup:
+        LoadBalancingFilter filter = new LoadBalancingFilter().addService('orders', 'http://10.0.0.1:8080')
+        HttpRequest request = new HttpRequest('http://orders/api/orders?id=1')
+        filter.onStart(new HttpContext())
+
+        when:
+        filter.filter(request)
+
+        then:
+        request.uri == 'http://10.0.0.1:8080/api/orders'
+        request.queryParameters == [id: ['1']]
+
+        cleanup:
+        filter.close()
+    }
+
+    def 'Requests to other hosts are not changed'() {
+        setup:
+        LoadBalancingFilter filter = new LoadBalancingFilter().addService('orders', 'http://10.0.0.1:8080')
+        HttpRequest request = new HttpRequest('http://example.com/api/orders')
+        filter.onStart(new HttpContext())
+
+        when:
+        filter.filter(request)
+
+        then:
+        request.uri == 'http://example.com/api/orders'
+
+        cleanup:
+        filter.close()
+    }
+
+    def 'A retried request is sent to an endpoint it has not tried yet'() {
+        setup:
+        LoadBalancingFilter filter = new LoadBalancingFilter()
+            .addService('orders', 'http://a', 'http://b', 'http://c')
+            .setMaxRetries(2)
+        HttpContext context = new HttpContext()
+        filter.onStart(context)
+
+        when:
+        List<String> uris = []
+        List<Boolean> retries = []
+        3.times {
+            uris << send(filter, context, 503)
+            retries << filter.isRetryRequired(context)
+            context.incrementRetries()
+        }
+        filter.close()
+
+        then:
+        uris.toSet() == ['http://a/api/orders', 'http://b/api/orders', 'http://c/api/orders'] as Set
+        retries == [true, true, false]
+    }
+
+    def 'Requests are not retried for statuses other than 502, 503 and 504'() {
+        setup:
+        LoadBalancingFilter filter = new LoadBalancingFilter().addService('orders', 'http://a', 'http://b').setMaxRetries(1)
+        HttpContext context = new HttpContext()
+        filter.onStart(context)
+
+        when:
+        send(filter, context, 500)
+
+        then:
+        !filter.isRetryRequired(context)
+
+        cleanup:
+        filter.close()
+    }
+
+    def 'An endpoint is ejected for the ejection time after consecutive failures'() {
+        setup:
+        LoadBalancingFilter filter = new LoadBalancingFilter()
+            .addService('orders', 'http://a', 'http://b')
+            .setFailureThreshold(2)
+            .setEjectionTime(200)
+
+        when:
+        4.times { send(filter, 500) }
+
+        then:
+        filter.getAvailableEndpoints('orders').isEmpty()
+
+        when:
+        Thread.sleep(250)
+
+        then:
+        filter.getAvailableEndpoints('orders') == ['http://a', 'http://b']
+    }
+
+    def 'Ejected endpoints are skipped'() {
+        setup:
+        LoadBalancingFilter filter = new LoadBalancingFilter()
+            .addService('orders', 'http://a', 'http://b')
+            .setFailureThreshold(1)
+
+        when:
+        String failed = send(filter, 500)
+        List<String> uris = (1..3).collect { send(filter) }
+
+        then:
+        filter.getAvailableEndpoints('orders').size() == 1
+        !uris.contains(failed)
+    }
+
+    def 'A request that does not receive a response counts as a failure'() {
+        setup:
+        LoadBalancingFilter filter = new LoadBalancingFilter()
+            .addService('orders', 'http://a', 'http://b')
+            .setFailureThreshold(1)
+
+        when:
+        send(filter, null)
+
+        then:
+        filter.getAvailableEndpoints('orders').size() == 1
+    }
+
+    def 'The least outstanding strategy chooses the endpoint with the fewest outstanding requests'() {
+        setup:
+        LoadBalancingFilter filter = new LoadBalancingFilter()
+            .addService('orders', 'http://a', 'http://b')
+            .setStrategy(LoadBalancingFilter.Strategy.LEAST_OUTSTANDING)
+
+        when:
+        HttpContext pending = new HttpContext()
+        filter.onStart(pending)
+        String busy = send(filter, pending, null)
+        filter.onStart(new HttpContext())
+
+        List<String> uris = (1..3).collect { send(filter) }
+
+        then:
+        !uris.contains(busy)
+    }
+
+    def 'The power of two choices strategy prefers the endpoint with the lower latency'() {
+        setup:
+        LoadBalancingFilter filter = new LoadBalancingFilter()
+            .addService('orders', 'http://a', 'http://b')
+            .setStrategy(LoadBalancingFilter.Strategy.POWER_OF_TWO_CHOICES)
+
+        when:
+        HttpContext slow = new HttpContext()
+        filter.onStart(slow)
+        HttpRequest request = new HttpRequest('http://orders/api/orders')
+        slow.request = request
+        filter.filter(request)
+        Thread.sleep(50)
+        slow.response = createResponse(200)
+        filter.onResponse(slow)
+        filter.close()
+
+        List<String> uris = (1..5).collect { send(filter) }
+
+        then:
+        !uris.contains(request.uri)
+    }
+}
@@ -162,4 +162,47 @@ class LoggingFilterSpec extends Specification {
         context.get('com.budjb.httprequests.filter.logging.StringBuilder').toString() == expected
         requestOutputStream.size() == 10010
     }
+
+    def 'When entities are written in bulk, all bytes are passed through and only the logged bytes are captured'() {
+        setup:
+        OutputStream requestOutputStream = Mock(OutputStream)
+        LoggingOutputStream outputStream = new LoggingOutputStream(requestOutputStream)
+        byte[] chunk = ('0123456789' * 600).getBytes()
+
+        when:
+        outputStream.write(chunk, 0, chunk.length)
+        outputStream.write(chunk, 0, chunk.length)
+        outputStream.write(chunk, 0, chunk.length)
+        outputStream.flush()
+        outputStream.close()
+
+        then:
+        3 * requestOutputStream.write(chunk, 0, chunk.length)
+        0 * requestOutputStream.write(_ as Integer)
+        1 * requestOutputStream.flush()
+        1 * requestOutputStream.close()
+        outputStream.loggingStream.toByteArray() == ('0123456789' * 1000).getBytes()
+        outputStream.truncated
+    }
+
+    def 'When an entity is no larger than the logged bytes, it is not truncated'() {
+        setup:
+        LoggingOutputStream outputStream = new LoggingOutputStream(new ByteArrayOutputStream())
+
+        when:
+        outputStream.write(('0123456789' * 999).getBytes())
+        9.times { outputStream.write((int) 'a') }
+        outputStream.write((int) 'b')
+
+        then:
+        outputStream.loggingStream.size() == 10000
+        !outputStream.truncated
+
+        when:
+        outputStream.write((int) 'c')
+
+        then:
+        outputStream.loggingStream.size() == 10000
+        outputStream.truncated
+    }
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled
+
+import com.budjb.httprequests.HttpContext
+import com.budjb.httprequests.HttpRequest
+import com.budjb.httprequests.HttpResponse
+import com.budjb.httprequests.exception.RateLimitExceededException
+import spock.lang.Specification
+
+import java.time.ZoneOffset
+import java.time.ZonedDateTime
+import java.time.format.DateTimeFormatter
+import java.util.concurrent.TimeUnit
+
+class RateLimitFilterSpec extends Specification {
+    HttpContext createContext(String uri = 'http://localhost:8080/foo') {
+        HttpContext context = new HttpContext()
+        context.request = new HttpRequest(uri)
+        return context
+    }
+
+    def 'Requests within the burst are allowed immediately'() {
+        setup:
+        RateLimitFilter filter = new RateLimitFilter(1, 3).setPolicy(RateLimitFilter.Policy.REJECT)
+
+        when:
+        3.times { filter.onRequest(createContext()) }
+
+        then:
+        notThrown RateLimitExceededException
+
+        when:
+        filter.onRequest(createContext())
+
+        then:
+        thrown RateLimitExceededException
+    }
+
+    def 'Buckets are kept separately for each origin by default'() {
+        setup:
+        RateLimitFilter filter = new RateLimitFilter(1).setPolicy(RateLimitFilter.Policy.REJECT)
+
+        when:
+        filter.onRequest(createContext('http://localhost:8080/foo'))
+        filter.onRequest(createContext('https://example.com/foo'))
+
+        then:
+        notThrown RateLimitExceededException
+    }
+
+    def 'A custom key function assigns requests to buckets'() {
+        setup:
+        RateLimitFilter filter = new RateLimitFilter(1)
+            .setPolicy(RateLimitFilter.Policy.REJECT)
+            .setKeyFunction({ 'all' })
+
+        when:
+        filter.onRequest(createContext('http://localhost:8080/foo'))
+        filter.onRequest(createContext('https://example.com/foo'))
+
+        then:
+        thrown RateLimitExceededException
+    }
+
+    def 'When blocking, requests are delayed to the steady rate'() {
+        setup:
+        RateLimitFilter filter = new RateLimitFilter(20)
+
+        when:
+        long start = System.nanoTime()
+        3.times { filter.onRequest(createContext()) }
+        long elapsed = System.nanoTime() - start
+
+        then:
+        elapsed >= TimeUnit.MILLISECONDS.toNanos(95)
+    }
+
+    def 'When timing out, a request waits for a token that becomes available within the timeout'() {
+        setup:
+        RateLimitFilter filter = new RateLimitFilter(10).setPolicy(RateLimitFilter.Policy.TIMEOUT).setTimeout(500)
+
+        when:
+        filter.onRequest(createContext())
+        filter.onRequest(createContext())
+
+        then:
+        notThrown RateLimitExceededException
+    }
+
+    def 'When timing out, a request is rejected if no token becomes available within the timeout'() {
+        setup:
+        RateLimitFilter filter = new RateLimitFilter(1).setPolicy(RateLimitFilter.Policy.TIMEOUT).setTimeout(100)
+
+        when:
+        filter.onRequest(createContext())
+        filter.onRequest(createContext())
+
+        then:
+        thrown RateLimitExceededException
+    }
+
+    def 'An adaptive filter holds back requests after a 429 response with Retry-After'() {
+        setup:
+        RateLimitFilter filter = new RateLimitFilter(1000, 10)
+            .setPolicy(RateLimitFilter.Policy.REJECT)
+            .setAdaptive(adaptive)
+
+        HttpResponse response = Mock(HttpResponse)
+        response.getStatus() >> 429
+        response.getHeader('Retry-After') >> '60'
+
+        HttpContext context = createContext()
+        filter.onRequest(context)
+        context.response = response
+
+        when:
+        filter.onResponse(context)
+
+        boolean rejected = false
+        try {
+            filter.onRequest(createContext())
+        }
+        catch (RateLimitExceededException ignored) {
+            rejected = true
+        }
+
+        then:
+        rejected == adaptive
+
+        where:
+        adaptive << [true, false]
+    }
+
+    def 'An adaptive filter holds back requests when the remaining rate limit is exhausted'() {
+        setup:
+        RateLimitFilter filter = new RateLimitFilter(1000, 10)
+            .setPolicy(RateLimitFilter.Policy.REJECT)
+            .setAdaptive(true)
+
+        HttpResponse response = Mock(HttpResponse)
+        response.getStatus() >> 200
+        response.getHeader('X-RateLimit-Remaining') >> remaining
+        response.getHeader('X-RateLimit-Reset') >> reset
+
+        HttpContext context = createContext()
+        filter.onRequest(context)
+        context.response = response
+        filter.onResponse(context)
+
+        when:
+        boolean rejected = false
+        try {
+            filter.onRequest(createContext())
+        }
+        catch (RateLimitExceededException ignored) {
+            rejected = true
+        }
+
+        then:
+        rejected == expected
+
+        where:
+        remaining | reset                                                       || expected
+        '0'       | '30'                                                        || true
+        '0'       | String.valueOf(System.currentTimeMillis().intdiv(1000) + 30) || true
+        '5'       | '30'                                                        || false
+        null      | null                                                        || false
+    }
+
+    def 'Retry-After is parsed as seconds or as an HTTP date'() {
+        expect:
+        RateLimitFilter.parseRetryAfter('120') == TimeUnit.SECONDS.toNanos(120)
+        RateLimitFilter.parseRetryAfter(null) == 0
+        RateLimitFilter.parseRetryAfter('soon') == 0
+
+        when:
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusMinutes(5))
+        long delay = RateLimitFilter.parseRetryAfter(date)
+
+        then:
+        delay > TimeUnit.MINUTES.toNanos(4)
+        delay <= TimeUnit.MINUTES.toNanos(5)
+    }
+}
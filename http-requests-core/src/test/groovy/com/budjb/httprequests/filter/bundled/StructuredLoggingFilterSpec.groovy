@@ -0,0 +1,244 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled
+
+import com.budjb.httprequests.HttpContext
+import com.budjb.httprequests.HttpMethod
+import com.budjb.httprequests.HttpRequest
+import com.budjb.httprequests.HttpResponse
+import com.budjb.httprequests.converter.EntityConverterManager
+import com.budjb.httprequests.converter.bundled.StringEntityWriter
+import com.budjb.httprequests.mock.MockHttpClient
+import com.budjb.httprequests.mock.MockHttpClientFactory
+import org.slf4j.Logger
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+
+class StructuredLoggingFilterSpec extends Specification {
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    HttpContext exchange(StructuredLoggingFilter filter, int status, boolean complete = true) {
+        HttpResponse response = Mock(HttpResponse)
+        response.getStatus() >> status
+
+        HttpContext context = new HttpContext()
+        context.setMethod(HttpMethod.GET)
+        context.setRequest(new HttpRequest('http://foo.bar.com/baz?q=a%20b'))
+
+        filter.onStart(context)
+        if (status != -1) {
+            context.setResponse(response)
+        }
+        if (complete) {
+            filter.onComplete(context)
+        }
+        filter.close()
+
+        return context
+    }
+
+    def 'When an exchange completes, a compact event is logged in the background'() {
+        setup:
+        TestStructuredLoggingFilter filter = new TestStructuredLoggingFilter()
+        MockHttpClient client = (MockHttpClient) new MockHttpClientFactory(new EntityConverterManager([new StringEntityWriter()])).createHttpClient()
+        client.status = 201
+
+        when:
+        client.post(new HttpRequest('http://foo.bar.com/baz?q=a%20b').addFilter(filter), 'hello')
+
+        then:
+        conditions.eventually {
+            assert filter.events.size() == 1
+        }
+        HttpLogEvent event = filter.events[0]
+        event.method == HttpMethod.POST
+        event.uri == 'http://foo.bar.com/baz?q=a%20b'
+        event.status == 201
+        event.retries == 0
+        event.requestLength == 5
+        event.responseLength == 0
+        !event.failed
+        event.timestamp <= System.currentTimeMillis()
+        filter.threads == ['http-requests-logging'] as Set
+        event.toString() == "method=POST uri=http://foo.bar.com/baz?q=a%20b status=201 duration=${event.duration}ms retries=0 requestLength=5 responseLength=0"
+    }
+
+    def 'When an exchange does not complete, it is logged as failed'() {
+        setup:
+        TestStructuredLoggingFilter filter = new TestStructuredLoggingFilter()
+
+        when:
+        exchange(filter, -1, false)
+
+        then:
+        conditions.eventually {
+            assert filter.events.size() == 1
+        }
+        filter.events[0].failed
+        filter.events[0].status == -1
+        filter.events[0].toString().contains(' failed=true ')
+    }
+
+    def 'When logging is not enabled, nothing is captured'() {
+        setup:
+        TestStructuredLoggingFilter filter = new TestStructuredLoggingFilter(enabled: false)
+
+        when:
+        HttpContext context = exchange(filter, 200)
+        sleep(100)
+
+        then:
+        filter.events.isEmpty()
+        context.data.isEmpty()
+    }
+
+    def 'When successful exchanges are not sampled, only errors and failures are logged'() {
+        setup:
+        TestStructuredLoggingFilter filter = new TestStructuredLoggingFilter()
+        filter.setSampleRate(0).setErrorStatus(400)
+
+        when:
+        exchange(filter, 200)
+        exchange(filter, 302)
+        exchange(filter, 404)
+        exchange(filter, 503)
+        exchange(filter, -1, false)
+
+        then:
+        conditions.eventually {
+            assert filter.events*.status == [404, 503, -1]
+        }
+    }
+
+    def 'When the queue is full and the policy is #policy, the #description event is dropped'() {
+        setup:
+        TestStructuredLoggingFilter filter = new TestStructuredLoggingFilter(1)
+        filter.setOverflowPolicy(policy)
+        filter.gate = new CountDownLatch(1)
+
+        when:
+        exchange(filter, 200)
+        conditions.eventually {
+            assert filter.queued == 0
+        }
+        exchange(filter, 201)
+        exchange(filter, 202)
+        filter.gate.countDown()
+
+        then:
+        conditions.eventually {
+            assert filter.events*.status == expected
+        }
+        filter.dropped == 1
+
+        where:
+        policy                                           | description | expected
+        StructuredLoggingFilter.OverflowPolicy.DROP_NEWEST | 'newest'    | [200, 201]
+        StructuredLoggingFilter.OverflowPolicy.DROP_OLDEST | 'oldest'    | [200, 202]
+    }
+
+    def 'When an event can not be written, later events are still written'() {
+        setup:
+        TestStructuredLoggingFilter filter = new TestStructuredLoggingFilter(failing: true)
+
+        when:
+        exchange(filter, 500)
+        exchange(filter, 200)
+
+        then:
+        conditions.eventually {
+            assert filter.events*.status == [200]
+        }
+    }
+
+    def 'When the filter is shut down, queued events are written and later events are dropped'() {
+        setup:
+        TestStructuredLoggingFilter filter = new TestStructuredLoggingFilter()
+        filter.gate = new CountDownLatch(1)
+
+        when:
+        exchange(filter, 200)
+        exchange(filter, 201)
+        Thread.start {
+            sleep(100)
+            filter.gate.countDown()
+        }
+        filter.shutdown()
+        exchange(filter, 202)
+
+        then:
+        filter.events*.status == [200, 201]
+        filter.dropped == 0
+    }
+
+    def 'The SLF4J implementation checks and logs at the configured level'() {
+        setup:
+        Logger logger = Mock(Logger)
+        Slf4jStructuredLoggingFilter filter = new Slf4jStructuredLoggingFilter(logger, Slf4jLoggingFilter.LoggerLevel.WARN)
+        HttpLogEvent event = new HttpLogEvent(0, HttpMethod.GET, 'http://foo.bar.com', 200, 5, 0, -1, 10, false)
+
+        when:
+        boolean enabled = filter.isEnabled()
+        filter.write(event)
+
+        then:
+        1 * logger.isWarnEnabled() >> true
+        1 * logger.warn('{}', event)
+        enabled
+    }
+
+    static class TestStructuredLoggingFilter extends StructuredLoggingFilter {
+        boolean enabled = true
+        boolean failing = false
+        CountDownLatch gate
+        List<HttpLogEvent> events = new CopyOnWriteArrayList<>()
+        Set<String> threads = Collections.synchronizedSet(new HashSet<String>())
+
+        TestStructuredLoggingFilter() {
+            super()
+        }
+
+        TestStructuredLoggingFilter(int queueSize) {
+            super(queueSize)
+        }
+
+        @Override
+        protected boolean isEnabled() {
+            return enabled
+        }
+
+        @Override
+        protected void write(HttpLogEvent event) {
+            threads << Thread.currentThread().name
+            if (failing) {
+                failing = false
+                throw new IllegalStateException()
+            }
+            while (gate && gate.count > 0) {
+                try {
+                    gate.await()
+                }
+                catch (InterruptedException ignored) {
+                    // Shutting down interrupts the writer; the event must still be written.
+                }
+            }
+            events << event
+        }
+    }
+}
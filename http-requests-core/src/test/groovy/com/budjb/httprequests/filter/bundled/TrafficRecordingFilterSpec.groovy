@@ -0,0 +1,191 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.filter.bundled
+
+import com.budjb.httprequests.HttpEntity
+import com.budjb.httprequests.HttpMethod
+import com.budjb.httprequests.HttpRequest
+import com.budjb.httprequests.HttpResponse
+import com.budjb.httprequests.MultiValuedMap
+import com.budjb.httprequests.converter.EntityConverterManager
+import com.budjb.httprequests.converter.bundled.StringEntityWriter
+import com.budjb.httprequests.mock.MockHttpClient
+import com.budjb.httprequests.mock.MockHttpClientFactory
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+
+class TrafficRecordingFilterSpec extends Specification {
+    File file
+
+    MockHttpClient client
+
+    def setup() {
+        file = File.createTempFile('http-requests', '.rec')
+        file.deleteOnExit()
+
+        client = (MockHttpClient) new MockHttpClientFactory(new EntityConverterManager([new StringEntityWriter()])).createHttpClient()
+        client.status = 200
+        client.headers = new MultiValuedMap([foo: ['bar']])
+    }
+
+    def cleanup() {
+        file.delete()
+    }
+
+    List<RecordedExchange> read() {
+        ByteBuffer buffer = ByteBuffer.wrap(file.bytes)
+        assert buffer.getInt() == RecordedExchange.MAGIC
+        assert buffer.getInt() == RecordedExchange.VERSION
+
+        List<RecordedExchange> exchanges = []
+
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt()
+            ByteBuffer slice = buffer.slice()
+            slice.limit(length)
+            exchanges << RecordedExchange.decode(slice, true)
+            buffer.position(buffer.position() + length)
+        }
+
+        return exchanges
+    }
+
+    void respondWith(String entity) {
+        client.responseHttpEntity = new HttpEntity(new ByteArrayInputStream(entity.bytes), 'text/plain', 'UTF-8')
+    }
+
+    def 'When an exchange completes, it is appended to the file with its entities'() {
+        setup:
+        TrafficRecordingFilter filter = new TrafficRecordingFilter(file.toPath())
+        respondWith('world')
+
+        when:
+        HttpResponse response = client.post(new HttpRequest('http://foo.bar.com/baz?q=a%20b').addHeader('X-Test', 'yes').addFilter(filter), 'hello')
+        filter.shutdown()
+
+        then:
+        response.entity.inputStream.text == 'world'
+
+        List<RecordedExchange> exchanges = read()
+        exchanges.size() == 1
+        exchanges[0].method == HttpMethod.POST
+        exchanges[0].uri == 'http://foo.bar.com/baz?q=a%20b'
+        exchanges[0].requestHeaders.getFlat('X-Test') == 'yes'
+        new String(exchanges[0].requestEntity) == 'hello'
+        exchanges[0].status == 200
+        exchanges[0].responseHeaders.getFlat('foo') == 'bar'
+        new String(exchanges[0].responseEntity) == 'world'
+        exchanges[0].timestamp <= System.currentTimeMillis()
+        filter.dropped == 0
+    }
+
+    def 'An unbuffered response entity is recorded once it has been read'() {
+        setup:
+        TrafficRecordingFilter filter = new TrafficRecordingFilter(file.toPath())
+        respondWith('world')
+
+        when:
+        HttpResponse response = client.get(new HttpRequest('http://foo.bar.com/baz').setBufferResponseEntity(false).addFilter(filter))
+
+        then:
+        filter.queued == 0
+
+        when:
+        String entity = response.entity.inputStream.text
+        response.close()
+        filter.shutdown()
+
+        then:
+        entity == 'world'
+        read()*.responseEntity.collect { new String(it) } == ['world']
+    }
+
+    def 'An unbuffered response entity that is not read completely is not recorded'() {
+        setup:
+        TrafficRecordingFilter filter = new TrafficRecordingFilter(file.toPath())
+        respondWith('world')
+
+        when:
+        HttpResponse response = client.get(new HttpRequest('http://foo.bar.com/baz').setBufferResponseEntity(false).addFilter(filter))
+        response.entity.inputStream.read()
+        response.close()
+        filter.shutdown()
+
+        then:
+        read().isEmpty()
+        filter.dropped == 1
+    }
+
+    def 'Exchanges that are not sampled are not captured'() {
+        setup:
+        TrafficRecordingFilter filter = new TrafficRecordingFilter(file.toPath()).setSampleRate(0)
+        respondWith('world')
+
+        when:
+        client.post(new HttpRequest('http://foo.bar.com/baz').addFilter(filter), 'hello')
+        filter.shutdown()
+
+        then:
+        read().isEmpty()
+        filter.dropped == 0
+        client.httpContext.data.isEmpty()
+    }
+
+    def 'Exchanges with an entity larger than the maximum entity size are not recorded'() {
+        setup:
+        TrafficRecordingFilter filter = new TrafficRecordingFilter(file.toPath()).setMaxEntitySize(4)
+        respondWith('ok')
+
+        when:
+        client.post(new HttpRequest('http://foo.bar.com/baz').addFilter(filter), 'hello')
+        client.post(new HttpRequest('http://foo.bar.com/baz').addFilter(filter), 'hi')
+        filter.shutdown()
+
+        then:
+        read()*.requestEntity.collect { new String(it) } == ['hi']
+        filter.dropped == 1
+    }
+
+    def 'When a recording is reopened, a partially written exchange is removed before new exchanges are appended'() {
+        setup:
+        TrafficRecordingFilter filter = new TrafficRecordingFilter(file.toPath())
+        respondWith('first')
+        client.get(new HttpRequest('http://foo.bar.com/first').addFilter(filter))
+        filter.shutdown()
+        file.append([0, 0, 0, 100, 1, 2, 3] as byte[])
+
+        when:
+        filter = new TrafficRecordingFilter(file.toPath())
+        respondWith('second')
+        client.get(new HttpRequest('http://foo.bar.com/second').addFilter(filter))
+        filter.shutdown()
+
+        then:
+        read()*.uri == ['http://foo.bar.com/first', 'http://foo.bar.com/second']
+    }
+
+    def 'A file that is not a recording is rejected'() {
+        setup:
+        file.text = 'not a recording'
+
+        when:
+        new TrafficRecordingFilter(file.toPath())
+
+        then:
+        thrown IOException
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.sse
+
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+
+class ServerSentEventParserSpec extends Specification {
+    ServerSentEventParser createParser(String stream, String lastEventId = null) {
+        return new ServerSentEventParser(new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8)), lastEventId)
+    }
+
+    List<ServerSentEvent> parseAll(ServerSentEventParser parser) {
+        List<ServerSentEvent> events = []
+        ServerSentEvent event
+        while ((event = parser.next()) != null) {
+            events << event
+        }
+        return events
+    }
+
+    def 'Events are separated by blank lines and have the default type'() {
+        setup:
+        ServerSentEventParser parser = createParser('data: first\n\ndata: second\n\n')
+
+        when:
+        List<ServerSentEvent> events = parseAll(parser)
+
+        then:
+        events*.data == ['first', 'second']
+        events*.type == ['message', 'message']
+        events*.id == [null, null]
+    }
+
+    def 'Lines may be terminated by #name'() {
+        setup:
+        ServerSentEventParser parser = createParser("event: foo${terminator}data: bar${terminator}${terminator}data: baz${terminator}${terminator}")
+
+        when:
+        List<ServerSentEvent> events = parseAll(parser)
+
+        then:
+        events*.data == ['bar', 'baz']
+        events*.type == ['foo', 'message']
+
+        where:
+        name                   | terminator
+        'line feeds'           | '\n'
+        'carriage returns'     | '\r'
+        'both'                 | '\r\n'
+    }
+
+    def 'Multiple data lines are joined with line feeds'() {
+        expect:
+        parseAll(createParser('data: one\ndata:two\ndata\n\n'))*.data == ['one\ntwo\n']
+    }
+
+    def 'Comments and unknown fields are ignored'() {
+        expect:
+        parseAll(createParser(': keep-alive\nfoo: bar\ndata: baz\n\n'))*.data == ['baz']
+    }
+
+    def 'Blocks without data do not dispatch an event'() {
+        setup:
+        ServerSentEventParser parser = createParser('event: foo\n\nid: 7\n\ndata: bar\n\n')
+
+        when:
+        List<ServerSentEvent> events = parseAll(parser)
+
+        then:
+        events.size() == 1
+        events[0].type == 'message'
+        events[0].id == '7'
+    }
+
+    def 'The last event ID persists across events and is tracked by the parser'() {
+        setup:
+        ServerSentEventParser parser = createParser('id: 1\ndata: a\n\ndata: b\n\nid\ndata: c\n\n', '0')
+
+        when:
+        List<ServerSentEvent> events = parseAll(parser)
+
+        then:
+        events*.id == ['1', '1', '']
+        parser.lastEventId == ''
+    }
+
+    def 'The initial last event ID is used until the server sends one'() {
+        setup:
+        ServerSentEventParser parser = createParser('data: a\n\n', '41')
+
+        expect:
+        parser.next().id == '41'
+    }
+
+    def 'The retry field sets the reconnection time when it is a number'() {
+        setup:
+        ServerSentEventParser parser = createParser("retry: ${value}\n\n")
+
+        when:
+        parseAll(parser)
+
+        then:
+        parser.retry == expected
+
+        where:
+        value  || expected
+        '1500' || 1500
+        '15s'  || -1
+        ''     || -1
+    }
+
+    def 'An incomplete event at the end of the stream is discarded'() {
+        expect:
+        parseAll(createParser('data: a\n\ndata: b'))*.data == ['a']
+    }
+
+    def 'A leading byte order mark is ignored'() {
+        expect:
+        parseAll(createParser('﻿data: a\n\n'))*.data == ['a']
+    }
+
+    def 'Events are parsed incrementally as the stream is read'() {
+        setup:
+        PipedOutputStream output = new PipedOutputStream()
+        ServerSentEventParser parser = new ServerSentEventParser(new PipedInputStream(output))
+
+        when:
+        output.write('data: a\n\n'.bytes)
+        ServerSentEvent first = parser.next()
+
+        then:
+        first.data == 'a'
+
+        when:
+        output.write('data: b\n\n'.bytes)
+        output.close()
+
+        then:
+        parser.next().data == 'b'
+        parser.next() == null
+    }
+}
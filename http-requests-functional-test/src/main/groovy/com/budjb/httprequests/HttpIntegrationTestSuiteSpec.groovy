@@ -17,12 +17,19 @@ package com.budjb.httprequests
 
 import com.budjb.httprequests.application.TestApp
 import com.budjb.httprequests.exception.HttpInternalServerErrorException
+import com.budjb.httprequests.exception.HttpNotFoundException
 import com.budjb.httprequests.filter.HttpClientFilter
 import com.budjb.httprequests.filter.RetryFilter
 import com.budjb.httprequests.filter.bundled.BasicAuthFilter
+import com.budjb.httprequests.filter.bundled.CompressionFilter
+import com.budjb.httprequests.filter.bundled.DecompressionFilter
 import com.budjb.httprequests.filter.bundled.GZIPFilter
 import com.budjb.httprequests.filter.bundled.HttpStatusExceptionFilter
 import com.budjb.httprequests.filter.bundled.Slf4jLoggingFilter
+import com.budjb.httprequests.filter.bundled.TrafficRecordingFilter
+import com.budjb.httprequests.sse.ServerSentEvent
+import com.budjb.httprequests.sse.ServerSentEventSource
+import com.budjb.httprequests.sse.ServerSentEventStream
 import org.springframework.boot.test.context.SpringBootTest
 import spock.lang.Ignore
 import spock.lang.Unroll
@@ -97,6 +104,17 @@ abstract class HttpIntegrationTestSuiteSpec extends AbstractIntegrationSpec {
         thrown SocketTimeoutException
     }
 
+    def 'When the factory has a default read timeout and the request does not set one, the default is applied'() {
+        setup:
+        ((AbstractHttpClientFactory) httpClientFactory).setDefaultReadTimeout(1000)
+
+        when:
+        httpClientFactory.createHttpClient().get("${baseUrl}/testReadTimeout")
+
+        then:
+        thrown SocketTimeoutException
+    }
+
     def 'When a call to /testBasicGet is made, the proper byte stream is received'() {
         when:
         def response = httpClientFactory.createHttpClient().get("${baseUrl}/testBasicGet")
@@ -439,6 +457,46 @@ abstract class HttpIntegrationTestSuiteSpec extends AbstractIntegrationSpec {
         StreamUtils.readString(new GZIPInputStream(response.getEntity().getInputStream()), 'UTF-8') == 'Hello, world!'
     }
 
+    def 'When a CompressionFilter is applied to the request, entities that meet the threshold are compressed'() {
+        setup:
+        CompressionFilter filter = new CompressionFilter().setThreshold(20)
+
+        when:
+        def large = httpClientFactory.createHttpClient().post(
+            new HttpRequest("${baseUrl}/echo").addFilter(filter),
+            new FileHttpEntity(file('Hello, world! Hello, world!'))
+        )
+        def small = httpClientFactory.createHttpClient().post(
+            new HttpRequest("${baseUrl}/echo").addFilter(filter),
+            new FileHttpEntity(file('Hello, world!'))
+        )
+
+        then:
+        StreamUtils.readString(new GZIPInputStream(large.getEntity().getInputStream()), 'UTF-8') == 'Hello, world! Hello, world!'
+        small.getEntity(String) == 'Hello, world!'
+    }
+
+    def 'When a DecompressionFilter is applied to the request, a compressed response is decoded'() {
+        when:
+        def response = httpClientFactory.createHttpClient().get(
+            new HttpRequest("${baseUrl}/testCompressedResponse").setBufferResponseEntity(buffered).addFilter(new DecompressionFilter())
+        )
+
+        then:
+        response.getEntity(String) == 'Hello, world!'
+        response.getHeader('Content-Encoding') == null
+
+        where:
+        buffered << [true, false]
+    }
+
+    File file(String contents) {
+        File file = File.createTempFile('http-requests', '.txt')
+        file.deleteOnExit()
+        file.text = contents
+        return file
+    }
+
     def 'Ensure the LoggingFilter does not cause interruptions to HTTP requests.'() {
         setup:
         HttpRequest request = new HttpRequest("${baseUrl}/testBasicPost")
@@ -541,6 +599,122 @@ abstract class HttpIntegrationTestSuiteSpec extends AbstractIntegrationSpec {
         response.getEntity(String) == 'test payload'
     }
 
+    def 'When a multipart entity is sent, the server receives its fields and files'() {
+        setup:
+        File file = File.createTempFile('http-requests', '.txt')
+        file.deleteOnExit()
+        file.text = 'file contents'
+
+        MultipartEntity entity = new MultipartEntity()
+            .addField('foo', 'bar')
+            .addField('foo', 'baz')
+            .addFile('upload', file, 'text/plain')
+            .addPart('stream', 'stream.txt', 'text/plain', new ByteArrayInputStream('stream contents'.bytes), 15)
+
+        when:
+        def response = httpClientFactory.createHttpClient().post("${baseUrl}/testMultipart", entity)
+
+        then:
+        response.getEntity(Map) == [
+            contentLength: entity.contentLength.toString(),
+            fields       : [foo: ['bar', 'baz']],
+            files        : [
+                upload: [name: file.name, contentType: 'text/plain', content: 'file contents'],
+                stream: [name: 'stream.txt', contentType: 'text/plain', content: 'stream contents']
+            ]
+        ]
+
+        cleanup:
+        file.delete()
+    }
+
+    def 'When a file entity is sent, the server receives it with its content length'() {
+        setup:
+        File file = File.createTempFile('http-requests', '.txt')
+        file.deleteOnExit()
+        file.bytes = ('x' * 100000).bytes
+
+        when:
+        def response = httpClientFactory.createHttpClient().post("${baseUrl}/testContentLength", new FileHttpEntity(file))
+
+        then:
+        response.getEntity(String) == '100000:100000'
+
+        cleanup:
+        file.delete()
+    }
+
+    def 'When a file entity is sent with a length preserving output stream filter, its length is sent to the server'() {
+        setup:
+        File file = File.createTempFile('http-requests', '.txt')
+        file.deleteOnExit()
+        file.bytes = ('x' * 100000).bytes
+
+        File recording = File.createTempFile('http-requests', '.rec')
+        recording.deleteOnExit()
+        TrafficRecordingFilter filter = new TrafficRecordingFilter(recording.toPath())
+
+        when:
+        def response = httpClientFactory.createHttpClient().post(
+            new HttpRequest("${baseUrl}/testContentLength").addFilter(filter),
+            new FileHttpEntity(file)
+        )
+
+        then:
+        response.getEntity(String) == '100000:100000'
+
+        cleanup:
+        filter.shutdown()
+        file.delete()
+        recording.delete()
+    }
+
+    def 'When a request with a file entity is retried, the file is resent correctly'() {
+        setup:
+        File file = File.createTempFile('http-requests', '.txt')
+        file.deleteOnExit()
+        file.text = 'test payload'
+
+        RetryFilter retryFilter = new RetryFilter() {
+            @Override
+            boolean isRetryRequired(HttpContext context) {
+                return context.retries == 0
+            }
+        }
+
+        FileHttpEntity entity = new FileHttpEntity(file, 'text/plain')
+
+        when:
+        def response = httpClientFactory.createHttpClient().post new HttpRequest("${baseUrl}/echo").addFilter(retryFilter), entity
+
+        then:
+        !entity.isBuffered()
+        response.status == 200
+        response.getEntity(String) == 'test payload'
+
+        cleanup:
+        file.delete()
+    }
+
+    def 'When a file entity is sent through a GZIPFilter, the compressed entity is received'() {
+        setup:
+        File file = File.createTempFile('http-requests', '.txt')
+        file.deleteOnExit()
+        file.text = 'Hello, world!'
+
+        when:
+        def response = httpClientFactory.createHttpClient().post(
+            new HttpRequest("${baseUrl}/echo").addFilter(new GZIPFilter()),
+            new FileHttpEntity(file)
+        )
+
+        then:
+        StreamUtils.readString(new GZIPInputStream(response.getEntity().getInputStream()), 'UTF-8') == 'Hello, world!'
+
+        cleanup:
+        file.delete()
+    }
+
     def 'When logging a request with a GET HTTP method, a NullPointerException is not thrown'() {
         setup:
         HttpRequest request = new HttpRequest()
@@ -655,6 +829,139 @@ abstract class HttpIntegrationTestSuiteSpec extends AbstractIntegrationSpec {
         thrown URISyntaxException
     }
 
+    @Unroll
+    def 'When a file is downloaded with a parallelism of #parallelism, the file contains the response entity'() {
+        setup:
+        File file = File.createTempFile('http-requests', '.bin')
+        file.deleteOnExit()
+        file.delete()
+
+        when:
+        long size = httpClientFactory.createHttpClient().download(new HttpRequest("${baseUrl}/testDownload"), file.toPath(), parallelism)
+
+        then:
+        size == TestApp.DOWNLOAD_CONTENT.length
+        file.bytes == TestApp.DOWNLOAD_CONTENT
+        file.lastModified() == TestApp.DOWNLOAD_LAST_MODIFIED
+        !file.parentFile.listFiles().any { it.name.startsWith(file.name) && it.name.endsWith('.part') }
+
+        cleanup:
+        file.delete()
+
+        where:
+        parallelism << [1, 4]
+    }
+
+    def 'When a partially downloaded file is downloaded, the download is resumed'() {
+        setup:
+        File file = File.createTempFile('http-requests', '.bin')
+        file.deleteOnExit()
+        file.bytes = Arrays.copyOf(TestApp.DOWNLOAD_CONTENT, 1000)
+        file.setLastModified(TestApp.DOWNLOAD_LAST_MODIFIED)
+
+        when:
+        long size = httpClientFactory.createHttpClient().download("${baseUrl}/testDownload", file.toPath())
+
+        then:
+        size == TestApp.DOWNLOAD_CONTENT.length
+        file.bytes == TestApp.DOWNLOAD_CONTENT
+
+        cleanup:
+        file.delete()
+    }
+
+    def 'When a partially downloaded file was modified on the server, the download starts over'() {
+        setup:
+        File file = File.createTempFile('http-requests', '.bin')
+        file.deleteOnExit()
+        file.bytes = new byte[1000]
+        file.setLastModified(TestApp.DOWNLOAD_LAST_MODIFIED - 60000)
+
+        when:
+        long size = httpClientFactory.createHttpClient().download("${baseUrl}/testDownload", file.toPath())
+
+        then:
+        size == TestApp.DOWNLOAD_CONTENT.length
+        file.bytes == TestApp.DOWNLOAD_CONTENT
+
+        cleanup:
+        file.delete()
+    }
+
+    def 'When a completely downloaded file is downloaded again, the file is unchanged'() {
+        setup:
+        File file = File.createTempFile('http-requests', '.bin')
+        file.deleteOnExit()
+        file.bytes = TestApp.DOWNLOAD_CONTENT
+        file.setLastModified(TestApp.DOWNLOAD_LAST_MODIFIED)
+
+        when:
+        long size = httpClientFactory.createHttpClient().download("${baseUrl}/testDownload", file.toPath())
+
+        then:
+        size == TestApp.DOWNLOAD_CONTENT.length
+        file.bytes == TestApp.DOWNLOAD_CONTENT
+
+        cleanup:
+        file.delete()
+    }
+
+    def 'When a download receives a 404 response, an HttpNotFoundException is thrown'() {
+        setup:
+        File file = File.createTempFile('http-requests', '.bin')
+        file.deleteOnExit()
+
+        when:
+        httpClientFactory.createHttpClient().download("${baseUrl}/test404", file.toPath())
+
+        then:
+        thrown HttpNotFoundException
+
+        cleanup:
+        file.delete()
+    }
+
+    def 'When server-sent events are consumed, the stream is resumed with the last event ID until it ends'() {
+        setup:
+        ServerSentEventSource source = new ServerSentEventSource(
+            httpClientFactory.createHttpClient(),
+            new HttpRequest("${baseUrl}/testServerSentEvents")
+        )
+        List<ServerSentEvent> events = []
+
+        when:
+        source.listen { events << it }
+
+        then:
+        events*.id == ['1', '2', '3', '4']
+        events*.type == ['count'] * 4
+        events*.data == ['event 1\nof 4', 'event 2\nof 4', 'event 3\nof 4', 'event 4\nof 4']
+    }
+
+    def 'When a server-sent event stream is closed, no more events are returned'() {
+        setup:
+        ServerSentEventStream stream = new ServerSentEventSource(
+            httpClientFactory.createHttpClient(),
+            new HttpRequest("${baseUrl}/testServerSentEvents")
+        ).open()
+
+        when:
+        ServerSentEvent event = stream.next()
+        stream.close()
+
+        then:
+        event.id == '1'
+        !stream.hasNext()
+    }
+
+    def 'When a server-sent event stream is not found, an HttpNotFoundException is thrown'() {
+        when:
+        new ServerSentEventSource(httpClientFactory.createHttpClient(), new HttpRequest("${baseUrl}/test404")).open()
+
+        then:
+        thrown HttpNotFoundException
+    }
+
     static class CloseableFilter implements HttpClientFilter, Closeable {
         boolean closed = false
 
@@ -19,22 +19,42 @@ import groovy.json.JsonBuilder
 import groovy.json.JsonOutput
 import org.springframework.boot.SpringApplication
 import org.springframework.boot.autoconfigure.SpringBootApplication
+import org.springframework.core.io.ByteArrayResource
+import org.springframework.core.io.Resource
 import org.springframework.http.HttpHeaders
 import org.springframework.http.HttpStatus
 import org.springframework.http.MediaType
 import org.springframework.http.ResponseEntity
 import org.springframework.util.MultiValueMap
 import org.springframework.web.bind.annotation.*
+import org.springframework.web.multipart.MultipartHttpServletRequest
 
 import javax.servlet.http.HttpServletResponse
+import java.util.zip.GZIPOutputStream
 
 @RestController
 @SpringBootApplication
 class TestApp {
+    /**
+     * Content served by the download endpoint.
+     */
+    static final byte[] DOWNLOAD_CONTENT = createDownloadContent()
+
+    /**
+     * Modification time of the content served by the download endpoint, in milliseconds since the epoch.
+     */
+    static final long DOWNLOAD_LAST_MODIFIED = 1500000000000L
+
     static void main(String[] args) throws Exception {
         SpringApplication.run(TestApp, args)
     }
 
+    static byte[] createDownloadContent() {
+        byte[] content = new byte[3 * 1024 * 1024 + 17]
+        new Random(0).nextBytes(content)
+        return content
+    }
+
     @RequestMapping(value = '/testBasicGet', method = RequestMethod.GET, produces = 'text/plain')
     String testBasicGet() {
         return "The quick brown fox jumps over the lazy dog."
@@ -182,6 +202,80 @@ class TestApp {
         return new ResponseEntity<byte[]>(body, headers, HttpStatus.OK)
     }
 
+    @RequestMapping(value = '/testContentLength', method = RequestMethod.POST, produces = 'text/plain')
+    String testContentLength(
+        @RequestHeader(value = 'Content-Length', required = false) String contentLength, @RequestBody byte[] body) {
+        return "${contentLength}:${body.length}"
+    }
+
+    @RequestMapping(value = '/testMultipart', method = RequestMethod.POST, produces = 'application/json')
+    String testMultipart(
+        MultipartHttpServletRequest request, @RequestHeader(value = 'Content-Length', required = false) String contentLength) {
+        return new JsonBuilder([
+            contentLength: contentLength,
+            fields       : request.parameterMap.collectEntries { k, v -> [k, v.toList()] },
+            files        : request.fileMap.collectEntries { k, v ->
+                [k, [name: v.originalFilename, contentType: v.contentType, content: new String(v.bytes, 'UTF-8')]]
+            }
+        ]).toString()
+    }
+
+    @RequestMapping(value = '/testDownload', method = RequestMethod.GET)
+    ResponseEntity<?> testDownload(@RequestHeader HttpHeaders headers) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .lastModified(DOWNLOAD_LAST_MODIFIED)
+
+        // Ranges are only served for resources, so the complete entity is returned as a byte array when the
+        // If-Range date does not match.
+        String ifRange = headers.getFirst('If-Range')
+        if (ifRange != null && headers.getFirstDate('If-Range') != DOWNLOAD_LAST_MODIFIED) {
+            return builder.body(DOWNLOAD_CONTENT)
+        }
+
+        return builder.body(new ByteArrayResource(DOWNLOAD_CONTENT))
+    }
+
+    @RequestMapping(value = '/testServerSentEvents', method = RequestMethod.GET)
+    void testServerSentEvents(
+        @RequestHeader(value = 'Last-Event-ID', required = false) String lastEventId, HttpServletResponse response) {
+        int last = lastEventId ? lastEventId.toInteger() : 0
+
+        // The stream ends after four events, which are sent two per connection.
+        if (last >= 4) {
+            response.status = 204
+            return
+        }
+
+        response.contentType = 'text/event-stream'
+        response.characterEncoding = 'UTF-8'
+
+        Writer writer = response.writer
+        writer.write('retry: 10\n\n')
+
+        ((last + 1)..(last + 2)).each {
+            writer.write(": event ${it}\nid: ${it}\nevent: count\ndata: event ${it}\ndata: of 4\n\n")
+            writer.flush()
+        }
+    }
+
+    @RequestMapping(value = '/testCompressedResponse', method = RequestMethod.GET)
+    ResponseEntity<byte[]> testCompressedResponse(
+        @RequestHeader(value = 'Accept-Encoding', required = false) String acceptEncoding) {
+        byte[] body = 'Hello, world!'.getBytes('UTF-8')
+        HttpHeaders headers = new HttpHeaders()
+        headers.setContentType(MediaType.TEXT_PLAIN)
+
+        if (acceptEncoding?.contains('gzip')) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+            new GZIPOutputStream(outputStream).withStream { it.write(body) }
+            body = outputStream.toByteArray()
+            headers.set('Content-Encoding', 'gzip')
+        }
+
+        return new ResponseEntity<byte[]>(body, headers, HttpStatus.OK)
+    }
+
     @RequestMapping(value = '/test404')
     ResponseEntity<String> test404() {
         return new ResponseEntity<String>(null, HttpStatus.NOT_FOUND)
@@ -16,10 +16,10 @@
 
 package com.budjb.httprequests.groovy;
 
+import com.budjb.httprequests.converter.ByteArrayEntityInputStream;
 import com.budjb.httprequests.converter.EntityWriter;
 import groovy.lang.GString;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 
@@ -48,6 +48,6 @@ public class GStringEntityWriter implements EntityWriter {
         if (characterSet == null) {
             characterSet = Charset.defaultCharset().toString();
         }
-        return new ByteArrayInputStream(entity.toString().getBytes(characterSet));
+        return new ByteArrayEntityInputStream(entity.toString().getBytes(characterSet));
     }
 }
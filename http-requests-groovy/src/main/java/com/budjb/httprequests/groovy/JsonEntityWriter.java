@@ -16,10 +16,10 @@
 
 package com.budjb.httprequests.groovy;
 
+import com.budjb.httprequests.converter.ByteArrayEntityInputStream;
 import com.budjb.httprequests.converter.EntityWriter;
 import groovy.json.JsonBuilder;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.List;
@@ -50,6 +50,6 @@ public class JsonEntityWriter implements EntityWriter {
         if (characterSet == null) {
             characterSet = Charset.defaultCharset().toString();
         }
-        return new ByteArrayInputStream(new JsonBuilder(entity).toString().getBytes(characterSet));
+        return new ByteArrayEntityInputStream(new JsonBuilder(entity).toString().getBytes(characterSet));
     }
 }
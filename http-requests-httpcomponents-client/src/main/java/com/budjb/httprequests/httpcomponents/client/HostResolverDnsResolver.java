@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.httpcomponents.client;
+
+import com.budjb.httprequests.dns.HostResolver;
+import org.apache.http.conn.DnsResolver;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Adapts a {@link HostResolver} to the {@link DnsResolver} of the HttpComponents client.
+ */
+class HostResolverDnsResolver implements DnsResolver {
+    /**
+     * Resolver that resolves host names.
+     */
+    private final HostResolver hostResolver;
+
+    /**
+     * Constructor.
+     *
+     * @param hostResolver Resolver that resolves host names.
+     */
+    HostResolverDnsResolver(HostResolver hostResolver) {
+        this.hostResolver = hostResolver;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        return hostResolver.resolve(host);
+    }
+}
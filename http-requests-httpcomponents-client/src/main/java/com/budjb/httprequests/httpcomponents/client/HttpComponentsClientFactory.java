@@ -18,8 +18,64 @@ package com.budjb.httprequests.httpcomponents.client;
 import com.budjb.httprequests.AbstractHttpClientFactory;
 import com.budjb.httprequests.HttpClient;
 import com.budjb.httprequests.converter.EntityConverterManager;
+import com.budjb.httprequests.dns.HostResolver;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factory that creates HTTP clients backed by the Apache HTTP components client.
+ * <p>
+ * By default, each request opens its own connection. When the maximum number of connections is set, the clients
+ * created by the factory share a pool of persistent connections, which is created when the first request is made.
+ * The factory should then be closed when it is no longer used, to close the pooled connections.
+ */
+public class HttpComponentsClientFactory extends AbstractHttpClientFactory implements Closeable {
+    /**
+     * Resolver used to resolve host names, or {@code null} to use the resolver of the JVM.
+     */
+    private HostResolver hostResolver;
+
+    /**
+     * Maximum number of pooled connections. 0 disables connection pooling.
+     */
+    private int maxConnections = 0;
+
+    /**
+     * Maximum number of pooled connections to a single route. 0 allows a route to use every pooled connection.
+     */
+    private int maxConnectionsPerRoute = 0;
+
+    /**
+     * Maximum time a pooled connection is kept alive between requests, in milliseconds. 0 keeps connections alive
+     * for as long as the server allows.
+     */
+    private long keepAlive = 0;
+
+    /**
+     * Time after which idle pooled connections are closed, in milliseconds. 0 disables the eviction of idle
+     * connections.
+     */
+    private long idleTimeout = 0;
+
+    /**
+     * Shared connection pool, or {@code null} if it has not been created.
+     */
+    private volatile PoolingHttpClientConnectionManager connectionManager;
+
+    /**
+     * Executor that evicts expired and idle pooled connections, or {@code null} if it is not running.
+     */
+    private ScheduledExecutorService evictor;
 
-public class HttpComponentsClientFactory extends AbstractHttpClientFactory {
     /**
      * Constructor.
      *
@@ -29,11 +85,233 @@ public class HttpComponentsClientFactory extends AbstractHttpClientFactory {
         super(converterManager);
     }
 
+    /**
+     * Returns the resolver used to resolve host names.
+     *
+     * @return The host resolver, or {@code null} if the resolver of the JVM is used.
+     */
+    public HostResolver getHostResolver() {
+        return hostResolver;
+    }
+
+    /**
+     * Sets the resolver used to resolve host names, such as a {@link com.budjb.httprequests.dns.CachingHostResolver}.
+     *
+     * @param hostResolver The host resolver, or {@code null} to use the resolver of the JVM.
+     * @return The instance of this class the method was called with.
+     */
+    public HttpComponentsClientFactory setHostResolver(HostResolver hostResolver) {
+        requireNoPool();
+        this.hostResolver = hostResolver;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of pooled connections.
+     *
+     * @return The maximum number of pooled connections, or 0 if connection pooling is disabled.
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets the maximum number of pooled connections. 0 disables connection pooling, so that each request opens
+     * its own connection.
+     *
+     * @param maxConnections Maximum number of pooled connections.
+     * @return The instance of this class the method was called with.
+     */
+    public HttpComponentsClientFactory setMaxConnections(int maxConnections) {
+        if (maxConnections < 0) {
+            throw new IllegalArgumentException("maxConnections must not be negative");
+        }
+        requireNoPool();
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of pooled connections to a single route.
+     *
+     * @return The maximum number of pooled connections to a single route, or 0 if it is not limited.
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of pooled connections to a single route. 0 allows a route to use every pooled
+     * connection.
+     *
+     * @param maxConnectionsPerRoute Maximum number of pooled connections to a single route.
+     * @return The instance of this class the method was called with.
+     */
+    public HttpComponentsClientFactory setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        if (maxConnectionsPerRoute < 0) {
+            throw new IllegalArgumentException("maxConnectionsPerRoute must not be negative");
+        }
+        requireNoPool();
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        return this;
+    }
+
+    /**
+     * Returns the maximum time a pooled connection is kept alive between requests, in milliseconds.
+     *
+     * @return The maximum time a pooled connection is kept alive, or 0 if it is not limited.
+     */
+    public long getKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Sets the maximum time a pooled connection is kept alive between requests, in milliseconds. A shorter
+     * duration sent by the server with the {@code Keep-Alive} header takes precedence. 0 keeps connections alive
+     * for as long as the server allows.
+     *
+     * @param keepAlive Maximum time a pooled connection is kept alive, in milliseconds.
+     * @return The instance of this class the method was called with.
+     */
+    public HttpComponentsClientFactory setKeepAlive(long keepAlive) {
+        if (keepAlive < 0) {
+            throw new IllegalArgumentException("keepAlive must not be negative");
+        }
+        requireNoPool();
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    /**
+     * Returns the time after which idle pooled connections are closed, in milliseconds.
+     *
+     * @return The time after which idle pooled connections are closed, or 0 if they are not evicted.
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets the time after which idle pooled connections are closed, in milliseconds. Idle and expired connections
+     * are evicted by a background thread. 0 disables the eviction of idle connections.
+     *
+     * @param idleTimeout Time after which idle pooled connections are closed, in milliseconds.
+     * @return The instance of this class the method was called with.
+     */
+    public HttpComponentsClientFactory setIdleTimeout(long idleTimeout) {
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("idleTimeout must not be negative");
+        }
+        requireNoPool();
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    /**
+     * Returns whether the clients created by the factory share a pool of connections.
+     *
+     * @return Whether connection pooling is enabled.
+     */
+    public boolean isPooled() {
+        return maxConnections > 0;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public HttpClient createHttpClient() {
-        return new HttpComponentsHttpClient(getConverterManager());
+        return configure(new HttpComponentsHttpClient(getConverterManager(), hostResolver, getConnectionManager(), keepAlive));
+    }
+
+    /**
+     * Closes the pooled connections and stops the eviction of idle connections. Clients created afterwards
+     * use a new pool.
+     */
+    @Override
+    public synchronized void close() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+            evictor = null;
+        }
+
+        if (connectionManager != null) {
+            connectionManager.shutdown();
+            connectionManager = null;
+        }
+    }
+
+    /**
+     * Returns the shared connection pool, creating it if necessary.
+     *
+     * @return The shared connection pool, or {@code null} if connection pooling is disabled.
+     */
+    private PoolingHttpClientConnectionManager getConnectionManager() {
+        if (!isPooled()) {
+            return null;
+        }
+
+        PoolingHttpClientConnectionManager connectionManager = this.connectionManager;
+
+        if (connectionManager != null) {
+            return connectionManager;
+        }
+
+        synchronized (this) {
+            if (this.connectionManager == null) {
+                this.connectionManager = createConnectionManager();
+            }
+            return this.connectionManager;
+        }
+    }
+
+    /**
+     * Creates the shared connection pool and starts the eviction of idle connections if it is enabled.
+     *
+     * @return A new connection pool.
+     */
+    private PoolingHttpClientConnectionManager createConnectionManager() {
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+            .register("https", SSLConnectionSocketFactory.getSocketFactory())
+            .build();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+            registry,
+            null,
+            null,
+            hostResolver != null ? new HostResolverDnsResolver(hostResolver) : null,
+            -1,
+            TimeUnit.MILLISECONDS
+        );
+
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute > 0 ? maxConnectionsPerRoute : maxConnections);
+
+        if (idleTimeout > 0) {
+            evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "http-requests-connection-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            long period = Math.max(idleTimeout / 2, 100);
+
+            evictor.scheduleWithFixedDelay(() -> {
+                connectionManager.closeExpiredConnections();
+                connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        return connectionManager;
+    }
+
+    /**
+     * Ensures that the connection pool has not been created, since its settings can not be changed afterwards.
+     */
+    private void requireNoPool() {
+        if (connectionManager != null) {
+            throw new IllegalStateException("the connection pool settings can not be changed once the pool has been created");
+        }
     }
 }
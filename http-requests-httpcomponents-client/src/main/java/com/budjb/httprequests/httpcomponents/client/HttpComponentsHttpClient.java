@@ -17,31 +17,70 @@ package com.budjb.httprequests.httpcomponents.client;
 
 import com.budjb.httprequests.*;
 import com.budjb.httprequests.converter.EntityConverterManager;
+import com.budjb.httprequests.dns.HostResolver;
 import com.budjb.httprequests.filter.HttpClientFilterProcessor;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.*;
-import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.GeneralSecurityException;
 
 public class HttpComponentsHttpClient extends AbstractHttpClient {
+    /**
+     * Resolver used to resolve host names, or {@code null} to use the resolver of the JVM.
+     */
+    private final HostResolver hostResolver;
+
+    /**
+     * Shared connection pool, or {@code null} if each request opens its own connection.
+     */
+    private final HttpClientConnectionManager connectionManager;
+
+    /**
+     * Maximum time a pooled connection is kept alive between requests, in milliseconds. 0 means no limit.
+     */
+    private final long keepAlive;
+
     /**
      * Constructor.
      *
      * @param converterManager Entity converter manager.
      */
     HttpComponentsHttpClient(EntityConverterManager converterManager) {
+        this(converterManager, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param converterManager Entity converter manager.
+     * @param hostResolver     Resolver used to resolve host names, or {@code null} to use the resolver of the JVM.
+     */
+    HttpComponentsHttpClient(EntityConverterManager converterManager, HostResolver hostResolver) {
+        this(converterManager, hostResolver, null, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param converterManager  Entity converter manager.
+     * @param hostResolver      Resolver used to resolve host names, or {@code null} to use the resolver of the JVM.
+     * @param connectionManager Shared connection pool, or {@code null} if each request opens its own connection.
+     * @param keepAlive         Maximum time a pooled connection is kept alive between requests, in milliseconds.
+     */
+    HttpComponentsHttpClient(EntityConverterManager converterManager, HostResolver hostResolver, HttpClientConnectionManager connectionManager, long keepAlive) {
         super(converterManager);
+        this.hostResolver = hostResolver;
+        this.connectionManager = connectionManager;
+        this.keepAlive = keepAlive;
     }
 
     /**
@@ -54,18 +93,7 @@ public class HttpComponentsHttpClient extends AbstractHttpClient {
 
         CloseableHttpClient client = createClient(request);
 
-        URIBuilder uriBuilder = new URIBuilder(request.getUri());
-
-        request.getQueryParameters().forEach((k, v) -> {
-            if (v.size() == 0) {
-                uriBuilder.addParameter(k, null);
-            }
-            else {
-                v.forEach(value -> uriBuilder.addParameter(k, value));
-            }
-        });
-
-        HttpUriRequest httpRequest = createHttpRequest(method, uriBuilder.build());
+        HttpUriRequest httpRequest = createHttpRequest(method, URI.create(UriEncoder.encode(request)));
 
         request.getHeaders().forEach((k, v) -> {
             if (v.size() == 0) {
@@ -77,26 +105,7 @@ public class HttpComponentsHttpClient extends AbstractHttpClient {
         });
 
         if (httpEntity != null && httpRequest instanceof HttpEntityEnclosingRequest) {
-            ContentType contentType = null;
-            if (httpEntity.getFullContentType() != null) {
-                contentType = ContentType.parse(httpEntity.getFullContentType());
-            }
-
-            org.apache.http.HttpEntity entity = new InputStreamEntity(httpEntity.getInputStream(), contentType) {
-                @Override
-                public void writeTo(final OutputStream outputStream) throws IOException {
-                    OutputStream filtered = filterProcessor.filterOutputStream(outputStream);
-                    super.writeTo(filtered);
-
-                    // This is a bit of a hack since HTTP components client does not give
-                    // applications the ability to change the OutputStream being written to
-                    // inside the library. For compression to work correctly, close() must
-                    // be called. Ultimately, the next thing the client does after the call
-                    // to this method is to close the original stream anyway.
-                    filtered.close();
-                }
-            };
-            ((HttpEntityEnclosingRequest) httpRequest).setEntity(entity);
+            ((HttpEntityEnclosingRequest) httpRequest).setEntity(new HttpComponentsRequestEntity(httpEntity, filterProcessor));
         }
 
         return new HttpComponentsResponse(request, getConverterManager(), client.execute(httpRequest), client);
@@ -119,6 +128,25 @@ public class HttpComponentsHttpClient extends AbstractHttpClient {
 
         builder.setDefaultRequestConfig(requestConfig);
 
+        // Requests that do not validate SSL certificates never use the shared pool, so that their connections
+        // are not reused by requests that do.
+        if (connectionManager != null && request.isSslValidated()) {
+            builder.setConnectionManager(connectionManager).setConnectionManagerShared(true);
+
+            if (keepAlive > 0) {
+                builder.setKeepAliveStrategy((response, context) -> {
+                    long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+                });
+            }
+
+            return builder.build();
+        }
+
+        if (hostResolver != null) {
+            builder.setDnsResolver(new HostResolverDnsResolver(hostResolver));
+        }
+
         if (!request.isSslValidated()) {
             builder.setSSLContext(createTrustingSSLContext());
             builder.setSSLHostnameVerifier(createTrustingHostnameVerifier());
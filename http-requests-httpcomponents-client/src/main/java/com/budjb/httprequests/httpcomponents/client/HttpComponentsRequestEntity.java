@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.httpcomponents.client;
+
+import com.budjb.httprequests.HttpEntity;
+import com.budjb.httprequests.filter.HttpClientFilterProcessor;
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An Apache HTTP entity that writes an {@link HttpEntity} through the request's output stream filters.
+ * <p>
+ * The length and repeatability of the wrapped entity are exposed to the Apache client so that entities
+ * of a known length are sent with a <code>Content-Length</code> header instead of chunked encoding.
+ */
+class HttpComponentsRequestEntity extends AbstractHttpEntity {
+    /**
+     * Entity being sent.
+     */
+    private final HttpEntity entity;
+
+    /**
+     * Filter processor used to filter the request output stream.
+     */
+    private final HttpClientFilterProcessor filterProcessor;
+
+    /**
+     * Constructor.
+     *
+     * @param entity          Entity being sent.
+     * @param filterProcessor Filter processor used to filter the request output stream.
+     */
+    HttpComponentsRequestEntity(HttpEntity entity, HttpClientFilterProcessor filterProcessor) {
+        this.entity = entity;
+        this.filterProcessor = filterProcessor;
+
+        setContentType(entity.getFullContentType());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRepeatable() {
+        return entity.isRepeatable();
+    }
+
+    /**
+     * Returns the length of the entity. The length is reported as unknown when output stream filters
+     * are present that may change the number of bytes written.
+     *
+     * @return The length of the entity, or {@code -1} if it is not known.
+     */
+    @Override
+    public long getContentLength() {
+        if (!filterProcessor.isContentLengthPreserved()) {
+            return -1;
+        }
+        return entity.getContentLength();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream getContent() {
+        return entity.getInputStream();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        OutputStream filtered = filterProcessor.filterOutputStream(outputStream);
+        entity.writeTo(filtered);
+
+        // This is a bit of a hack since HTTP components client does not give
+        // applications the ability to change the OutputStream being written to
+        // inside the library. For compression to work correctly, close() must
+        // be called. Ultimately, the next thing the client does after the call
+        // to this method is to close the original stream anyway.
+        filtered.close();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStreaming() {
+        return !entity.isRepeatable();
+    }
+}
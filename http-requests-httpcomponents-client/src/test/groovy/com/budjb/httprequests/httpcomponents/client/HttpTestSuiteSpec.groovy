@@ -18,6 +18,7 @@ package com.budjb.httprequests.httpcomponents.client
 import com.budjb.httprequests.HttpClientFactory
 import com.budjb.httprequests.HttpIntegrationTestSuiteSpec
 import com.budjb.httprequests.converter.EntityConverterManager
+import com.budjb.httprequests.dns.HostResolver
 
 class HttpTestSuiteSpec extends HttpIntegrationTestSuiteSpec {
     /**
@@ -29,4 +30,61 @@ class HttpTestSuiteSpec extends HttpIntegrationTestSuiteSpec {
     HttpClientFactory createHttpClientFactory(EntityConverterManager converterManager) {
         return new HttpComponentsClientFactory(converterManager)
     }
+
+    def 'When a host resolver is configured, host names are resolved with it'() {
+        setup:
+        List<String> hosts = []
+        HostResolver hostResolver = { String host ->
+            hosts << host
+            return [InetAddress.getLoopbackAddress()] as InetAddress[]
+        } as HostResolver
+
+        ((HttpComponentsClientFactory) httpClientFactory).setHostResolver(hostResolver)
+
+        when:
+        def response = httpClientFactory.createHttpClient().get "http://upstream.invalid:${webPort}/testBasicGet"
+
+        then:
+        response.getEntity(String) == 'The quick brown fox jumps over the lazy dog.'
+        hosts == ['upstream.invalid']
+    }
+
+    def 'When connection pooling is enabled, requests reuse pooled connections'() {
+        setup:
+        HttpComponentsClientFactory factory = new HttpComponentsClientFactory(httpClientFactory.converterManager)
+            .setMaxConnections(4)
+            .setMaxConnectionsPerRoute(2)
+            .setKeepAlive(30000)
+            .setIdleTimeout(1000)
+
+        when:
+        List<String> entities = (1..5).collect {
+            factory.createHttpClient().get("${baseUrl}/testBasicGet").getEntity(String)
+        }
+
+        then:
+        entities.every { it == 'The quick brown fox jumps over the lazy dog.' }
+        factory.connectionManager.totalStats.available == 1
+        factory.connectionManager.totalStats.leased == 0
+
+        cleanup:
+        factory.close()
+    }
+
+    def 'When the connection pool has been created, its settings can not be changed'() {
+        setup:
+        HttpComponentsClientFactory factory = new HttpComponentsClientFactory(httpClientFactory.converterManager)
+            .setMaxConnections(4)
+
+        factory.createHttpClient().get("${baseUrl}/testBasicGet")
+
+        when:
+        factory.setMaxConnections(8)
+
+        then:
+        thrown IllegalStateException
+
+        cleanup:
+        factory.close()
+    }
 }
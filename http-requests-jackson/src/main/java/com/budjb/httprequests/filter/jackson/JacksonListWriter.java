@@ -16,10 +16,10 @@
 
 package com.budjb.httprequests.filter.jackson;
 
+import com.budjb.httprequests.converter.ByteArrayEntityInputStream;
 import com.budjb.httprequests.converter.EntityWriter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.List;
 
@@ -62,6 +62,6 @@ public class JacksonListWriter implements EntityWriter {
      */
     @Override
     public InputStream write(Object entity, String characterSet) throws Exception {
-        return new ByteArrayInputStream(objectMapper.writeValueAsBytes(entity));
+        return new ByteArrayEntityInputStream(objectMapper.writeValueAsBytes(entity));
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.jersey1;
+
+import com.budjb.httprequests.HttpEntity;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * A Jersey message body writer that writes an {@link HttpEntity} directly to the request.
+ * <p>
+ * When the length of the entity is reported, Jersey streams the request with a fixed length
+ * and sends a <code>Content-Length</code> header instead of buffering the entity in memory.
+ */
+class HttpEntityMessageBodyWriter implements MessageBodyWriter<HttpEntity> {
+    /**
+     * Whether the length of entities may be reported to Jersey.
+     */
+    private final boolean reportContentLength;
+
+    /**
+     * Constructor.
+     *
+     * @param reportContentLength Whether the length of entities may be reported to Jersey. This must be
+     *                            {@code false} if the request output stream is filtered by a filter that
+     *                            may change the number of bytes written.
+     */
+    HttpEntityMessageBodyWriter(boolean reportContentLength) {
+        this.reportContentLength = reportContentLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return HttpEntity.class.isAssignableFrom(type);
+    }
+
+    /**
+     * Returns the length of the entity. Entities that are already buffered in memory report an unknown length
+     * so that the connection may buffer them itself, which allows redirects to be followed.
+     *
+     * @return The length of the entity, or {@code -1} if it should not be reported.
+     */
+    @Override
+    public long getSize(HttpEntity entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        if (!reportContentLength || entity.isBuffered()) {
+            return -1;
+        }
+        return entity.getContentLength();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeTo(HttpEntity entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        entity.writeTo(entityStream);
+    }
+}
@@ -50,7 +50,7 @@ public class JerseyHttpClient extends AbstractHttpClient {
         HttpRequest request = context.getRequest();
         HttpMethod method = context.getMethod();
 
-        Client client = createClient(request);
+        Client client = createClient(request, filterProcessor);
 
         client.addFilter(createClientFilter(filterProcessor));
 
@@ -58,8 +58,7 @@ public class JerseyHttpClient extends AbstractHttpClient {
         client.setConnectTimeout(request.getConnectionTimeout());
         client.setFollowRedirects(request.isFollowRedirects());
 
-        WebResource resource = client.resource(request.getUri());
-        resource = applyQueryParameters(resource, request.getQueryParameters());
+        WebResource resource = client.resource(UriEncoder.encode(request));
 
         WebResource.Builder builder = resource.getRequestBuilder();
 
@@ -72,7 +71,7 @@ public class JerseyHttpClient extends AbstractHttpClient {
         ClientResponse response;
         try {
             if (entity != null) {
-                response = builder.method(method.toString(), ClientResponse.class, entity.getInputStream());
+                response = builder.method(method.toString(), ClientResponse.class, entity);
             }
             else {
                 response = builder.method(method.toString(), ClientResponse.class);
@@ -91,18 +90,21 @@ public class JerseyHttpClient extends AbstractHttpClient {
     /**
      * Creates the Jersey {@link Client} instance.
      *
+     * @param request         Request properties to configure the client with.
+     * @param filterProcessor Filter processor of the request.
      * @return Configured Jersey {@link Client}.
      */
-    private Client createClient(HttpRequest request) throws GeneralSecurityException {
-        if (request.isSslValidated()) {
-            return Client.create();
-        }
-
+    private Client createClient(HttpRequest request, HttpClientFilterProcessor filterProcessor) throws GeneralSecurityException {
         ClientConfig config = new DefaultClientConfig();
-        config.getProperties().put(HTTPSProperties.PROPERTY_HTTPS_PROPERTIES, new HTTPSProperties(
-            createTrustingHostnameVerifier(),
-            createTrustingSSLContext()
-        ));
+
+        config.getSingletons().add(new HttpEntityMessageBodyWriter(filterProcessor.isContentLengthPreserved()));
+
+        if (!request.isSslValidated()) {
+            config.getProperties().put(HTTPSProperties.PROPERTY_HTTPS_PROPERTIES, new HTTPSProperties(
+                createTrustingHostnameVerifier(),
+                createTrustingSSLContext()
+            ));
+        }
 
         return Client.create(config);
     }
@@ -130,30 +132,6 @@ public class JerseyHttpClient extends AbstractHttpClient {
         };
     }
 
-    /**
-     * Applies the request's query parameters to the web resource.
-     *
-     * @param resource        Web resource.
-     * @param queryParameters Query parameters.
-     * @return The new web resource with query parameters applied.
-     */
-    private WebResource applyQueryParameters(WebResource resource, MultiValuedMap queryParameters) {
-        for (String name : queryParameters.keySet()) {
-            List<String> values = queryParameters.get(name);
-
-            if (values.size() == 0) {
-                resource = resource.queryParam(name, "");
-            }
-            else {
-                for (String value : queryParameters.get(name)) {
-                    resource = resource.queryParam(name, value);
-                }
-            }
-        }
-
-        return resource;
-    }
-
     /**
      * Applies the request's headers to the web resource builder.
      *
@@ -59,7 +59,8 @@ class JerseyHttpResponse extends HttpResponse {
      * @throws IOException When an IO exception occurs.
      */
     private static HttpEntity parseEntity(ClientResponse response) throws IOException {
-        if (!response.hasEntity()) {
+        // Jersey reports an entity for 204 responses that are not closed by the server.
+        if (response.getStatus() == 204 || !response.hasEntity()) {
             return null;
         }
 
@@ -20,14 +20,15 @@ import com.budjb.httprequests.converter.EntityConverterManager;
 import com.budjb.httprequests.filter.HttpClientFilterProcessor;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.HttpUrlConnectorProvider;
 
 import javax.ws.rs.ProcessingException;
 import javax.ws.rs.client.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.ext.WriterInterceptor;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.GeneralSecurityException;
 import java.util.List;
@@ -59,18 +60,24 @@ public class JerseyHttpClient extends AbstractHttpClient {
         client = client.property(ClientProperties.FOLLOW_REDIRECTS, request.isFollowRedirects());
         client = client.property(ClientProperties.SUPPRESS_HTTP_COMPLIANCE_VALIDATION, true);
 
-        WebTarget target = client.target(request.getUri());
-        target = applyQueryParameters(target, request.getQueryParameters());
+        WebTarget target = client.target(UriEncoder.encode(request));
 
         Invocation.Builder builder = target.request();
 
         builder = applyHeaders(builder, request.getHeaders());
 
-        Entity<InputStream> entity = null;
+        Entity<StreamingOutput> entity = null;
         if (httpEntity != null) {
-            entity = Entity.entity(httpEntity.getInputStream(), MediaType.valueOf(
+            entity = Entity.entity((StreamingOutput) httpEntity::writeTo, MediaType.valueOf(
                 request.getHeaders().containsKey("Content-Type") ? request.getHeaders().getFlat("Content-Type") : httpEntity.getFullContentType()
             ));
+
+            // Entities with a known length that are not already held in memory are streamed with a
+            // fixed length, as long as no filter will change the number of bytes written.
+            long contentLength = httpEntity.getContentLength();
+            if (contentLength >= 0 && !httpEntity.isBuffered() && filterProcessor.isContentLengthPreserved() && !request.getHeaders().containsKey("Content-Length")) {
+                builder = builder.header("Content-Length", contentLength);
+            }
         }
 
         Response clientResponse;
@@ -107,6 +114,9 @@ public class JerseyHttpClient extends AbstractHttpClient {
 
         ClientConfig clientConfig = new ClientConfig();
 
+        // Fixed length streaming is only used when a Content-Length header is present on the request.
+        clientConfig.connectorProvider(new HttpUrlConnectorProvider().useFixedLengthStreaming());
+
         return builder.withConfig(clientConfig).build();
     }
 
@@ -123,30 +133,6 @@ public class JerseyHttpClient extends AbstractHttpClient {
         };
     }
 
-    /**
-     * Applies the request's query parameters to the web target.
-     *
-     * @param target          Web target.
-     * @param queryParameters Query parameters.
-     * @return The new web resource with query parameters applied.
-     */
-    private WebTarget applyQueryParameters(WebTarget target, MultiValuedMap queryParameters) {
-        for (String name : queryParameters.keySet()) {
-            List<String> values = queryParameters.get(name);
-
-            if (values.size() == 0) {
-                target = target.queryParam(name, "");
-            }
-            else {
-                for (String value : queryParameters.get(name)) {
-                    target = target.queryParam(name, value);
-                }
-            }
-        }
-
-        return target;
-    }
-
     /**
      * Applies the request's headers to the invocation builder.
      *
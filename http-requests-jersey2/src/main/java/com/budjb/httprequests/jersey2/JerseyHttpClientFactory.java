@@ -36,6 +36,6 @@ public class JerseyHttpClientFactory extends AbstractHttpClientFactory {
      */
     @Override
     public HttpClient createHttpClient() {
-        return new JerseyHttpClient(getConverterManager());
+        return configure(new JerseyHttpClient(getConverterManager()));
     }
 }
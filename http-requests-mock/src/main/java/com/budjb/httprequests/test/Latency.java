@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.test;
+
+import java.util.Random;
+
+/**
+ * A distribution of the time a {@link RequestMock} takes to respond.
+ * <p>
+ * Distributions that are given a seeded {@link Random} produce the same sequence of delays on every run.
+ */
+@FunctionalInterface
+public interface Latency {
+    /**
+     * Returns the delay of the next response.
+     *
+     * @return The delay of the next response, in milliseconds.
+     */
+    long nextDelay();
+
+    /**
+     * Creates a latency that always delays responses by the same amount of time.
+     *
+     * @param millis Delay of each response, in milliseconds.
+     * @return A fixed latency.
+     */
+    static Latency fixed(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("delay must not be negative");
+        }
+
+        return () -> millis;
+    }
+
+    /**
+     * Creates a latency that delays responses by an amount of time uniformly distributed between the given bounds.
+     *
+     * @param min Smallest delay, in milliseconds.
+     * @param max Largest delay, in milliseconds.
+     * @return A uniformly distributed latency.
+     */
+    static Latency uniform(long min, long max) {
+        return uniform(min, max, new Random());
+    }
+
+    /**
+     * Creates a latency that delays responses by an amount of time uniformly distributed between the given bounds.
+     *
+     * @param min    Smallest delay, in milliseconds.
+     * @param max    Largest delay, in milliseconds.
+     * @param random Source of random numbers.
+     * @return A uniformly distributed latency.
+     */
+    static Latency uniform(long min, long max, Random random) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("delays must satisfy 0 <= min <= max");
+        }
+
+        if (random == null) {
+            throw new IllegalArgumentException("random must not be null");
+        }
+
+        return () -> min + (long) (random.nextDouble() * (max - min + 1));
+    }
+
+    /**
+     * Creates a latency that delays responses by a log-normally distributed amount of time, which resembles
+     * the latency of real services with a long tail of slow responses.
+     *
+     * @param median Median delay, in milliseconds.
+     * @param sigma  Standard deviation of the natural logarithm of the delay.
+     * @return A log-normally distributed latency.
+     */
+    static Latency logNormal(long median, double sigma) {
+        return logNormal(median, sigma, new Random());
+    }
+
+    /**
+     * Creates a latency that delays responses by a log-normally distributed amount of time, which resembles
+     * the latency of real services with a long tail of slow responses.
+     *
+     * @param median Median delay, in milliseconds.
+     * @param sigma  Standard deviation of the natural logarithm of the delay.
+     * @param random Source of random numbers.
+     * @return A log-normally distributed latency.
+     */
+    static Latency logNormal(long median, double sigma, Random random) {
+        if (median < 0) {
+            throw new IllegalArgumentException("median must not be negative");
+        }
+
+        if (sigma < 0) {
+            throw new IllegalArgumentException("sigma must not be negative");
+        }
+
+        if (random == null) {
+            throw new IllegalArgumentException("random must not be null");
+        }
+
+        return () -> Math.round(median * Math.exp(sigma * random.nextGaussian()));
+    }
+}
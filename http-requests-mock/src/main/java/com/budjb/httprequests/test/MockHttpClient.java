@@ -54,8 +54,9 @@ public class MockHttpClient extends AbstractHttpClient {
             throw new UnmatchedRequestMockException(request, method);
         }
 
-        mock.incrementCalled();
+        RequestMock.Response response = mock.getResponse(mock.incrementCalled());
+        response.await(request.getReadTimeout());
 
-        return new MockHttpResponse(request, getConverterManager(), mock);
+        return new MockHttpResponse(request, getConverterManager(), mock, response);
     }
 }
@@ -18,18 +18,49 @@ package com.budjb.httprequests.test;
 import com.budjb.httprequests.*;
 import com.budjb.httprequests.converter.EntityConverterManager;
 
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * An {@link HttpClientFactory} implementation that creates Jersey 1.x HTTP clients.
+ * An {@link HttpClientFactory} implementation that creates HTTP clients that respond with registered mocks.
+ * <p>
+ * Mocks are indexed by their HTTP method and request URI, so that finding the mock that matches a request does
+ * not depend on the number of registered mocks. Mocks without a request URI, and subclasses of
+ * {@link RequestMock}, are checked one at a time. When several mocks match a request, the mock that was
+ * registered first is used. Mocks may be registered, removed and matched concurrently.
  */
 public class MockHttpClientFactory extends AbstractHttpClientFactory {
     /**
-     * List of mocked requests.
+     * List of mocked requests, in the order they were registered.
      */
-    private final List<RequestMock> mocks = new LinkedList<>();
+    private final List<RequestMock> mocks = new CopyOnWriteArrayList<>();
+
+    /**
+     * Mocks with a request URI, keyed by their HTTP method and URI and ordered by registration.
+     */
+    private final Map<String, NavigableMap<Long, RequestMock>> index = new HashMap<>();
+
+    /**
+     * Mocks that can not be indexed, ordered by registration.
+     */
+    private final NavigableMap<Long, RequestMock> unindexed = new TreeMap<>();
+
+    /**
+     * Index key each indexed mock is currently stored under.
+     */
+    private final Map<RequestMock, String> indexKeys = new IdentityHashMap<>();
+
+    /**
+     * Lock guarding the index.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Sequence number of the next registered mock.
+     */
+    private long sequence = 0;
 
     /**
      * Constructor that can optionally register the default set of entity converters.
@@ -47,16 +78,57 @@ public class MockHttpClientFactory extends AbstractHttpClientFactory {
      */
     @Override
     public HttpClient createHttpClient() {
-        return new MockHttpClient(this, getConverterManager());
+        return configure(new MockHttpClient(this, getConverterManager()));
     }
 
     /**
-     * Returns all mocks registered with the factory.
+     * Returns all mocks registered with the factory, in the order they were registered.
      *
-     * @return All mocks registered with the factory.
+     * @return An unmodifiable list of all mocks registered with the factory.
      */
     public List<RequestMock> getMocks() {
-        return mocks;
+        return Collections.unmodifiableList(mocks);
+    }
+
+    /**
+     * Removes the given mock from the factory.
+     *
+     * @param mock Mock to remove.
+     * @return Whether the mock was registered with the factory.
+     */
+    public boolean removeMock(RequestMock mock) {
+        lock.writeLock().lock();
+
+        try {
+            if (!mocks.remove(mock)) {
+                return false;
+            }
+
+            unstore(mock);
+            mock.unregister();
+            return true;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all mocks from the factory.
+     */
+    public void clearMocks() {
+        lock.writeLock().lock();
+
+        try {
+            mocks.forEach(RequestMock::unregister);
+            mocks.clear();
+            index.clear();
+            unindexed.clear();
+            indexKeys.clear();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -77,7 +149,21 @@ public class MockHttpClientFactory extends AbstractHttpClientFactory {
      * @return The matching mock, or null.
      */
     RequestMock findMatchingMock(HttpRequest request, HttpMethod method) {
-        return mocks.stream().filter(mock -> mock.matches(request, method)).findFirst().orElse(null);
+        lock.readLock().lock();
+
+        try {
+            RequestMock match = null;
+
+            if (request.getUri() != null) {
+                match = first(index.get(RequestMock.indexKey(method, request.getUri())), request, method, null);
+                match = first(index.get(RequestMock.indexKey(null, request.getUri())), request, method, match);
+            }
+
+            return first(unindexed, request, method, match);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -86,8 +172,114 @@ public class MockHttpClientFactory extends AbstractHttpClientFactory {
      * @return A new, empty mock.
      */
     public RequestMock createMock() {
-        RequestMock mock = new RequestMock(getConverterManager());
-        mocks.add(mock);
+        return addMock(new RequestMock(getConverterManager()));
+    }
+
+    /**
+     * Registers a mock that was created outside of the factory.
+     *
+     * @param mock Mock to register.
+     * @return The registered mock.
+     */
+    public RequestMock addMock(RequestMock mock) {
+        lock.writeLock().lock();
+
+        try {
+            mock.register(this, sequence++);
+            mocks.add(mock);
+            store(mock);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+
         return mock;
     }
+
+    /**
+     * Moves the given mock to the index entry matching its current HTTP method and request URI.
+     *
+     * @param mock Mock whose HTTP method or request URI has changed.
+     */
+    void reindex(RequestMock mock) {
+        lock.writeLock().lock();
+
+        try {
+            // A mock that was removed concurrently is not stored again.
+            if (unstore(mock)) {
+                store(mock);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the given mock from the index, or from the mocks that can not be indexed. Must be called while
+     * holding the write lock.
+     *
+     * @param mock Mock to remove.
+     * @return Whether the mock was stored.
+     */
+    private boolean unstore(RequestMock mock) {
+        String key = indexKeys.remove(mock);
+
+        if (key == null) {
+            return unindexed.remove(mock.getSequence(), mock);
+        }
+
+        NavigableMap<Long, RequestMock> entry = index.get(key);
+        entry.remove(mock.getSequence());
+
+        if (entry.isEmpty()) {
+            index.remove(key);
+        }
+
+        return true;
+    }
+
+    /**
+     * Stores the given mock in the index, or with the mocks that can not be indexed. Must be called while
+     * holding the write lock.
+     *
+     * @param mock Mock to store.
+     */
+    private void store(RequestMock mock) {
+        String key = mock.getClass() == RequestMock.class ? mock.getIndexKey() : null;
+
+        if (key == null) {
+            unindexed.put(mock.getSequence(), mock);
+        }
+        else {
+            index.computeIfAbsent(key, k -> new TreeMap<>()).put(mock.getSequence(), mock);
+            indexKeys.put(mock, key);
+        }
+    }
+
+    /**
+     * Returns the first of the given mocks that matches the request, unless a mock that was registered earlier
+     * has already been found.
+     *
+     * @param candidates Candidate mocks ordered by registration, or {@code null} if there are none.
+     * @param request    HTTP request to match.
+     * @param method     HTTP method to match.
+     * @param match      Matching mock found so far, or {@code null} if none has been found.
+     * @return The matching mock that was registered first, or {@code null} if none matches.
+     */
+    private static RequestMock first(NavigableMap<Long, RequestMock> candidates, HttpRequest request, HttpMethod method, RequestMock match) {
+        if (candidates == null) {
+            return match;
+        }
+
+        Map<Long, RequestMock> earlier = match == null ? candidates : candidates.headMap(match.getSequence(), false);
+
+        for (RequestMock mock : earlier.values()) {
+            if (mock.matches(request, method)) {
+                return mock;
+            }
+        }
+
+        return match;
+    }
 }
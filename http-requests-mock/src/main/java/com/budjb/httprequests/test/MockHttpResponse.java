@@ -22,6 +22,7 @@ import com.budjb.httprequests.MultiValuedMap;
 import com.budjb.httprequests.converter.EntityConverterManager;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,9 +51,10 @@ class MockHttpResponse extends HttpResponse {
      * @param request          Request properties used to make the request.
      * @param converterManager Converter manager.
      * @param mock             HTTP request mock.
+     * @param response         Response of the mock to return.
      */
-    MockHttpResponse(HttpRequest request, EntityConverterManager converterManager, RequestMock mock) throws IOException {
-        super(converterManager, request, mock.getResponseStatusCode(), new MultiValuedMap(mock.getResponseHeaders()), parseEntity(mock));
+    MockHttpResponse(HttpRequest request, EntityConverterManager converterManager, RequestMock mock, RequestMock.Response response) throws IOException {
+        super(converterManager, request, response.statusCode, new MultiValuedMap(response.headers), parseEntity(response, request.getReadTimeout()));
 
         this.mock = mock;
 
@@ -64,17 +66,28 @@ class MockHttpResponse extends HttpResponse {
     /**
      * Parses the entity from the response.
      *
-     * @param mock Mocked request.
+     * @param response    Response of the mock.
+     * @param readTimeout Read timeout of the request, in milliseconds.
      * @return The parsed HTTP entity, or {@code null} if none is available.
      * @throws IOException When an IO exception occurs.
      */
-    private static HttpEntity parseEntity(RequestMock mock) throws IOException {
-        if (mock.getResponseEntity() == null) {
+    private static HttpEntity parseEntity(RequestMock.Response response, int readTimeout) throws IOException {
+        return createEntity(response.openEntity(readTimeout), response.headers.getFlat("Content-Type"));
+    }
+
+    /**
+     * Creates an HTTP entity with the content type and character set given by a <code>Content-Type</code> header.
+     *
+     * @param entity      Input stream containing the entity, or {@code null}.
+     * @param contentType Value of the <code>Content-Type</code> header, or {@code null}.
+     * @return The HTTP entity, or {@code null} if there is none.
+     * @throws IOException When an IO exception occurs.
+     */
+    static HttpEntity createEntity(InputStream entity, String contentType) throws IOException {
+        if (entity == null) {
             return null;
         }
 
-        String contentType = mock.getResponseHeaders().getFlat("Content-Type");
-
         if (contentType != null) {
             Matcher contentMatcher = CONTENT_TYPE_PATTERN.matcher(contentType);
 
@@ -82,15 +95,15 @@ class MockHttpResponse extends HttpResponse {
                 Matcher charsetMatcher = CHARACTER_SET_PATTERN.matcher(contentType);
 
                 if (charsetMatcher.find()) {
-                    return new HttpEntity(mock.getResponseEntity(), contentMatcher.group(1), charsetMatcher.group(1));
+                    return new HttpEntity(entity, contentMatcher.group(1), charsetMatcher.group(1));
                 }
                 else {
-                    return new HttpEntity(mock.getResponseEntity(), contentMatcher.group(1));
+                    return new HttpEntity(entity, contentMatcher.group(1));
                 }
             }
         }
 
-        return new HttpEntity(mock.getResponseEntity());
+        return new HttpEntity(entity);
     }
 
     /**
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.test;
+
+import com.budjb.httprequests.*;
+import com.budjb.httprequests.converter.EntityConverterManager;
+import com.budjb.httprequests.filter.HttpClientFilterProcessor;
+import com.budjb.httprequests.filter.bundled.RecordedExchange;
+
+import java.io.IOException;
+
+/**
+ * An implementation of {@link HttpClient} that serves recorded responses from a {@link ReplayHttpClientFactory}.
+ */
+public class ReplayHttpClient extends AbstractHttpClient {
+    /**
+     * Replay HTTP client factory.
+     */
+    private final ReplayHttpClientFactory httpClientFactory;
+
+    /**
+     * Constructor.
+     *
+     * @param httpClientFactory Replay HTTP client factory.
+     * @param converterManager  Entity converter manager.
+     */
+    ReplayHttpClient(ReplayHttpClientFactory httpClientFactory, EntityConverterManager converterManager) {
+        super(converterManager);
+        this.httpClientFactory = httpClientFactory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected HttpResponse execute(HttpContext context, HttpEntity entity, HttpClientFilterProcessor filterProcessor) throws IOException {
+        HttpRequest request = context.getRequest();
+        HttpMethod method = context.getMethod();
+
+        RecordedExchange exchange = httpClientFactory.findExchange(request, method);
+
+        if (exchange == null) {
+            throw new UnmatchedRequestMockException(request, method);
+        }
+
+        return new ReplayHttpResponse(request, getConverterManager(), exchange);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.test;
+
+import com.budjb.httprequests.*;
+import com.budjb.httprequests.converter.EntityConverterManager;
+import com.budjb.httprequests.filter.bundled.RecordedExchange;
+import com.budjb.httprequests.filter.bundled.TrafficRecordingFilter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An HTTP client factory whose clients serve the responses of exchanges recorded by a
+ * {@link TrafficRecordingFilter}, without making any requests.
+ * <p>
+ * The recording file is memory-mapped, and only the positions of the recorded exchanges are indexed by their
+ * HTTP method and complete URI, so that large recordings can be served without reading them into memory. When
+ * a request has been recorded more than once, its recorded responses are served in the order they were recorded,
+ * starting over once all of them have been served. Requests that were not recorded fail with an
+ * {@link UnmatchedRequestMockException}.
+ */
+public class ReplayHttpClientFactory extends AbstractHttpClientFactory {
+    /**
+     * The memory-mapped recording file.
+     */
+    private final ByteBuffer recording;
+
+    /**
+     * Recorded exchanges, indexed by HTTP method and URI.
+     */
+    private final Map<String, Exchanges> index = new HashMap<>();
+
+    /**
+     * Number of recorded exchanges.
+     */
+    private int count;
+
+    /**
+     * Constructor.
+     *
+     * @param converterManager Entity converter manager.
+     * @param path             Recording file.
+     * @throws IOException When the file can not be read, or is not a recording file.
+     */
+    public ReplayHttpClientFactory(EntityConverterManager converterManager, Path path) throws IOException {
+        super(Objects.requireNonNull(converterManager, "EntityConverterManager must not be null"));
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("recording file " + path + " is larger than 2 GB");
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.limit() < 8 || buffer.getInt(0) != RecordedExchange.MAGIC || buffer.getInt(4) != RecordedExchange.VERSION) {
+                throw new IOException(path + " is not a recording file");
+            }
+
+            recording = buffer;
+        }
+
+        buildIndex();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HttpClient createHttpClient() {
+        return configure(new ReplayHttpClient(this, getConverterManager()));
+    }
+
+    /**
+     * Returns the number of recorded exchanges.
+     *
+     * @return The number of recorded exchanges.
+     */
+    public int getExchangeCount() {
+        return count;
+    }
+
+    /**
+     * Returns the next recorded exchange for the given request.
+     *
+     * @param request HTTP request properties.
+     * @param method  HTTP method of the request.
+     * @return The recorded exchange, or {@code null} if the request was not recorded.
+     */
+    RecordedExchange findExchange(HttpRequest request, HttpMethod method) {
+        Exchanges exchanges = index.get(indexKey(method, UriEncoder.encode(request)));
+
+        if (exchanges == null) {
+            return null;
+        }
+
+        int i = Math.floorMod(exchanges.next.getAndIncrement(), exchanges.size);
+        return RecordedExchange.decode(slice(exchanges.positions[i], exchanges.lengths[i]), true);
+    }
+
+    /**
+     * Indexes the positions of the exchanges in the recording. An exchange that was only partially written ends
+     * the recording.
+     */
+    private void buildIndex() {
+        int position = 8;
+
+        while (position + 4 <= recording.limit()) {
+            int length = recording.getInt(position);
+
+            if (length < 0 || length > recording.limit() - position - 4) {
+                break;
+            }
+
+            RecordedExchange exchange = RecordedExchange.decode(slice(position + 4, length), false);
+            index.computeIfAbsent(indexKey(exchange.getMethod(), exchange.getUri()), key -> new Exchanges()).add(position + 4, length);
+
+            position += 4 + length;
+            count++;
+        }
+    }
+
+    /**
+     * Returns a buffer containing a region of the recording.
+     *
+     * @param position Position of the region.
+     * @param length   Length of the region.
+     * @return A buffer containing the region.
+     */
+    private ByteBuffer slice(int position, int length) {
+        ByteBuffer buffer = recording.duplicate();
+        buffer.position(position).limit(position + length);
+        return buffer.slice();
+    }
+
+    /**
+     * Returns the key of the index for the given HTTP method and URI.
+     *
+     * @param method HTTP method.
+     * @param uri    Complete URI, including the query string.
+     * @return The key of the index.
+     */
+    private static String indexKey(HttpMethod method, String uri) {
+        return method.name() + ' ' + uri;
+    }
+
+    /**
+     * Positions of the recorded exchanges of a single request.
+     */
+    private static class Exchanges {
+        /**
+         * Number of the next exchange to serve.
+         */
+        final AtomicInteger next = new AtomicInteger();
+
+        /**
+         * Positions of the exchanges in the recording.
+         */
+        int[] positions = new int[1];
+
+        /**
+         * Lengths of the exchanges.
+         */
+        int[] lengths = new int[1];
+
+        /**
+         * Number of exchanges.
+         */
+        int size;
+
+        /**
+         * Adds an exchange.
+         *
+         * @param position Position of the exchange in the recording.
+         * @param length   Length of the exchange.
+         */
+        void add(int position, int length) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+
+            positions[size] = position;
+            lengths[size] = length;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.test;
+
+import com.budjb.httprequests.HttpEntity;
+import com.budjb.httprequests.HttpRequest;
+import com.budjb.httprequests.HttpResponse;
+import com.budjb.httprequests.converter.EntityConverterManager;
+import com.budjb.httprequests.filter.bundled.RecordedExchange;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * An {@link HttpResponse} implementation that wraps a {@link RecordedExchange}.
+ */
+class ReplayHttpResponse extends HttpResponse {
+    /**
+     * The recorded exchange.
+     */
+    private final RecordedExchange exchange;
+
+    /**
+     * Constructor.
+     *
+     * @param request          Request properties used to make the request.
+     * @param converterManager Converter manager.
+     * @param exchange         Recorded exchange.
+     */
+    ReplayHttpResponse(HttpRequest request, EntityConverterManager converterManager, RecordedExchange exchange) throws IOException {
+        super(converterManager, request, exchange.getStatus(), exchange.getResponseHeaders(), parseEntity(exchange));
+
+        this.exchange = exchange;
+
+        if (!hasEntity()) {
+            close();
+        }
+    }
+
+    /**
+     * Creates the entity of the recorded response.
+     *
+     * @param exchange Recorded exchange.
+     * @return The HTTP entity, or {@code null} if the response had no entity.
+     * @throws IOException When an IO exception occurs.
+     */
+    private static HttpEntity parseEntity(RecordedExchange exchange) throws IOException {
+        byte[] entity = exchange.getResponseEntity();
+
+        if (entity == null || entity.length == 0) {
+            return null;
+        }
+
+        return MockHttpResponse.createEntity(new ByteArrayInputStream(entity), exchange.getResponseHeaders().getFlat("Content-Type"));
+    }
+
+    /**
+     * Returns the recorded exchange.
+     *
+     * @return The recorded exchange.
+     */
+    public RecordedExchange getExchange() {
+        return exchange;
+    }
+}
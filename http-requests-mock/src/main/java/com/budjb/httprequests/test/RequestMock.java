@@ -16,27 +16,39 @@
 
 package com.budjb.httprequests.test;
 
+import com.budjb.httprequests.HttpEntity;
 import com.budjb.httprequests.HttpMethod;
 import com.budjb.httprequests.HttpRequest;
 import com.budjb.httprequests.MultiValuedMap;
+import com.budjb.httprequests.StreamUtils;
+import com.budjb.httprequests.UriEncoder;
 import com.budjb.httprequests.converter.EntityConverterManager;
 import com.budjb.httprequests.exception.UnsupportedConversionException;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * Represents a mocked HTTP request and an associated HTTP response.
  */
 public class RequestMock {
     /**
-     * Response headers.
+     * Sequence of responses returned by the mock. The last response is repeated once the sequence is exhausted.
      */
-    private final MultiValuedMap responseHeaders = new MultiValuedMap();
+    private final List<Response> responses = new CopyOnWriteArrayList<>(Collections.singletonList(new Response()));
 
     /**
      * Entity converter manager.
@@ -64,19 +76,24 @@ public class RequestMock {
     private HttpMethod requestMethod;
 
     /**
-     * Response status code.
+     * Additional condition a request must meet to match, or {@code null} if there is none.
      */
-    private int responseStatusCode = 200;
+    private Predicate<HttpRequest> requestMatcher;
 
     /**
-     * Response entity.
+     * Number of times this mock has been called.
      */
-    private InputStream responseEntity;
+    private final AtomicInteger called = new AtomicInteger();
 
     /**
-     * Whether this mock has been called.
+     * Factory the mock is registered with, or {@code null} if it is not registered.
      */
-    private int called = 0;
+    private volatile MockHttpClientFactory factory;
+
+    /**
+     * Order in which the mock was registered with its factory.
+     */
+    private long sequence;
 
     /**
      * Base constructor.
@@ -116,7 +133,7 @@ public class RequestMock {
      * @return The response status code.
      */
     public int getResponseStatusCode() {
-        return responseStatusCode;
+        return current().statusCode;
     }
 
     /**
@@ -125,26 +142,53 @@ public class RequestMock {
      * @param responseStatusCode The response status code.
      */
     public RequestMock setResponseStatusCode(int responseStatusCode) {
-        this.responseStatusCode = responseStatusCode;
+        current().statusCode = responseStatusCode;
         return this;
     }
 
     /**
-     * Returns the response entity.
+     * Returns a new input stream containing the response entity.
      *
-     * @return The response entity.
+     * @return A new input stream containing the response entity, or {@code null} if there is none.
      */
     public InputStream getResponseEntity() {
-        return responseEntity;
+        return current().openEntity();
     }
 
     /**
-     * Sets the the response entity.
+     * Sets the the response entity. The input stream is read immediately, so that the entity can be
+     * returned each time the mock is matched.
      *
      * @param responseEntity The response entity.
+     * @throws UncheckedIOException When the input stream can not be read.
      */
     public RequestMock setResponseEntity(InputStream responseEntity) {
-        this.responseEntity = responseEntity;
+        if (responseEntity == null) {
+            current().entity = null;
+            return this;
+        }
+
+        try (InputStream inputStream = responseEntity) {
+            return setResponseEntity(StreamUtils.readBytes(inputStream));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sets the response entity. The array is copied, so later changes to it do not affect the mock.
+     *
+     * @param responseEntity The response entity.
+     */
+    public RequestMock setResponseEntity(byte[] responseEntity) {
+        if (responseEntity == null) {
+            current().entity = null;
+            return this;
+        }
+
+        byte[] bytes = responseEntity.clone();
+        current().entity = () -> new ByteArrayInputStream(bytes);
         return this;
     }
 
@@ -153,9 +197,100 @@ public class RequestMock {
      *
      * @param responseEntity The response entity.
      * @throws UnsupportedConversionException When no converter is available to convert the body.
+     * @throws UncheckedIOException           When the converted entity can not be read.
      */
     public RequestMock setResponseEntity(Object responseEntity) throws UnsupportedConversionException {
-        this.responseEntity = entityConverterManager.write(responseEntity).getInputStream();
+        HttpEntity entity = entityConverterManager.write(responseEntity);
+
+        if (entity == null) {
+            current().entity = null;
+            return this;
+        }
+
+        try (HttpEntity converted = entity) {
+            return setResponseEntity(StreamUtils.readBytes(converted.getInputStream()));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sets a supplier that creates a new input stream containing the response entity each time the
+     * mock is matched. This allows large or generated entities to be streamed without holding them in memory.
+     *
+     * @param responseEntitySupplier Supplier of the response entity.
+     * @return The instance of this class the method was called with.
+     */
+    public RequestMock setResponseEntitySupplier(Supplier<InputStream> responseEntitySupplier) {
+        current().entity = responseEntitySupplier;
+        return this;
+    }
+
+    /**
+     * Sets the distribution of the time the mock takes to respond. When the delay of a response reaches the read
+     * timeout of the request, the request fails with a {@link SocketTimeoutException} once the read timeout has
+     * elapsed.
+     *
+     * @param responseLatency Distribution of the delay of the response, or {@code null} to respond immediately.
+     * @return The instance of this class the method was called with.
+     */
+    public RequestMock setResponseLatency(Latency responseLatency) {
+        current().latency = responseLatency;
+        return this;
+    }
+
+    /**
+     * Sets a fixed delay before the mock responds.
+     *
+     * @param millis Delay of the response, in milliseconds.
+     * @return The instance of this class the method was called with.
+     */
+    public RequestMock setResponseDelay(long millis) {
+        return setResponseLatency(Latency.fixed(millis));
+    }
+
+    /**
+     * Sets an exception that the request fails with instead of returning a response, such as a
+     * {@link java.net.ConnectException} or a {@link java.net.SocketException} for a reset connection. The
+     * exception is thrown after the latency of the response has elapsed.
+     *
+     * @param responseException Exception to throw, or {@code null} to return the response.
+     * @return The instance of this class the method was called with.
+     */
+    public RequestMock setResponseException(IOException responseException) {
+        current().exception = responseException;
+        return this;
+    }
+
+    /**
+     * Sets the maximum rate the response entity is delivered at. Reads of the entity fail with a
+     * {@link SocketTimeoutException} when the next byte can not be delivered within the read timeout of the request.
+     *
+     * @param bytesPerSecond Maximum number of bytes delivered per second, or {@code 0} for no limit.
+     * @return The instance of this class the method was called with.
+     */
+    public RequestMock setResponseRate(long bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("rate must not be negative");
+        }
+
+        current().bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * Adds another response to the sequence of responses returned by the mock, and makes it the response that
+     * the response methods of the mock configure.
+     * <p>
+     * Each time the mock is matched, the next response in the sequence is returned. Once the sequence is
+     * exhausted, the last response is returned for every further match. The new response starts with status
+     * 200, no headers and no entity.
+     *
+     * @return The instance of this class the method was called with.
+     */
+    public RequestMock thenRespond() {
+        responses.add(new Response());
         return this;
     }
 
@@ -175,6 +310,7 @@ public class RequestMock {
      */
     public RequestMock setRequestMethod(HttpMethod requestMethod) {
         this.requestMethod = requestMethod;
+        reindex();
         return this;
     }
 
@@ -198,6 +334,7 @@ public class RequestMock {
      */
     public RequestMock setRequestUri(String requestUri) throws URISyntaxException {
         parseUri(requestUri);
+        reindex();
         return this;
     }
 
@@ -211,6 +348,31 @@ public class RequestMock {
      */
     public RequestMock setRequestUri(URI uri) {
         parseUri(uri);
+        reindex();
+        return this;
+    }
+
+    /**
+     * Returns the additional condition a request must meet to match.
+     *
+     * @return The additional condition a request must meet to match, or {@code null} if there is none.
+     */
+    public Predicate<HttpRequest> getRequestMatcher() {
+        return requestMatcher;
+    }
+
+    /**
+     * Sets an additional condition a request must meet to match the mock.
+     * <p>
+     * Mocks without a request URI only match requests through their matcher, which may select requests to any URI.
+     * Such mocks are checked one at a time, so mocks with a request URI should be preferred when many mocks are
+     * registered.
+     *
+     * @param requestMatcher Additional condition a request must meet to match the mock.
+     * @return The instance of this class the method was called with.
+     */
+    public RequestMock setRequestMatcher(Predicate<HttpRequest> requestMatcher) {
+        this.requestMatcher = requestMatcher;
         return this;
     }
 
@@ -396,7 +558,7 @@ public class RequestMock {
      * @return The response headers.
      */
     public MultiValuedMap getResponseHeaders() {
-        return responseHeaders;
+        return current().headers;
     }
 
     /**
@@ -406,7 +568,7 @@ public class RequestMock {
      * @return The instance of this class the method was called with.
      */
     public RequestMock setResponseHeaders(MultiValuedMap responseHeaders) {
-        this.responseHeaders.set(responseHeaders);
+        current().headers.set(responseHeaders);
         return this;
     }
 
@@ -418,7 +580,7 @@ public class RequestMock {
      * @return The instance of this class the method was called with.
      */
     public RequestMock addResponseHeader(String name, String value) {
-        responseHeaders.add(name, value);
+        current().headers.add(name, value);
         return this;
     }
 
@@ -430,7 +592,7 @@ public class RequestMock {
      * @return The instance of this class the method was called with.
      */
     public RequestMock addResponseHeader(String name, List<String> values) {
-        responseHeaders.add(name, values);
+        current().headers.add(name, values);
         return this;
     }
 
@@ -442,7 +604,7 @@ public class RequestMock {
      * @return The instance of this class the method was called with.
      */
     public RequestMock addResponseHeaders(MultiValuedMap headers) {
-        this.responseHeaders.add(headers);
+        current().headers.add(headers);
         return this;
     }
 
@@ -454,7 +616,7 @@ public class RequestMock {
      * @return The instance of this class the method was called with.
      */
     public RequestMock setResponseHeader(String name, String value) {
-        responseHeaders.set(name, value);
+        current().headers.set(name, value);
         return this;
     }
 
@@ -466,15 +628,36 @@ public class RequestMock {
      * @return The instance of this class the method was called with.
      */
     public RequestMock setResponseHeader(String name, List<String> values) {
-        responseHeaders.set(name, values);
+        current().headers.set(name, values);
         return this;
     }
 
     /**
      * Increments the call counter.
+     *
+     * @return The number of times the mock was called before this call.
+     */
+    int incrementCalled() {
+        return called.getAndIncrement();
+    }
+
+    /**
+     * Returns the response for the given call of the mock.
+     *
+     * @param call Number of times the mock was called before the call.
+     * @return The response in the sequence for the call, or the last response if the sequence is exhausted.
      */
-    void incrementCalled() {
-        called++;
+    Response getResponse(int call) {
+        return responses.get(Math.min(call, responses.size() - 1));
+    }
+
+    /**
+     * Returns the response that is currently being configured.
+     *
+     * @return The last response in the sequence.
+     */
+    private Response current() {
+        return responses.get(responses.size() - 1);
     }
 
     /**
@@ -483,7 +666,7 @@ public class RequestMock {
      * @return Whether the mock was called.
      */
     public boolean called() {
-        return called > 0;
+        return called.get() > 0;
     }
 
     /**
@@ -492,7 +675,7 @@ public class RequestMock {
      * @return The number of times this mock was called.
      */
     public int getCalledCount() {
-        return called;
+        return called.get();
     }
 
     /**
@@ -510,34 +693,77 @@ public class RequestMock {
      * @param uri URI object to parse.
      */
     private void parseUri(URI uri) {
-        String scheme = uri.getScheme();
-        String host = uri.getHost();
-        int port = uri.getPort();
-        String path = uri.getRawPath();
-        String query = uri.getQuery();
+        this.requestUri = UriEncoder.appendBaseUri(new StringBuilder(), uri).toString();
 
-        StringBuilder builder = new StringBuilder(scheme).append("://").append(host);
+        String query = uri.getRawQuery();
 
-        if (port != -1 && !(scheme.equalsIgnoreCase("https") && port == 443) && !(scheme.equalsIgnoreCase("http") && port == 80)) {
-            builder.append(':').append(port);
+        if (query != null && query.length() > 0) {
+            addRequestQueryParameters(UriEncoder.decodeQuery(query));
         }
+    }
 
-        builder.append(path);
+    /**
+     * Returns the key the mock is indexed with by its factory, which is built from the HTTP method and the
+     * normalized URI of the request.
+     *
+     * @return The index key of the mock, or {@code null} if the mock has no request URI.
+     */
+    String getIndexKey() {
+        if (requestUri == null) {
+            return null;
+        }
+        return indexKey(requestMethod, requestUri);
+    }
 
-        this.requestUri = builder.toString();
+    /**
+     * Builds an index key from an HTTP method and a URI. URIs are matched without regard to case.
+     *
+     * @param method HTTP method, or {@code null} to match any method.
+     * @param uri    URI of the request, without its query string.
+     * @return The index key.
+     */
+    static String indexKey(HttpMethod method, String uri) {
+        return (method != null ? method.name() : "*") + ' ' + uri.toLowerCase(Locale.ROOT);
+    }
 
-        if (query != null && query.length() > 0) {
-            Arrays.stream(query.split("&")).forEach(it -> {
-                List<String> parts = Arrays.stream(it.split("=")).collect(Collectors.toList());
-
-                if (parts.size() == 1) {
-                    addRequestQueryParameter(parts.get(0), "");
-                }
-                else {
-                    String name = parts.remove(0);
-                    addRequestQueryParameter(name, String.join("=", parts));
-                }
-            });
+    /**
+     * Registers the mock with the given factory.
+     *
+     * @param factory  Factory the mock is registered with.
+     * @param sequence Order in which the mock was registered.
+     */
+    void register(MockHttpClientFactory factory, long sequence) {
+        if (this.factory != null) {
+            throw new IllegalStateException("the mock is already registered with a mock HTTP client factory");
+        }
+        this.sequence = sequence;
+        this.factory = factory;
+    }
+
+    /**
+     * Unregisters the mock from the factory it was registered with, so that it may be registered again.
+     */
+    void unregister() {
+        this.factory = null;
+    }
+
+    /**
+     * Returns the order in which the mock was registered with its factory.
+     *
+     * @return The order in which the mock was registered.
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Updates the index of the factory the mock is registered with after the URI or HTTP method has changed.
+     */
+    private void reindex() {
+        MockHttpClientFactory factory = this.factory;
+
+        if (factory != null) {
+            factory.reindex(this);
         }
     }
 
@@ -559,14 +785,20 @@ public class RequestMock {
      * A match will occur with the URI's match and any of the set request properties
      * of the mock match. This means that properties were not set on the request
      * (such as headers or an HTTP method, for example), they will not be used to
-     * determine a match.
+     * determine a match. A mock without a request URI matches any URI if it has a request
+     * matcher, and nothing otherwise.
      *
      * @param request Request to match.
      * @param method  HTTP method to match.
      * @return Whether the mock matches.
      */
     public boolean matches(HttpRequest request, HttpMethod method) {
-        if (!requestUri.equalsIgnoreCase(request.getUri())) {
+        if (requestUri == null) {
+            if (requestMatcher == null) {
+                return false;
+            }
+        }
+        else if (!requestUri.equalsIgnoreCase(request.getUri())) {
             return false;
         }
 
@@ -582,6 +814,97 @@ public class RequestMock {
             return false;
         }
 
+        if (requestMatcher != null && !requestMatcher.test(request)) {
+            return false;
+        }
+
         return true;
     }
+
+    /**
+     * A single response in the sequence of responses of a mock.
+     */
+    static class Response {
+        /**
+         * Response headers.
+         */
+        final MultiValuedMap headers = new MultiValuedMap();
+
+        /**
+         * Response status code.
+         */
+        volatile int statusCode = 200;
+
+        /**
+         * Supplier of the response entity, or {@code null} if there is none.
+         */
+        volatile Supplier<InputStream> entity;
+
+        /**
+         * Distribution of the delay of the response, or {@code null} if it is returned immediately.
+         */
+        volatile Latency latency;
+
+        /**
+         * Exception the request fails with, or {@code null} if the response is returned.
+         */
+        volatile IOException exception;
+
+        /**
+         * Maximum number of bytes of the entity delivered per second, or {@code 0} for no limit.
+         */
+        volatile long bytesPerSecond;
+
+        /**
+         * Waits for the latency of the response, and throws the exception of the response if it has one.
+         *
+         * @param readTimeout Read timeout of the request, in milliseconds. 0 means infinity.
+         * @throws SocketTimeoutException When the delay reaches the read timeout.
+         * @throws IOException            When the response is configured with an exception.
+         */
+        void await(int readTimeout) throws IOException {
+            Latency latency = this.latency;
+            long delay = latency != null ? latency.nextDelay() : 0;
+
+            if (readTimeout > 0 && delay >= readTimeout) {
+                ThrottledInputStream.pause(TimeUnit.MILLISECONDS.toNanos(readTimeout));
+                throw new SocketTimeoutException("Read timed out");
+            }
+
+            ThrottledInputStream.pause(TimeUnit.MILLISECONDS.toNanos(delay));
+
+            IOException exception = this.exception;
+
+            if (exception != null) {
+                throw exception;
+            }
+        }
+
+        /**
+         * Returns a new input stream containing the response entity, delivered at the rate of the response.
+         *
+         * @param readTimeout Read timeout of the request, in milliseconds. 0 means infinity.
+         * @return A new input stream containing the response entity, or {@code null} if there is none.
+         */
+        InputStream openEntity(int readTimeout) {
+            InputStream inputStream = openEntity();
+            long bytesPerSecond = this.bytesPerSecond;
+
+            if (inputStream == null || bytesPerSecond == 0) {
+                return inputStream;
+            }
+
+            return new ThrottledInputStream(inputStream, bytesPerSecond, readTimeout);
+        }
+
+        /**
+         * Returns a new input stream containing the response entity.
+         *
+         * @return A new input stream containing the response entity, or {@code null} if there is none.
+         */
+        InputStream openEntity() {
+            Supplier<InputStream> entity = this.entity;
+            return entity != null ? entity.get() : null;
+        }
+    }
 }
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.test;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An input stream that delivers the response entity of a mock no faster than a given rate.
+ * <p>
+ * Like a socket, a read fails with a {@link SocketTimeoutException} once it has waited for the read timeout
+ * of the request without receiving any data.
+ */
+class ThrottledInputStream extends FilterInputStream {
+    /**
+     * Maximum number of bytes delivered per second.
+     */
+    private final long bytesPerSecond;
+
+    /**
+     * Read timeout of the request, in milliseconds. 0 means infinity.
+     */
+    private final int readTimeout;
+
+    /**
+     * Time of the first read, in nanoseconds, or {@code -1} if nothing has been read.
+     */
+    private long start = -1;
+
+    /**
+     * Number of bytes delivered so far.
+     */
+    private long delivered;
+
+    /**
+     * Constructor.
+     *
+     * @param inputStream    Input stream containing the entity.
+     * @param bytesPerSecond Maximum number of bytes delivered per second.
+     * @param readTimeout    Read timeout of the request, in milliseconds.
+     */
+    ThrottledInputStream(InputStream inputStream, long bytesPerSecond, int readTimeout) {
+        super(inputStream);
+        this.bytesPerSecond = bytesPerSecond;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read() throws IOException {
+        byte[] buffer = new byte[1];
+        return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xff;
+    }
+
+    /**
+     * Reads up to the number of bytes that may be delivered in about 50 milliseconds, after waiting until the
+     * rate allows them to be delivered.
+     *
+     * @param b   Buffer to read into.
+     * @param off Offset in the buffer.
+     * @param len Maximum number of bytes to read.
+     * @return The number of bytes read, or {@code -1} at the end of the stream.
+     * @throws IOException When an IO exception occurs or the read timed out.
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (start == -1) {
+            start = System.nanoTime();
+        }
+
+        int chunk = (int) Math.min(len, Math.max(1, bytesPerSecond / 20));
+        long wait = waitFor(chunk);
+
+        if (readTimeout > 0 && wait > TimeUnit.MILLISECONDS.toNanos(readTimeout)) {
+            chunk = 1;
+            wait = waitFor(chunk);
+
+            if (wait > TimeUnit.MILLISECONDS.toNanos(readTimeout)) {
+                pause(TimeUnit.MILLISECONDS.toNanos(readTimeout));
+                throw new SocketTimeoutException("Read timed out");
+            }
+        }
+
+        pause(wait);
+
+        int read = in.read(b, off, chunk);
+
+        if (read > 0) {
+            delivered += read;
+        }
+
+        return read;
+    }
+
+    /**
+     * Skips bytes by reading them, so that skipped bytes are subject to the rate as well.
+     *
+     * @param n Number of bytes to skip.
+     * @return The number of bytes skipped.
+     * @throws IOException When an IO exception occurs or the read timed out.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+
+            if (read == -1) {
+                break;
+            }
+
+            skipped += read;
+        }
+
+        return skipped;
+    }
+
+    /**
+     * Returns {@code false}, since delivered bytes can not be delivered again.
+     *
+     * @return {@code false}
+     */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Returns how long to wait before the given number of additional bytes may be delivered.
+     *
+     * @param bytes Number of additional bytes.
+     * @return The time to wait, in nanoseconds.
+     */
+    private long waitFor(int bytes) {
+        long due = start + (long) ((delivered + bytes) * 1e9 / bytesPerSecond);
+        return Math.max(0, due - System.nanoTime());
+    }
+
+    /**
+     * Sleeps for the given amount of time.
+     *
+     * @param nanos Time to sleep, in nanoseconds.
+     * @throws InterruptedIOException When the thread is interrupted while sleeping.
+     */
+    static void pause(long nanos) throws InterruptedIOException {
+        if (nanos <= 0) {
+            return;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while delaying a mocked response");
+        }
+    }
+}
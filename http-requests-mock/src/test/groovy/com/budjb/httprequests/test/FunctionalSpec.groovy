@@ -23,6 +23,12 @@ import com.budjb.httprequests.groovy.JsonEntityReader
 import com.budjb.httprequests.groovy.JsonEntityWriter
 import spock.lang.Specification
 
+import java.net.ConnectException
+import java.net.SocketTimeoutException
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
 class FunctionalSpec extends Specification {
     MockHttpClientFactory httpClientFactory
     EntityConverterManager entityConverterManager
@@ -134,4 +140,165 @@ class FunctionalSpec extends Specification {
         notThrown UnmatchedRequestMockException
         mock.called()
     }
+
+    def 'A mock returns its response entity each time it is matched'() {
+        setup:
+        httpClientFactory
+            .createMock()
+            .setRequestUri('http://localhost/foo/bar')
+            .setResponseEntity(new ByteArrayInputStream('hello'.bytes))
+
+        when:
+        def first = httpClientFactory.createHttpClient().get('http://localhost/foo/bar').entity.inputStream.text
+        def second = httpClientFactory.createHttpClient().get('http://localhost/foo/bar').entity.inputStream.text
+
+        then:
+        first == 'hello'
+        second == 'hello'
+    }
+
+    def 'A response entity supplier is invoked each time the mock is matched'() {
+        setup:
+        int invocations = 0
+        httpClientFactory
+            .createMock()
+            .setRequestUri('http://localhost/foo/bar')
+            .setResponseEntitySupplier({ new ByteArrayInputStream("call ${++invocations}".bytes) })
+
+        when:
+        def first = httpClientFactory.createHttpClient().get('http://localhost/foo/bar').entity.inputStream.text
+        def second = httpClientFactory.createHttpClient().get('http://localhost/foo/bar').entity.inputStream.text
+
+        then:
+        first == 'call 1'
+        second == 'call 2'
+        invocations == 2
+    }
+
+    def 'A mock returns its sequence of responses and then repeats the last response'() {
+        setup:
+        httpClientFactory
+            .createMock()
+            .setRequestUri('http://localhost/foo/bar')
+            .setResponseStatusCode(503)
+            .setResponseHeader('Retry-After', '1')
+            .thenRespond()
+            .setResponseEntity('done'.bytes)
+
+        when:
+        def responses = (1..3).collect { httpClientFactory.createHttpClient().get('http://localhost/foo/bar') }
+
+        then:
+        responses*.status == [503, 200, 200]
+        responses[0].getHeader('Retry-After') == '1'
+        !responses[0].hasEntity()
+        responses[1].getHeader('Retry-After') == null
+        responses[1].entity.inputStream.text == 'done'
+        responses[2].entity.inputStream.text == 'done'
+    }
+
+    def 'Concurrent requests are counted and each receives a distinct response of the sequence'() {
+        setup:
+        RequestMock mock = httpClientFactory.createMock().setRequestUri('http://localhost/foo/bar')
+        (1..<200).each { mock.setResponseEntity(it.toString().bytes).thenRespond() }
+        mock.setResponseEntity('200'.bytes)
+
+        def executor = Executors.newFixedThreadPool(8)
+
+        when:
+        def futures = (1..200).collect {
+            executor.submit({ httpClientFactory.createHttpClient().get('http://localhost/foo/bar').entity.inputStream.text } as Callable<String>)
+        }
+        def entities = futures*.get(10, TimeUnit.SECONDS)
+
+        then:
+        mock.getCalledCount() == 200
+        entities.collect { it as int }.sort() == (1..200).toList()
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def 'A mock responds after its latency has elapsed'() {
+        setup:
+        httpClientFactory.createMock().setRequestUri('http://localhost/foo/bar').setResponseDelay(100)
+
+        when:
+        long start = System.nanoTime()
+        def response = httpClientFactory.createHttpClient().get('http://localhost/foo/bar')
+
+        then:
+        response.status == 200
+        System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100)
+    }
+
+    def 'A request fails with a SocketTimeoutException after the read timeout when the mock is slower'() {
+        setup:
+        RequestMock mock = httpClientFactory.createMock().setRequestUri('http://localhost/foo/bar').setResponseDelay(60000)
+
+        when:
+        long start = System.nanoTime()
+        httpClientFactory.createHttpClient().get(new HttpRequest('http://localhost/foo/bar').setReadTimeout(100))
+
+        then:
+        thrown SocketTimeoutException
+        System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100)
+        System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10)
+        mock.called()
+    }
+
+    def 'A mock may fail a request with an exception before returning a response'() {
+        setup:
+        ConnectException exception = new ConnectException('Connection refused')
+        httpClientFactory
+            .createMock()
+            .setRequestUri('http://localhost/foo/bar')
+            .setResponseException(exception)
+            .thenRespond()
+            .setResponseEntity('ok'.bytes)
+
+        when:
+        httpClientFactory.createHttpClient().get('http://localhost/foo/bar')
+
+        then:
+        ConnectException e = thrown()
+        e.is(exception)
+
+        expect:
+        httpClientFactory.createHttpClient().get('http://localhost/foo/bar').entity.inputStream.text == 'ok'
+    }
+
+    def 'A throttled response entity is delivered no faster than its rate'() {
+        setup:
+        httpClientFactory
+            .createMock()
+            .setRequestUri('http://localhost/foo/bar')
+            .setResponseEntity(new byte[2000])
+            .setResponseRate(10000)
+
+        when:
+        long start = System.nanoTime()
+        def response = httpClientFactory.createHttpClient().get('http://localhost/foo/bar')
+
+        then:
+        response.entity.inputStream.bytes.length == 2000
+        System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190)
+    }
+
+    def 'Reading a throttled response entity fails when the next byte is not delivered within the read timeout'() {
+        setup:
+        httpClientFactory
+            .createMock()
+            .setRequestUri('http://localhost/foo/bar')
+            .setResponseEntity(new byte[10])
+            .setResponseRate(5)
+
+        when:
+        HttpRequest request = new HttpRequest('http://localhost/foo/bar').setReadTimeout(50).setBufferResponseEntity(false)
+        def response = httpClientFactory.createHttpClient().get(request)
+        response.entity.inputStream.bytes
+
+        then:
+        thrown SocketTimeoutException
+    }
 }
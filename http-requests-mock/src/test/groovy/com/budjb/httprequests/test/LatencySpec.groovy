@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.test
+
+import spock.lang.Specification
+
+class LatencySpec extends Specification {
+    def 'A fixed latency always returns the same delay'() {
+        expect:
+        (1..10).collect { Latency.fixed(25).nextDelay() }.every { it == 25 }
+    }
+
+    def 'A uniform latency returns delays within its bounds'() {
+        setup:
+        Latency latency = Latency.uniform(10, 20, new Random(42))
+
+        when:
+        List<Long> delays = (1..1000).collect { latency.nextDelay() }
+
+        then:
+        delays.every { it >= 10 && it <= 20 }
+        delays.toSet() == (10L..20L).toSet()
+    }
+
+    def 'A log-normal latency has the given median'() {
+        setup:
+        Latency latency = Latency.logNormal(100, 0.5, new Random(42))
+
+        when:
+        List<Long> delays = (1..10001).collect { latency.nextDelay() }.sort()
+
+        then:
+        delays[5000] >= 95 && delays[5000] <= 105
+        delays.last() > 200
+    }
+
+    def 'Latencies with the same seed return the same delays'() {
+        setup:
+        Latency first = Latency.logNormal(100, 1, new Random(7))
+        Latency second = Latency.logNormal(100, 1, new Random(7))
+
+        expect:
+        (1..100).collect { first.nextDelay() } == (1..100).collect { second.nextDelay() }
+    }
+
+    def 'Invalid latency parameters are rejected'() {
+        when:
+        Latency.uniform(20, 10)
+
+        then:
+        thrown IllegalArgumentException
+    }
+}
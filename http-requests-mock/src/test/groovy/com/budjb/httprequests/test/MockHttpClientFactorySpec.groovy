@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.test
+
+import com.budjb.httprequests.HttpMethod
+import com.budjb.httprequests.HttpRequest
+import com.budjb.httprequests.converter.EntityConverterManager
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class MockHttpClientFactorySpec extends Specification {
+    MockHttpClientFactory httpClientFactory = new MockHttpClientFactory(new EntityConverterManager([]))
+
+    def 'When several mocks match a request, the mock that was registered first is used'() {
+        setup:
+        RequestMock anyMethod = httpClientFactory.createMock().setRequestUri('http://localhost/foo')
+        RequestMock get = httpClientFactory.createMock().setRequestUri('http://localhost/foo').setRequestMethod(HttpMethod.GET)
+        RequestMock post = httpClientFactory.createMock().setRequestUri('http://localhost/foo').setRequestMethod(HttpMethod.POST)
+
+        expect:
+        httpClientFactory.findMatchingMock(new HttpRequest('http://localhost/foo'), HttpMethod.GET).is(anyMethod)
+
+        when:
+        anyMethod.setRequestUri('http://localhost/bar')
+
+        then:
+        httpClientFactory.findMatchingMock(new HttpRequest('http://localhost/foo'), HttpMethod.GET).is(get)
+        httpClientFactory.findMatchingMock(new HttpRequest('http://localhost/foo'), HttpMethod.POST).is(post)
+        httpClientFactory.findMatchingMock(new HttpRequest('http://localhost/foo'), HttpMethod.PUT) == null
+        httpClientFactory.findMatchingMock(new HttpRequest('http://localhost/bar'), HttpMethod.PUT).is(anyMethod)
+    }
+
+    def 'When a mock matches the URI but not the headers, later mocks with the same URI are checked'() {
+        setup:
+        httpClientFactory.createMock().setRequestUri('http://localhost/foo').addRequestHeader('foo', 'bar')
+        RequestMock second = httpClientFactory.createMock().setRequestUri('http://localhost/foo')
+
+        expect:
+        httpClientFactory.findMatchingMock(new HttpRequest('http://localhost/foo'), HttpMethod.GET).is(second)
+    }
+
+    def 'URIs are matched without regard to case or a default port'() {
+        setup:
+        RequestMock mock = httpClientFactory.createMock().setRequestUri('HTTP://LocalHost:80/Foo')
+
+        expect:
+        httpClientFactory.findMatchingMock(new HttpRequest('http://localhost/foo'), HttpMethod.GET).is(mock)
+    }
+
+    def 'Mocks without a URI only match requests with their matcher, in registration order with indexed mocks'() {
+        setup:
+        RequestMock matcher = httpClientFactory.createMock().setRequestMatcher({ it.uri.endsWith('/foo') })
+        RequestMock indexed = httpClientFactory.createMock().setRequestUri('http://localhost/foo')
+        RequestMock fallback = httpClientFactory.createMock().setRequestMatcher({ true })
+        httpClientFactory.createMock()
+
+        expect:
+        httpClientFactory.findMatchingMock(new HttpRequest('http://localhost/foo'), HttpMethod.GET).is(matcher)
+        httpClientFactory.findMatchingMock(new HttpRequest('http://localhost/bar'), HttpMethod.GET).is(fallback)
+
+        when:
+        matcher.setRequestMethod(HttpMethod.POST)
+
+        then:
+        httpClientFactory.findMatchingMock(new HttpRequest('http://localhost/foo'), HttpMethod.GET).is(indexed)
+    }
+
+    def 'Subclasses of RequestMock are matched with their own matching logic'() {
+        setup:
+        RequestMock mock = new RequestMock(new EntityConverterManager([]), 'http://localhost/foo') {
+            @Override
+            boolean matches(HttpRequest request, HttpMethod method) {
+                return request.uri.startsWith('http://localhost/')
+            }
+        }
+        httpClientFactory.addMock(mock)
+
+        expect:
+        httpClientFactory.findMatchingMock(new HttpRequest('http://localhost/bar'), HttpMethod.GET).is(mock)
+    }
+
+    def 'A mock can only be registered once and the registered mocks can not be modified directly'() {
+        setup:
+        RequestMock mock = httpClientFactory.createMock()
+
+        when:
+        httpClientFactory.addMock(mock)
+
+        then:
+        thrown IllegalStateException
+
+        when:
+        httpClientFactory.mocks.add(new RequestMock(new EntityConverterManager([]), 'http://localhost/foo'))
+
+        then:
+        thrown UnsupportedOperationException
+        httpClientFactory.mocks == [mock]
+    }
+
+    def 'When a mock is removed, it no longer matches requests and may be registered again'() {
+        setup:
+        RequestMock indexed = httpClientFactory.createMock().setRequestUri('http://localhost/foo')
+        RequestMock unindexed = httpClientFactory.createMock()
+        RequestMock other = httpClientFactory.createMock().setRequestUri('http://localhost/bar')
+
+        when:
+        boolean removed = httpClientFactory.removeMock(indexed)
+        httpClientFactory.removeMock(unindexed)
+        indexed.setRequestUri('http://localhost/baz')
+
+        then:
+        removed
+        !httpClientFactory.removeMock(indexed)
+        httpClientFactory.mocks == [other]
+        httpClientFactory.findMatchingMock(new HttpRequest('http://localhost/foo'), HttpMethod.GET) == null
+        httpClientFactory.findMatchingMock(new HttpRequest('http://localhost/baz'), HttpMethod.GET) == null
+
+        when:
+        httpClientFactory.addMock(indexed)
+
+        then:
+        httpClientFactory.findMatchingMock(new HttpRequest('http://localhost/baz'), HttpMethod.GET).is(indexed)
+    }
+
+    def 'When the mocks are cleared, no mock matches requests'() {
+        setup:
+        RequestMock mock = httpClientFactory.createMock().setRequestUri('http://localhost/foo')
+        httpClientFactory.createMock()
+
+        when:
+        httpClientFactory.clearMocks()
+        mock.setRequestUri('http://localhost/bar')
+
+        then:
+        httpClientFactory.mocks.isEmpty()
+        httpClientFactory.findMatchingMock(new HttpRequest('http://localhost/bar'), HttpMethod.GET) == null
+        httpClientFactory.allMocksCalled()
+    }
+
+    def 'Mocks can be registered and matched concurrently'() {
+        setup:
+        def executor = Executors.newFixedThreadPool(8)
+        def client = httpClientFactory.createHttpClient()
+
+        when:
+        def futures = (0..<8).collect { thread ->
+            executor.submit({
+                (0..<500).each { i ->
+                    String uri = "http://localhost/${thread}/${i}"
+                    RequestMock mock = httpClientFactory.createMock().setRequestUri(uri).setRequestMethod(HttpMethod.GET)
+                    assert httpClientFactory.findMatchingMock(new HttpRequest(uri), HttpMethod.GET).is(mock)
+                    client.get(uri)
+                }
+                return null
+            } as Callable)
+        }
+        futures*.get(30, TimeUnit.SECONDS)
+        executor.shutdown()
+
+        then:
+        httpClientFactory.mocks.size() == 4000
+        httpClientFactory.allMocksCalled()
+        httpClientFactory.mocks.every { it.calledCount == 1 }
+    }
+}
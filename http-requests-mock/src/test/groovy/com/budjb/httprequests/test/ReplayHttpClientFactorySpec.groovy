@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.test
+
+import com.budjb.httprequests.HttpEntity
+import com.budjb.httprequests.HttpRequest
+import com.budjb.httprequests.HttpResponse
+import com.budjb.httprequests.MultiValuedMap
+import com.budjb.httprequests.converter.EntityConverterManager
+import com.budjb.httprequests.filter.bundled.TrafficRecordingFilter
+import com.budjb.httprequests.groovy.JsonEntityReader
+import com.budjb.httprequests.groovy.JsonEntityWriter
+import com.budjb.httprequests.mock.MockHttpClient
+import com.budjb.httprequests.mock.MockHttpClientFactory
+import spock.lang.Specification
+
+class ReplayHttpClientFactorySpec extends Specification {
+    EntityConverterManager entityConverterManager = new EntityConverterManager([new JsonEntityWriter(), new JsonEntityReader()])
+
+    File file
+
+    def setup() {
+        file = File.createTempFile('http-requests', '.rec')
+        file.deleteOnExit()
+    }
+
+    def cleanup() {
+        file.delete()
+    }
+
+    void record(List<Map> exchanges) {
+        TrafficRecordingFilter filter = new TrafficRecordingFilter(file.toPath())
+        MockHttpClient client = (MockHttpClient) new MockHttpClientFactory(entityConverterManager).createHttpClient()
+
+        exchanges.each { Map exchange ->
+            client.status = exchange.status ?: 200
+            client.headers = new MultiValuedMap(exchange.headers ?: [:])
+            client.responseHttpEntity = exchange.entity ? new HttpEntity(new ByteArrayInputStream(exchange.entity.bytes)) : null
+            client.get(new HttpRequest(exchange.uri).addFilter(filter))
+        }
+
+        filter.shutdown()
+    }
+
+    def 'Recorded responses are served for the requests they were recorded for'() {
+        setup:
+        record([
+            [uri: 'http://localhost/foo?b=2&a=1', entity: '{"foo":"bar"}', headers: ['Content-Type': ['application/json']]],
+            [uri: 'http://localhost/missing', status: 404]
+        ])
+        ReplayHttpClientFactory factory = new ReplayHttpClientFactory(entityConverterManager, file.toPath())
+
+        when:
+        HttpResponse found = factory.createHttpClient().get(new HttpRequest('http://localhost/foo').addQueryParameter('a', '1').addQueryParameter('b', '2'))
+        HttpResponse missing = factory.createHttpClient().get('http://localhost/missing')
+
+        then:
+        factory.exchangeCount == 2
+        found.status == 200
+        found.getHeader('Content-Type') == 'application/json'
+        found.getEntity(Map) == [foo: 'bar']
+        missing.status == 404
+        !missing.hasEntity()
+    }
+
+    def 'Responses recorded for the same request are served in the order they were recorded'() {
+        setup:
+        record([
+            [uri: 'http://localhost/foo', status: 503],
+            [uri: 'http://localhost/foo', entity: 'ok']
+        ])
+        ReplayHttpClientFactory factory = new ReplayHttpClientFactory(entityConverterManager, file.toPath())
+
+        expect:
+        (1..3).collect { factory.createHttpClient().get('http://localhost/foo').status } == [503, 200, 503]
+    }
+
+    def 'A request that was not recorded throws an UnmatchedRequestMockException'() {
+        setup:
+        record([[uri: 'http://localhost/foo']])
+        ReplayHttpClientFactory factory = new ReplayHttpClientFactory(entityConverterManager, file.toPath())
+
+        when:
+        factory.createHttpClient().post('http://localhost/foo')
+
+        then:
+        thrown UnmatchedRequestMockException
+    }
+
+    def 'An exchange that was only partially written ends the recording'() {
+        setup:
+        record([[uri: 'http://localhost/foo', entity: 'ok']])
+        file.append([0, 0, 0, 100, 1, 2, 3] as byte[])
+
+        when:
+        ReplayHttpClientFactory factory = new ReplayHttpClientFactory(entityConverterManager, file.toPath())
+
+        then:
+        factory.exchangeCount == 1
+    }
+
+    def 'A file that is not a recording is rejected'() {
+        setup:
+        file.text = 'not a recording'
+
+        when:
+        new ReplayHttpClientFactory(entityConverterManager, file.toPath())
+
+        then:
+        thrown IOException
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.reactive;
+
+import com.budjb.httprequests.HttpResponse;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A base class for publishers that emit elements read from the entity of an {@link HttpResponse}.
+ * <p>
+ * The entity is only read while the subscriber has outstanding demand, so a response is never read further
+ * than its subscriber is able to consume. Reads are made on the given executor, one at a time, and no thread
+ * is held while there is no demand. The response is closed once the entity has been read completely, an
+ * error occurs, or the subscription is cancelled.
+ * <p>
+ * The entity of a response can only be read once, so a publisher only accepts a single subscriber.
+ *
+ * @param <T> Type of the published elements.
+ */
+abstract class AbstractResponsePublisher<T> implements Publisher<T> {
+    /**
+     * Response whose entity is published.
+     */
+    private final HttpResponse response;
+
+    /**
+     * Executor that reads the entity.
+     */
+    private final Executor executor;
+
+    /**
+     * Whether the publisher has been subscribed to.
+     */
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Constructor.
+     *
+     * @param response Response whose entity is published.
+     * @param executor Executor that reads the entity.
+     */
+    AbstractResponsePublisher(HttpResponse response, Executor executor) {
+        this.response = response;
+        this.executor = executor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber must not be null");
+        }
+
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+
+                }
+
+                @Override
+                public void cancel() {
+
+                }
+            });
+            subscriber.onError(new IllegalStateException("the response entity can only be subscribed to once"));
+            return;
+        }
+
+        ResponseSubscription subscription = new ResponseSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * Reads the next element from the entity.
+     *
+     * @param inputStream Input stream of the entity.
+     * @return The next element, or {@code null} if the end of the entity has been reached.
+     * @throws Exception When the element can not be read.
+     */
+    protected abstract T read(InputStream inputStream) throws Exception;
+
+    /**
+     * The subscription of the single subscriber of the publisher.
+     */
+    private class ResponseSubscription implements Subscription {
+        /**
+         * Subscriber that receives the elements.
+         */
+        private final Subscriber<? super T> subscriber;
+
+        /**
+         * Number of elements requested but not yet delivered.
+         */
+        private final AtomicLong demand = new AtomicLong();
+
+        /**
+         * Number of times the drain loop has been requested to run, used to ensure that only one
+         * thread runs it at a time.
+         */
+        private final AtomicInteger work = new AtomicInteger();
+
+        /**
+         * Whether the subscription has been cancelled.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * Error caused by an invalid request, to be delivered by the drain loop.
+         */
+        private volatile Throwable invalidRequest;
+
+        /**
+         * Whether a terminal signal has been delivered or the subscription has been cancelled, and the
+         * response has been closed.
+         */
+        private boolean terminated;
+
+        /**
+         * Input stream of the entity, opened on the first read.
+         */
+        private InputStream inputStream;
+
+        /**
+         * Constructor.
+         *
+         * @param subscriber Subscriber that receives the elements.
+         */
+        ResponseSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("the number of requested elements must be positive, but was " + n);
+            }
+            else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+
+            schedule();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        /**
+         * Runs the drain loop on the executor unless it is already running.
+         */
+        private void schedule() {
+            if (work.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                }
+                catch (RuntimeException e) {
+                    work.set(0);
+                    terminate();
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        /**
+         * Delivers elements while there is demand, and handles cancellation and terminal signals.
+         */
+        private void drain() {
+            int missed = 1;
+
+            while (true) {
+                if (!terminated) {
+                    drainOnce();
+                }
+
+                missed = work.addAndGet(-missed);
+
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Delivers elements until the demand is satisfied, the entity ends, or the subscription ends.
+         */
+        private void drainOnce() {
+            while (true) {
+                if (cancelled) {
+                    terminate();
+                    return;
+                }
+
+                Throwable error = invalidRequest;
+                if (error != null) {
+                    terminate();
+                    subscriber.onError(error);
+                    return;
+                }
+
+                if (demand.get() == 0) {
+                    return;
+                }
+
+                T element;
+                try {
+                    element = readNext();
+                }
+                catch (Throwable e) {
+                    terminate();
+                    if (!cancelled) {
+                        subscriber.onError(e);
+                    }
+                    return;
+                }
+
+                if (element == null) {
+                    terminate();
+                    subscriber.onComplete();
+                    return;
+                }
+
+                demand.decrementAndGet();
+                subscriber.onNext(element);
+            }
+        }
+
+        /**
+         * Reads the next element from the entity of the response.
+         *
+         * @return The next element, or {@code null} if there are no more elements.
+         * @throws Exception When the element can not be read.
+         */
+        private T readNext() throws Exception {
+            if (inputStream == null) {
+                if (!response.hasEntity()) {
+                    return null;
+                }
+                inputStream = response.getEntity().getInputStream();
+            }
+
+            return read(inputStream);
+        }
+
+        /**
+         * Marks the subscription as terminated and closes the response.
+         */
+        private void terminate() {
+            terminated = true;
+
+            try {
+                response.close();
+            }
+            catch (IOException ignored) {
+                // The response is no longer needed.
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.reactive;
+
+import com.budjb.httprequests.HttpResponse;
+import com.budjb.httprequests.converter.EntityConverterManager;
+import org.reactivestreams.Publisher;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates Reactive Streams publishers for the entities of {@link HttpResponse} objects.
+ * <p>
+ * Responses should be requested with {@link com.budjb.httprequests.HttpRequest#setBufferResponseEntity(boolean)}
+ * set to {@code false}, so that the entity is streamed from the connection as the subscriber requests it.
+ * Reading the entity blocks, so reads are made on an executor; unless one is given, a shared pool of daemon
+ * threads is used, which only holds a thread while a read is in progress.
+ * <p>
+ * On Java 9 and later, the publishers can be adapted to {@code java.util.concurrent.Flow.Publisher} with
+ * {@code org.reactivestreams.FlowAdapters}.
+ */
+public abstract class ReactiveResponses {
+    /**
+     * Executor used when none is given.
+     */
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "http-requests-reactive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Returns a publisher that emits the entity of the given response as byte buffers.
+     *
+     * @param response HTTP response.
+     * @return A publisher of the response entity.
+     */
+    public static Publisher<ByteBuffer> body(HttpResponse response) {
+        return body(response, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Returns a publisher that emits the entity of the given response as byte buffers.
+     *
+     * @param response HTTP response.
+     * @param executor Executor that reads the entity.
+     * @return A publisher of the response entity.
+     */
+    public static Publisher<ByteBuffer> body(HttpResponse response, Executor executor) {
+        return new ResponseBodyPublisher(response, executor);
+    }
+
+    /**
+     * Returns a publisher that emits the lines of the newline-delimited entity of the given response,
+     * converted to the given type.
+     *
+     * @param response         HTTP response.
+     * @param converterManager Converter manager that converts lines to elements.
+     * @param type             Type of the elements.
+     * @param <T>              Type of the elements.
+     * @return A publisher of the elements of the response entity.
+     */
+    public static <T> Publisher<T> elements(HttpResponse response, EntityConverterManager converterManager, Class<T> type) {
+        return elements(response, converterManager, type, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Returns a publisher that emits the lines of the newline-delimited entity of the given response,
+     * converted to the given type.
+     *
+     * @param response         HTTP response.
+     * @param converterManager Converter manager that converts lines to elements.
+     * @param type             Type of the elements.
+     * @param executor         Executor that reads the entity.
+     * @param <T>              Type of the elements.
+     * @return A publisher of the elements of the response entity.
+     */
+    public static <T> Publisher<T> elements(HttpResponse response, EntityConverterManager converterManager, Class<T> type, Executor executor) {
+        return new ResponseElementPublisher<>(response, converterManager, type, executor);
+    }
+}
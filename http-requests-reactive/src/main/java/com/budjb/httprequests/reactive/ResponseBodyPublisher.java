@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.reactive;
+
+import com.budjb.httprequests.HttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+/**
+ * A publisher that emits the entity of an {@link HttpResponse} as a sequence of byte buffers.
+ * <p>
+ * Each buffer is newly allocated and owned by the subscriber, and contains at most the configured chunk
+ * size. One buffer is read from the entity for each element the subscriber requests.
+ */
+public class ResponseBodyPublisher extends AbstractResponsePublisher<ByteBuffer> {
+    /**
+     * Default maximum size of each buffer.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    /**
+     * Maximum size of each buffer.
+     */
+    private final int chunkSize;
+
+    /**
+     * Constructor.
+     *
+     * @param response  Response whose entity is published.
+     * @param executor  Executor that reads the entity.
+     * @param chunkSize Maximum size of each buffer.
+     */
+    public ResponseBodyPublisher(HttpResponse response, Executor executor, int chunkSize) {
+        super(response, executor);
+
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunk size must be at least 1");
+        }
+
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param response Response whose entity is published.
+     * @param executor Executor that reads the entity.
+     */
+    public ResponseBodyPublisher(HttpResponse response, Executor executor) {
+        this(response, executor, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected ByteBuffer read(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[chunkSize];
+        int read;
+
+        // A read may return no bytes without reaching the end of the stream, in which case it is repeated
+        // since an empty buffer would satisfy demand without delivering any data.
+        do {
+            read = inputStream.read(buffer, 0, chunkSize);
+        } while (read == 0);
+
+        if (read == -1) {
+            return null;
+        }
+
+        return ByteBuffer.wrap(buffer, 0, read);
+    }
+}
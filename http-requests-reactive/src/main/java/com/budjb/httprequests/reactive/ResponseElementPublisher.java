@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.reactive;
+
+import com.budjb.httprequests.HttpEntity;
+import com.budjb.httprequests.HttpResponse;
+import com.budjb.httprequests.converter.EntityConverterManager;
+import com.budjb.httprequests.exception.UnsupportedConversionException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+
+/**
+ * A publisher that emits the elements of a newline-delimited response entity, such as
+ * <code>application/x-ndjson</code>, converted to objects.
+ * <p>
+ * Each non-empty line of the entity is converted with the entity readers of the given
+ * {@link EntityConverterManager}, as if it were the entity of its own response with the content type and
+ * character set of the response. This allows, for example, a stream of JSON documents to be consumed one
+ * document at a time with the Jackson entity readers. One line is read from the entity for each element the
+ * subscriber requests.
+ *
+ * @param <T> Type of the published elements.
+ */
+public class ResponseElementPublisher<T> extends AbstractResponsePublisher<T> {
+    /**
+     * Converter manager that converts lines to elements.
+     */
+    private final EntityConverterManager converterManager;
+
+    /**
+     * Type of the published elements.
+     */
+    private final Class<T> type;
+
+    /**
+     * Content type of the response entity.
+     */
+    private final String contentType;
+
+    /**
+     * Character set of the response entity.
+     */
+    private final String charSet;
+
+    /**
+     * Buffer that collects the bytes of a line.
+     */
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+    /**
+     * Buffered input stream of the entity, since lines are read one byte at a time.
+     */
+    private InputStream bufferedInputStream;
+
+    /**
+     * Constructor.
+     *
+     * @param response         Response whose entity is published.
+     * @param converterManager Converter manager that converts lines to elements.
+     * @param type             Type of the published elements.
+     * @param executor         Executor that reads the entity.
+     */
+    public ResponseElementPublisher(HttpResponse response, EntityConverterManager converterManager, Class<T> type, Executor executor) {
+        super(response, executor);
+
+        this.converterManager = converterManager;
+        this.type = type;
+
+        HttpEntity entity = response.getEntity();
+        this.contentType = entity != null ? entity.getContentType() : null;
+        this.charSet = entity != null ? entity.getCharSet() : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected T read(InputStream inputStream) throws IOException, UnsupportedConversionException {
+        if (bufferedInputStream == null) {
+            bufferedInputStream = new BufferedInputStream(inputStream);
+        }
+
+        InputStream input = bufferedInputStream;
+
+        while (true) {
+            line.reset();
+
+            int b;
+            while ((b = input.read()) != -1 && b != '\n') {
+                line.write(b);
+            }
+
+            int length = line.size();
+            byte[] bytes = line.toByteArray();
+
+            if (length > 0 && bytes[length - 1] == '\r') {
+                length--;
+            }
+
+            if (length > 0) {
+                HttpEntity entity = new HttpEntity(new ByteArrayInputStream(bytes, 0, length), contentType, charSet);
+                return converterManager.read(type, entity);
+            }
+
+            if (b == -1) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.reactive
+
+import com.budjb.httprequests.HttpEntity
+import com.budjb.httprequests.HttpRequest
+import com.budjb.httprequests.HttpResponse
+import com.budjb.httprequests.MultiValuedMap
+import com.budjb.httprequests.converter.EntityConverterManager
+import com.budjb.httprequests.converter.bundled.StringEntityReader
+import com.budjb.httprequests.mock.MockHttpResponse
+import org.reactivestreams.Publisher
+import org.reactivestreams.Subscriber
+import org.reactivestreams.Subscription
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+
+class ReactiveResponsesSpec extends Specification {
+    EntityConverterManager converterManager = new EntityConverterManager([new StringEntityReader()])
+
+    /**
+     * Runs reads on the calling thread so that tests are deterministic.
+     */
+    Executor executor = { Runnable runnable -> runnable.run() } as Executor
+
+    HttpResponse createResponse(byte[] content, InputStream inputStream = null) {
+        HttpEntity entity = new HttpEntity(inputStream ?: new ByteArrayInputStream(content), 'text/plain', 'UTF-8')
+        return new MockHttpResponse(converterManager, new HttpRequest('http://localhost').setBufferResponseEntity(false), 200, new MultiValuedMap(), entity)
+    }
+
+    def 'The body is emitted in chunks only as they are requested'() {
+        setup:
+        byte[] content = ('x' * 20).bytes
+        HttpResponse response = createResponse(content)
+        Publisher<ByteBuffer> publisher = new ResponseBodyPublisher(response, executor, 8)
+        RecordingSubscriber<ByteBuffer> subscriber = new RecordingSubscriber<>()
+
+        when:
+        publisher.subscribe(subscriber)
+
+        then:
+        subscriber.elements.isEmpty()
+
+        when:
+        subscriber.subscription.request(1)
+
+        then:
+        subscriber.elements*.remaining() == [8]
+        !subscriber.completed
+
+        when:
+        subscriber.subscription.request(Long.MAX_VALUE)
+
+        then:
+        subscriber.elements*.remaining() == [8, 8, 4]
+        subscriber.completed
+        subscriber.error == null
+    }
+
+    def 'The body publisher emits the complete entity'() {
+        setup:
+        byte[] content = new byte[100000]
+        new Random(0).nextBytes(content)
+        RecordingSubscriber<ByteBuffer> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE)
+
+        when:
+        ReactiveResponses.body(createResponse(content)).subscribe(subscriber)
+
+        then:
+        subscriber.await()
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+        subscriber.elements.each { ByteBuffer buffer ->
+            byte[] bytes = new byte[buffer.remaining()]
+            buffer.get(bytes)
+            output.write(bytes)
+        }
+        output.toByteArray() == content
+    }
+
+    def 'Cancelling the subscription closes the response'() {
+        setup:
+        boolean closed = false
+        InputStream inputStream = new ByteArrayInputStream(('x' * 100).bytes) {
+            @Override
+            void close() {
+                closed = true
+            }
+        }
+        HttpResponse response = createResponse(null, inputStream)
+        RecordingSubscriber<ByteBuffer> subscriber = new RecordingSubscriber<>()
+        new ResponseBodyPublisher(response, executor, 10).subscribe(subscriber)
+
+        when:
+        subscriber.subscription.request(1)
+        subscriber.subscription.cancel()
+        subscriber.subscription.request(1)
+
+        then:
+        closed
+        subscriber.elements.size() == 1
+        !subscriber.completed
+        subscriber.error == null
+    }
+
+    def 'A request for a non-positive number of elements is signalled as an error'() {
+        setup:
+        RecordingSubscriber<ByteBuffer> subscriber = new RecordingSubscriber<>()
+        new ResponseBodyPublisher(createResponse('foo'.bytes), executor).subscribe(subscriber)
+
+        when:
+        subscriber.subscription.request(0)
+
+        then:
+        subscriber.error instanceof IllegalArgumentException
+    }
+
+    def 'A second subscriber receives an error'() {
+        setup:
+        Publisher<ByteBuffer> publisher = new ResponseBodyPublisher(createResponse('foo'.bytes), executor)
+        RecordingSubscriber<ByteBuffer> first = new RecordingSubscriber<>()
+        RecordingSubscriber<ByteBuffer> second = new RecordingSubscriber<>()
+
+        when:
+        publisher.subscribe(first)
+        publisher.subscribe(second)
+
+        then:
+        first.error == null
+        second.error instanceof IllegalStateException
+    }
+
+    def 'An IO exception while reading the entity is signalled as an error'() {
+        setup:
+        InputStream inputStream = new InputStream() {
+            int position = 0
+
+            @Override
+            int read() throws IOException {
+                if (position++ == 0) {
+                    return 'a' as char
+                }
+                throw new IOException('connection reset')
+            }
+        }
+        RecordingSubscriber<ByteBuffer> subscriber = new RecordingSubscriber<>(1)
+
+        when:
+        new ResponseBodyPublisher(createResponse(null, inputStream), executor).subscribe(subscriber)
+
+        then:
+        subscriber.error instanceof IOException
+    }
+
+    def 'The lines of a newline-delimited entity are emitted as converted elements'() {
+        setup:
+        byte[] content = 'first\r\nsecond\n\nthird'.getBytes(StandardCharsets.UTF_8)
+        RecordingSubscriber<String> subscriber = new RecordingSubscriber<>()
+        new ResponseElementPublisher<>(createResponse(content), converterManager, String, executor).subscribe(subscriber)
+
+        when:
+        subscriber.subscription.request(2)
+
+        then:
+        subscriber.elements == ['first', 'second']
+        !subscriber.completed
+
+        when:
+        subscriber.subscription.request(2)
+
+        then:
+        subscriber.elements == ['first', 'second', 'third']
+        subscriber.completed
+    }
+
+    def 'A response without an entity completes immediately once requested'() {
+        setup:
+        HttpResponse response = new MockHttpResponse(converterManager, new HttpRequest('http://localhost'), 204, new MultiValuedMap(), null)
+        RecordingSubscriber<ByteBuffer> subscriber = new RecordingSubscriber<>(1)
+
+        when:
+        ReactiveResponses.body(response, executor).subscribe(subscriber)
+
+        then:
+        subscriber.completed
+        subscriber.elements.isEmpty()
+    }
+
+    static class RecordingSubscriber<T> implements Subscriber<T> {
+        final List<T> elements = Collections.synchronizedList([])
+        final CountDownLatch done = new CountDownLatch(1)
+        final long initialRequest
+        Subscription subscription
+        volatile boolean completed
+        volatile Throwable error
+
+        RecordingSubscriber(long initialRequest = 0) {
+            this.initialRequest = initialRequest
+        }
+
+        @Override
+        void onSubscribe(Subscription subscription) {
+            this.subscription = subscription
+            if (initialRequest > 0) {
+                subscription.request(initialRequest)
+            }
+        }
+
+        @Override
+        void onNext(T element) {
+            elements << element
+        }
+
+        @Override
+        void onError(Throwable throwable) {
+            error = throwable
+            done.countDown()
+        }
+
+        @Override
+        void onComplete() {
+            completed = true
+            done.countDown()
+        }
+
+        boolean await() {
+            return done.await(10, TimeUnit.SECONDS) && completed
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.budjb.httprequests.spring;
 
+import com.budjb.httprequests.AbstractHttpClientFactory;
 import com.budjb.httprequests.HttpClientFactory;
 import com.budjb.httprequests.converter.EntityConverterManager;
 import com.budjb.httprequests.httpcomponents.client.HttpComponentsClientFactory;
@@ -23,39 +24,74 @@ import com.budjb.httprequests.jersey1.JerseyHttpClientFactory;
 import com.budjb.httprequests.reference.ReferenceHttpClientFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
 @Configuration
+@EnableConfigurationProperties(HttpRequestsProperties.class)
 public class HttpClientFactoryConfiguration {
     @Bean("httpClientFactory")
     @Primary
     @ConditionalOnClass(name = "com.budjb.httprequests.httpcomponents.client.HttpComponentsClientFactory")
     @ConditionalOnMissingBean
-    public HttpClientFactory apacheHttpClientFactory(EntityConverterManager converterManager) {
-        return new HttpComponentsClientFactory(converterManager);
+    public HttpClientFactory apacheHttpClientFactory(EntityConverterManager converterManager, HttpRequestsProperties properties) {
+        HttpComponentsClientFactory factory = new HttpComponentsClientFactory(converterManager);
+        HttpRequestsProperties.Pool pool = properties.getPool();
+
+        if (pool.getMaxConnections() != null) {
+            factory.setMaxConnections(pool.getMaxConnections());
+        }
+        if (pool.getMaxConnectionsPerRoute() != null) {
+            factory.setMaxConnectionsPerRoute(pool.getMaxConnectionsPerRoute());
+        }
+        if (pool.getKeepAlive() != null) {
+            factory.setKeepAlive(pool.getKeepAlive().toMillis());
+        }
+        if (pool.getIdleTimeout() != null) {
+            factory.setIdleTimeout(pool.getIdleTimeout().toMillis());
+        }
+
+        return configure(factory, properties);
     }
 
     @Bean("httpClientFactory")
     @Primary
     @ConditionalOnClass(name = "com.budjb.httprequests.jersey1.JerseyHttpClientFactory")
     @ConditionalOnMissingBean
-    public HttpClientFactory jersey1HttpClientFactory(EntityConverterManager converterManager) {
-        return new JerseyHttpClientFactory(converterManager);
+    public HttpClientFactory jersey1HttpClientFactory(EntityConverterManager converterManager, HttpRequestsProperties properties) {
+        return configure(new JerseyHttpClientFactory(converterManager), properties);
     }
 
     @Bean("httpClientFactory")
     @Primary
     @ConditionalOnClass(name = "com.budjb.httprequests.jersey2.JerseyHttpClientFactory")
     @ConditionalOnMissingBean
-    public HttpClientFactory jersey2HttpClientFactory(EntityConverterManager converterManager) {
-        return new com.budjb.httprequests.jersey2.JerseyHttpClientFactory(converterManager);
+    public HttpClientFactory jersey2HttpClientFactory(EntityConverterManager converterManager, HttpRequestsProperties properties) {
+        return configure(new com.budjb.httprequests.jersey2.JerseyHttpClientFactory(converterManager), properties);
     }
 
     @Bean("httpClientFactory")
     @ConditionalOnMissingBean
-    public HttpClientFactory referenceHttpClientFactory(EntityConverterManager entityConverterManager) {
-        return new ReferenceHttpClientFactory(entityConverterManager);
+    public HttpClientFactory referenceHttpClientFactory(EntityConverterManager entityConverterManager, HttpRequestsProperties properties) {
+        return configure(new ReferenceHttpClientFactory(entityConverterManager), properties);
+    }
+
+    /**
+     * Applies the default timeouts from the configuration properties to a factory.
+     *
+     * @param factory    HTTP client factory.
+     * @param properties HTTP requests configuration properties.
+     * @return The given factory.
+     */
+    private HttpClientFactory configure(AbstractHttpClientFactory factory, HttpRequestsProperties properties) {
+        if (properties.getConnectTimeout() != null) {
+            factory.setDefaultConnectionTimeout(Math.toIntExact(properties.getConnectTimeout().toMillis()));
+        }
+        if (properties.getReadTimeout() != null) {
+            factory.setDefaultReadTimeout(Math.toIntExact(properties.getReadTimeout().toMillis()));
+        }
+        return factory;
     }
 }
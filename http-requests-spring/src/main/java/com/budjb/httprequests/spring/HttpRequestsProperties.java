@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.budjb.httprequests.spring;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings applied to the auto-configured {@link com.budjb.httprequests.HttpClientFactory}, bound from the
+ * {@code httprequests} configuration properties. Settings that are not set keep the defaults of the factory.
+ */
+@ConfigurationProperties("httprequests")
+public class HttpRequestsProperties {
+    /**
+     * Connection timeout applied to requests that do not set one.
+     */
+    private Duration connectTimeout;
+
+    /**
+     * Read timeout applied to requests that do not set one.
+     */
+    private Duration readTimeout;
+
+    /**
+     * Connection pool settings.
+     */
+    private final Pool pool = new Pool();
+
+    /**
+     * Returns the connection timeout applied to requests that do not set one.
+     *
+     * @return The default connection timeout, or {@code null} if it is not set.
+     */
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Sets the connection timeout applied to requests that do not set one.
+     *
+     * @param connectTimeout Default connection timeout.
+     */
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Returns the read timeout applied to requests that do not set one.
+     *
+     * @return The default read timeout, or {@code null} if it is not set.
+     */
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Sets the read timeout applied to requests that do not set one.
+     *
+     * @param readTimeout Default read timeout.
+     */
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Returns the connection pool settings.
+     *
+     * @return The connection pool settings.
+     */
+    public Pool getPool() {
+        return pool;
+    }
+
+    /**
+     * Connection pool settings. These apply to factories that support connection pooling.
+     */
+    public static class Pool {
+        /**
+         * Maximum number of pooled connections. 0 disables connection pooling.
+         */
+        private Integer maxConnections;
+
+        /**
+         * Maximum number of pooled connections to a single route.
+         */
+        private Integer maxConnectionsPerRoute;
+
+        /**
+         * Maximum time a pooled connection is kept alive between requests.
+         */
+        private Duration keepAlive;
+
+        /**
+         * Time after which idle pooled connections are closed.
+         */
+        private Duration idleTimeout;
+
+        /**
+         * Returns the maximum number of pooled connections.
+         *
+         * @return The maximum number of pooled connections, or {@code null} if it is not set.
+         */
+        public Integer getMaxConnections() {
+            return maxConnections;
+        }
+
+        /**
+         * Sets the maximum number of pooled connections. 0 disables connection pooling.
+         *
+         * @param maxConnections Maximum number of pooled connections.
+         */
+        public void setMaxConnections(Integer maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        /**
+         * Returns the maximum number of pooled connections to a single route.
+         *
+         * @return The maximum number of pooled connections to a single route, or {@code null} if it is not set.
+         */
+        public Integer getMaxConnectionsPerRoute() {
+            return maxConnectionsPerRoute;
+        }
+
+        /**
+         * Sets the maximum number of pooled connections to a single route.
+         *
+         * @param maxConnectionsPerRoute Maximum number of pooled connections to a single route.
+         */
+        public void setMaxConnectionsPerRoute(Integer maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        }
+
+        /**
+         * Returns the maximum time a pooled connection is kept alive between requests.
+         *
+         * @return The maximum time a pooled connection is kept alive, or {@code null} if it is not set.
+         */
+        public Duration getKeepAlive() {
+            return keepAlive;
+        }
+
+        /**
+         * Sets the maximum time a pooled connection is kept alive between requests.
+         *
+         * @param keepAlive Maximum time a pooled connection is kept alive.
+         */
+        public void setKeepAlive(Duration keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        /**
+         * Returns the time after which idle pooled connections are closed.
+         *
+         * @return The time after which idle pooled connections are closed, or {@code null} if it is not set.
+         */
+        public Duration getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        /**
+         * Sets the time after which idle pooled connections are closed.
+         *
+         * @param idleTimeout Time after which idle pooled connections are closed.
+         */
+        public void setIdleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+        }
+    }
+}